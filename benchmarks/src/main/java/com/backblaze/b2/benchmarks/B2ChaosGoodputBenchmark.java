@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import com.backblaze.b2.client.B2AccountAuthorizerSimpleImpl;
+import com.backblaze.b2.client.B2ClientConfig;
+import com.backblaze.b2.client.B2StorageClient;
+import com.backblaze.b2.client.contentSources.B2ByteArrayContentSource;
+import com.backblaze.b2.client.contentSources.B2ContentSource;
+import com.backblaze.b2.client.contentSources.B2ContentTypes;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.structures.B2BucketTypes;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2UploadFileRequest;
+import com.backblaze.b2.client.webApiClients.B2WebApiClientWithChaos;
+import com.backblaze.b2.client.webApiClients.B2WebApiClientWithChaos.LatencyDistribution;
+import com.backblaze.b2.client.webApiClients.B2WebApiClientWithChaos.Rule;
+import com.backblaze.b2.client.webApiHttpClient.B2StorageHttpClientBuilder;
+import com.backblaze.b2.client.webApiHttpClient.B2WebApiHttpClientImpl;
+import com.backblaze.b2.client.webApiHttpClient.HttpClientFactoryImpl;
+import com.backblaze.b2.simulator.B2Simulator;
+import com.backblaze.b2.util.B2ExecutorUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.backblaze.b2.benchmarks.B2DataPathBenchmarks.MEGABYTES;
+import static com.backblaze.b2.benchmarks.B2DataPathBenchmarks.ONE_MB;
+
+/**
+ * Measures the goodput of uploading a large file through the whole client
+ * (the retryer, the default retry policy and the large file uploader)
+ * when a B2WebApiClientWithChaos adds latency, errors and connection
+ * resets in front of a real HTTP client talking to a B2Simulator.
+ *
+ * Each part is one MB, so a reset or error only costs the part it hits,
+ * plus the retry policy's wait.  The injected 429s and 503s say to retry
+ * right away, but resets get the policy's backoff, so expect the "resets"
+ * mix to be dominated by waiting.
+ *
+ * Results are in MB/s of content that made it.  See B2DataPathBenchmarks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MEGABYTES)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class B2ChaosGoodputBenchmark {
+    private static final String MIX_CLEAN = "clean";
+    private static final String MIX_LOSSY = "lossy";
+    private static final String MIX_RESETS = "resets";
+    private static final int UPLOAD_THREADS = 4;
+
+    /**
+     * What goes wrong: nothing, some latency with a few 429s and 503s, or
+     * a few connection resets in the middle of parts.
+     */
+    @Param({MIX_CLEAN, MIX_LOSSY, MIX_RESETS})
+    public String mix;
+
+    private B2Simulator simulator;
+    private B2StorageClient client;
+    private ExecutorService executor;
+    private String bucketId;
+    private B2ContentSource source;
+
+    @Setup
+    public void setUp() throws IOException, B2Exception {
+        simulator = B2Simulator
+                .builder()
+                .setPartSizes(ONE_MB, ONE_MB)
+                .build();
+
+        final B2WebApiClientWithChaos webApiClient = B2WebApiClientWithChaos
+                .builder(B2WebApiHttpClientImpl
+                        .builder()
+                        .setHttpClientFactory(HttpClientFactoryImpl.builder().setSupportInsecureHttp(true).build())
+                        .build())
+                .setRule("b2_upload_part", makeUploadPartRule())
+                .setRandomSeed(0)
+                .build();
+        final B2ClientConfig config = B2ClientConfig
+                .builder(B2AccountAuthorizerSimpleImpl
+                                .builder(simulator.getApplicationKeyId(), simulator.getApplicationKey())
+                                .build(),
+                        "b2-sdk-java-benchmarks")
+                .setMasterUrl(simulator.getMasterUrl())
+                .build();
+        client = B2StorageHttpClientBuilder
+                .builder(config)
+                .setWebApiClient(webApiClient)
+                .build();
+
+        executor = Executors.newFixedThreadPool(UPLOAD_THREADS, B2ExecutorUtils.createThreadFactory("B2ChaosGoodputBenchmark-%d"));
+        bucketId = client.createBucket("benchmarks", B2BucketTypes.ALL_PRIVATE).getBucketId();
+        source = B2ByteArrayContentSource.build(B2DataPathBenchmarks.makeContent(MEGABYTES * ONE_MB));
+    }
+
+    private Rule makeUploadPartRule() {
+        switch (mix) {
+            case MIX_CLEAN:
+                return Rule.builder().build();
+            case MIX_LOSSY:
+                return Rule
+                        .builder()
+                        .setLatency(LatencyDistribution.exponential(2, 10))
+                        .addError(0.05, 429, "too_many_requests", 0)
+                        .addError(0.05, 503, "service_unavailable", 0)
+                        .build();
+            case MIX_RESETS:
+                return Rule
+                        .builder()
+                        .setResetRate(0.05)
+                        .build();
+            default:
+                throw new IllegalArgumentException("unknown mix " + mix);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        B2ExecutorUtils.shutdownAndAwaitTermination(executor, 10, 10);
+        client.close();
+        simulator.close();
+    }
+
+    @Benchmark
+    public B2FileVersion uploadLargeFile() throws B2Exception {
+        final B2FileVersion version = client.uploadLargeFile(B2UploadFileRequest
+                .builder(bucketId, "benchmarks/large", B2ContentTypes.APPLICATION_OCTET, source)
+                .build(), executor);
+
+        // the simulator keeps everything in memory, so don't let the versions pile up.
+        client.deleteFileVersion(version);
+        return version;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Things shared by the benchmarks that move content.
+ *
+ * Each of those benchmarks moves MEGABYTES of content per invocation and
+ * says so with @OperationsPerInvocation, so JMH's throughput is in MB/s
+ * and gc.alloc.rate.norm is the number of bytes allocated per MB moved.
+ */
+/*package*/ final class B2DataPathBenchmarks {
+    /*package*/ static final int MEGABYTES = 16;
+    /*package*/ static final int ONE_MB = 1024 * 1024;
+
+    // this matches the buffer size HttpClient uses to send an entity.
+    private static final int COPY_BUFFER_SIZE = 4096;
+
+    private B2DataPathBenchmarks() {
+    }
+
+    /**
+     * @return size bytes of pseudo-random content.  it's the same every
+     *         time, so runs are comparable.
+     */
+    /*package*/ static byte[] makeContent(int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * @return a buffer for drain().
+     */
+    /*package*/ static byte[] makeCopyBuffer() {
+        return new byte[COPY_BUFFER_SIZE];
+    }
+
+    /**
+     * Reads everything from in, the way an HTTP client sending it would.
+     *
+     * @return the number of bytes read.
+     */
+    /*package*/ static long drain(InputStream in, byte[] buffer) throws IOException {
+        long total = 0;
+        int nRead;
+        while ((nRead = in.read(buffer)) != -1) {
+            total += nRead;
+        }
+        return total;
+    }
+}
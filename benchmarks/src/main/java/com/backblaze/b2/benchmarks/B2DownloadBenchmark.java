@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import com.backblaze.b2.client.B2StorageClientWebifier;
+import com.backblaze.b2.client.B2StorageClientWebifierImpl;
+import com.backblaze.b2.client.contentHandlers.B2ContentMemoryWriter;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.structures.B2AccountAuthorization;
+import com.backblaze.b2.client.structures.B2DownloadByIdRequest;
+import com.backblaze.b2.util.B2Sha1;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.backblaze.b2.benchmarks.B2DataPathBenchmarks.MEGABYTES;
+import static com.backblaze.b2.benchmarks.B2DataPathBenchmarks.ONE_MB;
+
+/**
+ * Benchmarks downloading a file through the real webifier into a
+ * B2ContentMemoryWriter, with only the network replaced.  This covers
+ * B2ContentWriter's copy loop and its SHA-1 checks.
+ *
+ * The memory writer's own ByteArrayOutputStream shows up in the
+ * allocation numbers; it's part of what a caller using it pays.
+ *
+ * Results are in MB/s.  See B2DataPathBenchmarks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MEGABYTES)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class B2DownloadBenchmark {
+    private static final String FILE_ID = "4_ze73ede9c9c8412db49f60715_f200b4e93fbae6252_d20180511_m181506_c001_v0001012_t0044";
+
+    /**
+     * Whether the response has a SHA-1 for the writer to check.
+     */
+    @Param({"true", "false"})
+    public boolean sha1InHeaders;
+
+    /**
+     * Whether the writer checks the SHA-1 again by reading what it wrote.
+     */
+    @Param({"true", "false"})
+    public boolean verifyByRereading;
+
+    private B2StorageClientWebifier webifier;
+    private B2AccountAuthorization accountAuth;
+    private B2DownloadByIdRequest request;
+
+    @Setup
+    public void setUp() {
+        final byte[] content = B2DataPathBenchmarks.makeContent(MEGABYTES * ONE_MB);
+
+        final B2InMemoryWebApiClient webApiClient = new B2InMemoryWebApiClient();
+        webApiClient.setDownloadContent(content, sha1InHeaders ? B2Sha1.hexSha1OfBytes(content) : null);
+
+        webifier = new B2StorageClientWebifierImpl(webApiClient, "b2-sdk-java-benchmarks", "https://api.backblazeb2.com/", null);
+        accountAuth = B2JsonBenchmarkPayloads.makeAccountAuthorization();
+        request = B2DownloadByIdRequest.builder(FILE_ID).build();
+    }
+
+    @Benchmark
+    public B2ContentMemoryWriter downloadById() throws B2Exception {
+        final B2ContentMemoryWriter writer = B2ContentMemoryWriter
+                .builder()
+                .setVerifySha1ByRereadingFromDestination(verifyByRereading)
+                .build();
+        webifier.downloadById(accountAuth, request, writer);
+        return writer;
+    }
+}
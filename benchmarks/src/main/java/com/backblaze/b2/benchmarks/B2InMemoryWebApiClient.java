@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2ContentTypes;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.contentSources.B2HeadersImpl;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.webApiClients.B2WebApiClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A B2WebApiClient that moves content without a network, so the
+ * benchmarks measure the SDK's streaming layers and nothing else.
+ *
+ * Uploads are read to the end, like HttpClient would send them, and
+ * answered with a canned response.  Downloads hand the sink the same
+ * content every time.  It doesn't do JSON calls at all.
+ *
+ * THREAD-SAFETY: This class is NOT thread safe.  Each benchmark thread
+ *    needs its own.
+ */
+/*package*/ class B2InMemoryWebApiClient implements B2WebApiClient {
+    private final Map<Class<?>, Object> uploadResponses = new HashMap<>();
+    private final byte[] copyBuffer = B2DataPathBenchmarks.makeCopyBuffer();
+
+    private byte[] downloadContent = new byte[0];
+    private String downloadSha1OrNull;
+
+    /**
+     * Makes postDataReturnJson() return response when it's asked for a
+     * responseClass.
+     */
+    /*package*/ <T> void setUploadResponse(Class<T> responseClass, T response) {
+        uploadResponses.put(responseClass, response);
+    }
+
+    /**
+     * Makes getContent() return content.  If sha1OrNull isn't null, it's
+     * sent in the X-Bz-Content-Sha1 header, so the sink can check it.
+     */
+    /*package*/ void setDownloadContent(byte[] content, String sha1OrNull) {
+        this.downloadContent = content;
+        this.downloadSha1OrNull = sha1OrNull;
+    }
+
+    @Override
+    public <ResponseType> ResponseType postJsonReturnJson(String url,
+                                                          B2Headers headersOrNull,
+                                                          Object request,
+                                                          Class<ResponseType> responseClass) throws B2Exception {
+        throw new B2LocalException("trouble", "B2InMemoryWebApiClient only moves content; can't post to " + url);
+    }
+
+    @Override
+    public <ResponseType> ResponseType postDataReturnJson(String url,
+                                                          B2Headers headersOrNull,
+                                                          InputStream contentSource,
+                                                          long contentLength,
+                                                          Class<ResponseType> responseClass) throws B2Exception {
+        final long nRead;
+        try {
+            nRead = B2DataPathBenchmarks.drain(contentSource, copyBuffer);
+        } catch (IOException e) {
+            throw new B2LocalException("read_failed", "failed to read content: " + e, e);
+        }
+        if (nRead != contentLength) {
+            throw new B2LocalException("mismatch", "expected " + contentLength + " bytes, but read " + nRead);
+        }
+
+        final Object response = uploadResponses.get(responseClass);
+        if (response == null) {
+            throw new B2LocalException("trouble", "no response set for " + responseClass.getSimpleName());
+        }
+        return responseClass.cast(response);
+    }
+
+    @Override
+    public void getContent(String url,
+                           B2Headers headersOrNull,
+                           B2ContentSink handler) throws B2Exception {
+        final B2HeadersImpl.Builder headersBuilder = B2HeadersImpl
+                .builder()
+                .set(B2Headers.CONTENT_LENGTH, Integer.toString(downloadContent.length))
+                .set(B2Headers.CONTENT_TYPE, B2ContentTypes.APPLICATION_OCTET);
+        if (downloadSha1OrNull != null) {
+            headersBuilder.set(B2Headers.CONTENT_SHA1, downloadSha1OrNull);
+        }
+        try {
+            handler.readContent(headersBuilder.build(), new ByteArrayInputStream(downloadContent));
+        } catch (IOException e) {
+            throw new B2LocalException("read_failed", "failed to read content: " + e, e);
+        }
+    }
+
+    @Override
+    public B2Headers head(String url, B2Headers headersOrNull) throws B2Exception {
+        throw new B2LocalException("trouble", "B2InMemoryWebApiClient only moves content; can't head " + url);
+    }
+
+    @Override
+    public void close() {
+    }
+}
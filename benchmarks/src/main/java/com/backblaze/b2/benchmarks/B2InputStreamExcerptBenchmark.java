@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import com.backblaze.b2.util.B2InputStreamExcerpt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.backblaze.b2.benchmarks.B2DataPathBenchmarks.MEGABYTES;
+import static com.backblaze.b2.benchmarks.B2DataPathBenchmarks.ONE_MB;
+
+/**
+ * Benchmarks reading one part of a large file through a
+ * B2InputStreamExcerpt, the way large file uploads and the disk content
+ * cache do.  Deep offsets check that getting to the part's start stays
+ * cheap when the underlying stream can skip.
+ *
+ * Results are in MB/s of the part.  See B2DataPathBenchmarks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MEGABYTES)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class B2InputStreamExcerptBenchmark {
+    private static final long PART_LENGTH = (long) MEGABYTES * ONE_MB;
+
+    /**
+     * Where the part starts.  10,000 parts of 100MB (the recommended
+     * part size) make a file of almost 1TB.
+     */
+    @Param({"0", "1024", "1000000"})
+    public long offsetMegabytes;
+
+    private byte[] pattern;
+    private byte[] copyBuffer;
+
+    @Setup
+    public void setUp() {
+        pattern = B2DataPathBenchmarks.makeContent(ONE_MB);
+        copyBuffer = B2DataPathBenchmarks.makeCopyBuffer();
+    }
+
+    @Benchmark
+    public long readPart() throws IOException {
+        final long start = offsetMegabytes * ONE_MB;
+        final B2SyntheticInputStream file = new B2SyntheticInputStream(pattern, start + PART_LENGTH);
+        return B2DataPathBenchmarks.drain(new B2InputStreamExcerpt(file, start, PART_LENGTH), copyBuffer);
+    }
+}
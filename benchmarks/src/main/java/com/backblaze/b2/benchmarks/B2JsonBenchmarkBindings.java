@@ -0,0 +1,37 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import com.backblaze.b2.json.B2Json;
+import com.backblaze.b2.json.B2JsonTestHelpers;
+
+/**
+ * Lets the B2Json benchmarks pick how B2Json binds to objects' fields and
+ * constructors, as a JMH parameter.  The reflective binding isn't public
+ * in the SDK, so it comes from core's test classes.
+ */
+/*package*/ final class B2JsonBenchmarkBindings {
+    public static final String METHOD_HANDLES = "methodHandles";
+    public static final String REFLECTION = "reflection";
+
+    private B2JsonBenchmarkBindings() {
+    }
+
+    /**
+     * @param binding METHOD_HANDLES or REFLECTION.
+     * @return a B2Json that uses the given binding.
+     */
+    public static B2Json get(String binding) {
+        switch (binding) {
+            case METHOD_HANDLES:
+                return B2Json.get();
+            case REFLECTION:
+                return B2JsonTestHelpers.withReflectiveBinding();
+            default:
+                throw new IllegalArgumentException("unknown binding '" + binding + "'");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import com.backblaze.b2.client.structures.B2AccountAuthorization;
+import com.backblaze.b2.client.structures.B2Allowed;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2FinishLargeFileRequest;
+import com.backblaze.b2.client.structures.B2ListFileVersionsResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds realistic objects for the B2Json benchmarks.  Everything is
+ * deterministic, so runs are comparable.
+ */
+/*package*/ final class B2JsonBenchmarkPayloads {
+    private static final String ACCOUNT_ID = "a30f20426f0b";
+    private static final String BUCKET_ID = "e73ede9c9c8412db49f60715";
+
+    private B2JsonBenchmarkPayloads() {
+    }
+
+    /**
+     * @return a page of a listing with fileCount versions, like the
+     *         ones b2_list_file_versions returns.
+     */
+    /*package*/ static B2ListFileVersionsResponse makeListing(int fileCount) {
+        final List<B2FileVersion> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            final Map<String, String> fileInfo = new TreeMap<>();
+            fileInfo.put("src_last_modified_millis", Long.toString(1526000000000L + i * 1000L));
+            if (i % 10 == 0) {
+                fileInfo.put("b2-content-disposition", "attachment; filename=\"IMG_" + i + ".jpg\"");
+            }
+            files.add(new B2FileVersion(
+                    makeFileId(i),
+                    String.format("photos/2018/%02d/IMG_%06d.jpg", 1 + (i % 12), i),
+                    1000000L + 7919L * i,
+                    (i % 3 == 0) ? "image/png" : "image/jpeg",
+                    makeSha1(i),
+                    fileInfo,
+                    (i % 50 == 0) ? B2FileVersion.HIDE_ACTION : B2FileVersion.UPLOAD_ACTION,
+                    1526000000000L + i));
+        }
+        return new B2ListFileVersionsResponse(files, "photos/2018/12/IMG_999999.jpg", makeFileId(fileCount));
+    }
+
+    /*package*/ static B2AccountAuthorization makeAccountAuthorization() {
+        return new B2AccountAuthorization(
+                ACCOUNT_ID,
+                "4_0022623512fc8f80000000001_0186e431_d18d02_acct_tH7VW03boebOXayIc43-sxptpfA=",
+                "https://api001.backblazeb2.com",
+                "https://f001.backblazeb2.com",
+                100000000,
+                5000000,
+                new B2Allowed(
+                        Arrays.asList("listBuckets", "listFiles", "readFiles", "shareFiles", "writeFiles", "deleteFiles"),
+                        BUCKET_ID,
+                        "photos",
+                        null));
+    }
+
+    /**
+     * @return the request to finish a large file with partCount parts.
+     */
+    /*package*/ static B2FinishLargeFileRequest makeFinishLargeFileRequest(int partCount) {
+        final List<String> sha1s = new ArrayList<>(partCount);
+        for (int i = 0; i < partCount; i++) {
+            sha1s.add(makeSha1(i));
+        }
+        return B2FinishLargeFileRequest.builder(makeFileId(0), sha1s).build();
+    }
+
+    private static String makeFileId(int i) {
+        return String.format("4_z%s_f1%015x_d20180511_m%06d_c001_v0001%03d_t%04d",
+                BUCKET_ID, 0x7a3b9c1dL * (i + 1), i % 1000000, i % 1000, i % 10000);
+    }
+
+    private static String makeSha1(int i) {
+        final StringBuilder builder = new StringBuilder(40);
+        long x = 0x9e3779b97f4a7c15L * (i + 1);
+        while (builder.length() < 40) {
+            x ^= x >>> 29;
+            x *= 0xbf58476d1ce4e5b9L;
+            builder.append(String.format("%016x", x));
+        }
+        builder.setLength(40);
+        return builder.toString();
+    }
+}
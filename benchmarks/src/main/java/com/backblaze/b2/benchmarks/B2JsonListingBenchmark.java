@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2ListFileVersionsResponse;
+import com.backblaze.b2.json.B2Json;
+import com.backblaze.b2.json.B2JsonException;
+import com.backblaze.b2.json.B2JsonOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks B2Json on a page of b2_list_file_versions, which is the
+ * biggest response the SDK parses routinely.
+ *
+ * The binding parameter compares the object handlers' default method
+ * handles with the plain reflection they replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class B2JsonListingBenchmark {
+
+    // the fields that listing consumers usually need.
+    private static final B2JsonOptions PROJECTION = B2JsonOptions.builder()
+            .setFieldProjection(B2FileVersion.class, "fileName", "fileId", "contentLength", "uploadTimestamp")
+            .build();
+
+    @Param({"1000", "10000"})
+    public int fileCount;
+
+    @Param({B2JsonBenchmarkBindings.METHOD_HANDLES, B2JsonBenchmarkBindings.REFLECTION})
+    public String binding;
+
+    private B2Json b2Json;
+    private B2ListFileVersionsResponse listing;
+    private String listingJson;
+    private byte[] listingBytes;
+
+    @Setup
+    public void setUp() throws B2JsonException {
+        b2Json = B2JsonBenchmarkBindings.get(binding);
+        listing = B2JsonBenchmarkPayloads.makeListing(fileCount);
+        listingJson = b2Json.toJson(listing);
+        listingBytes = b2Json.toJsonUtf8Bytes(listing);
+    }
+
+    @Benchmark
+    public String toJsonString() throws B2JsonException {
+        return b2Json.toJson(listing);
+    }
+
+    @Benchmark
+    public byte[] toJsonUtf8Bytes() throws B2JsonException {
+        return b2Json.toJsonUtf8Bytes(listing);
+    }
+
+    @Benchmark
+    public B2ListFileVersionsResponse fromJsonString() throws B2JsonException {
+        return b2Json.fromJson(listingJson, B2ListFileVersionsResponse.class);
+    }
+
+    @Benchmark
+    public B2ListFileVersionsResponse fromJsonUtf8Bytes() throws IOException, B2JsonException {
+        return b2Json.fromJson(listingBytes, B2ListFileVersionsResponse.class);
+    }
+
+    @Benchmark
+    public B2ListFileVersionsResponse fromJsonInputStream() throws IOException, B2JsonException {
+        return b2Json.fromJsonUntilEof(new ByteArrayInputStream(listingBytes), B2ListFileVersionsResponse.class);
+    }
+
+    @Benchmark
+    public B2ListFileVersionsResponse fromJsonUtf8BytesWithProjection() throws IOException, B2JsonException {
+        return b2Json.fromJson(listingBytes, B2ListFileVersionsResponse.class, PROJECTION);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import com.backblaze.b2.client.structures.B2AccountAuthorization;
+import com.backblaze.b2.client.structures.B2FinishLargeFileRequest;
+import com.backblaze.b2.json.B2Json;
+import com.backblaze.b2.json.B2JsonException;
+import com.backblaze.b2.json.B2JsonOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks B2Json on two everyday payloads at opposite ends of the
+ * size range: the small b2_authorize_account response, which every
+ * client parses, and the b2_finish_large_file request for a file with
+ * 10,000 parts, which is the biggest request the SDK sends.
+ *
+ * The binding parameter compares the object handlers' default method
+ * handles with the plain reflection they replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class B2JsonRequestBenchmark {
+    private static final int PART_COUNT = 10000;
+
+    @Param({B2JsonBenchmarkBindings.METHOD_HANDLES, B2JsonBenchmarkBindings.REFLECTION})
+    public String binding;
+
+    private B2Json b2Json;
+
+    private B2AccountAuthorization authorization;
+    private String authorizationJson;
+    private byte[] authorizationBytes;
+
+    private B2FinishLargeFileRequest finishRequest;
+    private byte[] finishRequestBytes;
+
+    @Setup
+    public void setUp() throws B2JsonException {
+        b2Json = B2JsonBenchmarkBindings.get(binding);
+
+        authorization = B2JsonBenchmarkPayloads.makeAccountAuthorization();
+        authorizationJson = b2Json.toJson(authorization);
+        authorizationBytes = b2Json.toJsonUtf8Bytes(authorization);
+
+        finishRequest = B2JsonBenchmarkPayloads.makeFinishLargeFileRequest(PART_COUNT);
+        finishRequestBytes = b2Json.toJsonUtf8Bytes(finishRequest);
+    }
+
+    @Benchmark
+    public String authorizationToJsonString() throws B2JsonException {
+        return b2Json.toJson(authorization);
+    }
+
+    @Benchmark
+    public B2AccountAuthorization authorizationFromJsonString() throws B2JsonException {
+        return b2Json.fromJson(authorizationJson, B2AccountAuthorization.class);
+    }
+
+    @Benchmark
+    public B2AccountAuthorization authorizationFromJsonUtf8Bytes() throws IOException, B2JsonException {
+        return b2Json.fromJson(authorizationBytes, B2AccountAuthorization.class);
+    }
+
+    @Benchmark
+    public B2AccountAuthorization authorizationFromJsonInputStream() throws IOException, B2JsonException {
+        return b2Json.fromJsonUntilEof(new ByteArrayInputStream(authorizationBytes), B2AccountAuthorization.class);
+    }
+
+    @Benchmark
+    public String finishLargeFileToJsonString() throws B2JsonException {
+        return b2Json.toJson(finishRequest);
+    }
+
+    @Benchmark
+    public byte[] finishLargeFileToJsonUtf8Bytes() throws B2JsonException {
+        return b2Json.toJsonUtf8Bytes(finishRequest);
+    }
+
+    /**
+     * This is what the SDK actually sends.
+     */
+    @Benchmark
+    public byte[] finishLargeFileToCompactJsonUtf8Bytes() throws B2JsonException {
+        return b2Json.toJsonUtf8Bytes(finishRequest, B2JsonOptions.DEFAULT_COMPACT);
+    }
+
+    @Benchmark
+    public B2FinishLargeFileRequest finishLargeFileFromJsonUtf8Bytes() throws IOException, B2JsonException {
+        return b2Json.fromJson(finishRequestBytes, B2FinishLargeFileRequest.class);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import com.backblaze.b2.util.B2ByteProgressListener;
+import com.backblaze.b2.util.B2InputStreamWithByteProgressListener;
+import com.backblaze.b2.util.B2Sha1AppenderInputStream;
+import com.backblaze.b2.util.B2Sha1InputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.backblaze.b2.benchmarks.B2DataPathBenchmarks.MEGABYTES;
+import static com.backblaze.b2.benchmarks.B2DataPathBenchmarks.ONE_MB;
+
+/**
+ * Benchmarks the input stream wrappers on their own, against reading the
+ * same bytes with no wrapper at all, so it's easy to see what each layer
+ * costs.
+ *
+ * Results are in MB/s.  See B2DataPathBenchmarks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MEGABYTES)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class B2StreamBenchmark {
+    private static final B2ByteProgressListener NOOP_LISTENER = new B2ByteProgressListener() {
+        @Override
+        public void progress(long nBytesSoFar) {
+        }
+
+        @Override
+        public void hitException(Exception e, long nBytesSoFar) {
+        }
+
+        @Override
+        public void reachedEof(long nBytesSoFar) {
+        }
+    };
+
+    private byte[] content;
+    private byte[] copyBuffer;
+
+    @Setup
+    public void setUp() {
+        content = B2DataPathBenchmarks.makeContent(MEGABYTES * ONE_MB);
+        copyBuffer = B2DataPathBenchmarks.makeCopyBuffer();
+    }
+
+    @Benchmark
+    public long unwrapped() throws IOException {
+        return B2DataPathBenchmarks.drain(new ByteArrayInputStream(content), copyBuffer);
+    }
+
+    @Benchmark
+    public long withByteProgressListener() throws IOException {
+        return B2DataPathBenchmarks.drain(
+                new B2InputStreamWithByteProgressListener(new ByteArrayInputStream(content), NOOP_LISTENER),
+                copyBuffer);
+    }
+
+    @Benchmark
+    public String withSha1() throws IOException {
+        final B2Sha1InputStream in = new B2Sha1InputStream(new ByteArrayInputStream(content));
+        B2DataPathBenchmarks.drain(in, copyBuffer);
+        return in.hexDigest();
+    }
+
+    @Benchmark
+    public long withSha1Appended() throws IOException {
+        return B2DataPathBenchmarks.drain(
+                B2Sha1AppenderInputStream.create(new ByteArrayInputStream(content)),
+                copyBuffer);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import java.io.InputStream;
+
+/**
+ * An InputStream of any length, made by repeating a pattern, so the
+ * benchmarks can work far into "files" that are too big to keep in
+ * memory or on disk.
+ *
+ * Skipping is cheap, like it is for a FileInputStream.
+ *
+ * THREAD-SAFETY: This class is NOT thread safe.
+ */
+/*package*/ class B2SyntheticInputStream extends InputStream {
+    private static final int EOF = -1;
+
+    private final byte[] pattern;
+    private final long length;
+    private long position;
+
+    /*package*/ B2SyntheticInputStream(byte[] pattern, long length) {
+        this.pattern = pattern;
+        this.length = length;
+    }
+
+    @Override
+    public int read() {
+        if (position >= length) {
+            return EOF;
+        }
+        final int value = pattern[(int) (position % pattern.length)] & 0xff;
+        position++;
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return EOF;
+        }
+        final int patternOffset = (int) (position % pattern.length);
+        final int nToRead = (int) Math.min(Math.min(len, pattern.length - patternOffset), length - position);
+        System.arraycopy(pattern, patternOffset, b, off, nToRead);
+        position += nToRead;
+        return nToRead;
+    }
+
+    @Override
+    public long skip(long n) {
+        final long nToSkip = Math.max(0, Math.min(n, length - position));
+        position += nToSkip;
+        return nToSkip;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, length - position);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.benchmarks;
+
+import com.backblaze.b2.client.B2StorageClientWebifier;
+import com.backblaze.b2.client.B2StorageClientWebifierImpl;
+import com.backblaze.b2.client.contentSources.B2ByteArrayContentSource;
+import com.backblaze.b2.client.contentSources.B2ContentSource;
+import com.backblaze.b2.client.contentSources.B2ContentTypes;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2Part;
+import com.backblaze.b2.client.structures.B2UploadFileRequest;
+import com.backblaze.b2.client.structures.B2UploadPartRequest;
+import com.backblaze.b2.client.structures.B2UploadPartUrlResponse;
+import com.backblaze.b2.client.structures.B2UploadUrlResponse;
+import com.backblaze.b2.util.B2Sha1;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.backblaze.b2.benchmarks.B2DataPathBenchmarks.MEGABYTES;
+import static com.backblaze.b2.benchmarks.B2DataPathBenchmarks.ONE_MB;
+
+/**
+ * Benchmarks uploading a file and a part through the real webifier,
+ * with only the network replaced.  This covers B2ContentDetailsForUpload,
+ * the progress listener wrapped around small files, and, when the source
+ * doesn't know its SHA-1, the B2Sha1AppenderInputStream.
+ *
+ * Results are in MB/s.  See B2DataPathBenchmarks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MEGABYTES)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class B2UploadBenchmark {
+    private static final String BUCKET_ID = "e73ede9c9c8412db49f60715";
+    private static final String FILE_ID = "4_ze73ede9c9c8412db49f60715_f200b4e93fbae6252_d20180511_m181506_c001_v0001012_t0044";
+    private static final String SHA1_PRECOMPUTED = "precomputed";
+    private static final String SHA1_AT_END = "atEnd";
+
+    /**
+     * Whether the source knows its SHA-1, or it's computed while
+     * uploading and sent after the content.
+     */
+    @Param({SHA1_PRECOMPUTED, SHA1_AT_END})
+    public String sha1;
+
+    private B2StorageClientWebifier webifier;
+    private B2UploadUrlResponse uploadUrl;
+    private B2UploadPartUrlResponse uploadPartUrl;
+    private B2ContentSource source;
+
+    @Setup
+    public void setUp() {
+        final byte[] content = B2DataPathBenchmarks.makeContent(MEGABYTES * ONE_MB);
+        final String contentSha1 = B2Sha1.hexSha1OfBytes(content);
+        source = B2ByteArrayContentSource
+                .builder(content)
+                .setSha1OrNull(sha1.equals(SHA1_PRECOMPUTED) ? contentSha1 : null)
+                .build();
+
+        final B2InMemoryWebApiClient webApiClient = new B2InMemoryWebApiClient();
+        webApiClient.setUploadResponse(B2FileVersion.class, new B2FileVersion(
+                FILE_ID,
+                "benchmarks/upload",
+                content.length,
+                B2ContentTypes.APPLICATION_OCTET,
+                contentSha1,
+                Collections.emptyMap(),
+                B2FileVersion.UPLOAD_ACTION,
+                1526000000000L));
+        webApiClient.setUploadResponse(B2Part.class, new B2Part(
+                FILE_ID,
+                1,
+                content.length,
+                contentSha1,
+                1526000000000L));
+
+        webifier = new B2StorageClientWebifierImpl(webApiClient, "b2-sdk-java-benchmarks", "https://api.backblazeb2.com/", null);
+        uploadUrl = new B2UploadUrlResponse(BUCKET_ID, "https://pod-000-1000-00.backblaze.com/b2api/v1/b2_upload_file/" + BUCKET_ID, "uploadToken");
+        uploadPartUrl = new B2UploadPartUrlResponse(FILE_ID, "https://pod-000-1000-00.backblaze.com/b2api/v1/b2_upload_part/" + FILE_ID, "uploadPartToken");
+    }
+
+    @Benchmark
+    public B2FileVersion uploadFile() throws B2Exception {
+        final B2UploadFileRequest request = B2UploadFileRequest
+                .builder(BUCKET_ID, "benchmarks/upload", B2ContentTypes.APPLICATION_OCTET, source)
+                .build();
+        return webifier.uploadFile(uploadUrl, request);
+    }
+
+    @Benchmark
+    public B2Part uploadPart() throws B2Exception {
+        final B2UploadPartRequest request = B2UploadPartRequest
+                .builder(1, source)
+                .build();
+        return webifier.uploadPart(uploadPartUrl, request);
+    }
+}
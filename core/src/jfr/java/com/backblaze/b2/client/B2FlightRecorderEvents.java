@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * B2FlightRecorderEvents has the JDK Flight Recorder events that the client
+ * emits and the code to emit them.  It's the only class that refers to
+ * jdk.jfr, so it's in its own source set, which is compiled against a JDK
+ * that has jdk.jfr but still targets Java 8.  B2FlightRecorder loads it
+ * reflectively, after checking that jdk.jfr is there.  Don't refer to it
+ * from anywhere else, or the client won't load on JVMs without JFR.
+ *
+ * Each begin method returns null if its event isn't enabled in any
+ * running recording, so that nothing else has to be done for it.
+ *
+ * THREAD-SAFETY: this class is stateless.  Each event object belongs to
+ *    the thread that began it.
+ */
+class B2FlightRecorderEvents implements B2FlightRecorder.Events {
+    private static final String CATEGORY = "Backblaze B2";
+    private static final long ONE_SECOND_IN_NANOS = 1000L * 1000 * 1000;
+
+    @Name("com.backblaze.b2.RetryAttempt")
+    @Label("B2 Attempt")
+    @Category(CATEGORY)
+    @Description("One attempt at a B2 operation, made by B2Retryer")
+    @StackTrace(false)
+    static class RetryAttemptEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Attempt")
+        @Description("1 for the first attempt, 2 for the first retry, and so on")
+        int attempt;
+
+        @Label("Outcome")
+        @Description("'succeeded', or the status and code of the error")
+        String outcome;
+
+        @Label("Will Retry")
+        boolean willRetry;
+
+        @Label("Retry Sleep")
+        @Description("How long the retryer will sleep before the next attempt")
+        @Timespan(Timespan.SECONDS)
+        long retrySleepSeconds;
+    }
+
+    @Name("com.backblaze.b2.PartUpload")
+    @Label("B2 Part Upload")
+    @Category(CATEGORY)
+    @Description("One attempt to upload a part of a large file")
+    @StackTrace(false)
+    static class PartUploadEvent extends Event {
+        @Label("Part Number")
+        int partNumber;
+
+        @Label("Bytes")
+        @DataAmount
+        @Description("The part's length, or how much of it was sent if the attempt failed")
+        long bytes;
+
+        @Label("Throughput")
+        @DataAmount
+        @Frequency
+        @Description("Bytes per second, over the whole attempt.  0 if the attempt failed")
+        long bytesPerSecond;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        // not recorded.  it's here to compute the throughput.
+        transient long beginNanos;
+    }
+
+    @Name("com.backblaze.b2.Download")
+    @Label("B2 Download")
+    @Category(CATEGORY)
+    @Description("One attempt to download a file")
+    @StackTrace(false)
+    static class DownloadEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Bytes")
+        @Description("Bytes read by the content handler")
+        @DataAmount
+        long bytes;
+
+        @Label("Time To First Byte")
+        @Description("From the start of the request until the response started, or 0 if it didn't")
+        @Timespan
+        long timeToFirstByte;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        // not recorded.  it's here to compute the time to first byte.
+        transient long beginNanos;
+    }
+
+    @Override
+    public Object beginRetryAttempt() {
+        final RetryAttemptEvent event = new RetryAttemptEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endRetryAttempt(Object eventObject,
+                                String operation,
+                                int attempt,
+                                Exception exceptionOrNull,
+                                boolean willRetry,
+                                long retrySleepSeconds) {
+        final RetryAttemptEvent event = (RetryAttemptEvent) eventObject;
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.attempt = attempt;
+            event.outcome = outcomeOf(exceptionOrNull);
+            event.willRetry = willRetry;
+            event.retrySleepSeconds = retrySleepSeconds;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginPartUpload() {
+        final PartUploadEvent event = new PartUploadEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.beginNanos = System.nanoTime();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPartUpload(Object eventObject,
+                              int partNumber,
+                              long bytes,
+                              boolean succeeded) {
+        final PartUploadEvent event = (PartUploadEvent) eventObject;
+        event.end();
+        if (event.shouldCommit()) {
+            final long tookNanos = Math.max(1, System.nanoTime() - event.beginNanos);
+            event.partNumber = partNumber;
+            event.bytes = bytes;
+            if (succeeded) {
+                // a failed attempt's time includes waiting for the failure,
+                // so it says nothing about how fast the part went.
+                event.bytesPerSecond = (long) ((((double) bytes) * ONE_SECOND_IN_NANOS) / tookNanos);
+            }
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginDownload() {
+        final DownloadEvent event = new DownloadEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.beginNanos = System.nanoTime();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endDownload(Object eventObject,
+                            String operation,
+                            long bytes,
+                            long responseStartedNanosOrZero,
+                            boolean succeeded) {
+        final DownloadEvent event = (DownloadEvent) eventObject;
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.bytes = bytes;
+            event.timeToFirstByte = (responseStartedNanosOrZero == 0) ? 0 : (responseStartedNanosOrZero - event.beginNanos);
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    private static String outcomeOf(Exception exceptionOrNull) {
+        if (exceptionOrNull == null) {
+            return "succeeded";
+        }
+        if (exceptionOrNull instanceof B2Exception) {
+            final B2Exception e = (B2Exception) exceptionOrNull;
+            return e.getStatus() + " " + e.getCode();
+        }
+        return exceptionOrNull.getClass().getName();
+    }
+}
@@ -8,6 +8,8 @@ import com.backblaze.b2.client.exceptions.B2Exception;
 import com.backblaze.b2.client.exceptions.B2LocalException;
 import com.backblaze.b2.client.structures.B2AccountAuthorization;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * The B2AccountAuthorizationCache holds the most recent account authorization
  * and can be cleared when it appears to have become invalid.
@@ -15,10 +17,17 @@ import com.backblaze.b2.client.structures.B2AccountAuthorization;
  * REQUIRES: the provided accountAuthorizer must be thread-safe.
  *
  * THREAD-SAFETY: this class may be used from multiple threads safely.
+ *    It uses a ReentrantLock instead of synchronized because get() holds
+ *    the lock while it talks to the server, and a virtual thread blocked
+ *    inside a monitor pins its carrier thread.
  */
 class B2AccountAuthorizationCache {
     private final B2StorageClientWebifier webifier;
     private final B2AccountAuthorizer accountAuthorizer;
+    private final B2Metrics metrics;
+
+    // guards authorization and accountId.
+    private final ReentrantLock lock = new ReentrantLock();
     private B2AccountAuthorization authorization;
 
     /**
@@ -31,8 +40,15 @@ class B2AccountAuthorizationCache {
 
     B2AccountAuthorizationCache(B2StorageClientWebifier webifier,
                                 B2AccountAuthorizer accountAuthorizer) {
+        this(webifier, accountAuthorizer, B2Metrics.NONE);
+    }
+
+    B2AccountAuthorizationCache(B2StorageClientWebifier webifier,
+                                B2AccountAuthorizer accountAuthorizer,
+                                B2Metrics metrics) {
         this.webifier = webifier;
         this.accountAuthorizer = accountAuthorizer;
+        this.metrics = metrics;
     }
 
 
@@ -45,21 +61,27 @@ class B2AccountAuthorizationCache {
      *            the next one that asks will try again.  no need to ask
      *            multiple times in parallel.
      */
-    synchronized B2AccountAuthorization get() throws B2Exception {
-        if (authorization == null) {
-            authorization = accountAuthorizer.authorize(webifier);
+    B2AccountAuthorization get() throws B2Exception {
+        lock.lock();
+        try {
+            metrics.cacheLookup(B2Metrics.ACCOUNT_AUTHORIZATION_CACHE, authorization != null);
+            if (authorization == null) {
+                authorization = accountAuthorizer.authorize(webifier);
 
-            final String accountIdFromAuthorization = authorization.getAccountId();
-            if (accountId == null) {
-                accountId = accountIdFromAuthorization;
-            } else {
-                if (!accountId.equals(accountIdFromAuthorization)) {
-                    throw new B2LocalException("unauthorized", "authorized as " + accountIdFromAuthorization +
-                            "but previously authorized as accountId " + accountId);
+                final String accountIdFromAuthorization = authorization.getAccountId();
+                if (accountId == null) {
+                    accountId = accountIdFromAuthorization;
+                } else {
+                    if (!accountId.equals(accountIdFromAuthorization)) {
+                        throw new B2LocalException("unauthorized", "authorized as " + accountIdFromAuthorization +
+                                "but previously authorized as accountId " + accountId);
+                    }
                 }
             }
+            return authorization;
+        } finally {
+            lock.unlock();
         }
-        return authorization;
     }
 
     /**
@@ -68,14 +90,24 @@ class B2AccountAuthorizationCache {
      * @return the accountId from a successful authorization
      * @throws B2Exception thrown from any B2Exception thrown during 'authorization' -> get()
      */
-    synchronized String getAccountId() throws B2Exception{
-        if (accountId == null) {
-            get();
+    String getAccountId() throws B2Exception{
+        lock.lock();
+        try {
+            if (accountId == null) {
+                get();
+            }
+            return accountId;
+        } finally {
+            lock.unlock();
         }
-        return accountId;
     }
 
-    synchronized void clear() {
-        authorization = null;
+    void clear() {
+        lock.lock();
+        try {
+            authorization = null;
+        } finally {
+            lock.unlock();
+        }
     }
 }
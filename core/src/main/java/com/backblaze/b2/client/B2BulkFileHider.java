@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.exceptions.B2RuntimeException;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2HideFileRequest;
+import com.backblaze.b2.client.structures.B2HideFilesListener;
+import com.backblaze.b2.client.structures.B2HideFilesRequest;
+import com.backblaze.b2.client.structures.B2HideFilesResult;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * B2BulkFileHider hides a stream of file names by running client.hideFile()
+ * for each of them on the given executor.  At most request.getMaxInFlight()
+ * hides are queued or running at once, so we don't pull the whole stream
+ * of names into memory when the executor falls behind.
+ *
+ * Each hide gets the client's normal retry behavior.  A file that still
+ * can't be hidden is reported to the listener and counted in the result;
+ * it doesn't stop the other hides.
+ *
+ * THREAD-SAFETY: an instance is meant to be used for one hideFiles() call
+ *    from one thread.  (It uses the executor's threads internally.)
+ */
+class B2BulkFileHider {
+    // how many failures do we keep in the result?  the listener sees all of them.
+    static final int MAX_SAMPLE_FAILURES = 100;
+
+    private final B2StorageClient client;
+    private final ExecutorService executor;
+    private final B2HideFilesRequest request;
+
+    private final AtomicLong hiddenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    // protected by synchronized(sampleFailures)
+    private final Map<String, B2Exception> sampleFailures = new LinkedHashMap<>();
+
+    B2BulkFileHider(B2StorageClient client,
+                    ExecutorService executor,
+                    B2HideFilesRequest request) {
+        this.client = client;
+        this.executor = executor;
+        this.request = request;
+    }
+
+    /**
+     * Hides all of the files named by the request.
+     *
+     * @return a summary of what was hidden and what wasn't.
+     * @throws B2Exception if we couldn't get all of the names to hide
+     *                     (for instance, because a listing failed) or if
+     *                     the executor rejected our work.  any hides that
+     *                     were already started are finished first.
+     */
+    B2HideFilesResult hideFiles() throws B2Exception {
+        final B2InFlightLimiter limiter = new B2InFlightLimiter(executor, request.getMaxInFlight());
+
+        B2Exception trouble = null;
+        try {
+            for (String fileName : request.getFileNames()) {
+                final B2HideFileRequest hideRequest = B2HideFileRequest.builder(request.getBucketId(), fileName).build();
+                limiter.submit(() -> hideOne(hideRequest));
+            }
+        } catch (B2RuntimeException e) {
+            // the iterator of names couldn't get more names.  if it was wrapping
+            // a B2Exception (as our listing iterators do), use that.
+            trouble = (e.getCause() instanceof B2Exception) ?
+                    (B2Exception) e.getCause() :
+                    new B2LocalException("trouble", "failed to get next fileName to hide: " + e, e);
+        } catch (B2Exception e) {
+            trouble = e;
+        }
+
+        // wait for everything we started before reporting anything.
+        limiter.awaitAll();
+
+        if (trouble != null) {
+            throw trouble;
+        }
+
+        synchronized (sampleFailures) {
+            return new B2HideFilesResult(hiddenCount.get(), failedCount.get(), new LinkedHashMap<>(sampleFailures));
+        }
+    }
+
+    /**
+     * @return an Iterable over the names of the versions yielded by the given
+     *         iterable, skipping any "folder"s since they can't be hidden.
+     */
+    static Iterable<String> fileNamesOf(Iterable<B2FileVersion> versions) {
+        return () -> new Iterator<String>() {
+            private final Iterator<B2FileVersion> iter = versions.iterator();
+            private String nextName = findNext();
+
+            @Override
+            public boolean hasNext() {
+                return nextName != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final String name = nextName;
+                nextName = findNext();
+                return name;
+            }
+
+            private String findNext() {
+                while (iter.hasNext()) {
+                    final B2FileVersion version = iter.next();
+                    if (!version.isFolder()) {
+                        return version.getFileName();
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private void hideOne(B2HideFileRequest hideRequest) {
+        final B2HideFilesListener listener = request.getListener();
+        final B2FileVersion hideMarker;
+        try {
+            hideMarker = client.hideFile(hideRequest);
+        } catch (B2Exception e) {
+            recordFailure(hideRequest, e);
+            listener.failed(hideRequest, e);
+            return;
+        } catch (RuntimeException e) {
+            final B2Exception b2e = new B2LocalException("trouble", "exception while trying to hide file: " + e, e);
+            recordFailure(hideRequest, b2e);
+            listener.failed(hideRequest, b2e);
+            return;
+        }
+
+        hiddenCount.incrementAndGet();
+        listener.hidden(hideRequest, hideMarker);
+    }
+
+    private void recordFailure(B2HideFileRequest hideRequest, B2Exception e) {
+        failedCount.incrementAndGet();
+        synchronized (sampleFailures) {
+            if (sampleFailures.size() < MAX_SAMPLE_FAILURES) {
+                sampleFailures.put(hideRequest.getFileName(), e);
+            }
+        }
+    }
+}
@@ -5,9 +5,9 @@
 package com.backblaze.b2.client;
 
 import com.backblaze.b2.client.structures.B2TestMode;
+import com.backblaze.b2.util.B2BandwidthLimiter;
 import com.backblaze.b2.util.B2Preconditions;
 
-import java.io.Closeable;
 import java.util.Objects;
 
 /**
@@ -20,16 +20,25 @@ public class B2ClientConfig {
     private final String userAgent;
     private final String masterUrl;
     private final B2TestMode testModeOrNull;
+    private final B2Metrics metrics;
+    private final B2BandwidthLimiter uploadBandwidthLimiterOrNull;
+    private final B2BandwidthLimiter downloadBandwidthLimiterOrNull;
 
     private B2ClientConfig(B2AccountAuthorizer accountAuthorizer,
                            String userAgent,
                            String masterUrl,
-                           B2TestMode testModeOrNull) {
+                           B2TestMode testModeOrNull,
+                           B2Metrics metrics,
+                           B2BandwidthLimiter uploadBandwidthLimiterOrNull,
+                           B2BandwidthLimiter downloadBandwidthLimiterOrNull) {
         B2Preconditions.checkArgument(userAgent != null && userAgent.length() > 0);
         this.accountAuthorizer = accountAuthorizer;
         this.userAgent = userAgent;
         this.masterUrl = masterUrl;
         this.testModeOrNull = testModeOrNull;
+        this.metrics = metrics;
+        this.uploadBandwidthLimiterOrNull = uploadBandwidthLimiterOrNull;
+        this.downloadBandwidthLimiterOrNull = downloadBandwidthLimiterOrNull;
     }
 
     public B2AccountAuthorizer getAccountAuthorizer() {
@@ -48,6 +57,18 @@ public class B2ClientConfig {
         return testModeOrNull;
     }
 
+    public B2Metrics getMetrics() {
+        return metrics;
+    }
+
+    public B2BandwidthLimiter getUploadBandwidthLimiterOrNull() {
+        return uploadBandwidthLimiterOrNull;
+    }
+
+    public B2BandwidthLimiter getDownloadBandwidthLimiterOrNull() {
+        return downloadBandwidthLimiterOrNull;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -56,12 +77,16 @@ public class B2ClientConfig {
         return Objects.equals(getAccountAuthorizer(), that.getAccountAuthorizer()) &&
                 Objects.equals(getUserAgent(), that.getUserAgent()) &&
                 Objects.equals(getMasterUrl(), that.getMasterUrl()) &&
-                getTestModeOrNull() == that.getTestModeOrNull();
+                getTestModeOrNull() == that.getTestModeOrNull() &&
+                Objects.equals(getMetrics(), that.getMetrics()) &&
+                Objects.equals(getUploadBandwidthLimiterOrNull(), that.getUploadBandwidthLimiterOrNull()) &&
+                Objects.equals(getDownloadBandwidthLimiterOrNull(), that.getDownloadBandwidthLimiterOrNull());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getAccountAuthorizer(), getUserAgent(), getMasterUrl(), getTestModeOrNull());
+        return Objects.hash(getAccountAuthorizer(), getUserAgent(), getMasterUrl(), getTestModeOrNull(), getMetrics(),
+                getUploadBandwidthLimiterOrNull(), getDownloadBandwidthLimiterOrNull());
     }
 
     public static Builder builder(B2AccountAuthorizer accountAuthorizer, String userAgent) {
@@ -83,6 +108,9 @@ public class B2ClientConfig {
         private final String userAgent;
         private String masterUrl;
         private B2TestMode testModeOrNull;
+        private B2Metrics metrics = B2Metrics.NONE;
+        private B2BandwidthLimiter uploadBandwidthLimiterOrNull;
+        private B2BandwidthLimiter downloadBandwidthLimiterOrNull;
 
         public Builder(B2AccountAuthorizer accountAuthorizer,
                        String userAgent) {
@@ -100,12 +128,55 @@ public class B2ClientConfig {
             return this;
         }
 
+        /**
+         * @param metrics what to tell about the client's operations, bytes
+         *                and caches.  the default ignores them.
+         */
+        public Builder setMetrics(B2Metrics metrics) {
+            B2Preconditions.checkArgument(metrics != null, "metrics must not be null; use B2Metrics.NONE");
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param uploadBandwidthLimiterOrNull if not null, all of the content
+         *                                     uploaded by the client, by all
+         *                                     of its threads together, is kept
+         *                                     under this limiter's rate.  keep
+         *                                     a reference to it to change the
+         *                                     rate while the client is running.
+         *
+         * B2StorageHttpClientBuilder applies the limiters by wrapping the
+         * client's B2WebApiClient in a B2WebApiClientWithBandwidthLimits.
+         * B2StorageClientImpl doesn't see the B2WebApiClient, so if you make
+         * its B2StorageClientWebifier yourself, wrap your B2WebApiClient
+         * the same way, or the limiters won't be used.
+         */
+        public Builder setUploadBandwidthLimiterOrNull(B2BandwidthLimiter uploadBandwidthLimiterOrNull) {
+            this.uploadBandwidthLimiterOrNull = uploadBandwidthLimiterOrNull;
+            return this;
+        }
+
+        /**
+         * @param downloadBandwidthLimiterOrNull like setUploadBandwidthLimiterOrNull(),
+         *                                       but for downloaded content.  it may
+         *                                       be the same limiter as for uploads,
+         *                                       to limit the total.
+         */
+        public Builder setDownloadBandwidthLimiterOrNull(B2BandwidthLimiter downloadBandwidthLimiterOrNull) {
+            this.downloadBandwidthLimiterOrNull = downloadBandwidthLimiterOrNull;
+            return this;
+        }
+
         public B2ClientConfig build() {
             return new B2ClientConfig(
                     accountAuthorizer,
                     userAgent,
                     masterUrl,
-                    testModeOrNull);
+                    testModeOrNull,
+                    metrics,
+                    uploadBandwidthLimiterOrNull,
+                    downloadBandwidthLimiterOrNull);
         }
     }
 }
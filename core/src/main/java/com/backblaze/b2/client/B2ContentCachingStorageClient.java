@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentFileWriter;
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.structures.B2DownloadByIdRequest;
+import com.backblaze.b2.client.structures.B2DownloadByNameRequest;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2GetFileInfoByNameRequest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * B2ContentCachingStorageClient wraps another B2StorageClient and keeps the
+ * content of the files it downloads in a local directory, so that reading
+ * the same file version again is served from local disk (or, more likely,
+ * the OS's page cache) instead of the network.  It's meant for workloads
+ * that read the same files over and over, like training jobs that read the
+ * same shards every epoch.
+ *
+ * The content of a file version never changes, so downloadById() answers
+ * from the cache without asking the server anything.
+ *
+ * downloadByName() first asks the server which version the name currently
+ * refers to (with getFileInfoByName(), which is a HEAD request) and then
+ * reads that version as if by id.  If you wrap a B2FileInfoCachingStorageClient,
+ * even that request can be skipped while its answer is fresh.
+ *
+ * Only whole-file downloads fill the cache.  A ranged download is answered
+ * from the cache if the whole file is already there; otherwise it goes to
+ * the server.  Downloads that set b2ContentDisposition always go to the
+ * server, since the response headers depend on it.  A file larger than the
+ * whole cache is downloaded into the cache directory, given to you, and
+ * then deleted.
+ *
+ * Everything else goes straight to the wrapped client.
+ *
+ * THREAD-SAFETY: As long as the wrapped client is thread-safe, this object
+ *    may be used from multiple threads simultaneously.  Don't point two
+ *    instances (even in different processes) at the same directory.
+ */
+public class B2ContentCachingStorageClient extends B2ForwardingStorageClient {
+    public static final long DEFAULT_MAX_BYTES = 10L * 1000 * 1000 * 1000;
+
+    private final B2DiskContentCache cache;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    private B2ContentCachingStorageClient(B2StorageClient client,
+                                          File dir,
+                                          long maxBytes) throws B2LocalException {
+        super(client);
+        this.cache = new B2DiskContentCache(dir, maxBytes);
+    }
+
+    public static Builder builder(B2StorageClient client,
+                                  File dir) {
+        return new Builder(client, dir);
+    }
+
+    /**
+     * @return how many downloads were answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return how many downloads had to go to the wrapped client.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return how many cached files were dropped to make room for others.
+     */
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    /**
+     * @return the total size of the cached content.
+     */
+    public long getCachedBytes() {
+        return cache.getTotalBytes();
+    }
+
+    @Override
+    public void downloadById(B2DownloadByIdRequest request,
+                             B2ContentSink handler) throws B2Exception {
+        final String fileId = request.getFileId();
+        if (request.getB2ContentDisposition() != null || !B2DiskContentCache.isCacheable(fileId)) {
+            super.downloadById(request, handler);
+            return;
+        }
+
+        if (cache.readIfPresent(fileId, request.getRange(), handler)) {
+            hitCount.increment();
+            return;
+        }
+
+        missCount.increment();
+        if (request.getRange() != null) {
+            super.downloadById(request, handler);
+            return;
+        }
+        downloadIntoCacheAndRead(request, handler);
+    }
+
+    @Override
+    public void downloadByName(B2DownloadByNameRequest request,
+                               B2ContentSink handler) throws B2Exception {
+        if (request.getB2ContentDisposition() != null) {
+            super.downloadByName(request, handler);
+            return;
+        }
+
+        final B2FileVersion version = getFileInfoByName(
+                B2GetFileInfoByNameRequest.builder(request.getBucketName(), request.getFileName()).build());
+        downloadById(B2DownloadByIdRequest
+                        .builder(version.getFileId())
+                        .setRange(request.getRange())
+                        .build(),
+                handler);
+    }
+
+    private void downloadIntoCacheAndRead(B2DownloadByIdRequest request,
+                                          B2ContentSink handler) throws B2Exception {
+        final String fileId = request.getFileId();
+        final File tempFile = cache.createTempFile(fileId);
+        try {
+            // this checks the sha1 as it downloads, so we never cache bad content.
+            final B2ContentFileWriter writer = B2ContentFileWriter
+                    .builder(tempFile)
+                    .setVerifySha1ByRereadingFromDestination(false)
+                    .build();
+            super.downloadById(request, writer);
+
+            // open it before it's added, so it can't be evicted out from under us.
+            try (InputStream in = new FileInputStream(tempFile)) {
+                cache.add(fileId, writer.getHeadersOrNull(), tempFile);
+                B2DiskContentCache.readContent(handler, writer.getHeadersOrNull(), in);
+            } catch (IOException e) {
+                throw new B2LocalException("read_failed", "failed to read downloaded content: " + e.getMessage(), e);
+            }
+        } finally {
+            // it's already gone if it was added to the cache.
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    public static class Builder {
+        private final B2StorageClient client;
+        private final File dir;
+        private long maxBytes = DEFAULT_MAX_BYTES;
+
+        public Builder(B2StorageClient client,
+                       File dir) {
+            this.client = client;
+            this.dir = dir;
+        }
+
+        /**
+         * @param maxBytes the most content to keep in the directory.
+         */
+        public Builder setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * @return a new client.  content cached in the directory by
+         *         an earlier instance is used.
+         * @throws B2LocalException if the directory can't be created.
+         */
+        public B2ContentCachingStorageClient build() throws B2LocalException {
+            return new B2ContentCachingStorageClient(client, dir, maxBytes);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.exceptions.B2Exception;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * B2ContentSinkWithByteCount passes the content to another B2ContentSink
+ * and counts how many bytes that sink reads.  It also notes when the
+ * response started arriving.
+ *
+ * THREAD-SAFETY: this class is NOT thread-safe.  Use one per download attempt.
+ */
+class B2ContentSinkWithByteCount implements B2ContentSink {
+    private final B2ContentSink sink;
+    private long bytesRead;
+    private long responseStartedNanos;
+
+    B2ContentSinkWithByteCount(B2ContentSink sink) {
+        this.sink = sink;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the System.nanoTime() when readContent() was called, or 0 if
+     *         it hasn't been.
+     */
+    long getResponseStartedNanos() {
+        return responseStartedNanos;
+    }
+
+    @Override
+    public void readContent(B2Headers responseHeaders,
+                            InputStream in) throws B2Exception, IOException {
+        responseStartedNanos = System.nanoTime();
+        sink.readContent(responseHeaders, new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                final int value = super.read();
+                if (value != -1) {
+                    bytesRead++;
+                }
+                return value;
+            }
+
+            @Override
+            public int read(byte[] b,
+                            int off,
+                            int len) throws IOException {
+                final int nRead = super.read(b, off, len);
+                if (nRead > 0) {
+                    bytesRead += nRead;
+                }
+                return nRead;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                final long nSkipped = super.skip(n);
+                bytesRead += nSkipped;
+                return nSkipped;
+            }
+        });
+    }
+}
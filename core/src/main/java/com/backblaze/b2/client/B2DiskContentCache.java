@@ -0,0 +1,322 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.contentSources.B2HeadersImpl;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.util.B2ByteRange;
+import com.backblaze.b2.util.B2InputStreamExcerpt;
+import com.backblaze.b2.util.B2Preconditions;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import static com.backblaze.b2.util.B2IoUtils.closeQuietly;
+
+/**
+ * B2DiskContentCache keeps the contents of downloaded file versions in a
+ * directory, keyed by fileId, and forgets the least recently used ones when
+ * the total size goes over maxBytes.
+ *
+ * The contents of a file version never change, so an entry never needs to
+ * be invalidated.  Each entry is two files:
+ *   * &lt;fileId&gt;.data has the content.
+ *   * &lt;fileId&gt;.headers has the response headers, as a Properties file.
+ * New content is downloaded into a temp file and renamed into place once
+ * it's complete, so a crash never leaves a partial entry behind.  Entries
+ * left by an earlier run are picked up (oldest first) when the cache is
+ * created.
+ *
+ * Reads don't hold any locks.  On filesystems that let you delete an open
+ * file, a read that's in progress when its entry is evicted finishes
+ * normally.
+ *
+ * THREAD-SAFETY: This class is thread-safe.
+ */
+class B2DiskContentCache {
+    static final String DATA_SUFFIX = ".data";
+    static final String HEADERS_SUFFIX = ".headers";
+    static final String TEMP_SUFFIX = ".tmp";
+
+    // fileIds are used as file names, so we only cache ones that are obviously safe.
+    private static final Pattern SAFE_FILE_ID = Pattern.compile("[A-Za-z0-9_\\-]{1,200}");
+
+    private final File dir;
+    private final long maxBytes;
+
+    // the length of each entry, in access order.  guarded by 'this'.
+    private final LinkedHashMap<String, Long> lengthByFileId = new LinkedHashMap<>(16, 0.75f, true /*useAccessOrder*/);
+    private long totalBytes; // guarded by 'this'.
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    B2DiskContentCache(File dir,
+                       long maxBytes) throws B2LocalException {
+        B2Preconditions.checkArgument(maxBytes > 0, "maxBytes must be positive");
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new B2LocalException("write_failed", "couldn't create cache directory " + dir);
+        }
+        loadExistingEntries();
+    }
+
+    static boolean isCacheable(String fileId) {
+        return fileId != null && SAFE_FILE_ID.matcher(fileId).matches();
+    }
+
+    /**
+     * If we have the content for fileId, gives the requested range of it
+     * (or all of it if rangeOrNull is null) to the sink and returns true.
+     * Returns false if we don't have it or the range can't be satisfied
+     * from it, so the caller should ask the server instead.
+     *
+     * @throws B2Exception if the sink throws.
+     */
+    boolean readIfPresent(String fileId,
+                          B2ByteRange rangeOrNull,
+                          B2ContentSink sink) throws B2Exception {
+        final Long length;
+        synchronized (this) {
+            length = lengthByFileId.get(fileId);
+        }
+        if (length == null) {
+            return false;
+        }
+        if (rangeOrNull != null && !rangeOrNull.isSatisfied(length)) {
+            return false;
+        }
+
+        // open the data first.  if it's evicted after this, we can still read it.
+        final InputStream dataIn;
+        try {
+            dataIn = new FileInputStream(dataFile(fileId));
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+
+        try {
+            final B2Headers storedHeaders = readHeadersOrNull(fileId);
+            if (storedHeaders == null) {
+                return false;
+            }
+
+            if (rangeOrNull == null) {
+                readContent(sink, storedHeaders, dataIn);
+            } else {
+                final B2ByteRange range = rangeOrNull.effectiveRange(length);
+                readContent(sink,
+                        headersForRange(storedHeaders, range, length),
+                        new B2InputStreamExcerpt(dataIn, range.start, range.getNumberOfBytes()));
+            }
+            return true;
+        } finally {
+            closeQuietly(dataIn);
+        }
+    }
+
+    /**
+     * @return a new, empty file in the cache directory which the caller can
+     *         download into and then pass to add().  the caller should delete
+     *         it when it's done with it, whether or not add() took it.
+     */
+    File createTempFile(String fileId) throws B2LocalException {
+        try {
+            return File.createTempFile(fileId + ".", TEMP_SUFFIX, dir);
+        } catch (IOException e) {
+            throw new B2LocalException("write_failed", "couldn't create temp file in " + dir + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Moves the complete content in tempFile into the cache as fileId's
+     * content, evicting other entries as needed to make room.
+     *
+     * Failing to add something to the cache isn't an error worth reporting
+     * to the caller; they already have their content.  So, this never
+     * throws for I/O problems.
+     *
+     * @return true iff the content was added.
+     */
+    boolean add(String fileId,
+                B2Headers headers,
+                File tempFile) {
+        final long length = tempFile.length();
+        if (length > maxBytes) {
+            return false;
+        }
+
+        if (!writeHeaders(fileId, headers) ||
+                !tempFile.renameTo(dataFile(fileId))) {
+            return false;
+        }
+
+        final List<String> toDelete = new ArrayList<>();
+        synchronized (this) {
+            final Long previousLength = lengthByFileId.put(fileId, length);
+            totalBytes += length - (previousLength == null ? 0 : previousLength);
+
+            final Iterator<Map.Entry<String, Long>> iter = lengthByFileId.entrySet().iterator();
+            while (totalBytes > maxBytes && iter.hasNext()) {
+                final Map.Entry<String, Long> eldest = iter.next();
+                if (eldest.getKey().equals(fileId)) {
+                    continue;
+                }
+                iter.remove();
+                totalBytes -= eldest.getValue();
+                toDelete.add(eldest.getKey());
+            }
+        }
+
+        // delete outside the lock so readers aren't held up by the filesystem.
+        for (String evictedFileId : toDelete) {
+            deleteEntryFiles(evictedFileId);
+            evictionCount.increment();
+        }
+        return true;
+    }
+
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    private void loadExistingEntries() {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // oldest first, so they're also the first to be evicted.
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            final String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                // left behind by a download that never finished.
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            } else if (name.endsWith(DATA_SUFFIX)) {
+                final String fileId = name.substring(0, name.length() - DATA_SUFFIX.length());
+                if (headersFile(fileId).isFile()) {
+                    lengthByFileId.put(fileId, file.length());
+                    totalBytes += file.length();
+                } else {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        }
+
+        final Iterator<Map.Entry<String, Long>> iter = lengthByFileId.entrySet().iterator();
+        while (totalBytes > maxBytes && iter.hasNext()) {
+            final Map.Entry<String, Long> eldest = iter.next();
+            iter.remove();
+            totalBytes -= eldest.getValue();
+            deleteEntryFiles(eldest.getKey());
+        }
+    }
+
+    private B2Headers readHeadersOrNull(String fileId) {
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(headersFile(fileId))) {
+            properties.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+
+        final B2HeadersImpl.Builder builder = B2HeadersImpl.builder();
+        for (String name : properties.stringPropertyNames()) {
+            builder.set(name, properties.getProperty(name));
+        }
+        return builder.build();
+    }
+
+    private boolean writeHeaders(String fileId,
+                                 B2Headers headers) {
+        final Properties properties = new Properties();
+        for (String name : headers.getNames()) {
+            properties.setProperty(name, headers.getValueOrNull(name));
+        }
+        // written to the side and renamed, so readers never see a partial file.
+        File tempFile = null;
+        try {
+            tempFile = createTempFile(fileId);
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                properties.store(out, null);
+            }
+            return tempFile.renameTo(headersFile(fileId));
+        } catch (B2LocalException | IOException e) {
+            return false;
+        } finally {
+            if (tempFile != null) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+
+    // the headers the server would've sent if we'd asked it for just this range.
+    private static B2Headers headersForRange(B2Headers headers,
+                                             B2ByteRange range,
+                                             long length) {
+        final B2HeadersImpl.Builder builder = B2HeadersImpl.builder();
+        for (String name : headers.getNames()) {
+            if (!name.equalsIgnoreCase(B2Headers.CONTENT_LENGTH) &&
+                    !name.equalsIgnoreCase(B2Headers.CONTENT_RANGE)) {
+                builder.set(name, headers.getValueOrNull(name));
+            }
+        }
+        builder.set(B2Headers.CONTENT_LENGTH, Long.toString(range.getNumberOfBytes()));
+        builder.set(B2Headers.CONTENT_RANGE, "bytes " + range.start + "-" + range.end + "/" + length);
+        return builder.build();
+    }
+
+    static void readContent(B2ContentSink sink,
+                            B2Headers headers,
+                            InputStream in) throws B2Exception {
+        try {
+            sink.readContent(headers, in);
+        } catch (IOException e) {
+            throw new B2LocalException("read_failed", "failed to read cached content: " + e.getMessage(), e);
+        }
+    }
+
+    private void deleteEntryFiles(String fileId) {
+        //noinspection ResultOfMethodCallIgnored
+        dataFile(fileId).delete();
+        //noinspection ResultOfMethodCallIgnored
+        headersFile(fileId).delete();
+    }
+
+    private File dataFile(String fileId) {
+        return new File(dir, fileId + DATA_SUFFIX);
+    }
+
+    private File headersFile(String fileId) {
+        return new File(dir, fileId + HEADERS_SUFFIX);
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.structures.B2DeleteFileVersionRequest;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2FinishLargeFileRequest;
+import com.backblaze.b2.client.structures.B2GetFileInfoByNameRequest;
+import com.backblaze.b2.client.structures.B2GetFileInfoRequest;
+import com.backblaze.b2.client.structures.B2HideFileRequest;
+import com.backblaze.b2.client.structures.B2UploadFileRequest;
+
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * B2FileInfoCachingStorageClient wraps another B2StorageClient and remembers
+ * the answers to getFileInfo() and getFileInfoByName() for a while, so
+ * repeated questions about hot files don't each need a round trip.
+ *
+ * The cache only knows about changes made through this client.  Calls that
+ * can change which version a name refers to (uploads, hides, and deletes)
+ * drop the cached answers for that name before they return, whether or not
+ * they succeed.  Since we don't know bucket names for those calls (they take
+ * bucketIds), a change to a name drops it from every bucket.  Changes made by
+ * other clients become visible when the cached answer expires, so pick a TTL
+ * that's as stale as your application can tolerate.
+ *
+ * getFileInfo() answers are keyed by fileId.  A file version's info never
+ * changes, so those are only dropped when the version is deleted or expires.
+ *
+ * Failures aren't cached.  Everything other than the two getFileInfo methods
+ * goes straight to the wrapped client.
+ *
+ * THREAD-SAFETY: As long as the wrapped client is thread-safe, this object
+ *    may be used from multiple threads simultaneously.
+ */
+public class B2FileInfoCachingStorageClient extends B2ForwardingStorageClient {
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final int DEFAULT_TTL_SECONDS = 60;
+
+    // sorted by fileName first, so we can drop a name from all buckets with one range.
+    // no bucket name is empty, so (emptyBucketName, fileName) sorts before all of them.
+    private static final Comparator<B2GetFileInfoByNameRequest> BY_NAME_ORDER = Comparator
+            .comparing(B2GetFileInfoByNameRequest::getFileName)
+            .thenComparing(B2GetFileInfoByNameRequest::getBucketName);
+    private static final String EMPTY_BUCKET_NAME = "";
+
+    private final B2TtlCache<String, B2FileVersion> byId;
+    private final B2TtlCache<B2GetFileInfoByNameRequest, B2FileVersion> byName;
+
+    // bumped by every invalidation.  an answer fetched while it changed might
+    // already be stale, so it isn't cached.
+    private final AtomicLong invalidationGeneration = new AtomicLong();
+
+    // held while invalidating, and while checking the generation and caching
+    // an answer, so an invalidation can't slip in between the check and the
+    // put.  neither one does any I/O while holding it.
+    private final ReentrantLock invalidationLock = new ReentrantLock();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    private B2FileInfoCachingStorageClient(B2StorageClient client,
+                                           int maxEntries,
+                                           int ttlSeconds) {
+        super(client);
+        this.byId = new B2TtlCache<>(maxEntries, ttlSeconds * 1000L, Comparator.naturalOrder());
+        this.byName = new B2TtlCache<>(maxEntries, ttlSeconds * 1000L, BY_NAME_ORDER);
+    }
+
+    public static Builder builder(B2StorageClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * @return how many getFileInfo calls were answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return how many getFileInfo calls had to ask the wrapped client.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return how many times a change made through this client dropped cached answers.
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.sum();
+    }
+
+    /**
+     * @return how many answers were dropped to keep the cache under its maximum size.
+     */
+    public long getEvictionCount() {
+        return byId.getEvictionCount() + byName.getEvictionCount();
+    }
+
+    /**
+     * Drops all cached answers.  Useful if you know the files were changed
+     * by some other client.
+     */
+    public void invalidateAll() {
+        invalidationLock.lock();
+        try {
+            invalidationGeneration.incrementAndGet();
+            invalidationCount.increment();
+            byId.clear();
+            byName.clear();
+        } finally {
+            invalidationLock.unlock();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // the cached calls
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public B2FileVersion getFileInfo(B2GetFileInfoRequest request) throws B2Exception {
+        final B2FileVersion cached = byId.getOrNull(request.getFileId());
+        if (cached != null) {
+            hitCount.increment();
+            return cached;
+        }
+
+        missCount.increment();
+        final long generation = invalidationGeneration.get();
+        final B2FileVersion version = client.getFileInfo(request);
+        invalidationLock.lock();
+        try {
+            if (invalidationGeneration.get() == generation) {
+                byId.put(request.getFileId(), version);
+            }
+        } finally {
+            invalidationLock.unlock();
+        }
+        return version;
+    }
+
+    @Override
+    public B2FileVersion getFileInfoByName(B2GetFileInfoByNameRequest request) throws B2Exception {
+        final B2FileVersion cached = byName.getOrNull(request);
+        if (cached != null) {
+            hitCount.increment();
+            return cached;
+        }
+
+        missCount.increment();
+        final long generation = invalidationGeneration.get();
+        final B2FileVersion version = client.getFileInfoByName(request);
+        invalidationLock.lock();
+        try {
+            if (invalidationGeneration.get() == generation) {
+                byName.put(request, version);
+                byId.put(version.getFileId(), version);
+            }
+        } finally {
+            invalidationLock.unlock();
+        }
+        return version;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // the calls that invalidate
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public B2FileVersion uploadSmallFile(B2UploadFileRequest request) throws B2Exception {
+        try {
+            return client.uploadSmallFile(request);
+        } finally {
+            invalidateName(request.getFileName());
+        }
+    }
+
+    @Override
+    public B2FileVersion uploadLargeFile(B2UploadFileRequest request,
+                                         ExecutorService executor) throws B2Exception {
+        try {
+            return client.uploadLargeFile(request, executor);
+        } finally {
+            invalidateName(request.getFileName());
+        }
+    }
+
+    @Override
+    public B2FileVersion finishUploadingLargeFile(B2FileVersion fileVersion,
+                                                  B2UploadFileRequest request,
+                                                  ExecutorService executor) throws B2Exception {
+        try {
+            return client.finishUploadingLargeFile(fileVersion, request, executor);
+        } finally {
+            invalidateName(request.getFileName());
+        }
+    }
+
+    @Override
+    public B2FileVersion finishLargeFile(B2FinishLargeFileRequest request) throws B2Exception {
+        // the request only has the fileId, so we can only invalidate after we
+        // learn the name.  if it fails, we don't know whether it finished.
+        boolean finished = false;
+        try {
+            final B2FileVersion version = client.finishLargeFile(request);
+            invalidateName(version.getFileName());
+            finished = true;
+            return version;
+        } finally {
+            if (!finished) {
+                invalidateAll();
+            }
+        }
+    }
+
+    @Override
+    public B2FileVersion hideFile(B2HideFileRequest request) throws B2Exception {
+        try {
+            return client.hideFile(request);
+        } finally {
+            invalidateName(request.getFileName());
+        }
+    }
+
+    @Override
+    public void deleteFileVersion(B2DeleteFileVersionRequest request) throws B2Exception {
+        try {
+            client.deleteFileVersion(request);
+        } finally {
+            invalidate(request.getFileName(), request.getFileId());
+        }
+    }
+
+    private void invalidateName(String fileName) {
+        invalidate(fileName, null);
+    }
+
+    /**
+     * Drops the cached answers for the name in every bucket, and for the
+     * fileId, if it's not null.  The generation is bumped first, so an
+     * answer being fetched now won't be cached after the entries are gone.
+     */
+    private void invalidate(String fileName,
+                            String fileIdOrNull) {
+        invalidationLock.lock();
+        try {
+            invalidationGeneration.incrementAndGet();
+            invalidationCount.increment();
+            if (fileIdOrNull != null) {
+                byId.remove(fileIdOrNull);
+            }
+            byName.removeRange(
+                    new B2GetFileInfoByNameRequest(EMPTY_BUCKET_NAME, fileName),
+                    key -> key.getFileName().equals(fileName));
+        } finally {
+            invalidationLock.unlock();
+        }
+    }
+
+    public static class Builder {
+        private final B2StorageClient client;
+        private int maxEntries = DEFAULT_MAX_ENTRIES;
+        private int ttlSeconds = DEFAULT_TTL_SECONDS;
+
+        public Builder(B2StorageClient client) {
+            this.client = client;
+        }
+
+        /**
+         * @param maxEntries about how many answers to keep for each of
+         *                   getFileInfo() and getFileInfoByName().
+         */
+        public Builder setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * @param ttlSeconds how long an answer may be used before asking again.
+         */
+        public Builder setTtlSeconds(int ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+            return this;
+        }
+
+        public B2FileInfoCachingStorageClient build() {
+            return new B2FileInfoCachingStorageClient(client, maxEntries, ttlSeconds);
+        }
+    }
+}
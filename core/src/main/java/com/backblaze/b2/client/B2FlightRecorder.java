@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+/**
+ * B2FlightRecorder emits JDK Flight Recorder events for each attempt the
+ * retryer makes, each attempt to upload a part, and each download, so that
+ * a recording can tie stalls to specific B2 calls, alongside the GC and
+ * lock events.  Turn them on in a recording like any other event; they're
+ * in the "Backblaze B2" category.
+ *
+ * JFR isn't in every Java 8 JVM, so the events live in B2FlightRecorderEvents,
+ * which is compiled separately (from core/src/jfr) against a JDK that has
+ * jdk.jfr.  This loads it reflectively, once, and does nothing if it or
+ * jdk.jfr is missing.  When it's there but the events aren't enabled, each
+ * begin method costs an allocation that usually gets optimized away, and
+ * returns null, which makes the matching end method return right away.
+ *
+ * The events are passed around as Objects so that callers don't refer to
+ * jdk.jfr classes.
+ *
+ * THREAD-SAFETY: this class is thread-safe.  Each event belongs to the
+ *    thread that began it.
+ */
+class B2FlightRecorder {
+    private static final String EVENTS_CLASS_NAME = "com.backblaze.b2.client.B2FlightRecorderEvents";
+
+    /**
+     * What B2FlightRecorderEvents implements.  The methods are the same as
+     * the static ones here, except that the end methods are only called
+     * with non-null events.
+     */
+    interface Events {
+        Object beginRetryAttempt();
+        void endRetryAttempt(Object event,
+                             String operation,
+                             int attempt,
+                             Exception exceptionOrNull,
+                             boolean willRetry,
+                             long retrySleepSeconds);
+        Object beginPartUpload();
+        void endPartUpload(Object event,
+                           int partNumber,
+                           long bytes,
+                           boolean succeeded);
+        Object beginDownload();
+        void endDownload(Object event,
+                         String operation,
+                         long bytes,
+                         long responseStartedNanosOrZero,
+                         boolean succeeded);
+    }
+
+    private static final Events EVENTS_OR_NULL = loadEventsOrNull();
+
+    private B2FlightRecorder() {
+    }
+
+    /*forTests*/
+    static boolean isSupported() {
+        return EVENTS_OR_NULL != null;
+    }
+
+    /**
+     * @return an event to pass to endRetryAttempt(), or null if it's not enabled.
+     */
+    static Object beginRetryAttempt() {
+        return (EVENTS_OR_NULL != null) ? EVENTS_OR_NULL.beginRetryAttempt() : null;
+    }
+
+    /**
+     * @param eventOrNull what beginRetryAttempt() returned.
+     * @param exceptionOrNull what the attempt threw, or null if it succeeded.
+     * @param willRetry true iff the retryer will make another attempt.
+     * @param retrySleepSeconds how long it'll sleep first.
+     */
+    static void endRetryAttempt(Object eventOrNull,
+                                String operation,
+                                int attempt,
+                                Exception exceptionOrNull,
+                                boolean willRetry,
+                                long retrySleepSeconds) {
+        if (eventOrNull != null) {
+            EVENTS_OR_NULL.endRetryAttempt(eventOrNull, operation, attempt, exceptionOrNull, willRetry, retrySleepSeconds);
+        }
+    }
+
+    /**
+     * @return an event to pass to endPartUpload(), or null if it's not enabled.
+     */
+    static Object beginPartUpload() {
+        return (EVENTS_OR_NULL != null) ? EVENTS_OR_NULL.beginPartUpload() : null;
+    }
+
+    static void endPartUpload(Object eventOrNull,
+                              int partNumber,
+                              long bytes,
+                              boolean succeeded) {
+        if (eventOrNull != null) {
+            EVENTS_OR_NULL.endPartUpload(eventOrNull, partNumber, bytes, succeeded);
+        }
+    }
+
+    /**
+     * @return an event to pass to endDownload(), or null if it's not enabled.
+     */
+    static Object beginDownload() {
+        return (EVENTS_OR_NULL != null) ? EVENTS_OR_NULL.beginDownload() : null;
+    }
+
+    /**
+     * @param responseStartedNanosOrZero the System.nanoTime() when the response
+     *                                   started arriving, or 0 if it didn't.
+     */
+    static void endDownload(Object eventOrNull,
+                            String operation,
+                            long bytes,
+                            long responseStartedNanosOrZero,
+                            boolean succeeded) {
+        if (eventOrNull != null) {
+            EVENTS_OR_NULL.endDownload(eventOrNull, operation, bytes, responseStartedNanosOrZero, succeeded);
+        }
+    }
+
+    private static Events loadEventsOrNull() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Events) Class.forName(EVENTS_CLASS_NAME).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // no jdk.jfr, or the jar was built without the events.
+            return null;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.structures.B2AccountAuthorization;
+import com.backblaze.b2.client.structures.B2ApplicationKey;
+import com.backblaze.b2.client.structures.B2Bucket;
+import com.backblaze.b2.client.structures.B2CancelLargeFileRequest;
+import com.backblaze.b2.client.structures.B2CreateBucketRequest;
+import com.backblaze.b2.client.structures.B2CreateKeyRequest;
+import com.backblaze.b2.client.structures.B2CreatedApplicationKey;
+import com.backblaze.b2.client.structures.B2DeleteBucketRequest;
+import com.backblaze.b2.client.structures.B2DeleteFileVersionRequest;
+import com.backblaze.b2.client.structures.B2DeleteKeyRequest;
+import com.backblaze.b2.client.structures.B2DownloadAuthorization;
+import com.backblaze.b2.client.structures.B2DownloadByIdRequest;
+import com.backblaze.b2.client.structures.B2DownloadByNameRequest;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2FinishLargeFileRequest;
+import com.backblaze.b2.client.structures.B2GetDownloadAuthorizationRequest;
+import com.backblaze.b2.client.structures.B2GetFileInfoByNameRequest;
+import com.backblaze.b2.client.structures.B2GetFileInfoRequest;
+import com.backblaze.b2.client.structures.B2GetUploadPartUrlRequest;
+import com.backblaze.b2.client.structures.B2GetUploadUrlRequest;
+import com.backblaze.b2.client.structures.B2HideFileRequest;
+import com.backblaze.b2.client.structures.B2ListBucketsRequest;
+import com.backblaze.b2.client.structures.B2ListBucketsResponse;
+import com.backblaze.b2.client.structures.B2ListFileNamesRequest;
+import com.backblaze.b2.client.structures.B2ListFileVersionsRequest;
+import com.backblaze.b2.client.structures.B2ListKeysRequest;
+import com.backblaze.b2.client.structures.B2ListPartsRequest;
+import com.backblaze.b2.client.structures.B2ListUnfinishedLargeFilesRequest;
+import com.backblaze.b2.client.structures.B2StartLargeFileRequest;
+import com.backblaze.b2.client.structures.B2UpdateBucketRequest;
+import com.backblaze.b2.client.structures.B2UploadFileRequest;
+import com.backblaze.b2.client.structures.B2UploadPartUrlResponse;
+import com.backblaze.b2.client.structures.B2UploadUrlResponse;
+import com.backblaze.b2.util.B2Preconditions;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * B2ForwardingStorageClient is a base class for B2StorageClients which wrap
+ * another B2StorageClient and change the behavior of just a few of its calls.
+ * Every call is forwarded to the wrapped client unless the subclass overrides it.
+ *
+ * THREAD-SAFETY: As thread-safe as the wrapped client, unless a subclass says otherwise.
+ */
+abstract class B2ForwardingStorageClient implements B2StorageClient {
+    protected final B2StorageClient client;
+
+    B2ForwardingStorageClient(B2StorageClient client) {
+        B2Preconditions.checkArgumentIsNotNull(client, "client");
+        this.client = client;
+    }
+
+    @Override
+    public B2FileVersion uploadSmallFile(B2UploadFileRequest request) throws B2Exception {
+        return client.uploadSmallFile(request);
+    }
+
+    @Override
+    public B2FileVersion uploadLargeFile(B2UploadFileRequest request,
+                                         ExecutorService executor) throws B2Exception {
+        return client.uploadLargeFile(request, executor);
+    }
+
+    @Override
+    public B2FileVersion finishUploadingLargeFile(B2FileVersion fileVersion,
+                                                  B2UploadFileRequest request,
+                                                  ExecutorService executor) throws B2Exception {
+        return client.finishUploadingLargeFile(fileVersion, request, executor);
+    }
+
+    @Override
+    public B2FileVersion finishLargeFile(B2FinishLargeFileRequest request) throws B2Exception {
+        return client.finishLargeFile(request);
+    }
+
+    @Override
+    public B2FileVersion getFileInfo(B2GetFileInfoRequest request) throws B2Exception {
+        return client.getFileInfo(request);
+    }
+
+    @Override
+    public B2FileVersion getFileInfoByName(B2GetFileInfoByNameRequest request) throws B2Exception {
+        return client.getFileInfoByName(request);
+    }
+
+    @Override
+    public B2FileVersion hideFile(B2HideFileRequest request) throws B2Exception {
+        return client.hideFile(request);
+    }
+
+    @Override
+    public void deleteFileVersion(B2DeleteFileVersionRequest request) throws B2Exception {
+        client.deleteFileVersion(request);
+    }
+    @Override
+    public String getAccountId() throws B2Exception {
+        return client.getAccountId();
+    }
+
+    @Override
+    public B2FilePolicy getFilePolicy() throws B2Exception {
+        return client.getFilePolicy();
+    }
+
+    @Override
+    public B2Bucket createBucket(B2CreateBucketRequest request) throws B2Exception {
+        return client.createBucket(request);
+    }
+
+    @Override
+    public B2CreatedApplicationKey createKey(B2CreateKeyRequest request) throws B2Exception {
+        return client.createKey(request);
+    }
+
+    @Override
+    public B2ListKeysIterable applicationKeys(B2ListKeysRequest request) throws B2Exception {
+        return client.applicationKeys(request);
+    }
+
+    @Override
+    public B2ApplicationKey deleteKey(B2DeleteKeyRequest request) throws B2Exception {
+        return client.deleteKey(request);
+    }
+
+    @Override
+    public B2ListBucketsResponse listBuckets(B2ListBucketsRequest listBucketsRequest) throws B2Exception {
+        return client.listBuckets(listBucketsRequest);
+    }
+
+    @Override
+    public B2ListFilesIterable fileVersions(B2ListFileVersionsRequest request) throws B2Exception {
+        return client.fileVersions(request);
+    }
+
+    @Override
+    public B2ListFilesIterable fileNames(B2ListFileNamesRequest request) throws B2Exception {
+        return client.fileNames(request);
+    }
+
+    @Override
+    public B2ListFilesIterable unfinishedLargeFiles(B2ListUnfinishedLargeFilesRequest request) throws B2Exception {
+        return client.unfinishedLargeFiles(request);
+    }
+
+    @Override
+    public B2ListPartsIterable parts(B2ListPartsRequest request) throws B2Exception {
+        return client.parts(request);
+    }
+
+    @Override
+    public void cancelLargeFile(B2CancelLargeFileRequest cancelRequest) throws B2Exception {
+        client.cancelLargeFile(cancelRequest);
+    }
+
+    @Override
+    public void downloadById(B2DownloadByIdRequest request,
+                             B2ContentSink handler) throws B2Exception {
+        client.downloadById(request, handler);
+    }
+
+    @Override
+    public void downloadByName(B2DownloadByNameRequest request,
+                               B2ContentSink handler) throws B2Exception {
+        client.downloadByName(request, handler);
+    }
+
+    @Override
+    public B2DownloadAuthorization getDownloadAuthorization(B2GetDownloadAuthorizationRequest request) throws B2Exception {
+        return client.getDownloadAuthorization(request);
+    }
+
+    @Override
+    public B2Bucket updateBucket(B2UpdateBucketRequest request) throws B2Exception {
+        return client.updateBucket(request);
+    }
+
+    @Override
+    public B2Bucket deleteBucket(B2DeleteBucketRequest request) throws B2Exception {
+        return client.deleteBucket(request);
+    }
+
+    @Override
+    public String getDownloadByIdUrl(B2DownloadByIdRequest request) throws B2Exception {
+        return client.getDownloadByIdUrl(request);
+    }
+
+    @Override
+    public String getDownloadByNameUrl(B2DownloadByNameRequest request) throws B2Exception {
+        return client.getDownloadByNameUrl(request);
+    }
+
+    @Override
+    public B2AccountAuthorization getAccountAuthorization() throws B2Exception {
+        return client.getAccountAuthorization();
+    }
+
+    @Override
+    public void invalidateAccountAuthorization() {
+        client.invalidateAccountAuthorization();
+    }
+
+    @Override
+    public B2UploadUrlResponse getUploadUrl(B2GetUploadUrlRequest request) throws B2Exception {
+        return client.getUploadUrl(request);
+    }
+
+    @Override
+    public B2UploadPartUrlResponse getUploadPartUrl(B2GetUploadPartUrlRequest request) throws B2Exception {
+        return client.getUploadPartUrl(request);
+    }
+
+    @Override
+    public B2FileVersion startLargeFile(B2StartLargeFileRequest request) throws B2Exception {
+        return client.startLargeFile(request);
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    @Override
+    public B2StorageClientWebifier getWebifier() {
+        return client.getWebifier();
+    }
+
+}
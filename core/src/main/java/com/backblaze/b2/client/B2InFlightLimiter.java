@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.exceptions.B2LocalException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * B2InFlightLimiter submits tasks to an executor, but blocks the submitter
+ * once maxInFlight of them are queued or running.  This lets the bulk
+ * operations walk very long streams of work without queueing all of it
+ * on the executor at once.
+ *
+ * The tasks are expected to handle their own exceptions.
+ *
+ * THREAD-SAFETY: submit() and awaitAll() are meant to be called from
+ *    a single thread.  (The tasks themselves run on the executor's threads.)
+ */
+class B2InFlightLimiter {
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    B2InFlightLimiter(ExecutorService executor,
+                      int maxInFlight) {
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Waits until there's room for another task and then submits it.
+     *
+     * @param task the task to run.
+     * @throws B2LocalException if interrupted or if the executor rejects the task.
+     */
+    void submit(Runnable task) throws B2LocalException {
+        acquireOrThrow(1);
+        try {
+            executor.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw new B2LocalException("bad_state", "The executor rejected a task. Does it have a hard limit? Did you call shutdown() on it? (" + e + ")", e);
+        }
+    }
+
+    /**
+     * Waits until every task that's been submitted has finished.
+     *
+     * @throws B2LocalException if interrupted.
+     */
+    void awaitAll() throws B2LocalException {
+        acquireOrThrow(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    private void acquireOrThrow(int permits) throws B2LocalException {
+        try {
+            inFlight.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new B2LocalException("interrupted", "interrupted while waiting for tasks: " + e, e);
+        }
+    }
+}
@@ -193,7 +193,14 @@ class B2LargeFileUploader {
         final B2UploadPartUrlCache uploadPartUrlCache = new B2UploadPartUrlCache(
                 webifier,
                 accountAuthCache,
-                largeFileVersion.getFileId());
+                largeFileVersion.getFileId(),
+                retryer.getMetrics());
+
+        // when the concurrency is tuned, we wait for the tuner's permission before giving
+        // each part to the executor, so the executor's threads never wait for it.
+        final B2UploadConcurrencyTuner tunerOrNull = (request.getAutoTunedMaxConcurrentParts() > 0) ?
+                new B2UploadConcurrencyTuner(request.getAutoTunedMaxConcurrentParts()) :
+                null;
 
         final List<String> partSha1s = new ArrayList<>();
         final List<Future<B2Part>> uploadedPartFutures = new ArrayList<>();
@@ -206,7 +213,16 @@ class B2LargeFileUploader {
                 final B2Part alreadyUploadedPart = uploadedAlready.get(partSpec);
                 if (alreadyUploadedPart == null) {
                     // do the upload
-                    uploadedPartFutures.add(executor.submit(() -> uploadOnePart(uploadPartUrlCache, request, partCount, partSpec)));
+                    if (tunerOrNull == null) {
+                        uploadedPartFutures.add(executor.submit(() -> uploadOnePart(uploadPartUrlCache, request, partCount, partSpec, null)));
+                    } else {
+                        if (!acquireOrThrow(tunerOrNull)) {
+                            // a part has failed for good.  stop starting parts and go
+                            // find out what went wrong from its future, below.
+                            break;
+                        }
+                        uploadedPartFutures.add(executor.submit(() -> uploadOnePartTuned(uploadPartUrlCache, request, partCount, partSpec, tunerOrNull)));
+                    }
                 } else {
                     // tell the listener about our prior success as soon as we can.
                     listener.progress(B2UploadProgressUtil.forPartSucceeded(partSpec, partCount));
@@ -218,8 +234,6 @@ class B2LargeFileUploader {
                 }
             }
 
-            B2Preconditions.checkState(partCount == uploadedPartFutures.size(), "didn't we add a future for every spec?");
-
             for (Future<B2Part> future : uploadedPartFutures) {
                 try {
                     partSha1s.add(future.get().getContentSha1());
@@ -235,6 +249,7 @@ class B2LargeFileUploader {
                     }
                 }
             }
+            B2Preconditions.checkState(partCount == uploadedPartFutures.size(), "didn't we add a future for every spec?");
         } catch (RejectedExecutionException e) {
             // the executor doesn't to accept a task we're trying to submit.
             // turn this into a B2Exception and let the finally clean up what it can.
@@ -255,10 +270,40 @@ class B2LargeFileUploader {
         return retryer.doRetry("b2_finish_large_file", accountAuthCache, () -> webifier.finishLargeFile(accountAuthCache.get(), finishRequest), retryPolicySupplier.get());
     }
 
+    /**
+     * Waits for the tuner to let another part start.
+     *
+     * @return false if a part has failed, so no more should be started.
+     */
+    private static boolean acquireOrThrow(B2UploadConcurrencyTuner tuner) throws B2Exception {
+        try {
+            return tuner.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new B2LocalException("interrupted", "interrupted while waiting to upload a part: " + e, e);
+        }
+    }
+
+    private B2Part uploadOnePartTuned(B2UploadPartUrlCache uploadPartUrlCache,
+                                      B2UploadFileRequest request,
+                                      int partCount,
+                                      B2PartSpec partSpec,
+                                      B2UploadConcurrencyTuner tuner) throws B2Exception {
+        boolean succeeded = false;
+        try {
+            final B2Part part = uploadOnePart(uploadPartUrlCache, request, partCount, partSpec, tuner);
+            succeeded = true;
+            return part;
+        } finally {
+            tuner.partFinished(partSpec.length, succeeded);
+        }
+    }
+
     private B2Part uploadOnePart(B2UploadPartUrlCache uploadPartUrlCache,
                                  B2UploadFileRequest request,
                                  int partCount,
-                                 B2PartSpec partSpec) throws B2Exception {
+                                 B2PartSpec partSpec,
+                                 B2UploadConcurrencyTuner tunerOrNull) throws B2Exception {
         return retryer.doRetry("b2_upload_part",
                 accountAuthCache,
                 (isRetry) -> {
@@ -269,6 +314,7 @@ class B2LargeFileUploader {
                             partSpec.getLength());
                     final B2ByteProgressFilteringListener progressListener = new B2ByteProgressFilteringListener(progressAdapter);
 
+                    Object partEvent = null;
                     try {
                         final B2UploadPartUrlResponse uploadPartUrlResponse = uploadPartUrlCache.get(isRetry);
 
@@ -283,12 +329,19 @@ class B2LargeFileUploader {
                                 .builder(partSpec.partNumber, source)
                                 .build();
 
+                        partEvent = B2FlightRecorder.beginPartUpload();
                         final B2Part part = webifier.uploadPart(uploadPartUrlResponse, partRequest);
                         uploadPartUrlCache.unget(uploadPartUrlResponse);
+                        retryer.getMetrics().bytesUploaded(partSpec.length);
 
                         request.getListener().progress(B2UploadProgressUtil.forPartSucceeded(partSpec, partCount));
+                        B2FlightRecorder.endPartUpload(partEvent, partSpec.partNumber, partSpec.length, true);
                         return part;
                     } catch (Exception e) {
+                        B2FlightRecorder.endPartUpload(partEvent, partSpec.partNumber, progressListener.getBytesSoFar(), false);
+                        if (tunerOrNull != null) {
+                            tunerOrNull.attemptFailed();
+                        }
                         request.getListener().progress(B2UploadProgressUtil.forPartFailed(partSpec, partCount, progressListener.getBytesSoFar()));
                         throw e;
                     }
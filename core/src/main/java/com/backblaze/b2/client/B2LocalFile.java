@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import java.io.File;
+
+/**
+ * B2LocalFile describes a regular file found while scanning a local directory.
+ * The name is relative to the directory that was scanned and always uses "/"
+ * as the separator, so it can be appended to a B2 prefix to make a fileName.
+ */
+class B2LocalFile {
+    private final String name;
+    private final File file;
+    private final long length;
+    private final long lastModifiedMillis;
+
+    B2LocalFile(String name,
+                File file,
+                long length,
+                long lastModifiedMillis) {
+        this.name = name;
+        this.file = file;
+        this.length = length;
+        this.lastModifiedMillis = lastModifiedMillis;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "B2LocalFile{" +
+                "name='" + name + '\'' +
+                ", length=" + length +
+                ", lastModifiedMillis=" + lastModifiedMillis +
+                '}';
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.exceptions.B2RuntimeException;
+import com.backblaze.b2.util.B2StringUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * B2LocalFileScanner yields every regular file under a directory, ordered by
+ * name the same way B2 orders fileNames (by UTF-8 bytes).  That lets a caller
+ * walk the local files and a fileNames() listing side by side.
+ *
+ * Each directory's entries are sorted with a "/" appended to the names of
+ * subdirectories.  Since every name under "a/" starts with "a/", a depth-first
+ * walk of the sorted entries is in order overall.
+ *
+ * Listing directories is mostly waiting on the filesystem, so while we walk
+ * one directory, the listings of the next few subdirectories we'll visit are
+ * read on the executor.  At most MAX_DIRECTORY_PREFETCH of them are
+ * outstanding at once.
+ *
+ * Symbolic links to regular files are treated as regular files.  Symbolic links
+ * to directories are skipped, so we can't loop forever.  Anything else that
+ * isn't a regular file or a directory is skipped too.
+ *
+ * Trouble reading the filesystem is thrown from hasNext() or next() as a
+ * B2RuntimeException wrapping a B2LocalException, just like the listing
+ * iterators do with their B2Exceptions.
+ *
+ * THREAD-SAFETY: like most iterators, this is meant to be used by one thread.
+ */
+class B2LocalFileScanner implements Iterator<B2LocalFile> {
+    // how many directory listings may be read ahead of the walk at once.
+    static final int MAX_DIRECTORY_PREFETCH = 16;
+
+    private static class Entry {
+        final String name;     // relative to the root, with a trailing "/" for directories.
+        final Path path;
+        final boolean isDirectory;
+        final long length;
+        final long lastModifiedMillis;
+
+        Entry(String name, Path path, boolean isDirectory, long length, long lastModifiedMillis) {
+            this.name = name;
+            this.path = path;
+            this.isDirectory = isDirectory;
+            this.length = length;
+            this.lastModifiedMillis = lastModifiedMillis;
+        }
+    }
+
+    private final ExecutorService executorOrNull;
+
+    // the entries we haven't looked at yet in each directory we're in, innermost first.
+    private final Deque<Iterator<Entry>> stack = new ArrayDeque<>();
+
+    // directory name -> its listing, being read on the executor.
+    private final Map<String, Future<List<Entry>>> prefetches = new HashMap<>();
+
+    private B2LocalFile nextFile;
+
+    /**
+     * @param rootDir the directory to scan.
+     * @param executorOrNull where to read directory listings in advance.
+     *                       if null, each directory is read when we get to it.
+     */
+    B2LocalFileScanner(File rootDir,
+                       ExecutorService executorOrNull) {
+        this.executorOrNull = executorOrNull;
+        final List<Entry> rootEntries = listOrThrow(rootDir.toPath(), "");
+        startPrefetching(rootEntries);
+        stack.push(rootEntries.iterator());
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextFile == null) {
+            nextFile = findNext();
+        }
+        return nextFile != null;
+    }
+
+    @Override
+    public B2LocalFile next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final B2LocalFile file = nextFile;
+        nextFile = null;
+        return file;
+    }
+
+    private B2LocalFile findNext() {
+        while (!stack.isEmpty()) {
+            final Iterator<Entry> entries = stack.peek();
+            if (!entries.hasNext()) {
+                stack.pop();
+                continue;
+            }
+
+            final Entry entry = entries.next();
+            if (entry.isDirectory) {
+                final List<Entry> children = getListing(entry);
+                startPrefetching(children);
+                stack.push(children.iterator());
+            } else {
+                return new B2LocalFile(entry.name, entry.path.toFile(), entry.length, entry.lastModifiedMillis);
+            }
+        }
+        return null;
+    }
+
+    private List<Entry> getListing(Entry dir) {
+        final Future<List<Entry>> future = prefetches.remove(dir.name);
+        if (future == null) {
+            return listOrThrow(dir.path, dir.name);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new B2RuntimeException("interrupted while scanning " + dir.path,
+                    new B2LocalException("interrupted", "interrupted while scanning " + dir.path, e));
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof B2RuntimeException) {
+                throw (B2RuntimeException) cause;
+            }
+            throw new B2RuntimeException("failed to scan " + dir.path,
+                    new B2LocalException("trouble", "failed to scan " + dir.path + ": " + cause, cause));
+        }
+    }
+
+    /**
+     * Starts reading the listings of the first few subdirectories in the
+     * given entries, as long as there's room for more prefetches.
+     */
+    private void startPrefetching(List<Entry> entries) {
+        if (executorOrNull == null) {
+            return;
+        }
+        for (Entry entry : entries) {
+            if (prefetches.size() >= MAX_DIRECTORY_PREFETCH) {
+                return;
+            }
+            if (entry.isDirectory) {
+                try {
+                    prefetches.put(entry.name, executorOrNull.submit(() -> listOrThrow(entry.path, entry.name)));
+                } catch (RejectedExecutionException e) {
+                    // we'll just read it when we get to it.
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the sorted entries of the given directory.
+     * @throws B2RuntimeException wrapping a B2LocalException if the directory can't be read.
+     */
+    private static List<Entry> listOrThrow(Path dir, String dirName) {
+        final List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                final String name = dirName + path.getFileName().toString();
+                final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isDirectory()) {
+                    entries.add(new Entry(name + "/", path, true, 0, 0));
+                } else if (attrs.isRegularFile()) {
+                    entries.add(fileEntry(name, path, attrs));
+                } else if (attrs.isSymbolicLink()) {
+                    final BasicFileAttributes target = readTargetAttributesOrNull(path);
+                    if (target != null && target.isRegularFile()) {
+                        entries.add(fileEntry(name, path, target));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new B2RuntimeException("failed to list " + dir,
+                    new B2LocalException("read_failed", "failed to list " + dir + ": " + e, e));
+        }
+        entries.sort((a, b) -> B2StringUtil.compareUtf8(a.name, b.name));
+        return entries;
+    }
+
+    private static Entry fileEntry(String name, Path path, BasicFileAttributes attrs) {
+        // use File.lastModified() because that's what B2FileContentSource will
+        // report when we upload it.  on some platforms, it's less precise than
+        // the attributes' lastModifiedTime and we want them to match.
+        return new Entry(name, path, false, attrs.size(), path.toFile().lastModified());
+    }
+
+    private static BasicFileAttributes readTargetAttributesOrNull(Path link) {
+        try {
+            return Files.readAttributes(link, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // dangling links aren't files we can upload.
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+/**
+ * B2Metrics is told what the B2StorageClientImpl is doing, so you can see
+ * where the time goes without a profiler.  Give one to
+ * B2ClientConfig.Builder.setMetrics().  B2MetricsImpl is a cheap
+ * implementation that just counts; you can also write one that feeds your
+ * own metrics system.
+ *
+ * Every method has a default that does nothing, so implement just the
+ * ones you care about.
+ *
+ * THREAD-SAFETY: implementations must be thread-safe, and they're called
+ *    on the threads doing the work, so they should be fast and not block.
+ */
+public interface B2Metrics {
+    /**
+     * Names of the caches reported to cacheLookup().
+     */
+    String ACCOUNT_AUTHORIZATION_CACHE = "accountAuthorization";
+    String UPLOAD_URL_CACHE = "uploadUrl";
+    String UPLOAD_PART_URL_CACHE = "uploadPartUrl";
+
+    /**
+     * An instance that ignores everything.  It's the default.
+     */
+    B2Metrics NONE = new B2Metrics() {};
+
+    /**
+     * An operation is starting.  Its first attempt is about to be made.
+     *
+     * @param operation the name of the operation, usually the name of a b2 api,
+     *                  such as "b2_upload_part".
+     */
+    @SuppressWarnings("unused")
+    default void operationStarted(String operation) {
+    }
+
+    /**
+     * An operation that was started has finished, after all of its retries.
+     *
+     * @param operation the name of the operation.
+     * @param attempts how many attempts were made, including the first.
+     * @param tookMillis how long the whole operation took, including the
+     *                   time spent waiting between attempts.
+     * @param succeeded true iff the last attempt succeeded.
+     */
+    @SuppressWarnings("unused")
+    default void operationFinished(String operation,
+                                   int attempts,
+                                   long tookMillis,
+                                   boolean succeeded) {
+    }
+
+    /**
+     * Content was uploaded successfully, either as a small file or a part.
+     * Attempts that fail aren't reported.
+     *
+     * @param nBytes the number of bytes of content.
+     */
+    @SuppressWarnings("unused")
+    default void bytesUploaded(long nBytes) {
+    }
+
+    /**
+     * Content was downloaded successfully.  Attempts that fail aren't reported.
+     *
+     * @param nBytes the number of bytes the content handler read.
+     */
+    @SuppressWarnings("unused")
+    default void bytesDownloaded(long nBytes) {
+    }
+
+    /**
+     * A cache was asked for something.
+     *
+     * @param cacheName which cache, such as UPLOAD_URL_CACHE.
+     * @param hit true iff the cache had an answer, so nothing had to be
+     *            asked of the server.
+     */
+    @SuppressWarnings("unused")
+    default void cacheLookup(String cacheName,
+                             boolean hit) {
+    }
+}
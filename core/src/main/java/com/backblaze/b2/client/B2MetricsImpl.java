@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.util.B2LatencyHistogram;
+
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * B2MetricsImpl keeps counts and latency histograms in memory, for each
+ * operation and each cache.  Everything is counted with LongAdders, which
+ * are striped, so many threads can record at once without contending.
+ * Read the numbers whenever you like, with the getters or toString().
+ *
+ * The numbers are totals since this was made.  Operations and caches that
+ * haven't been seen have zeros.
+ *
+ * THREAD-SAFETY: this class is thread-safe.
+ */
+public class B2MetricsImpl implements B2Metrics {
+    // what the getters return for operations that haven't been seen.  it's never changed.
+    private static final OperationStats NO_STATS = new OperationStats();
+
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final Map<String, CacheStats> caches = new ConcurrentHashMap<>();
+    private final LongAdder bytesUploaded = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+
+    private static class OperationStats {
+        private final B2LatencyHistogram latencyMillis = new B2LatencyHistogram();
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+    }
+
+    private static class CacheStats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    @Override
+    public void operationStarted(String operation) {
+        operationStats(operation).inFlight.increment();
+    }
+
+    @Override
+    public void operationFinished(String operation,
+                                  int attempts,
+                                  long tookMillis,
+                                  boolean succeeded) {
+        final OperationStats stats = operationStats(operation);
+        stats.inFlight.decrement();
+        stats.latencyMillis.record(tookMillis);
+        stats.attempts.add(attempts);
+        if (!succeeded) {
+            stats.failures.increment();
+        }
+    }
+
+    @Override
+    public void bytesUploaded(long nBytes) {
+        bytesUploaded.add(nBytes);
+    }
+
+    @Override
+    public void bytesDownloaded(long nBytes) {
+        bytesDownloaded.add(nBytes);
+    }
+
+    @Override
+    public void cacheLookup(String cacheName,
+                            boolean hit) {
+        final CacheStats stats = caches.computeIfAbsent(cacheName, k -> new CacheStats());
+        if (hit) {
+            stats.hits.increment();
+        } else {
+            stats.misses.increment();
+        }
+    }
+
+    /**
+     * @return the names of the operations that have been started, in order.
+     */
+    public SortedSet<String> getOperationNames() {
+        return new TreeSet<>(operations.keySet());
+    }
+
+    /**
+     * @return the histogram of how long each finished operation took, in
+     *         milliseconds.  (it's live, not a copy.  don't record into it.)
+     */
+    public B2LatencyHistogram getLatencyMillis(String operation) {
+        return existingOperationStats(operation).latencyMillis;
+    }
+
+    /**
+     * @return how many times the operation has finished.
+     */
+    public long getOperationCount(String operation) {
+        return existingOperationStats(operation).latencyMillis.getCount();
+    }
+
+    /**
+     * @return how many attempts the finished operations made, including retries.
+     */
+    public long getAttemptCount(String operation) {
+        return existingOperationStats(operation).attempts.sum();
+    }
+
+    /**
+     * @return how many times the operation finished with an exception.
+     */
+    public long getFailureCount(String operation) {
+        return existingOperationStats(operation).failures.sum();
+    }
+
+    /**
+     * @return how many of the operation are running right now.
+     */
+    public long getInFlight(String operation) {
+        return existingOperationStats(operation).inFlight.sum();
+    }
+
+    public long getBytesUploaded() {
+        return bytesUploaded.sum();
+    }
+
+    public long getBytesDownloaded() {
+        return bytesDownloaded.sum();
+    }
+
+    public long getCacheHits(String cacheName) {
+        final CacheStats stats = caches.get(cacheName);
+        return (stats == null) ? 0 : stats.hits.sum();
+    }
+
+    public long getCacheMisses(String cacheName) {
+        final CacheStats stats = caches.get(cacheName);
+        return (stats == null) ? 0 : stats.misses.sum();
+    }
+
+    /**
+     * @return the fraction of lookups in the cache that were hits,
+     *         or 0 if there haven't been any.
+     */
+    public double getCacheHitRate(String cacheName) {
+        final long hits = getCacheHits(cacheName);
+        final long total = hits + getCacheMisses(cacheName);
+        return (total == 0) ? 0 : ((double) hits) / total;
+    }
+
+    /**
+     * @return a multi-line summary, with one line per operation and cache.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder s = new StringBuilder();
+        s.append("bytesUploaded=").append(getBytesUploaded())
+                .append(" bytesDownloaded=").append(getBytesDownloaded())
+                .append('\n');
+        for (String operation : getOperationNames()) {
+            final B2LatencyHistogram latency = getLatencyMillis(operation);
+            s.append(operation)
+                    .append(": count=").append(latency.getCount())
+                    .append(" attempts=").append(getAttemptCount(operation))
+                    .append(" failures=").append(getFailureCount(operation))
+                    .append(" inFlight=").append(getInFlight(operation))
+                    .append(" p50=").append(latency.getValueAtPercentile(50))
+                    .append("ms p99=").append(latency.getValueAtPercentile(99))
+                    .append("ms max=").append(latency.getMax())
+                    .append("ms\n");
+        }
+        for (String cacheName : new TreeSet<>(caches.keySet())) {
+            s.append(cacheName)
+                    .append(" cache: hits=").append(getCacheHits(cacheName))
+                    .append(" misses=").append(getCacheMisses(cacheName))
+                    .append('\n');
+        }
+        return s.toString();
+    }
+
+    private OperationStats operationStats(String operation) {
+        return operations.computeIfAbsent(operation, k -> new OperationStats());
+    }
+
+    private OperationStats existingOperationStats(String operation) {
+        return operations.getOrDefault(operation, NO_STATS);
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentFileWriter;
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.exceptions.B2RuntimeException;
+import com.backblaze.b2.client.structures.B2DownloadByIdRequest;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2RestoreRequest;
+import com.backblaze.b2.client.structures.B2RestoreResult;
+import com.backblaze.b2.client.structures.B2SyncAction;
+import com.backblaze.b2.client.structures.B2SyncListener;
+import com.backblaze.b2.util.B2BandwidthLimiter;
+import com.backblaze.b2.util.B2ByteRange;
+import com.backblaze.b2.util.B2InputStreamWithBandwidthLimiter;
+import com.backblaze.b2.util.B2Sha1;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * B2Restorer makes the files in a local directory match the files in
+ * a bucket (under a prefix).  It's the inverse of B2Syncer.
+ *
+ * It streams a fileNames() listing, so memory use doesn't depend on how many
+ * files there are.  For each B2 file:
+ *   * if there's a local file with the same size and a modification time
+ *     matching the B2 file's src_last_modified_millis (or, when it doesn't
+ *     have a valid one, its upload timestamp), it's left alone.
+ *   * otherwise, if there's a local file with the same size and comparing
+ *     SHA-1s was requested, the file is only downloaded if they differ.
+ *   * otherwise, the file is downloaded.
+ *
+ * Each download is written to a temporary file next to its destination and
+ * then renamed into place, so a local file is never half-written.  Before
+ * the rename, the file's modification time is set to the B2 file's
+ * src_last_modified_millis, or to its upload timestamp if it doesn't have
+ * one.  That means re-running a restore after it was interrupted skips
+ * the files that were finished, even ones uploaded by other tools and big
+ * files with no SHA-1 to compare.
+ *
+ * Files bigger than request.getRangeSize() are downloaded in ranges, with the
+ * ranges downloaded in parallel and written into place in the temporary file.
+ * Since ranged downloads don't come with a SHA-1 to check, the whole temporary
+ * file is checked against the B2 file's SHA-1 (when it has one) before it's
+ * renamed into place.
+ *
+ * Whole-file downloads, ranges, and SHA-1 comparisons run on the executor and
+ * share a single budget: at most request.getMaxInFlight() of them are queued
+ * or running at once.  When request.getMaxBytesPerSecond() isn't zero, all of
+ * the downloads share one B2BandwidthLimiter too.
+ *
+ * Downloads are done by fileId rather than by name.  The listing tells us the
+ * fileId of the version we compared against, and asking for it by id makes
+ * sure that's the version we get, even if a new version is uploaded while
+ * we're running.
+ *
+ * As with the other bulk operations, each call gets the client's normal retry
+ * behavior.  A file that still fails is reported to the listener and counted
+ * in the result; it doesn't stop the rest of the restore.
+ *
+ * THREAD-SAFETY: an instance is meant to be used for one restore() call
+ *    from one thread.  (It uses the executor's threads internally.)
+ */
+class B2Restorer {
+    // how many failures do we keep in the result?  the listener sees all of them.
+    static final int MAX_SAMPLE_FAILURES = 100;
+
+    // appended to a file's name to make the name of the temporary file we download it to.
+    static final String TEMP_SUFFIX = ".b2_restore_tmp";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final B2StorageClient client;
+    private final ExecutorService executor;
+    private final B2RestoreRequest request;
+    private final B2SyncListener listener;
+    private final Path localDirPath;
+    private final B2BandwidthLimiter bandwidthLimiterOrNull;
+
+    private final AtomicLong unchangedCount = new AtomicLong();
+    private final AtomicLong downloadedCount = new AtomicLong();
+    private final AtomicLong downloadedBytes = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    // protected by synchronized(sampleFailures)
+    private final Map<String, B2Exception> sampleFailures = new LinkedHashMap<>();
+
+    /**
+     * The state of one file that's being downloaded in ranges.
+     */
+    private static class RangedDownload {
+        final B2FileVersion remote;
+        final File localFile;
+        final File tempFile;
+        final AtomicInteger rangesLeft;
+
+        // the first failure, if any.  once there's a failure, we don't start any more ranges.
+        final AtomicReference<B2Exception> failure = new AtomicReference<>();
+
+        RangedDownload(B2FileVersion remote,
+                       File localFile,
+                       File tempFile,
+                       int rangeCount) {
+            this.remote = remote;
+            this.localFile = localFile;
+            this.tempFile = tempFile;
+            this.rangesLeft = new AtomicInteger(rangeCount);
+        }
+    }
+
+    B2Restorer(B2StorageClient client,
+               ExecutorService executor,
+               B2RestoreRequest request) {
+        this.client = client;
+        this.executor = executor;
+        this.request = request;
+        this.listener = request.getListener();
+        this.localDirPath = request.getLocalDir().toPath().toAbsolutePath().normalize();
+        this.bandwidthLimiterOrNull = (request.getMaxBytesPerSecond() > 0) ?
+                new B2BandwidthLimiter(request.getMaxBytesPerSecond()) :
+                null;
+    }
+
+    /**
+     * Does the restore.
+     *
+     * @return a summary of what was done.
+     * @throws B2Exception if we couldn't finish listing the files or if the
+     *                     executor rejected our work.  any downloads that were
+     *                     already started are finished first.
+     */
+    B2RestoreResult restore() throws B2Exception {
+        final B2InFlightLimiter limiter = new B2InFlightLimiter(executor, request.getMaxInFlight());
+
+        B2Exception trouble = null;
+        try {
+            final Iterator<B2FileVersion> remotes = B2Syncer.listUploads(client, request.getBucketId(), request.getPrefix());
+            while (remotes.hasNext()) {
+                handle(limiter, remotes.next());
+            }
+        } catch (B2RuntimeException e) {
+            // the listing couldn't get more entries.  if it was
+            // wrapping a B2Exception (as our iterators do), use that.
+            trouble = (e.getCause() instanceof B2Exception) ?
+                    (B2Exception) e.getCause() :
+                    new B2LocalException("trouble", "failed to get next file to restore: " + e, e);
+        } catch (B2Exception e) {
+            trouble = e;
+        }
+
+        // wait for everything we started before reporting anything.
+        limiter.awaitAll();
+
+        if (trouble != null) {
+            throw trouble;
+        }
+
+        synchronized (sampleFailures) {
+            return new B2RestoreResult(
+                    unchangedCount.get(),
+                    downloadedCount.get(),
+                    downloadedBytes.get(),
+                    failedCount.get(),
+                    new LinkedHashMap<>(sampleFailures));
+        }
+    }
+
+    private void handle(B2InFlightLimiter limiter,
+                        B2FileVersion remote) throws B2LocalException {
+        final File localFile = localFileOrNull(remote);
+        if (localFile == null) {
+            recordFailure(remote.getFileName(), new B2LocalException("bad_name",
+                    "can't restore '" + remote.getFileName() + "' because it doesn't name a file under " + localDirPath));
+            return;
+        }
+
+        final boolean isRanged = remote.getContentLength() > request.getRangeSize();
+        if (localFile.isFile() && localFile.length() == remote.getContentLength()) {
+            if (localFile.lastModified() == restoredLastModifiedMillis(remote)) {
+                unchangedCount.incrementAndGet();
+                return;
+            }
+
+            if (request.getCompareSha1s() && B2Syncer.remoteSha1OrNull(remote) != null) {
+                if (isRanged) {
+                    // compare here, since a task on the executor mustn't wait on the limiter.
+                    if (!isSameAsLocal(remote, localFile)) {
+                        downloadInRanges(limiter, remote, localFile);
+                    }
+                } else {
+                    limiter.submit(() -> {
+                        if (!isSameAsLocal(remote, localFile)) {
+                            downloadWhole(remote, localFile);
+                        }
+                    });
+                }
+                return;
+            }
+        }
+
+        if (isRanged) {
+            downloadInRanges(limiter, remote, localFile);
+        } else {
+            limiter.submit(() -> downloadWhole(remote, localFile));
+        }
+    }
+
+    /**
+     * @return the local file that corresponds to the remote one, or null if the remote
+     *         name can't be a file under the local directory.  (for instance, because
+     *         it ends with a "/" or uses ".." to get outside of the local directory.)
+     */
+    private File localFileOrNull(B2FileVersion remote) {
+        final String relativeName = remote.getFileName().substring(request.getPrefix().length());
+        if (relativeName.isEmpty() || relativeName.endsWith("/")) {
+            return null;
+        }
+
+        final Path path = localDirPath.resolve(relativeName).normalize();
+        if (!path.startsWith(localDirPath) || path.equals(localDirPath)) {
+            return null;
+        }
+        return path.toFile();
+    }
+
+    /**
+     * @return true iff the local file's SHA-1 matches the remote one's.  if so, it's
+     *         counted as unchanged.  if we can't read the local file, we say it isn't
+     *         the same, so it'll be replaced.
+     */
+    private boolean isSameAsLocal(B2FileVersion remote,
+                                  File localFile) {
+        final String localSha1;
+        try (InputStream in = new FileInputStream(localFile)) {
+            localSha1 = B2Sha1.hexSha1OfInputStream(in);
+        } catch (IOException e) {
+            return false;
+        }
+
+        if (B2Sha1.equalHexSha1s(localSha1, B2Syncer.remoteSha1OrNull(remote))) {
+            unchangedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private void downloadWhole(B2FileVersion remote,
+                               File localFile) {
+        final File tempFile = tempFileFor(localFile);
+        try {
+            makeParentDirectories(localFile);
+            final B2DownloadByIdRequest downloadRequest = B2DownloadByIdRequest
+                    .builder(remote.getFileId())
+                    .build();
+            client.downloadById(downloadRequest, withBandwidthLimit(B2ContentFileWriter.builder(tempFile).build()));
+            moveIntoPlace(remote, tempFile, localFile);
+        } catch (B2Exception e) {
+            deleteQuietly(tempFile);
+            recordFailure(remote.getFileName(), e);
+            return;
+        } catch (RuntimeException e) {
+            deleteQuietly(tempFile);
+            recordFailure(remote.getFileName(), new B2LocalException("trouble", "exception while trying to download file: " + e, e));
+            return;
+        }
+
+        recordDownloaded(remote);
+    }
+
+    private void downloadInRanges(B2InFlightLimiter limiter,
+                                  B2FileVersion remote,
+                                  File localFile) throws B2LocalException {
+        final long contentLength = remote.getContentLength();
+        final long rangeSize = request.getRangeSize();
+        final File tempFile = tempFileFor(localFile);
+        try {
+            makeParentDirectories(localFile);
+            try (RandomAccessFile file = new RandomAccessFile(tempFile, "rw")) {
+                file.setLength(contentLength);
+            }
+        } catch (B2Exception e) {
+            recordFailure(remote.getFileName(), e);
+            return;
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            recordFailure(remote.getFileName(), new B2LocalException("write_failed", "failed to create " + tempFile + ": " + e, e));
+            return;
+        }
+
+        final int rangeCount = (int) ((contentLength + rangeSize - 1) / rangeSize);
+        final RangedDownload download = new RangedDownload(remote, localFile, tempFile, rangeCount);
+        for (long start = 0; start < contentLength; start += rangeSize) {
+            final B2ByteRange range = B2ByteRange.between(start, Math.min(start + rangeSize, contentLength) - 1);
+            limiter.submit(() -> downloadRange(download, range));
+        }
+    }
+
+    private void downloadRange(RangedDownload download,
+                               B2ByteRange range) {
+        if (download.failure.get() == null) {
+            try {
+                final B2DownloadByIdRequest downloadRequest = B2DownloadByIdRequest
+                        .builder(download.remote.getFileId())
+                        .setRange(range)
+                        .build();
+                client.downloadById(downloadRequest, withBandwidthLimit((headers, in) -> writeRange(download.tempFile, range, in)));
+            } catch (B2Exception e) {
+                download.failure.compareAndSet(null, e);
+            } catch (RuntimeException e) {
+                download.failure.compareAndSet(null, new B2LocalException("trouble", "exception while trying to download range: " + e, e));
+            }
+        }
+
+        if (download.rangesLeft.decrementAndGet() == 0) {
+            finishRangedDownload(download);
+        }
+    }
+
+    /**
+     * Copies the content of one range into its place in the temporary file.
+     */
+    private static void writeRange(File tempFile,
+                                   B2ByteRange range,
+                                   InputStream in) throws B2Exception, IOException {
+        final long expectedLength = range.getNumberOfBytes();
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.position(range.start);
+            int nRead;
+            while ((nRead = in.read(buffer)) != -1) {
+                written += nRead;
+                if (written > expectedLength) {
+                    break;
+                }
+                final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, nRead);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+            }
+        }
+        if (written != expectedLength) {
+            throw new B2LocalException("mismatch", "expected " + expectedLength + " bytes for range " + range + ", but got " + written);
+        }
+    }
+
+    private void finishRangedDownload(RangedDownload download) {
+        final B2FileVersion remote = download.remote;
+        B2Exception failure = download.failure.get();
+        if (failure == null) {
+            try {
+                checkSha1(remote, download.tempFile);
+                moveIntoPlace(remote, download.tempFile, download.localFile);
+            } catch (B2Exception e) {
+                failure = e;
+            }
+        }
+
+        if (failure != null) {
+            deleteQuietly(download.tempFile);
+            recordFailure(remote.getFileName(), failure);
+            return;
+        }
+
+        recordDownloaded(remote);
+    }
+
+    /**
+     * Ranges don't come with a SHA-1, so we check the assembled file against
+     * the B2 file's SHA-1, if it has one.
+     */
+    private static void checkSha1(B2FileVersion remote,
+                                  File tempFile) throws B2LocalException {
+        final String expectedSha1 = B2Syncer.remoteSha1OrNull(remote);
+        if (expectedSha1 == null) {
+            return;
+        }
+
+        final String actualSha1;
+        try (InputStream in = new FileInputStream(tempFile)) {
+            actualSha1 = B2Sha1.hexSha1OfInputStream(in);
+        } catch (IOException e) {
+            throw new B2LocalException("write_failed", "failed to verify the sha1 of " + tempFile + ": " + e, e);
+        }
+        if (!B2Sha1.equalHexSha1s(expectedSha1, actualSha1)) {
+            throw new B2LocalException("mismatch", "sha1 mismatch from network.  expected " + expectedSha1 + ", but got " + actualSha1);
+        }
+    }
+
+    private B2ContentSink withBandwidthLimit(B2ContentSink sink) {
+        if (bandwidthLimiterOrNull == null) {
+            return sink;
+        }
+        return (headers, in) -> sink.readContent(headers, new B2InputStreamWithBandwidthLimiter(in, bandwidthLimiterOrNull));
+    }
+
+    /**
+     * @return the modification time a restored copy of the remote file gets:
+     *         its src_last_modified_millis if it has a valid one, and its
+     *         upload timestamp otherwise.
+     */
+    static long restoredLastModifiedMillis(B2FileVersion remote) {
+        final String lastModifiedStr = remote.getFileInfo().get(B2Headers.SRC_LAST_MODIFIED_MILLIS_INFO_NAME);
+        if (lastModifiedStr != null) {
+            try {
+                return Long.parseLong(lastModifiedStr);
+            } catch (NumberFormatException e) {
+                // it's just a fileInfo, so anybody could've put anything in it.
+            }
+        }
+        return remote.getUploadTimestamp();
+    }
+
+    /**
+     * Gives the temporary file the modification time from
+     * restoredLastModifiedMillis() and then renames it to be the local
+     * file, replacing any existing one.
+     */
+    private static void moveIntoPlace(B2FileVersion remote,
+                                      File tempFile,
+                                      File localFile) throws B2LocalException {
+        //noinspection ResultOfMethodCallIgnored
+        tempFile.setLastModified(restoredLastModifiedMillis(remote));
+
+        try {
+            try {
+                Files.move(tempFile.toPath(), localFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), localFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new B2LocalException("write_failed", "failed to rename " + tempFile + " to " + localFile + ": " + e, e);
+        }
+    }
+
+    static File tempFileFor(File localFile) {
+        return new File(localFile.getParentFile(), localFile.getName() + TEMP_SUFFIX);
+    }
+
+    private static void makeParentDirectories(File localFile) throws B2LocalException {
+        final File parent = localFile.getParentFile();
+        //noinspection ResultOfMethodCallIgnored
+        parent.mkdirs();
+        if (!parent.isDirectory()) {
+            throw new B2LocalException("write_failed", "failed to create directory " + parent);
+        }
+    }
+
+    private static void deleteQuietly(File file) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private void recordDownloaded(B2FileVersion remote) {
+        downloadedCount.incrementAndGet();
+        downloadedBytes.addAndGet(remote.getContentLength());
+        listener.succeeded(B2SyncAction.DOWNLOAD, remote.getFileName());
+    }
+
+    private void recordFailure(String fileName, B2Exception e) {
+        failedCount.incrementAndGet();
+        synchronized (sampleFailures) {
+            if (sampleFailures.size() < MAX_SAMPLE_FAILURES) {
+                sampleFailures.put(fileName, e);
+            }
+        }
+        listener.failed(B2SyncAction.DOWNLOAD, fileName, e);
+    }
+}
@@ -19,12 +19,29 @@ import java.util.concurrent.Callable;
  * Instances of this class provide helpers to do automatic backoff and retrying
  * for retryable errors.  The backoff behavior is determined by the B2RetryPolicy
  * that are passed in.
+ *
+ * It also tells its B2Metrics when each operation starts and finishes.
  */
 class B2Retryer {
     private final B2Sleeper sleeper;
+    private final B2Metrics metrics;
 
     B2Retryer(B2Sleeper sleeper) {
+        this(sleeper, B2Metrics.NONE);
+    }
+
+    B2Retryer(B2Sleeper sleeper,
+              B2Metrics metrics) {
         this.sleeper = sleeper;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the metrics this reports to, so the things it retries can
+     *         report to them too.
+     */
+    B2Metrics getMetrics() {
+        return metrics;
     }
 
     interface RetryableCallable<T> {
@@ -67,92 +84,128 @@ class B2Retryer {
                   B2RetryPolicy retryPolicy) throws B2Exception {
         final B2Clock clock = B2Clock.get();
 
+        // with B2Metrics.NONE, which is the usual case, don't even read the clock for it.
+        final boolean reportMetrics = (metrics != B2Metrics.NONE);
+        final long startMonoMillis = reportMetrics ? clock.monotonicMillis() : 0;
+        if (reportMetrics) {
+            metrics.operationStarted(operation);
+        }
+
         // keeps trying until we hit an unretryable exception or the retryPolicy says to stop.
         int attemptsSoFar = 0; // we haven't attempted it at all yet.
-        while (true) {
-            final long beforeMonoMillis = clock.monotonicMillis();
+        boolean succeeded = false;
+        try {
+            while (true) {
+                final long beforeMonoMillis = clock.monotonicMillis();
+                final Object attemptEvent = B2FlightRecorder.beginRetryAttempt();
 
-            // i have to set this to a default value because clock.monotonicMillis()
-            // in the finally block below could throw and then tookMillis wouldn't be
-            // set in the catch(Exception) block way below.
-            long tookMillis = -1;
+                // i have to set this to a default value because clock.monotonicMillis()
+                // in the finally block below could throw and then tookMillis wouldn't be
+                // set in the catch(Exception) block way below.
+                long tookMillis = -1;
 
-            try {
                 try {
-                    final boolean isRetry = (attemptsSoFar != 0);
-                    attemptsSoFar++; // about to attempt again.
-
-                    final T value = callable.call(isRetry);
-                    tookMillis = clock.monotonicMillis() - beforeMonoMillis;
-                    retryPolicy.succeeded(operation, attemptsSoFar, tookMillis);
-
-                    return value;
-                } finally {
-                    // be sure to set tookMillis for exception handling below.
-                    tookMillis = clock.monotonicMillis() - beforeMonoMillis;
-                }
-            } catch (B2UnauthorizedException e) {
-                switch (e.getRequestCategory()) {
-                    case ACCOUNT_AUTHORIZATION:
-                        // unauthorized during account authorization is NOT retryable.
-                        retryPolicy.gotUnretryable(operation, attemptsSoFar, tookMillis, e);
-                        throw e;
-
-                    case UPLOADING:
-                        // nothing to do.  the upload url won't have been returned to the
-                        // pool, so it won't be reused.  we'll try again with another url.
-                        // (in fact, the B2UploadUrlCache will always get a new URL for retries.)
-                        if (!retryPolicy.gotRetryableImmediately(operation, attemptsSoFar, tookMillis, e)) {
+                    try {
+                        final boolean isRetry = (attemptsSoFar != 0);
+                        attemptsSoFar++; // about to attempt again.
+
+                        final T value = callable.call(isRetry);
+                        tookMillis = clock.monotonicMillis() - beforeMonoMillis;
+                        retryPolicy.succeeded(operation, attemptsSoFar, tookMillis);
+                        B2FlightRecorder.endRetryAttempt(attemptEvent, operation, attemptsSoFar, null, false, 0);
+
+                        succeeded = true;
+                        return value;
+                    } finally {
+                        // be sure to set tookMillis for exception handling below.
+                        tookMillis = clock.monotonicMillis() - beforeMonoMillis;
+                    }
+                } catch (B2UnauthorizedException e) {
+                    switch (e.getRequestCategory()) {
+                        case ACCOUNT_AUTHORIZATION:
+                            // unauthorized during account authorization is NOT retryable.
+                            retryPolicy.gotUnretryable(operation, attemptsSoFar, tookMillis, e);
+                            B2FlightRecorder.endRetryAttempt(attemptEvent, operation, attemptsSoFar, e, false, 0);
                             throw e;
-                        }
-                        continue; // to go around the loop and try again.
 
-                    case OTHER:
-                        accountAuthCache.clear();
-                        if (!retryPolicy.gotRetryableImmediately(operation, attemptsSoFar, tookMillis, e)) {
-                            throw e;
-                        }
-
-                        //noinspection UnnecessaryContinue
-                        continue; // to go around the loop and try again.
-                }
-            } catch (B2TooManyRequestsException |
-                    B2ServiceUnavailableException |
-                    B2InternalErrorException |
-                    B2RequestTimeoutException |
-                    B2NetworkBaseException e) {
-
-                final Integer waitSeconds = retryPolicy.gotRetryableAfterDelay(operation, attemptsSoFar, tookMillis, e);
-                if (waitSeconds == null) {
-                    // i haven't convinced myself that making a special "too many retries"
-                    // exception to hold the underlying cause is sufficiently useful, so
-                    // let's throw the most recent exception we got.  our documentation
-                    // already says that if the caller gets a retryable exception, we've
-                    // already retried it.
+                        case UPLOADING:
+                            // nothing to do.  the upload url won't have been returned to the
+                            // pool, so it won't be reused.  we'll try again with another url.
+                            // (in fact, the B2UploadUrlCache will always get a new URL for retries.)
+                            if (!endRetryableImmediately(retryPolicy, attemptEvent, operation, attemptsSoFar, tookMillis, e)) {
+                                throw e;
+                            }
+                            continue; // to go around the loop and try again.
+
+                        case OTHER:
+                            accountAuthCache.clear();
+                            if (!endRetryableImmediately(retryPolicy, attemptEvent, operation, attemptsSoFar, tookMillis, e)) {
+                                throw e;
+                            }
+
+                            //noinspection UnnecessaryContinue
+                            continue; // to go around the loop and try again.
+                    }
+                } catch (B2TooManyRequestsException |
+                        B2ServiceUnavailableException |
+                        B2InternalErrorException |
+                        B2RequestTimeoutException |
+                        B2NetworkBaseException e) {
+
+                    final Integer waitSeconds = retryPolicy.gotRetryableAfterDelay(operation, attemptsSoFar, tookMillis, e);
+                    B2FlightRecorder.endRetryAttempt(attemptEvent, operation, attemptsSoFar, e, waitSeconds != null, (waitSeconds == null) ? 0 : waitSeconds);
+                    if (waitSeconds == null) {
+                        // i haven't convinced myself that making a special "too many retries"
+                        // exception to hold the underlying cause is sufficiently useful, so
+                        // let's throw the most recent exception we got.  our documentation
+                        // already says that if the caller gets a retryable exception, we've
+                        // already retried it.
+                        throw e;
+                    }
+
+                    // this sleep might return early, but it won't throw.  if it gets interrupted
+                    // it resets the thread's interrupted flag so that we'll get the error later,
+                    // hopefully during the next attempt (which is probably blocking on something
+                    // like IO).  if we threw from here without retrying, we might surprise our
+                    // B2RetryPolicy since it just told us to try again and we wouldn't.
+                    sleeper.sleepSeconds(waitSeconds);
+                } catch (B2Exception e) {
+                    // other types of exceptions aren't retryable!
+                    retryPolicy.gotUnretryable(operation, attemptsSoFar, tookMillis, e);
+                    B2FlightRecorder.endRetryAttempt(attemptEvent, operation, attemptsSoFar, e, false, 0);
                     throw e;
+                } catch (Exception e) {
+                    // callable.call() throws Exception, so I have to catch Exception (shudder!).
+                    // i don't want to suppress an InterruptedException, so check for it here.
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt(); // reset the flag!
+                    }
+                    retryPolicy.gotUnexpectedUnretryable(operation, attemptsSoFar, tookMillis, e);
+                    B2FlightRecorder.endRetryAttempt(attemptEvent, operation, attemptsSoFar, e, false, 0);
+                    throw new B2Exception("unexpected", 500, null, "unexpected: " + e, e);
                 }
-
-                // this sleep might return early, but it won't throw.  if it gets interrupted
-                // it resets the thread's interrupted flag so that we'll get the error later,
-                // hopefully during the next attempt (which is probably blocking on something
-                // like IO).  if we threw from here without retrying, we might surprise our
-                // B2RetryPolicy since it just told us to try again and we wouldn't.
-                sleeper.sleepSeconds(waitSeconds);
-            } catch (B2Exception e) {
-                // other types of exceptions aren't retryable!
-                retryPolicy.gotUnretryable(operation, attemptsSoFar, tookMillis, e);
-                throw e;
-            } catch (Exception e) {
-                // callable.call() throws Exception, so I have to catch Exception (shudder!).
-                // i don't want to suppress an InterruptedException, so check for it here.
-                if (e instanceof InterruptedException) {
-                    Thread.currentThread().interrupt(); // reset the flag!
-                }
-                retryPolicy.gotUnexpectedUnretryable(operation, attemptsSoFar, tookMillis, e);
-                throw new B2Exception("unexpected", 500, null, "unexpected: " + e, e);
+            }
+        } finally {
+            if (reportMetrics) {
+                metrics.operationFinished(operation, attemptsSoFar, clock.monotonicMillis() - startMonoMillis, succeeded);
             }
         }
     }
 
-
+    /**
+     * Tells the retryPolicy about an error that can be retried right away
+     * and ends the attempt's event.
+     *
+     * @return true iff the policy says to retry.
+     */
+    private static boolean endRetryableImmediately(B2RetryPolicy retryPolicy,
+                                                   Object attemptEvent,
+                                                   String operation,
+                                                   int attemptsSoFar,
+                                                   long tookMillis,
+                                                   B2Exception e) {
+        final boolean willRetry = retryPolicy.gotRetryableImmediately(operation, attemptsSoFar, tookMillis, e);
+        B2FlightRecorder.endRetryAttempt(attemptEvent, operation, attemptsSoFar, e, willRetry, 0);
+        return willRetry;
+    }
 }
\ No newline at end of file
@@ -28,6 +28,9 @@ import com.backblaze.b2.client.structures.B2GetFileInfoRequest;
 import com.backblaze.b2.client.structures.B2GetUploadPartUrlRequest;
 import com.backblaze.b2.client.structures.B2GetUploadUrlRequest;
 import com.backblaze.b2.client.structures.B2HideFileRequest;
+import com.backblaze.b2.client.structures.B2HideFilesListener;
+import com.backblaze.b2.client.structures.B2HideFilesRequest;
+import com.backblaze.b2.client.structures.B2HideFilesResult;
 import com.backblaze.b2.client.structures.B2ListBucketsRequest;
 import com.backblaze.b2.client.structures.B2ListBucketsResponse;
 import com.backblaze.b2.client.structures.B2ListFileNamesRequest;
@@ -35,7 +38,11 @@ import com.backblaze.b2.client.structures.B2ListFileVersionsRequest;
 import com.backblaze.b2.client.structures.B2ListKeysRequest;
 import com.backblaze.b2.client.structures.B2ListPartsRequest;
 import com.backblaze.b2.client.structures.B2ListUnfinishedLargeFilesRequest;
+import com.backblaze.b2.client.structures.B2RestoreRequest;
+import com.backblaze.b2.client.structures.B2RestoreResult;
 import com.backblaze.b2.client.structures.B2StartLargeFileRequest;
+import com.backblaze.b2.client.structures.B2SyncRequest;
+import com.backblaze.b2.client.structures.B2SyncResult;
 import com.backblaze.b2.client.structures.B2UpdateBucketRequest;
 import com.backblaze.b2.client.structures.B2UploadFileRequest;
 import com.backblaze.b2.client.structures.B2UploadPartUrlResponse;
@@ -542,6 +549,130 @@ public interface B2StorageClient extends Closeable {
         return hideFile(B2HideFileRequest.builder(bucketId, fileName).build());
     }
 
+    /**
+     * Hides each of the files named by the request, using the given executor
+     * to have many hides in flight at once.  Each hide is retried just like
+     * hideFile() would retry it.  A file that can't be hidden is reported
+     * to the request's listener and counted in the result, but it doesn't
+     * stop the other files from being hidden.
+     *
+     * @param request  describes the bucket, the names of the files to hide,
+     *                 and the listener to tell about each file.
+     * @param executor the executor to use for hiding files in parallel.
+     *                 the caller retains ownership of the executor and is
+     *                 responsible for shutting it down.
+     * @return a summary of which files were hidden and which weren't.
+     * @throws B2Exception if we couldn't get all of the names to hide or if
+     *                     the executor rejects our work.  hides that have
+     *                     already been started will be finished before
+     *                     this throws.
+     */
+    default B2HideFilesResult hideFiles(B2HideFilesRequest request,
+                                        ExecutorService executor) throws B2Exception {
+        return new B2BulkFileHider(this, executor, request).hideFiles();
+    }
+
+    /**
+     * Just like hideFiles(request, executor) except the request is created from
+     * the given bucketId and fileNames.
+     *
+     * @param bucketId  the id of the bucket containing the files we want to hide
+     * @param fileNames the names of the files we want to hide
+     * @param executor  the executor to use for hiding files in parallel.
+     * @return a summary of which files were hidden and which weren't.
+     * @throws B2Exception if there's any trouble.
+     */
+    default B2HideFilesResult hideFiles(String bucketId,
+                                        Iterable<String> fileNames,
+                                        ExecutorService executor) throws B2Exception {
+        return hideFiles(B2HideFilesRequest.builder(bucketId, fileNames).build(), executor);
+    }
+
+    /**
+     * Just like hideFiles(request, executor) except that it hides every
+     * visible file in the bucket whose name starts with the given prefix.
+     * The names are listed from B2 as the hides progress, so this works
+     * for prefixes with millions of files.
+     *
+     * @param bucketId the id of the bucket containing the files we want to hide
+     * @param prefix   the prefix of the names of the files we want to hide
+     * @param listener null or a listener to tell about each file.
+     * @param executor the executor to use for hiding files in parallel.
+     * @return a summary of which files were hidden and which weren't.
+     * @throws B2Exception if there's any trouble.
+     */
+    default B2HideFilesResult hideFilesWithPrefix(String bucketId,
+                                                  String prefix,
+                                                  B2HideFilesListener listener,
+                                                  ExecutorService executor) throws B2Exception {
+        final B2ListFileNamesRequest listRequest = B2ListFileNamesRequest
+                .builder(bucketId)
+                .setPrefix(prefix)
+                .setMaxFileCount(1000)
+                .build();
+        final B2HideFilesRequest request = B2HideFilesRequest
+                .builder(bucketId, B2BulkFileHider.fileNamesOf(fileNames(listRequest)))
+                .setListener(listener)
+                .build();
+        return hideFiles(request, executor);
+    }
+
+    /**
+     * Makes the files in the bucket whose names start with the request's prefix
+     * match the files in the request's local directory.  New and changed local
+     * files are uploaded, and B2 files without a matching local file are kept,
+     * hidden, or deleted as the request says.  Unchanged files aren't
+     * transferred, so running a sync again after it stopped partway through
+     * just picks up where it left off.
+     *
+     * Each action is retried just like the single-file methods retry.  A file
+     * that still fails is reported to the request's listener and counted in
+     * the result, but it doesn't stop the rest of the sync.
+     *
+     * @param request  describes the directory, the bucket and prefix, and what to do.
+     * @param executor the executor to use for scanning, comparing, and transferring
+     *                 files in parallel.  the caller retains ownership of the
+     *                 executor and is responsible for shutting it down.
+     * @return a summary of what was done.
+     * @throws B2Exception if we couldn't look at all of the files (for instance,
+     *                     because a listing or reading the local directory failed)
+     *                     or if the executor rejects our work.  actions that have
+     *                     already been started will be finished before this throws.
+     */
+    default B2SyncResult sync(B2SyncRequest request,
+                              ExecutorService executor) throws B2Exception {
+        return new B2Syncer(this, executor, request).sync();
+    }
+
+    /**
+     * Makes the files in the request's local directory match the files in the
+     * bucket whose names start with the request's prefix.  It's the inverse of
+     * sync().  Missing and changed files are downloaded (big ones in parallel
+     * ranges) to temporary files which are then renamed into place.  Unchanged
+     * files aren't transferred, so running a restore again after it stopped
+     * partway through just picks up where it left off.  Local files that
+     * aren't in B2 are left alone.
+     *
+     * Each download is retried just like downloadById() retries.  A file
+     * that still fails is reported to the request's listener and counted in
+     * the result, but it doesn't stop the rest of the restore.
+     *
+     * @param request  describes the bucket and prefix, the directory, and the
+     *                 concurrency and bandwidth limits.
+     * @param executor the executor to use for comparing and downloading files
+     *                 in parallel.  the caller retains ownership of the
+     *                 executor and is responsible for shutting it down.
+     * @return a summary of what was done.
+     * @throws B2Exception if we couldn't list all of the files or if the
+     *                     executor rejects our work.  downloads that have
+     *                     already been started will be finished before
+     *                     this throws.
+     */
+    default B2RestoreResult restore(B2RestoreRequest request,
+                                    ExecutorService executor) throws B2Exception {
+        return new B2Restorer(this, executor, request).restore();
+    }
+
     /**
      * Updates the specified bucket as described by the request.
      *
@@ -51,6 +51,7 @@ import com.backblaze.b2.client.structures.B2UpdateBucketRequest;
 import com.backblaze.b2.client.structures.B2UploadFileRequest;
 import com.backblaze.b2.client.structures.B2UploadPartUrlResponse;
 import com.backblaze.b2.client.structures.B2UploadUrlResponse;
+import com.backblaze.b2.util.B2Clock;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -70,6 +71,7 @@ public class B2StorageClientImpl implements B2StorageClient {
     private final B2StorageClientWebifier webifier;
     private final Supplier<B2RetryPolicy> retryPolicySupplier;
     private final B2Retryer retryer;
+    private final B2Metrics metrics;
 
     private final B2AccountAuthorizationCache accountAuthCache;
     private final B2UploadUrlCache uploadUrlCache;
@@ -89,7 +91,7 @@ public class B2StorageClientImpl implements B2StorageClient {
     public B2StorageClientImpl(B2StorageClientWebifier webifier,
                                B2ClientConfig config,
                                Supplier<B2RetryPolicy> retryPolicySupplier) {
-        this(webifier, config, retryPolicySupplier, new B2Retryer(new B2Sleeper()));
+        this(webifier, config, retryPolicySupplier, new B2Retryer(new B2Sleeper(), config.getMetrics()));
     }
 
     /**
@@ -106,8 +108,9 @@ public class B2StorageClientImpl implements B2StorageClient {
         this.webifier = webifier;
         this.retryPolicySupplier = retryPolicySupplier;
         this.retryer = retryer;
-        this.accountAuthCache = new B2AccountAuthorizationCache(webifier, config.getAccountAuthorizer());
-        this.uploadUrlCache = new B2UploadUrlCache(webifier, accountAuthCache);
+        this.metrics = retryer.getMetrics();
+        this.accountAuthCache = new B2AccountAuthorizationCache(webifier, config.getAccountAuthorizer(), metrics);
+        this.uploadUrlCache = new B2UploadUrlCache(webifier, accountAuthCache, metrics);
     }
 
     /**
@@ -205,8 +208,20 @@ public class B2StorageClientImpl implements B2StorageClient {
                 accountAuthCache,
                 (isRetry) -> {
                     final B2UploadUrlResponse uploadUrlResponse = uploadUrlCache.get(request.getBucketId(), isRetry);
-                    final B2FileVersion version = webifier.uploadFile(uploadUrlResponse, request);
-                    uploadUrlCache.unget(uploadUrlResponse);
+                    final long beforeMonoMillis = B2Clock.get().monotonicMillis();
+                    final B2FileVersion version;
+                    try {
+                        version = webifier.uploadFile(uploadUrlResponse, request);
+                    } catch (B2Exception e) {
+                        uploadUrlCache.failed(uploadUrlResponse, e);
+                        throw e;
+                    }
+                    uploadUrlCache.unget(uploadUrlResponse,
+                            version.getContentLength(),
+                            B2Clock.get().monotonicMillis() - beforeMonoMillis);
+                    if (metrics != B2Metrics.NONE) {
+                        metrics.bytesUploaded(version.getContentLength());
+                    }
                     return version;
                 },
                 retryPolicySupplier.get());
@@ -293,7 +308,7 @@ public class B2StorageClientImpl implements B2StorageClient {
                 accountAuthCache,
                 () -> {
                     B2AccountAuthorization accountAuth = accountAuthCache.get();
-                    webifier.downloadById(accountAuth, request, handler);
+                    downloadAndCount("b2_download_file_by_id", handler, sink -> webifier.downloadById(accountAuth, request, sink));
                     return 0; // to meet Callable api!
                 },
                 retryPolicySupplier.get());
@@ -329,12 +344,44 @@ public class B2StorageClientImpl implements B2StorageClient {
                 accountAuthCache,
                 () -> {
                     B2AccountAuthorization accountAuth = accountAuthCache.get();
-                    webifier.downloadByName(accountAuth, request, handler);
+                    downloadAndCount("b2_download_file_by_name", handler, sink -> webifier.downloadByName(accountAuth, request, sink));
                     return 0; // to meet Callable api!
                 },
                 retryPolicySupplier.get());
     }
 
+    private interface DownloadCall {
+        void download(B2ContentSink sink) throws B2Exception;
+    }
+
+    /**
+     * Does the download, counting its bytes for the metrics and the flight
+     * recorder if either wants them.  (the handler is only wrapped if one does.)
+     */
+    private void downloadAndCount(String operation,
+                                  B2ContentSink handler,
+                                  DownloadCall downloadCall) throws B2Exception {
+        final Object downloadEvent = B2FlightRecorder.beginDownload();
+        if (metrics == B2Metrics.NONE && downloadEvent == null) {
+            downloadCall.download(handler);
+            return;
+        }
+
+        final B2ContentSinkWithByteCount countingHandler = new B2ContentSinkWithByteCount(handler);
+        boolean succeeded = false;
+        try {
+            downloadCall.download(countingHandler);
+            succeeded = true;
+        } finally {
+            B2FlightRecorder.endDownload(downloadEvent,
+                    operation,
+                    countingHandler.getBytesRead(),
+                    countingHandler.getResponseStartedNanos(),
+                    succeeded);
+        }
+        metrics.bytesDownloaded(countingHandler.getBytesRead());
+    }
+
     @Override
     public void deleteFileVersion(B2DeleteFileVersionRequest request) throws B2Exception {
         retryer.doRetry("b2_delete_file_version",
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.contentSources.B2ContentTypes;
+import com.backblaze.b2.client.contentSources.B2FileContentSource;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.exceptions.B2RuntimeException;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2ListFileNamesRequest;
+import com.backblaze.b2.client.structures.B2ListFileVersionsRequest;
+import com.backblaze.b2.client.structures.B2SyncAction;
+import com.backblaze.b2.client.structures.B2SyncListener;
+import com.backblaze.b2.client.structures.B2SyncRequest;
+import com.backblaze.b2.client.structures.B2SyncResult;
+import com.backblaze.b2.client.structures.B2UploadFileRequest;
+import com.backblaze.b2.util.B2Sha1;
+import com.backblaze.b2.util.B2StringUtil;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * B2Syncer makes the files in a bucket (under a prefix) match the files
+ * in a local directory.
+ *
+ * It walks the local directory and a fileNames() listing side by side.  Both
+ * are in B2's name order, so this is a merge that only needs to hold one
+ * entry from each side in memory, no matter how many files there are.
+ * For each name:
+ *   * a local file that isn't in B2 is uploaded.
+ *   * a B2 file that isn't local is kept, hidden, or deleted, as requested.
+ *     deleting deletes every version of the name, not just the newest one,
+ *     so an older version doesn't become the live file.
+ *   * a file in both places is uploaded if the sizes differ.  If the sizes
+ *     match and so do the src_last_modified_millis, it's left alone.
+ *     Otherwise, if requested, the local SHA-1 is computed and compared to
+ *     the one B2 has, and the file is only uploaded if they differ.
+ *
+ * Because of the last rule, re-running a sync after it was interrupted (or
+ * after making a few local changes) only transfers what's different.
+ *
+ * Small uploads, SHA-1 computations, hides, and deletes run on the executor.
+ * They share a single budget: at most request.getMaxInFlight() of them are
+ * queued or running at once.  Large files are handled by this thread, one at
+ * a time, and their parts are uploaded in parallel on the executor.  (Doing
+ * large files on the executor's threads could deadlock a bounded executor,
+ * since every thread could end up waiting on parts that can't get a thread.)
+ *
+ * As with the other bulk operations, each call gets the client's normal retry
+ * behavior.  A file that still fails is reported to the listener and counted
+ * in the result; it doesn't stop the rest of the sync.
+ *
+ * THREAD-SAFETY: an instance is meant to be used for one sync() call
+ *    from one thread.  (It uses the executor's threads internally.)
+ */
+class B2Syncer {
+    // how many failures do we keep in the result?  the listener sees all of them.
+    static final int MAX_SAMPLE_FAILURES = 100;
+
+    private static final String UNVERIFIED_PREFIX = "unverified:";
+    private static final String NO_SHA1 = "none";
+
+    private final B2StorageClient client;
+    private final ExecutorService executor;
+    private final B2SyncRequest request;
+    private final B2SyncListener listener;
+
+    private final AtomicLong unchangedCount = new AtomicLong();
+    private final AtomicLong uploadedCount = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicLong hiddenCount = new AtomicLong();
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    // protected by synchronized(sampleFailures)
+    private final Map<String, B2Exception> sampleFailures = new LinkedHashMap<>();
+
+    B2Syncer(B2StorageClient client,
+             ExecutorService executor,
+             B2SyncRequest request) {
+        this.client = client;
+        this.executor = executor;
+        this.request = request;
+        this.listener = request.getListener();
+    }
+
+    /**
+     * Does the sync.
+     *
+     * @return a summary of what was done.
+     * @throws B2Exception if we couldn't finish looking at all of the files
+     *                     (for instance, because a listing or reading a local
+     *                     directory failed) or if the executor rejected our work.
+     *                     any actions that were already started are finished first.
+     */
+    B2SyncResult sync() throws B2Exception {
+        final B2FilePolicy filePolicy = client.getFilePolicy();
+        final B2InFlightLimiter limiter = new B2InFlightLimiter(executor, request.getMaxInFlight());
+
+        B2Exception trouble = null;
+        try {
+            final Iterator<B2LocalFile> locals = new B2LocalFileScanner(request.getLocalDir(), executor);
+            final Iterator<B2FileVersion> remotes = listUploads(client, request.getBucketId(), request.getPrefix());
+
+            B2LocalFile local = nextOrNull(locals);
+            B2FileVersion remote = nextOrNull(remotes);
+            while (local != null || remote != null) {
+                final int cmp;
+                if (local == null) {
+                    cmp = 1;
+                } else if (remote == null) {
+                    cmp = -1;
+                } else {
+                    cmp = B2StringUtil.compareUtf8(local.getName(), relativeName(remote));
+                }
+
+                if (cmp < 0) {
+                    handleLocalOnly(filePolicy, limiter, local);
+                    local = nextOrNull(locals);
+                } else if (cmp > 0) {
+                    handleRemoteOnly(limiter, remote);
+                    remote = nextOrNull(remotes);
+                } else {
+                    handleBoth(filePolicy, limiter, local, remote);
+                    local = nextOrNull(locals);
+                    remote = nextOrNull(remotes);
+                }
+            }
+        } catch (B2RuntimeException e) {
+            // a listing or the local scan couldn't get more entries.  if it was
+            // wrapping a B2Exception (as our iterators do), use that.
+            trouble = (e.getCause() instanceof B2Exception) ?
+                    (B2Exception) e.getCause() :
+                    new B2LocalException("trouble", "failed to get next file to sync: " + e, e);
+        } catch (B2Exception e) {
+            trouble = e;
+        }
+
+        // wait for everything we started before reporting anything.
+        limiter.awaitAll();
+
+        if (trouble != null) {
+            throw trouble;
+        }
+
+        synchronized (sampleFailures) {
+            return new B2SyncResult(
+                    unchangedCount.get(),
+                    uploadedCount.get(),
+                    uploadedBytes.get(),
+                    hiddenCount.get(),
+                    deletedCount.get(),
+                    failedCount.get(),
+                    new LinkedHashMap<>(sampleFailures));
+        }
+    }
+
+    /**
+     * @return an iterator over the uploaded files in the bucket whose names
+     *         start with the prefix, in name order.  folders and anything else
+     *         that isn't an upload are skipped.
+     */
+    static Iterator<B2FileVersion> listUploads(B2StorageClient client,
+                                               String bucketId,
+                                               String prefix) throws B2Exception {
+        final B2ListFileNamesRequest listRequest = B2ListFileNamesRequest
+                .builder(bucketId)
+                .setPrefix(prefix)
+                .setMaxFileCount(1000)
+                .build();
+        final Iterator<B2FileVersion> versions = client.fileNames(listRequest).iterator();
+        return new Iterator<B2FileVersion>() {
+            private B2FileVersion nextVersion = findNext();
+
+            @Override
+            public boolean hasNext() {
+                return nextVersion != null;
+            }
+
+            @Override
+            public B2FileVersion next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final B2FileVersion version = nextVersion;
+                nextVersion = findNext();
+                return version;
+            }
+
+            private B2FileVersion findNext() {
+                while (versions.hasNext()) {
+                    final B2FileVersion version = versions.next();
+                    if (version.isUpload()) {
+                        return version;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static <T> T nextOrNull(Iterator<T> iter) {
+        return iter.hasNext() ? iter.next() : null;
+    }
+
+    private String relativeName(B2FileVersion remote) {
+        return remote.getFileName().substring(request.getPrefix().length());
+    }
+
+    private String b2Name(B2LocalFile local) {
+        return request.getPrefix() + local.getName();
+    }
+
+    private void handleLocalOnly(B2FilePolicy filePolicy,
+                                 B2InFlightLimiter limiter,
+                                 B2LocalFile local) throws B2LocalException {
+        if (filePolicy.shouldBeLargeFile(local.getLength())) {
+            upload(filePolicy, local, null);
+        } else {
+            limiter.submit(() -> upload(filePolicy, local, null));
+        }
+    }
+
+    private void handleRemoteOnly(B2InFlightLimiter limiter,
+                                  B2FileVersion remote) throws B2LocalException {
+        switch (request.getExtraFileAction()) {
+            case KEEP:
+                break;
+
+            case HIDE:
+                limiter.submit(() -> hide(remote));
+                break;
+
+            case DELETE:
+                limiter.submit(() -> delete(remote));
+                break;
+        }
+    }
+
+    private void handleBoth(B2FilePolicy filePolicy,
+                            B2InFlightLimiter limiter,
+                            B2LocalFile local,
+                            B2FileVersion remote) throws B2LocalException {
+        if (local.getLength() != remote.getContentLength()) {
+            handleLocalOnly(filePolicy, limiter, local);
+            return;
+        }
+
+        if (hasSrcLastModifiedMillis(remote, local.getLastModifiedMillis())) {
+            unchangedCount.incrementAndGet();
+            return;
+        }
+
+        if (!request.getCompareSha1s()) {
+            handleLocalOnly(filePolicy, limiter, local);
+            return;
+        }
+
+        if (filePolicy.shouldBeLargeFile(local.getLength())) {
+            compareAndMaybeUpload(filePolicy, local, remote);
+        } else {
+            limiter.submit(() -> compareAndMaybeUpload(filePolicy, local, remote));
+        }
+    }
+
+    /**
+     * Computes the local file's SHA-1 and uploads the file unless B2 already
+     * has the same contents.
+     */
+    private void compareAndMaybeUpload(B2FilePolicy filePolicy,
+                                       B2LocalFile local,
+                                       B2FileVersion remote) {
+        final String remoteSha1 = remoteSha1OrNull(remote);
+        if (remoteSha1 == null) {
+            // nothing to compare against, so all we can do is upload it.
+            upload(filePolicy, local, null);
+            return;
+        }
+
+        final String localSha1;
+        try (InputStream in = new FileInputStream(local.getFile())) {
+            localSha1 = B2Sha1.hexSha1OfInputStream(in);
+        } catch (IOException e) {
+            recordFailure(B2SyncAction.UPLOAD, b2Name(local),
+                    new B2LocalException("read_failed", "failed to compute sha1 of " + local.getFile() + ": " + e, e));
+            return;
+        }
+
+        if (B2Sha1.equalHexSha1s(localSha1, remoteSha1)) {
+            unchangedCount.incrementAndGet();
+        } else {
+            // we already paid for the sha1, so give it to the upload.
+            upload(filePolicy, local, localSha1);
+        }
+    }
+
+    /**
+     * @return true iff the remote file's src_last_modified_millis is lastModifiedMillis.
+     */
+    static boolean hasSrcLastModifiedMillis(B2FileVersion remote,
+                                            long lastModifiedMillis) {
+        return Long.toString(lastModifiedMillis).equals(remote.getFileInfo().get(B2Headers.SRC_LAST_MODIFIED_MILLIS_INFO_NAME));
+    }
+
+    /**
+     * @return the SHA-1 of the remote file's contents, or null if it's not known.
+     */
+    static String remoteSha1OrNull(B2FileVersion remote) {
+        String sha1 = remote.getContentSha1();
+        if (sha1 == null || sha1.equals(NO_SHA1)) {
+            return remote.getLargeFileSha1OrNull();
+        }
+        if (sha1.startsWith(UNVERIFIED_PREFIX)) {
+            sha1 = sha1.substring(UNVERIFIED_PREFIX.length());
+        }
+        return sha1;
+    }
+
+    private void upload(B2FilePolicy filePolicy,
+                        B2LocalFile local,
+                        String sha1OrNull) {
+        final String fileName = b2Name(local);
+        final B2FileContentSource source = B2FileContentSource
+                .builder(local.getFile())
+                .setSha1(sha1OrNull)
+                .build();
+        final boolean isLarge = filePolicy.shouldBeLargeFile(local.getLength());
+
+        final B2UploadFileRequest.Builder builder = B2UploadFileRequest
+                .builder(request.getBucketId(), fileName, B2ContentTypes.B2_AUTO, source);
+        if (isLarge) {
+            // the webifier only sends src_last_modified_millis for small files,
+            // and we need it to recognize unchanged large files next time.
+            builder.setCustomField(B2Headers.SRC_LAST_MODIFIED_MILLIS_INFO_NAME, Long.toString(local.getLastModifiedMillis()));
+        }
+        final B2UploadFileRequest uploadRequest = builder.build();
+
+        try {
+            if (isLarge) {
+                client.uploadLargeFile(uploadRequest, executor);
+            } else {
+                client.uploadSmallFile(uploadRequest);
+            }
+        } catch (B2Exception e) {
+            recordFailure(B2SyncAction.UPLOAD, fileName, e);
+            return;
+        } catch (RuntimeException e) {
+            recordFailure(B2SyncAction.UPLOAD, fileName, new B2LocalException("trouble", "exception while trying to upload file: " + e, e));
+            return;
+        }
+
+        uploadedCount.incrementAndGet();
+        uploadedBytes.addAndGet(local.getLength());
+        listener.succeeded(B2SyncAction.UPLOAD, fileName);
+    }
+
+    private void hide(B2FileVersion remote) {
+        try {
+            client.hideFile(request.getBucketId(), remote.getFileName());
+        } catch (B2Exception e) {
+            recordFailure(B2SyncAction.HIDE, remote.getFileName(), e);
+            return;
+        } catch (RuntimeException e) {
+            recordFailure(B2SyncAction.HIDE, remote.getFileName(), new B2LocalException("trouble", "exception while trying to hide file: " + e, e));
+            return;
+        }
+
+        hiddenCount.incrementAndGet();
+        listener.succeeded(B2SyncAction.HIDE, remote.getFileName());
+    }
+
+    private void delete(B2FileVersion remote) {
+        try {
+            deleteAllVersions(remote.getFileName());
+        } catch (B2Exception e) {
+            recordFailure(B2SyncAction.DELETE, remote.getFileName(), e);
+            return;
+        } catch (B2RuntimeException e) {
+            // the listing wraps the B2Exception it got, if it got one.
+            final B2Exception cause = (e.getCause() instanceof B2Exception) ?
+                    (B2Exception) e.getCause() :
+                    new B2LocalException("trouble", "exception while trying to delete file: " + e, e);
+            recordFailure(B2SyncAction.DELETE, remote.getFileName(), cause);
+            return;
+        } catch (RuntimeException e) {
+            recordFailure(B2SyncAction.DELETE, remote.getFileName(), new B2LocalException("trouble", "exception while trying to delete file: " + e, e));
+            return;
+        }
+
+        deletedCount.incrementAndGet();
+        listener.succeeded(B2SyncAction.DELETE, remote.getFileName());
+    }
+
+    /**
+     * Deletes every version of fileName, including hide markers.  The
+     * listing starts at the name, so it only goes past it by one entry.
+     */
+    private void deleteAllVersions(String fileName) throws B2Exception {
+        final B2ListFileVersionsRequest listRequest = B2ListFileVersionsRequest
+                .builder(request.getBucketId())
+                .setStartFileName(fileName)
+                .setPrefix(fileName)
+                .build();
+        for (B2FileVersion version : client.fileVersions(listRequest)) {
+            if (!version.getFileName().equals(fileName)) {
+                break;
+            }
+            client.deleteFileVersion(version);
+        }
+    }
+
+    private void recordFailure(B2SyncAction action, String fileName, B2Exception e) {
+        failedCount.incrementAndGet();
+        synchronized (sampleFailures) {
+            if (sampleFailures.size() < MAX_SAMPLE_FAILURES) {
+                sampleFailures.put(fileName, e);
+            }
+        }
+        listener.failed(action, fileName, e);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.util.B2Clock;
+import com.backblaze.b2.util.B2Preconditions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * A B2TtlCache is a concurrent map whose entries expire after a fixed time
+ * and which keeps about maxEntries of them.  It's like B2BoundedLruMap, but
+ * it's safe to use from many threads without any external locking.
+ *
+ * The keys are kept sorted by the given comparator, so a caller can remove
+ * a whole range of related keys efficiently.
+ *
+ * When a put() takes it past maxEntries, expired entries are dropped and,
+ * if that's not enough, the least recently used entries are dropped until
+ * there's some room to spare, so the cost of evicting is spread out over
+ * many puts.  Only one thread evicts at a time; the others keep going.
+ *
+ * THREAD-SAFETY: This class is thread-safe.
+ */
+class B2TtlCache<K, V> {
+    private static class Entry<V> {
+        final V value;
+        final long expiresAtMillis;
+        volatile long lastUsedMillis;
+
+        Entry(V value, long nowMillis, long ttlMillis) {
+            this.value = value;
+            this.expiresAtMillis = nowMillis + ttlMillis;
+            this.lastUsedMillis = nowMillis;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final ConcurrentSkipListMap<K, Entry<V>> map;
+
+    // ConcurrentSkipListMap.size() walks the whole map, so we keep our own count.
+    private final AtomicInteger size = new AtomicInteger();
+
+    // held by whichever thread is evicting.  others don't wait for it.
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    B2TtlCache(int maxEntries,
+               long ttlMillis,
+               Comparator<? super K> comparator) {
+        B2Preconditions.checkArgument(maxEntries > 0, "maxEntries must be positive");
+        B2Preconditions.checkArgument(ttlMillis > 0, "ttlMillis must be positive");
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.map = new ConcurrentSkipListMap<>(comparator);
+    }
+
+    /**
+     * @return the value for the key, or null if there isn't one or it's expired.
+     */
+    V getOrNull(K key) {
+        final Entry<V> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        final long now = now();
+        if (now >= entry.expiresAtMillis) {
+            if (map.remove(key, entry)) {
+                size.decrementAndGet();
+            }
+            return null;
+        }
+
+        entry.lastUsedMillis = now;
+        return entry.value;
+    }
+
+    void put(K key, V value) {
+        final Entry<V> previous = map.put(key, new Entry<>(value, now(), ttlMillis));
+        if (previous == null && size.incrementAndGet() > maxEntries) {
+            evict();
+        }
+    }
+
+    void remove(K key) {
+        if (map.remove(key) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes the entries whose keys are at or after fromKey, stopping
+     * at the first key that isn't inRange.
+     */
+    void removeRange(K fromKey, Predicate<K> inRange) {
+        for (K key : map.tailMap(fromKey, true).keySet()) {
+            if (!inRange.test(key)) {
+                return;
+            }
+            remove(key);
+        }
+    }
+
+    void clear() {
+        for (K key : map.keySet()) {
+            remove(key);
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            // someone else is already doing it.
+            return;
+        }
+        try {
+            // first, drop anything that's expired anyway.
+            final long now = now();
+            final List<Map.Entry<K, Entry<V>>> live = new ArrayList<>();
+            for (Map.Entry<K, Entry<V>> mapEntry : map.entrySet()) {
+                if (now >= mapEntry.getValue().expiresAtMillis) {
+                    if (map.remove(mapEntry.getKey(), mapEntry.getValue())) {
+                        size.decrementAndGet();
+                    }
+                } else {
+                    live.add(mapEntry);
+                }
+            }
+
+            // then drop the least recently used until we're 10% below the max,
+            // so we don't have to do this again on the very next put.
+            final int target = maxEntries - (maxEntries / 10);
+            if (size.get() <= target) {
+                return;
+            }
+            live.sort(Comparator.comparingLong(mapEntry -> mapEntry.getValue().lastUsedMillis));
+            for (Map.Entry<K, Entry<V>> mapEntry : live) {
+                if (size.get() <= target) {
+                    return;
+                }
+                if (map.remove(mapEntry.getKey(), mapEntry.getValue())) {
+                    size.decrementAndGet();
+                    evictionCount.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static long now() {
+        return B2Clock.get().monotonicMillis();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.util.B2Clock;
+import com.backblaze.b2.util.B2Preconditions;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * B2UploadConcurrencyTuner decides how many parts of a large file to upload
+ * at once, by watching the aggregate throughput, the way TCP's congestion
+ * control watches for loss.
+ *
+ * It starts with INITIAL_CONCURRENCY parts at once, and measures the
+ * throughput over "windows" of as many parts as the current limit.  At the
+ * end of each window:
+ *   * if the throughput beat the best so far by at least MIN_IMPROVEMENT,
+ *     the limit grows: it doubles until the first time it doesn't help
+ *     ("slow start") and grows by one after that.
+ *   * if it didn't, and the limit is above the best one, the extra
+ *     parts didn't help, so it goes back to the best one.
+ *   * if it didn't, and the limit is the best one, conditions may have
+ *     changed, so it takes this throughput as the new best and probes one
+ *     higher.
+ * Any failed attempt halves the limit and ends slow start.  The limit is
+ * always between 1 and maxConcurrency.
+ *
+ * The uploader calls acquire() before starting each part and partFinished()
+ * after each part, whether it succeeded or not.  Once a part has failed for
+ * good, acquire() returns false so no more parts are started.
+ *
+ * THREAD-SAFETY: this class is thread-safe.
+ */
+class B2UploadConcurrencyTuner {
+    static final int INITIAL_CONCURRENCY = 2;
+    static final double MIN_IMPROVEMENT = 0.1;
+
+    private final int maxConcurrency;
+
+    // a lock instead of synchronized, so virtual threads waiting in acquire()
+    // don't pin their carriers.  everything below is guarded by it.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition partFinished = lock.newCondition();
+
+    private int limit;
+    private int inFlight;
+    private boolean slowStart = true;
+    private boolean aborted;
+
+    // the best throughput seen so far, and the limit that got it.
+    private double bestBytesPerSecond;
+    private int bestLimit;
+
+    // the current window.
+    private long windowStartMillis = -1;
+    private int windowParts;
+    private long windowBytes;
+
+    B2UploadConcurrencyTuner(int maxConcurrency) {
+        B2Preconditions.checkArgument(maxConcurrency > 0, "maxConcurrency must be positive");
+        this.maxConcurrency = maxConcurrency;
+        this.limit = Math.min(INITIAL_CONCURRENCY, maxConcurrency);
+        this.bestLimit = limit;
+    }
+
+    /**
+     * Waits until another part may be started, and counts it as started.
+     *
+     * @return true if it may be started, or false if a part has failed,
+     *         so there's no point in starting more.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!aborted && inFlight >= limit) {
+                partFinished.await();
+            }
+            if (aborted) {
+                return false;
+            }
+            if (windowStartMillis < 0) {
+                windowStartMillis = B2Clock.get().monotonicMillis();
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * An attempt to upload a part failed.  It might be retried.
+     */
+    void attemptFailed() {
+        lock.lock();
+        try {
+            limit = Math.max(1, limit / 2);
+            bestLimit = Math.min(bestLimit, limit);
+            slowStart = false;
+            startNewWindow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A part that was acquire()d has finished, after all of its attempts.
+     *
+     * @param bytes the length of the part.
+     * @param succeeded true iff it was uploaded.
+     */
+    void partFinished(long bytes,
+                      boolean succeeded) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (!succeeded) {
+                aborted = true;
+            } else {
+                windowParts++;
+                windowBytes += bytes;
+                if (windowParts >= limit) {
+                    adjust();
+                }
+            }
+            partFinished.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the caller must hold the lock.
+    private void adjust() {
+        final long elapsedMillis = Math.max(1, B2Clock.get().monotonicMillis() - windowStartMillis);
+        final double bytesPerSecond = (windowBytes * 1000.0) / elapsedMillis;
+
+        if (bytesPerSecond >= bestBytesPerSecond * (1 + MIN_IMPROVEMENT)) {
+            bestBytesPerSecond = bytesPerSecond;
+            bestLimit = limit;
+            grow();
+        } else if (limit > bestLimit) {
+            limit = bestLimit;
+            slowStart = false;
+        } else {
+            bestBytesPerSecond = bytesPerSecond;
+            grow();
+        }
+        startNewWindow();
+    }
+
+    private void grow() {
+        limit = Math.min(maxConcurrency, slowStart ? (limit * 2) : (limit + 1));
+    }
+
+    private void startNewWindow() {
+        windowStartMillis = B2Clock.get().monotonicMillis();
+        windowParts = 0;
+        windowBytes = 0;
+    }
+}
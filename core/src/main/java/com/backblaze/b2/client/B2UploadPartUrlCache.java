@@ -24,6 +24,7 @@ class B2UploadPartUrlCache {
     private final B2StorageClientWebifier webifier;
     private final B2AccountAuthorizationCache accountAuthCache;
     private final String largeFileId;
+    private final B2Metrics metrics;
 
     // this is a deque so that i can inexpensively pull from the
     // front and add to the end so that answers don't get stuck too long.
@@ -32,9 +33,17 @@ class B2UploadPartUrlCache {
     B2UploadPartUrlCache(B2StorageClientWebifier webifier,
                          B2AccountAuthorizationCache accountAuthCache,
                          String largeFileId) {
+        this(webifier, accountAuthCache, largeFileId, B2Metrics.NONE);
+    }
+
+    B2UploadPartUrlCache(B2StorageClientWebifier webifier,
+                         B2AccountAuthorizationCache accountAuthCache,
+                         String largeFileId,
+                         B2Metrics metrics) {
         this.webifier = webifier;
         this.accountAuthCache = accountAuthCache;
         this.largeFileId = largeFileId;
+        this.metrics = metrics;
     }
 
     /**
@@ -58,12 +67,14 @@ class B2UploadPartUrlCache {
             synchronized (this) {
                 B2UploadPartUrlResponse response = responses.pollFirst();
                 if (response != null) {
+                    metrics.cacheLookup(B2Metrics.UPLOAD_PART_URL_CACHE, true);
                     return response;
                 }
             }
         }
 
         // we don't have an answer yet, so ask the server for one and return it.
+        metrics.cacheLookup(B2Metrics.UPLOAD_PART_URL_CACHE, false);
         final B2GetUploadPartUrlRequest request = B2GetUploadPartUrlRequest.builder(largeFileId).build();
         return webifier.getUploadPartUrl(accountAuthCache.get(), request);
     }
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.exceptions.B2NetworkBaseException;
+import com.backblaze.b2.client.exceptions.B2RequestTimeoutException;
+import com.backblaze.b2.client.exceptions.B2ServiceUnavailableException;
+import com.backblaze.b2.client.exceptions.B2TooManyRequestsException;
+import com.backblaze.b2.client.exceptions.B2UnauthorizedException;
+import com.backblaze.b2.util.B2Clock;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * B2UploadPodHealth keeps track of how well each upload pod (each host that
+ * upload urls point at) has been doing, so that the B2UploadUrlCache can
+ * stop reusing urls for pods that are much slower than the rest or that
+ * have said they're too busy.
+ *
+ * For each pod, it keeps exponentially weighted moving averages of the
+ * throughput of its uploads, their latency and how often they fail.  A pod
+ * is unhealthy if:
+ *   * it returned a 503 in the last UNAVAILABLE_MILLIS, or
+ *   * at least half of its recent uploads failed, or
+ *   * its throughput is less than SLOW_FRACTION of the median throughput of
+ *     the pods we know about.  (this is only judged once there are at least
+ *     MIN_PODS_FOR_MEDIAN pods with MIN_SAMPLES successful uploads each.)
+ *
+ * Pods we haven't seen enough of are healthy, and score as the median.
+ *
+ * Only failures that say something about the pod count against it: 5xx
+ * errors, request timeouts (408), too many requests (429), network and
+ * connection errors, and expired auth tokens.  Other failures, such as a
+ * 400 for a bad file name, are the request's fault, not the pod's.  The
+ * url is still discarded after them, but the pod's stats don't change.
+ *
+ * THREAD-SAFETY: this class is thread-safe.
+ */
+class B2UploadPodHealth {
+    // how much weight each new sample gets in the moving averages.
+    private static final double ALPHA = 0.3;
+
+    // how many outcomes (or successes, for throughput) we need to see for a pod before judging it.
+    static final int MIN_SAMPLES = 3;
+
+    // how many judged pods we need before their median means anything.
+    static final int MIN_PODS_FOR_MEDIAN = 3;
+
+    // a pod with less than this fraction of the median throughput is unhealthy.
+    static final double SLOW_FRACTION = 0.25;
+
+    // a pod with at least this recent failure rate is unhealthy.
+    private static final double MAX_FAILURE_RATE = 0.5;
+
+    // how long to stay away from a pod after it returns a 503.
+    static final long UNAVAILABLE_MILLIS = 60 * 1000;
+
+    // upload urls are for a few hundred pods at most in practice, so this
+    // is plenty.  forgetting the least recently used ones is harmless.
+    private static final int MAX_PODS = 1000;
+
+    // the code for a 401 that means the upload url's auth token expired.
+    private static final String EXPIRED_AUTH_TOKEN = "expired_auth_token";
+
+    private final Map<String, PodStats> perPod = B2BoundedLruMap.withMax(MAX_PODS);
+
+    // the median throughput of the judged pods, or 0 if there aren't enough.
+    // it's recomputed whenever a throughput changes.
+    private double medianBytesPerSecond;
+
+    private static class PodStats {
+        private int outcomes;
+        private int successes;
+        private double bytesPerSecond;
+        private double latencyMillis;
+        private double failureRate;
+        private long unavailableUntilMillis;
+    }
+
+    /**
+     * @param url an upload url.
+     * @return the host of the url, which identifies the pod it's on.
+     */
+    static String podOf(String url) {
+        final int hostStart = url.indexOf("://");
+        final int start = (hostStart < 0) ? 0 : hostStart + 3;
+        final int end = url.indexOf('/', start);
+        return (end < 0) ? url.substring(start) : url.substring(start, end);
+    }
+
+    synchronized void succeeded(String pod,
+                                long bytes,
+                                long tookMillis) {
+        final PodStats stats = perPod.computeIfAbsent(pod, k -> new PodStats());
+        final double sampleBytesPerSecond = (bytes * 1000.0) / Math.max(1, tookMillis);
+        if (stats.successes == 0) {
+            stats.bytesPerSecond = sampleBytesPerSecond;
+            stats.latencyMillis = tookMillis;
+        } else {
+            stats.bytesPerSecond = average(stats.bytesPerSecond, sampleBytesPerSecond);
+            stats.latencyMillis = average(stats.latencyMillis, tookMillis);
+        }
+        stats.failureRate = average(stats.failureRate, 0);
+        stats.outcomes++;
+        stats.successes++;
+        updateMedian();
+    }
+
+    synchronized void failed(String pod,
+                             B2Exception e) {
+        if (!isPodsFault(e)) {
+            return;
+        }
+        final PodStats stats = perPod.computeIfAbsent(pod, k -> new PodStats());
+        stats.failureRate = average(stats.failureRate, 1);
+        stats.outcomes++;
+        if (e instanceof B2ServiceUnavailableException) {
+            stats.unavailableUntilMillis = B2Clock.get().monotonicMillis() + UNAVAILABLE_MILLIS;
+        }
+    }
+
+    synchronized boolean isHealthy(String pod) {
+        final PodStats stats = perPod.get(pod);
+        if (stats == null) {
+            return true;
+        }
+        if (B2Clock.get().monotonicMillis() < stats.unavailableUntilMillis) {
+            return false;
+        }
+        if (stats.outcomes >= MIN_SAMPLES && stats.failureRate >= MAX_FAILURE_RATE) {
+            return false;
+        }
+        return stats.successes < MIN_SAMPLES ||
+                medianBytesPerSecond == 0 ||
+                stats.bytesPerSecond >= SLOW_FRACTION * medianBytesPerSecond;
+    }
+
+    /**
+     * @return a number that's bigger for pods we expect to upload faster.
+     */
+    synchronized double score(String pod) {
+        final PodStats stats = perPod.get(pod);
+        if (stats == null || stats.successes < MIN_SAMPLES) {
+            return medianBytesPerSecond;
+        }
+        return stats.bytesPerSecond * (1 - stats.failureRate);
+    }
+
+    /**
+     * @return the moving average of the pod's upload latency, or 0 if we
+     *         haven't seen it succeed.  (it's for diagnosis; pods are judged
+     *         by throughput, which includes latency.)
+     */
+    synchronized double getLatencyMillis(String pod) {
+        final PodStats stats = perPod.get(pod);
+        return (stats == null) ? 0 : stats.latencyMillis;
+    }
+
+    /**
+     * @return true iff the failure says something about how the pod is doing.
+     */
+    static boolean isPodsFault(B2Exception e) {
+        if (e instanceof B2LocalException) {
+            // it never got to the pod.
+            return false;
+        }
+        if (e instanceof B2NetworkBaseException ||
+                e instanceof B2RequestTimeoutException ||
+                e instanceof B2TooManyRequestsException) {
+            return true;
+        }
+        if (e instanceof B2UnauthorizedException) {
+            return EXPIRED_AUTH_TOKEN.equals(e.getCode());
+        }
+        return 500 <= e.getStatus() && e.getStatus() < 600;
+    }
+
+    private void updateMedian() {
+        final double[] judged = perPod.values()
+                .stream()
+                .filter(s -> s.successes >= MIN_SAMPLES)
+                .mapToDouble(s -> s.bytesPerSecond)
+                .toArray();
+        if (judged.length < MIN_PODS_FOR_MEDIAN) {
+            medianBytesPerSecond = 0;
+            return;
+        }
+        Arrays.sort(judged);
+        medianBytesPerSecond = judged[judged.length / 2];
+    }
+
+    private static double average(double average,
+                                  double sample) {
+        return average + ALPHA * (sample - average);
+    }
+}
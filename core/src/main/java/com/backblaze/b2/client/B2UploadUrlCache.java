@@ -10,15 +10,25 @@ import com.backblaze.b2.client.structures.B2UploadUrlResponse;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The B2UploadUrlCache holds upload urls for buckets.
  * When you need one, call get() with your bucket id.
  * If you use it and it works, unget() it when you're done.
- * If there's trouble, don't unget() it so it won't be used again.
+ * If there's trouble, don't unget() it so it won't be used again,
+ * and tell the cache with failed().
+ *
+ * It keeps track of how well each upload pod is doing with a
+ * B2UploadPodHealth.  Urls for unhealthy pods are dropped instead of
+ * being reused, and get() hands out the url for the pod with the best
+ * score, so the fastest pods get the most uploads.
  *
  * THREAD-SAFETY: this class may be used from multiple threads safely.
+ *    It uses a ReentrantLock rather than synchronized, like
+ *    B2AccountAuthorizationCache, so it's friendly to virtual threads.
  */
 class B2UploadUrlCache {
     // how many buckets are we willing to track at once?
@@ -26,6 +36,7 @@ class B2UploadUrlCache {
 
     private final B2StorageClientWebifier webifier;
     private final B2AccountAuthorizationCache accountAuthCache;
+    private final B2Metrics metrics;
 
     // this is a LinkedHashMap because i want get rid of the least recently
     // used entries when we've got more than 100 buckets.  that's the most
@@ -42,12 +53,24 @@ class B2UploadUrlCache {
     // it should be roughly bound by the number of threads that have
     // ever uploaded to a given bucket simultaneously and that's probably
     // good enough.
+    //
+    // guarded by lock.
     private final Map<String, Deque<B2UploadUrlResponse>> perBucket;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final B2UploadPodHealth podHealth = new B2UploadPodHealth();
 
     B2UploadUrlCache(B2StorageClientWebifier webifier,
                      B2AccountAuthorizationCache accountAuthCache) {
+        this(webifier, accountAuthCache, B2Metrics.NONE);
+    }
+
+    B2UploadUrlCache(B2StorageClientWebifier webifier,
+                     B2AccountAuthorizationCache accountAuthCache,
+                     B2Metrics metrics) {
         this.webifier = webifier;
         this.accountAuthCache = accountAuthCache;
+        this.metrics = metrics;
         perBucket = B2BoundedLruMap.withMax(MAX_BUCKETS);
     }
 
@@ -71,32 +94,106 @@ class B2UploadUrlCache {
         // we won't build up lots of URLs.
         if (!isRetry) {
             // first, look to see if we have an answer already.
-            synchronized (this) {
+            lock.lock();
+            try {
                 Deque<B2UploadUrlResponse> responses = perBucket.get(bucketId);
                 if (responses != null) {
-                    B2UploadUrlResponse response = responses.pollFirst();
+                    B2UploadUrlResponse response = pollBest(responses);
                     if (response != null) {
+                        metrics.cacheLookup(B2Metrics.UPLOAD_URL_CACHE, true);
                         return response;
                     }
                 }
+            } finally {
+                lock.unlock();
             }
         }
 
         // we don't have an answer yet, so ask the server for one and return it.
+        metrics.cacheLookup(B2Metrics.UPLOAD_URL_CACHE, false);
         final B2GetUploadUrlRequest request = B2GetUploadUrlRequest.builder(bucketId).build();
         return webifier.getUploadUrl(accountAuthCache.get(), request);
     }
 
+    /**
+     * Removes the unhealthy responses and returns the one with the best
+     * score, or null if there aren't any left.  When scores tie, the one
+     * nearest the front wins.
+     */
+    private B2UploadUrlResponse pollBest(Deque<B2UploadUrlResponse> responses) {
+        B2UploadUrlResponse best = null;
+        double bestScore = 0;
+        final Iterator<B2UploadUrlResponse> iter = responses.iterator();
+        while (iter.hasNext()) {
+            final B2UploadUrlResponse response = iter.next();
+            final String pod = B2UploadPodHealth.podOf(response.getUploadUrl());
+            if (!podHealth.isHealthy(pod)) {
+                iter.remove();
+                continue;
+            }
+            final double score = podHealth.score(pod);
+            if (best == null || score > bestScore) {
+                best = response;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            responses.removeFirstOccurrence(best);
+        }
+        return best;
+    }
+
     /**
      * Call this to offer a response back to the cache for later use.
      * Only call this if you successfully used the response to do an upload.
      * Do not use the response again after calling this because it may
      *   given to another thread before this method even returns.
      *
+     * The response is dropped instead if its pod is unhealthy.
+     *
      * @param response the response to return to the cache for later use.
      */
-    synchronized void unget(B2UploadUrlResponse response) {
-        Deque<B2UploadUrlResponse> responses = perBucket.computeIfAbsent(response.getBucketId(), k -> new ArrayDeque<>());
-        responses.offerLast(response);
+    void unget(B2UploadUrlResponse response) {
+        if (!podHealth.isHealthy(B2UploadPodHealth.podOf(response.getUploadUrl()))) {
+            return;
+        }
+        lock.lock();
+        try {
+            Deque<B2UploadUrlResponse> responses = perBucket.computeIfAbsent(response.getBucketId(), k -> new ArrayDeque<>());
+            responses.offerLast(response);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Like unget(response), but first notes how long the upload took, to
+     * keep track of how well the response's pod is doing.
+     *
+     * @param response the response that was used.
+     * @param bytes how many bytes were uploaded.
+     * @param tookMillis how long the upload took.
+     */
+    void unget(B2UploadUrlResponse response,
+               long bytes,
+               long tookMillis) {
+        podHealth.succeeded(B2UploadPodHealth.podOf(response.getUploadUrl()), bytes, tookMillis);
+        unget(response);
+    }
+
+    /**
+     * Call this when an upload with the response failed, to keep track of
+     * how well its pod is doing.  Don't unget() the response.
+     *
+     * @param response the response that was used.
+     * @param e what went wrong.
+     */
+    void failed(B2UploadUrlResponse response,
+                B2Exception e) {
+        podHealth.failed(B2UploadPodHealth.podOf(response.getUploadUrl()), e);
+    }
+
+    /*forTests*/ B2UploadPodHealth getPodHealth() {
+        return podHealth;
     }
 }
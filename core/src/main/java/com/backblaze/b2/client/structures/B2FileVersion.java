@@ -32,12 +32,15 @@ public class B2FileVersion {
     @B2Json.optional  // for example, large files don't have action in response from b2_start_large_file.
     private final long contentLength;
     @B2Json.optional  // for example, hidden files, "folder"s don't have contentType
+    @B2Json.intern    // listings repeat the same few content types over and over.
     private final String contentType;
     @B2Json.optional // for example, "folder"s don't have contentSha1s nor do largeFiles.
     private final String contentSha1;
     @B2Json.optional
+    @B2Json.intern    // the names are shared; the values usually aren't.
     private final Map<String,String> fileInfo;
     @B2Json.optional  // for example, large files don't have action in response from b2_start_large_file.
+    @B2Json.intern
     private final String action;
     @B2Json.required
     private final long uploadTimestamp;
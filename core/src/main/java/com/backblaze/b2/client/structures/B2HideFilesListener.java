@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.structures;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+
+/**
+ * A B2HideFilesListener is called once for each file name processed
+ * by B2StorageClient.hideFiles(), after that file's hide has either
+ * succeeded or failed for good.  (Retryable errors will already have
+ * been retried by the time failed() is called.)
+ *
+ * THREAD-SAFETY: Listeners will be called from the executor's threads and may be
+ * called from multiple threads simultaneously.  As a result, implementations
+ * of B2HideFilesListener must be thread-safe.
+ *
+ * PERFORMANCE: do not do anything that might block the thread for any appreciable
+ *              amount of time.  doing so will slow down the hiding.
+ */
+public interface B2HideFilesListener {
+
+    /**
+     * Called after the file named in the request has been hidden.
+     *
+     * @param request the request that succeeded.
+     * @param hideMarker the fileVersion that's hiding the file.
+     */
+    void hidden(B2HideFileRequest request,
+                B2FileVersion hideMarker);
+
+    /**
+     * Called after we've given up trying to hide the file named in the request.
+     *
+     * @param request the request that failed.
+     * @param e the exception that made us give up.
+     */
+    void failed(B2HideFileRequest request,
+                B2Exception e);
+
+    /**
+     * @return A listener that doesn't do anything when called.
+     */
+    static B2HideFilesListener noopListener() {
+        return new B2HideFilesListener() {
+            @Override
+            public void hidden(B2HideFileRequest request, B2FileVersion hideMarker) {
+            }
+
+            @Override
+            public void failed(B2HideFileRequest request, B2Exception e) {
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.structures;
+
+import com.backblaze.b2.util.B2Preconditions;
+
+/**
+ * B2HideFilesRequest describes a batch of files to hide in one bucket.
+ *
+ * The file names are consumed lazily, in order, as hides are handed to the
+ * executor, so it's fine for fileNames to be a very long stream, such as
+ * one built on a B2ListFilesIterable.
+ */
+public class B2HideFilesRequest {
+    // how many hides may be waiting on the executor or running at once, by default.
+    public static final int DEFAULT_MAX_IN_FLIGHT = 100;
+
+    private final String bucketId;
+    private final Iterable<String> fileNames;
+    private final B2HideFilesListener listener;
+    private final int maxInFlight;
+
+    private B2HideFilesRequest(String bucketId,
+                               Iterable<String> fileNames,
+                               B2HideFilesListener listener,
+                               int maxInFlight) {
+        B2Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        this.bucketId = bucketId;
+        this.fileNames = fileNames;
+        this.listener = (listener != null) ? listener : B2HideFilesListener.noopListener();
+        this.maxInFlight = maxInFlight;
+    }
+
+    public String getBucketId() {
+        return bucketId;
+    }
+
+    public Iterable<String> getFileNames() {
+        return fileNames;
+    }
+
+    public B2HideFilesListener getListener() {
+        return listener;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public static Builder builder(String bucketId,
+                                  Iterable<String> fileNames) {
+        return new Builder(bucketId, fileNames);
+    }
+
+    public static class Builder {
+        private final String bucketId;
+        private final Iterable<String> fileNames;
+        private B2HideFilesListener listener;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+        public Builder(String bucketId,
+                       Iterable<String> fileNames) {
+            this.bucketId = bucketId;
+            this.fileNames = fileNames;
+        }
+
+        public Builder setListener(B2HideFilesListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public Builder setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public B2HideFilesRequest build() {
+            return new B2HideFilesRequest(bucketId, fileNames, listener, maxInFlight);
+        }
+    }
+}
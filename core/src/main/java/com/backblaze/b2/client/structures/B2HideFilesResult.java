@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.structures;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * B2HideFilesResult summarizes what happened during a B2StorageClient.hideFiles() call.
+ *
+ * Every file name is counted as either hidden or failed.  To bound memory when
+ * hiding millions of files, only the first few failures are kept; the listener
+ * sees every one of them.
+ */
+public class B2HideFilesResult {
+    private final long hiddenCount;
+    private final long failedCount;
+
+    // fileName -> exception, for (at most) the first few failures, in the order they happened.
+    private final Map<String, B2Exception> sampleFailures;
+
+    public B2HideFilesResult(long hiddenCount,
+                             long failedCount,
+                             Map<String, B2Exception> sampleFailures) {
+        this.hiddenCount = hiddenCount;
+        this.failedCount = failedCount;
+        this.sampleFailures = Collections.unmodifiableMap(sampleFailures);
+    }
+
+    public long getHiddenCount() {
+        return hiddenCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public boolean hasFailures() {
+        return failedCount != 0;
+    }
+
+    public Map<String, B2Exception> getSampleFailures() {
+        return sampleFailures;
+    }
+
+    @Override
+    public String toString() {
+        return "B2HideFilesResult{" +
+                "hiddenCount=" + hiddenCount +
+                ", failedCount=" + failedCount +
+                ", sampleFailures=" + sampleFailures.keySet() +
+                '}';
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.structures;
+
+import com.backblaze.b2.util.B2Preconditions;
+
+import java.io.File;
+
+/**
+ * B2RestoreRequest describes how to make the files in a local directory
+ * match the files in a bucket (under a prefix).  It's the inverse of
+ * a B2SyncRequest.
+ *
+ * The B2 file named prefix + "a/b.txt" corresponds to the local file
+ * "a/b.txt" (relative to localDir), so the prefix should usually be
+ * empty or end with a "/".
+ */
+public class B2RestoreRequest {
+    // how many downloads (or parts of downloads) may be waiting on the executor or running at once, by default.
+    public static final int DEFAULT_MAX_IN_FLIGHT = 20;
+
+    // files bigger than this are downloaded in ranges of this size, in parallel, by default.
+    public static final long DEFAULT_RANGE_SIZE = 100L * 1000 * 1000;
+
+    private final String bucketId;
+    private final File localDir;
+    private final String prefix;
+    private final boolean compareSha1s;
+    private final int maxInFlight;
+    private final long rangeSize;
+    private final long maxBytesPerSecond;
+    private final B2SyncListener listener;
+
+    private B2RestoreRequest(String bucketId,
+                             File localDir,
+                             String prefix,
+                             boolean compareSha1s,
+                             int maxInFlight,
+                             long rangeSize,
+                             long maxBytesPerSecond,
+                             B2SyncListener listener) {
+        B2Preconditions.checkArgumentIsNotNull(bucketId, "bucketId");
+        B2Preconditions.checkArgumentIsNotNull(localDir, "localDir");
+        B2Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        B2Preconditions.checkArgument(rangeSize > 0, "rangeSize must be positive");
+        B2Preconditions.checkArgument(maxBytesPerSecond >= 0, "maxBytesPerSecond must not be negative");
+        this.bucketId = bucketId;
+        this.localDir = localDir;
+        this.prefix = (prefix != null) ? prefix : "";
+        this.compareSha1s = compareSha1s;
+        this.maxInFlight = maxInFlight;
+        this.rangeSize = rangeSize;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.listener = (listener != null) ? listener : B2SyncListener.noopListener();
+    }
+
+    public String getBucketId() {
+        return bucketId;
+    }
+
+    public File getLocalDir() {
+        return localDir;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return true iff a local file whose size matches its B2 file, but whose
+     *         modification time doesn't, should have its SHA-1 computed and
+     *         compared before deciding to download it.  if false, such files
+     *         are always downloaded.
+     */
+    public boolean getCompareSha1s() {
+        return compareSha1s;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getRangeSize() {
+        return rangeSize;
+    }
+
+    /**
+     * @return the most bytes per second to download, across all of the
+     *         downloads, or zero for no limit.
+     */
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    public B2SyncListener getListener() {
+        return listener;
+    }
+
+    public static Builder builder(String bucketId,
+                                  File localDir) {
+        return new Builder(bucketId, localDir);
+    }
+
+    public static class Builder {
+        private final String bucketId;
+        private final File localDir;
+        private String prefix;
+        private boolean compareSha1s = true;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private long rangeSize = DEFAULT_RANGE_SIZE;
+        private long maxBytesPerSecond;
+        private B2SyncListener listener;
+
+        public Builder(String bucketId,
+                       File localDir) {
+            this.bucketId = bucketId;
+            this.localDir = localDir;
+        }
+
+        public Builder setPrefix(String prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        public Builder setCompareSha1s(boolean compareSha1s) {
+            this.compareSha1s = compareSha1s;
+            return this;
+        }
+
+        public Builder setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder setRangeSize(long rangeSize) {
+            this.rangeSize = rangeSize;
+            return this;
+        }
+
+        public Builder setMaxBytesPerSecond(long maxBytesPerSecond) {
+            this.maxBytesPerSecond = maxBytesPerSecond;
+            return this;
+        }
+
+        public Builder setListener(B2SyncListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public B2RestoreRequest build() {
+            return new B2RestoreRequest(
+                    bucketId,
+                    localDir,
+                    prefix,
+                    compareSha1s,
+                    maxInFlight,
+                    rangeSize,
+                    maxBytesPerSecond,
+                    listener);
+        }
+    }
+}
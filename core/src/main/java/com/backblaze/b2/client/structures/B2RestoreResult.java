@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.structures;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * B2RestoreResult summarizes what happened during a restore.
+ *
+ * To bound memory when restoring millions of files, only the first few
+ * failures are kept; the listener sees every one of them.
+ */
+public class B2RestoreResult {
+    private final long unchangedCount;
+    private final long downloadedCount;
+    private final long downloadedBytes;
+    private final long failedCount;
+
+    // fileName -> exception, for (at most) the first few failures, in the order they happened.
+    private final Map<String, B2Exception> sampleFailures;
+
+    public B2RestoreResult(long unchangedCount,
+                           long downloadedCount,
+                           long downloadedBytes,
+                           long failedCount,
+                           Map<String, B2Exception> sampleFailures) {
+        this.unchangedCount = unchangedCount;
+        this.downloadedCount = downloadedCount;
+        this.downloadedBytes = downloadedBytes;
+        this.failedCount = failedCount;
+        this.sampleFailures = Collections.unmodifiableMap(sampleFailures);
+    }
+
+    public long getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    public long getDownloadedCount() {
+        return downloadedCount;
+    }
+
+    public long getDownloadedBytes() {
+        return downloadedBytes;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public boolean hasFailures() {
+        return failedCount != 0;
+    }
+
+    public Map<String, B2Exception> getSampleFailures() {
+        return sampleFailures;
+    }
+
+    @Override
+    public String toString() {
+        return "B2RestoreResult{" +
+                "unchangedCount=" + unchangedCount +
+                ", downloadedCount=" + downloadedCount +
+                ", downloadedBytes=" + downloadedBytes +
+                ", failedCount=" + failedCount +
+                ", sampleFailures=" + sampleFailures.keySet() +
+                '}';
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.structures;
+
+/**
+ * B2SyncAction says what a sync or restore did (or tried to do) to a single file.
+ */
+public enum B2SyncAction {
+    // the local file was uploaded to B2 because B2 didn't have it or had a different version.
+    UPLOAD,
+
+    // the B2 file had no matching local file, so it was hidden.
+    HIDE,
+
+    // the B2 file had no matching local file, so its latest version was deleted.
+    DELETE,
+
+    // the B2 file had no matching local file, or the local file was different, so it was downloaded.
+    DOWNLOAD,
+}
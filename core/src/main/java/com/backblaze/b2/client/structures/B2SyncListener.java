@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.structures;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+
+/**
+ * A B2SyncListener is told about each action a sync or restore takes,
+ * after that action has either succeeded or failed for good.  Files that
+ * didn't need any action aren't reported.
+ *
+ * THREAD-SAFETY: Listeners will be called from arbitrary threads and may be
+ * called from multiple threads simultaneously.  As a result, implementations
+ * of B2SyncListener must be thread-safe.
+ *
+ * PERFORMANCE: do not do anything that might block the thread for any appreciable
+ *              amount of time.  doing so will slow down the sync.
+ */
+public interface B2SyncListener {
+
+    /**
+     * Called after an action succeeded.
+     *
+     * @param action what was done.
+     * @param fileName the B2 name of the file it was done to.
+     */
+    void succeeded(B2SyncAction action,
+                   String fileName);
+
+    /**
+     * Called after we've given up on an action.
+     *
+     * @param action what we were trying to do.
+     * @param fileName the B2 name of the file we were trying to do it to.
+     * @param e the exception that made us give up.
+     */
+    void failed(B2SyncAction action,
+                String fileName,
+                B2Exception e);
+
+    /**
+     * @return A listener that doesn't do anything when called.
+     */
+    static B2SyncListener noopListener() {
+        return new B2SyncListener() {
+            @Override
+            public void succeeded(B2SyncAction action, String fileName) {
+            }
+
+            @Override
+            public void failed(B2SyncAction action, String fileName, B2Exception e) {
+            }
+        };
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.structures;
+
+import com.backblaze.b2.util.B2Preconditions;
+
+import java.io.File;
+
+/**
+ * B2SyncRequest describes how to make the files in a bucket (under a prefix)
+ * match the files in a local directory.
+ *
+ * The local file "a/b.txt" (relative to localDir) corresponds to the
+ * B2 file named prefix + "a/b.txt", so the prefix should usually be
+ * empty or end with a "/".
+ */
+public class B2SyncRequest {
+    // how many uploads, hides, or deletes may be waiting on the executor or running at once, by default.
+    public static final int DEFAULT_MAX_IN_FLIGHT = 100;
+
+    /**
+     * What to do with B2 files that don't have a matching local file.
+     */
+    public enum ExtraFileAction {
+        KEEP,
+        HIDE,
+        DELETE,
+    }
+
+    private final File localDir;
+    private final String bucketId;
+    private final String prefix;
+    private final ExtraFileAction extraFileAction;
+    private final boolean compareSha1s;
+    private final int maxInFlight;
+    private final B2SyncListener listener;
+
+    private B2SyncRequest(File localDir,
+                          String bucketId,
+                          String prefix,
+                          ExtraFileAction extraFileAction,
+                          boolean compareSha1s,
+                          int maxInFlight,
+                          B2SyncListener listener) {
+        B2Preconditions.checkArgumentIsNotNull(localDir, "localDir");
+        B2Preconditions.checkArgumentIsNotNull(bucketId, "bucketId");
+        B2Preconditions.checkArgumentIsNotNull(extraFileAction, "extraFileAction");
+        B2Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+        this.localDir = localDir;
+        this.bucketId = bucketId;
+        this.prefix = (prefix != null) ? prefix : "";
+        this.extraFileAction = extraFileAction;
+        this.compareSha1s = compareSha1s;
+        this.maxInFlight = maxInFlight;
+        this.listener = (listener != null) ? listener : B2SyncListener.noopListener();
+    }
+
+    public File getLocalDir() {
+        return localDir;
+    }
+
+    public String getBucketId() {
+        return bucketId;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public ExtraFileAction getExtraFileAction() {
+        return extraFileAction;
+    }
+
+    /**
+     * @return true iff a local file whose size matches its B2 file, but whose
+     *         modification time doesn't, should have its SHA-1 computed and
+     *         compared before deciding to upload it.  if false, such files
+     *         are always uploaded.
+     */
+    public boolean getCompareSha1s() {
+        return compareSha1s;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public B2SyncListener getListener() {
+        return listener;
+    }
+
+    public static Builder builder(File localDir,
+                                  String bucketId) {
+        return new Builder(localDir, bucketId);
+    }
+
+    public static class Builder {
+        private final File localDir;
+        private final String bucketId;
+        private String prefix;
+        private ExtraFileAction extraFileAction = ExtraFileAction.KEEP;
+        private boolean compareSha1s = true;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private B2SyncListener listener;
+
+        public Builder(File localDir,
+                       String bucketId) {
+            this.localDir = localDir;
+            this.bucketId = bucketId;
+        }
+
+        public Builder setPrefix(String prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        public Builder setExtraFileAction(ExtraFileAction extraFileAction) {
+            this.extraFileAction = extraFileAction;
+            return this;
+        }
+
+        public Builder setCompareSha1s(boolean compareSha1s) {
+            this.compareSha1s = compareSha1s;
+            return this;
+        }
+
+        public Builder setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder setListener(B2SyncListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public B2SyncRequest build() {
+            return new B2SyncRequest(
+                    localDir,
+                    bucketId,
+                    prefix,
+                    extraFileAction,
+                    compareSha1s,
+                    maxInFlight,
+                    listener);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.structures;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * B2SyncResult summarizes what happened during a sync.
+ *
+ * To bound memory when syncing millions of files, only the first few
+ * failures are kept; the listener sees every one of them.
+ */
+public class B2SyncResult {
+    private final long unchangedCount;
+    private final long uploadedCount;
+    private final long uploadedBytes;
+    private final long hiddenCount;
+    private final long deletedCount;
+    private final long failedCount;
+
+    // fileName -> exception, for (at most) the first few failures, in the order they happened.
+    private final Map<String, B2Exception> sampleFailures;
+
+    public B2SyncResult(long unchangedCount,
+                        long uploadedCount,
+                        long uploadedBytes,
+                        long hiddenCount,
+                        long deletedCount,
+                        long failedCount,
+                        Map<String, B2Exception> sampleFailures) {
+        this.unchangedCount = unchangedCount;
+        this.uploadedCount = uploadedCount;
+        this.uploadedBytes = uploadedBytes;
+        this.hiddenCount = hiddenCount;
+        this.deletedCount = deletedCount;
+        this.failedCount = failedCount;
+        this.sampleFailures = Collections.unmodifiableMap(sampleFailures);
+    }
+
+    public long getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    public long getUploadedCount() {
+        return uploadedCount;
+    }
+
+    public long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    public long getHiddenCount() {
+        return hiddenCount;
+    }
+
+    public long getDeletedCount() {
+        return deletedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public boolean hasFailures() {
+        return failedCount != 0;
+    }
+
+    public Map<String, B2Exception> getSampleFailures() {
+        return sampleFailures;
+    }
+
+    @Override
+    public String toString() {
+        return "B2SyncResult{" +
+                "unchangedCount=" + unchangedCount +
+                ", uploadedCount=" + uploadedCount +
+                ", uploadedBytes=" + uploadedBytes +
+                ", hiddenCount=" + hiddenCount +
+                ", deletedCount=" + deletedCount +
+                ", failedCount=" + failedCount +
+                ", sampleFailures=" + sampleFailures.keySet() +
+                '}';
+    }
+}
@@ -5,6 +5,7 @@
 package com.backblaze.b2.client.structures;
 
 import com.backblaze.b2.client.contentSources.B2ContentSource;
+import com.backblaze.b2.util.B2Preconditions;
 
 import java.util.Map;
 import java.util.TreeMap;
@@ -16,6 +17,7 @@ public class B2UploadFileRequest {
     private final B2ContentSource contentSource;
     private final Map<String, String> fileInfo;
     private final B2UploadListener listener;
+    private final int autoTunedMaxConcurrentParts;
 
 
     private B2UploadFileRequest(String bucketId,
@@ -23,13 +25,15 @@ public class B2UploadFileRequest {
                                 String contentType,
                                 Map<String, String> fileInfo,
                                 B2ContentSource contentSource,
-                                B2UploadListener listener) {
+                                B2UploadListener listener,
+                                int autoTunedMaxConcurrentParts) {
         this.bucketId = bucketId;
         this.fileName = fileName;
         this.contentType = contentType;
         this.fileInfo = fileInfo;  // make sorted, immutable copyOf?!
         this.contentSource = contentSource;
         this.listener = (listener != null) ? listener : B2UploadListener.noopListener();
+        this.autoTunedMaxConcurrentParts = autoTunedMaxConcurrentParts;
     }
 
     public String getBucketId() {
@@ -56,6 +60,14 @@ public class B2UploadFileRequest {
         return listener;
     }
 
+    /**
+     * @return the most parts of a large file to upload at once when the
+     *         concurrency is being tuned automatically, or 0 if it isn't.
+     */
+    public int getAutoTunedMaxConcurrentParts() {
+        return autoTunedMaxConcurrentParts;
+    }
+
     public static Builder builder(String bucketId,
                                   String fileName,
                                   String contentType,
@@ -70,6 +82,7 @@ public class B2UploadFileRequest {
         private B2ContentSource source;
         private Map<String, String> info;
         private B2UploadListener listener;
+        private int autoTunedMaxConcurrentParts;
 
         Builder(String bucketId,
                 String fileName,
@@ -99,13 +112,33 @@ public class B2UploadFileRequest {
             return this;
         }
 
+        /**
+         * If this is set, uploading a large file starts with a couple of parts
+         * at once, and uploads more at once for as long as that makes the total
+         * throughput better, backing off when there are errors.  Otherwise, all
+         * of the parts are given to the executor at once, so the number of
+         * threads it has decides how many are uploaded at once.
+         *
+         * When it's set, the executor should have at least maxConcurrentParts
+         * threads, or they'll be the limit.  It's ignored for small files.
+         *
+         * @param maxConcurrentParts the most parts to upload at once.
+         * @return this builder.
+         */
+        public Builder setAutoTunedConcurrency(int maxConcurrentParts) {
+            B2Preconditions.checkArgument(maxConcurrentParts > 0, "maxConcurrentParts must be positive");
+            this.autoTunedMaxConcurrentParts = maxConcurrentParts;
+            return this;
+        }
+
         public B2UploadFileRequest build() {
             return new B2UploadFileRequest(bucketId,
                     fileName,
                     contentType,
                     info,
                     source,
-                    listener);
+                    listener,
+                    autoTunedMaxConcurrentParts);
         }
     }
 }
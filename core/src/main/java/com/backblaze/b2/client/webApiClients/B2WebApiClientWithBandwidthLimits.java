@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.webApiClients;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.util.B2BandwidthLimiter;
+import com.backblaze.b2.util.B2InputStreamWithBandwidthLimiter;
+
+import java.io.InputStream;
+
+/**
+ * B2WebApiClientWithBandwidthLimits wraps another B2WebApiClient and keeps
+ * all of the content it uploads and downloads under the rates of the given
+ * B2BandwidthLimiters.  Since every upload and part upload of a client
+ * sends its content through postDataReturnJson() and every download reads
+ * it through getContent(), wrapping a client's B2WebApiClient caps the
+ * whole client, no matter how many transfers are running at once.
+ *
+ * The upload and download limiters are separate, so they can have
+ * different rates.  Pass the same limiter for both to cap the total.
+ * Either one may be null to leave that direction alone.  Change the rates
+ * at any time with B2BandwidthLimiter.setBytesPerSecond().
+ *
+ * B2StorageHttpClientBuilder wraps its B2WebApiClient in one of these when
+ * B2ClientConfig has a bandwidth limiter.
+ *
+ * Only content is limited.  JSON requests and responses are small, and
+ * delaying them would just slow down the calls the transfers depend on.
+ *
+ * THREAD-SAFETY: This class is thread-safe if the delegate is.
+ */
+public class B2WebApiClientWithBandwidthLimits implements B2WebApiClient {
+    private final B2WebApiClient delegate;
+    private final B2BandwidthLimiter uploadLimiterOrNull;
+    private final B2BandwidthLimiter downloadLimiterOrNull;
+
+    public B2WebApiClientWithBandwidthLimits(B2WebApiClient delegate,
+                                             B2BandwidthLimiter uploadLimiterOrNull,
+                                             B2BandwidthLimiter downloadLimiterOrNull) {
+        this.delegate = delegate;
+        this.uploadLimiterOrNull = uploadLimiterOrNull;
+        this.downloadLimiterOrNull = downloadLimiterOrNull;
+    }
+
+    @Override
+    public <ResponseType> ResponseType postJsonReturnJson(String url,
+                                                          B2Headers headersOrNull,
+                                                          Object request,
+                                                          Class<ResponseType> responseClass) throws B2Exception {
+        return delegate.postJsonReturnJson(url, headersOrNull, request, responseClass);
+    }
+
+    @Override
+    public <ResponseType> ResponseType postDataReturnJson(String url,
+                                                          B2Headers headersOrNull,
+                                                          InputStream contentSource,
+                                                          long contentLength,
+                                                          Class<ResponseType> responseClass) throws B2Exception {
+        final InputStream in = (uploadLimiterOrNull == null) ?
+                contentSource :
+                new B2InputStreamWithBandwidthLimiter(contentSource, uploadLimiterOrNull);
+        return delegate.postDataReturnJson(url, headersOrNull, in, contentLength, responseClass);
+    }
+
+    @Override
+    public void getContent(String url,
+                           B2Headers headersOrNull,
+                           B2ContentSink handler) throws B2Exception {
+        if (downloadLimiterOrNull == null) {
+            delegate.getContent(url, headersOrNull, handler);
+            return;
+        }
+        delegate.getContent(url, headersOrNull, (responseHeaders, in) ->
+                handler.readContent(responseHeaders, new B2InputStreamWithBandwidthLimiter(in, downloadLimiterOrNull)));
+    }
+
+    @Override
+    public B2Headers head(String url,
+                          B2Headers headersOrNull) throws B2Exception {
+        return delegate.head(url, headersOrNull);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.webApiClients;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.exceptions.B2NetworkException;
+import com.backblaze.b2.util.B2Clock;
+import com.backblaze.b2.util.B2ClockSim;
+import com.backblaze.b2.util.B2Preconditions;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * B2WebApiClientWithChaos wraps another B2WebApiClient and makes it
+ * misbehave the way the network and the service sometimes do.  Each call
+ * can be delayed, have its content moved at a capped rate, have its
+ * connection reset partway through the content, or fail with an HTTP error
+ * before being sent.  What happens is set by a Rule for each endpoint
+ * (such as "b2_upload_part"), with a default Rule for the others.
+ *
+ * It's meant for measuring how well the retryer, the retry policy and the
+ * large file uploader do under a realistic mix of failures.  It can wrap
+ * a real transport, or one that never leaves the process.
+ *
+ * All of the choices come from one Random made with the seed.  Every call
+ * draws the same four numbers from it, whatever its Rule says, so adding
+ * or changing the Rule for one endpoint doesn't change what happens to
+ * calls to the others.  Waiting is done on the B2Clock: when it's a
+ * B2ClockSim, waiting just advances it, so a single-threaded run with the
+ * same seed replays exactly, and takes no real time.  (With several
+ * threads, the order of the draws depends on the scheduler.)
+ *
+ * A reset shows up the way it would from a real transport: reading the
+ * content throws a SocketException, and the call fails with a retryable
+ * B2NetworkException.
+ *
+ * THREAD-SAFETY: This class is thread-safe if the delegate is.  B2ClockSim
+ *    isn't, so only wait on it from one thread.
+ */
+public class B2WebApiClientWithChaos implements B2WebApiClient {
+    private final B2WebApiClient delegate;
+    private final Rule defaultRule;
+    private final Map<String, Rule> rulesByEndpoint;
+
+    // protected by synchronized(random)
+    private final Random random;
+
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+    private final AtomicLong injectedResetCount = new AtomicLong();
+    private final AtomicLong injectedWaitMillis = new AtomicLong();
+
+    private B2WebApiClientWithChaos(Builder builder) {
+        this.delegate = builder.delegate;
+        this.defaultRule = builder.defaultRule;
+        this.rulesByEndpoint = new HashMap<>(builder.rulesByEndpoint);
+        this.random = new Random(builder.randomSeed);
+    }
+
+    public static Builder builder(B2WebApiClient delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * @return how many calls were failed with an injected HTTP error.
+     */
+    public long getInjectedErrorCount() {
+        return injectedErrorCount.get();
+    }
+
+    /**
+     * @return how many calls had their connection reset partway through.
+     */
+    public long getInjectedResetCount() {
+        return injectedResetCount.get();
+    }
+
+    /**
+     * @return the total milliseconds of latency and bandwidth waits added.
+     */
+    public long getInjectedWaitMillis() {
+        return injectedWaitMillis.get();
+    }
+
+    @Override
+    public <ResponseType> ResponseType postJsonReturnJson(String url,
+                                                          B2Headers headersOrNull,
+                                                          Object request,
+                                                          Class<ResponseType> responseClass) throws B2Exception {
+        startCall(url);
+        return delegate.postJsonReturnJson(url, headersOrNull, request, responseClass);
+    }
+
+    @Override
+    public <ResponseType> ResponseType postDataReturnJson(String url,
+                                                          B2Headers headersOrNull,
+                                                          InputStream contentSource,
+                                                          long contentLength,
+                                                          Class<ResponseType> responseClass) throws B2Exception {
+        final Plan plan = startCall(url);
+        final ChaosInputStream in = new ChaosInputStream(contentSource, plan.rule.bytesPerSecond, plan.pickResetAfterBytes(contentLength));
+        try {
+            return delegate.postDataReturnJson(url, headersOrNull, in, contentLength, responseClass);
+        } catch (B2Exception e) {
+            throw translateIfReset(in, url, e);
+        }
+    }
+
+    @Override
+    public void getContent(String url,
+                           B2Headers headersOrNull,
+                           B2ContentSink handler) throws B2Exception {
+        final Plan plan = startCall(url);
+        final List<ChaosInputStream> streams = Collections.synchronizedList(new ArrayList<>(1));
+        try {
+            delegate.getContent(url, headersOrNull, (responseHeaders, in) -> {
+                final long contentLength = (responseHeaders.getValueOrNull(B2Headers.CONTENT_LENGTH) == null) ?
+                        0 :
+                        responseHeaders.getContentLength();
+                final ChaosInputStream chaosIn = new ChaosInputStream(in, plan.rule.bytesPerSecond, plan.pickResetAfterBytes(contentLength));
+                streams.add(chaosIn);
+                handler.readContent(responseHeaders, chaosIn);
+            });
+        } catch (B2Exception e) {
+            B2Exception translated = e;
+            for (ChaosInputStream in : streams) {
+                translated = translateIfReset(in, url, translated);
+            }
+            throw translated;
+        }
+    }
+
+    @Override
+    public B2Headers head(String url,
+                          B2Headers headersOrNull) throws B2Exception {
+        startCall(url);
+        return delegate.head(url, headersOrNull);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Picks what will happen to this call, waits for its latency,
+     * and throws if it should fail before being sent.
+     */
+    private Plan startCall(String url) throws B2Exception {
+        final String endpoint = B2WebApiEndpoints.endpointOf(url);
+        final Rule rule = rulesByEndpoint.getOrDefault(endpoint, defaultRule);
+
+        final double latencyRoll;
+        final double errorRoll;
+        final double resetRoll;
+        final double resetFraction;
+        synchronized (random) {
+            latencyRoll = random.nextDouble();
+            errorRoll = random.nextDouble();
+            resetRoll = random.nextDouble();
+            resetFraction = random.nextDouble();
+        }
+        final long latencyMillis = rule.latency.pickMillis(latencyRoll);
+
+        try {
+            waitMillis(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new B2LocalException("interrupted", "interrupted while adding latency to " + endpoint, e);
+        }
+
+        double errorThreshold = 0;
+        for (InjectedError error : rule.errors) {
+            errorThreshold += error.rate;
+            if (errorRoll < errorThreshold) {
+                injectedErrorCount.incrementAndGet();
+                throw B2Exception.create(error.code, error.status, error.retryAfterSecondsOrNull,
+                        "injected " + error.status + " " + error.code + " for " + endpoint);
+            }
+        }
+
+        return new Plan(rule, resetRoll < rule.resetRate, resetFraction);
+    }
+
+    private B2Exception translateIfReset(ChaosInputStream in,
+                                         String url,
+                                         B2Exception e) {
+        if (!in.wasReset) {
+            return e;
+        }
+        return new B2NetworkException("socket_exception", null,
+                "injected connection reset after " + in.bytesSoFar + " bytes talking to " + url, e);
+    }
+
+    private void waitMillis(long millis) throws InterruptedException {
+        if (millis <= 0) {
+            return;
+        }
+        injectedWaitMillis.addAndGet(millis);
+        final B2Clock clock = B2Clock.get();
+        if (clock instanceof B2ClockSim) {
+            ((B2ClockSim) clock).advanceBoth(Duration.ofMillis(millis));
+        } else {
+            Thread.sleep(millis);
+        }
+    }
+
+    /**
+     * What was picked for one call.
+     */
+    private static class Plan {
+        private final Rule rule;
+        private final boolean reset;
+        private final double resetFraction;
+
+        private Plan(Rule rule, boolean reset, double resetFraction) {
+            this.rule = rule;
+            this.reset = reset;
+            this.resetFraction = resetFraction;
+        }
+
+        /**
+         * @return how many bytes of the content to move before the reset,
+         *         or -1 if there won't be a reset.
+         */
+        private long pickResetAfterBytes(long contentLength) {
+            return reset ? (long) (resetFraction * contentLength) : -1;
+        }
+    }
+
+    /**
+     * ChaosInputStream moves content at the rule's rate, and throws a
+     * SocketException once it has moved resetAfterBytes, if that's not -1.
+     */
+    private class ChaosInputStream extends FilterInputStream {
+        private final long bytesPerSecond;
+        private final long resetAfterBytes;
+
+        private long bytesSoFar;
+        private long millisWaitedSoFar;
+        private volatile boolean wasReset;
+
+        private ChaosInputStream(InputStream in,
+                                 long bytesPerSecond,
+                                 long resetAfterBytes) {
+            super(in);
+            this.bytesPerSecond = bytesPerSecond;
+            this.resetAfterBytes = resetAfterBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkForReset();
+            final int value = super.read();
+            if (value != -1) {
+                moved(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b,
+                        int off,
+                        int len) throws IOException {
+            checkForReset();
+            final int nRead = super.read(b, off, (int) Math.min(len, bytesBeforeReset()));
+            if (nRead > 0) {
+                moved(nRead);
+            }
+            return nRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            checkForReset();
+            final long nSkipped = super.skip(Math.min(n, bytesBeforeReset()));
+            if (nSkipped > 0) {
+                moved(nSkipped);
+            }
+            return nSkipped;
+        }
+
+        private long bytesBeforeReset() {
+            return (resetAfterBytes < 0) ? Long.MAX_VALUE : Math.max(1, resetAfterBytes - bytesSoFar);
+        }
+
+        private void checkForReset() throws SocketException {
+            if (resetAfterBytes >= 0 && bytesSoFar >= resetAfterBytes) {
+                if (!wasReset) {
+                    wasReset = true;
+                    injectedResetCount.incrementAndGet();
+                }
+                throw new SocketException("Connection reset (injected)");
+            }
+        }
+
+        private void moved(long nBytes) throws InterruptedIOException {
+            bytesSoFar += nBytes;
+            if (bytesPerSecond <= 0) {
+                return;
+            }
+            // wait until the time the bytes so far should have taken.
+            final long millisNeeded = (bytesSoFar * 1000) / bytesPerSecond;
+            final long millisToWait = millisNeeded - millisWaitedSoFar;
+            if (millisToWait > 0) {
+                millisWaitedSoFar = millisNeeded;
+                try {
+                    waitMillis(millisToWait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while capping bandwidth");
+                }
+            }
+        }
+    }
+
+    /**
+     * LatencyDistribution picks how long to delay a call.  It must pick
+     * only from the given roll, so that runs can be replayed.
+     */
+    public interface LatencyDistribution {
+        /**
+         * @param roll a random number in [0, 1).
+         * @return the milliseconds to delay the call.
+         */
+        long pickMillis(double roll);
+
+        static LatencyDistribution none() {
+            return roll -> 0;
+        }
+
+        static LatencyDistribution fixed(long millis) {
+            B2Preconditions.checkArgument(millis >= 0, "millis must be non-negative");
+            return roll -> millis;
+        }
+
+        static LatencyDistribution uniform(long minMillis,
+                                           long maxMillis) {
+            B2Preconditions.checkArgument(0 <= minMillis && minMillis <= maxMillis, "need 0 <= minMillis <= maxMillis");
+            return roll -> minMillis + (long) (roll * (maxMillis - minMillis));
+        }
+
+        /**
+         * @return a distribution with a long tail: usually near baseMillis,
+         *         but sometimes much longer.
+         */
+        static LatencyDistribution exponential(long baseMillis,
+                                               long meanExtraMillis) {
+            B2Preconditions.checkArgument(baseMillis >= 0 && meanExtraMillis >= 0, "millis must be non-negative");
+            return roll -> baseMillis + (long) (-meanExtraMillis * Math.log(1 - roll));
+        }
+    }
+
+    private static class InjectedError {
+        private final double rate;
+        private final int status;
+        private final String code;
+        private final Integer retryAfterSecondsOrNull;
+
+        private InjectedError(double rate,
+                              int status,
+                              String code,
+                              Integer retryAfterSecondsOrNull) {
+            this.rate = rate;
+            this.status = status;
+            this.code = code;
+            this.retryAfterSecondsOrNull = retryAfterSecondsOrNull;
+        }
+    }
+
+    /**
+     * Rule says what to do to the calls to one endpoint.
+     * The default Rule does nothing.
+     */
+    public static class Rule {
+        private final LatencyDistribution latency;
+        private final long bytesPerSecond;
+        private final double resetRate;
+        private final List<InjectedError> errors;
+
+        private Rule(LatencyDistribution latency,
+                     long bytesPerSecond,
+                     double resetRate,
+                     List<InjectedError> errors) {
+            this.latency = latency;
+            this.bytesPerSecond = bytesPerSecond;
+            this.resetRate = resetRate;
+            this.errors = errors;
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        public static class Builder {
+            private LatencyDistribution latency = LatencyDistribution.none();
+            private long bytesPerSecond = 0;
+            private double resetRate = 0;
+            private final List<InjectedError> errors = new ArrayList<>();
+
+            public Builder setLatency(LatencyDistribution latency) {
+                this.latency = latency;
+                return this;
+            }
+
+            /**
+             * @param bytesPerSecond the most bytes per second each call can
+             *                       upload or download.  0 means unlimited.
+             */
+            public Builder setBytesPerSecond(long bytesPerSecond) {
+                B2Preconditions.checkArgument(bytesPerSecond >= 0, "bytesPerSecond must be non-negative");
+                this.bytesPerSecond = bytesPerSecond;
+                return this;
+            }
+
+            /**
+             * @param resetRate the fraction of uploads and downloads to reset
+             *                  at a random point in their content.
+             */
+            public Builder setResetRate(double resetRate) {
+                B2Preconditions.checkArgument(0 <= resetRate && resetRate <= 1, "resetRate must be between 0 and 1");
+                this.resetRate = resetRate;
+                return this;
+            }
+
+            /**
+             * Fails the given fraction of calls with an HTTP error, without
+             * sending them.
+             *
+             * @param rate the fraction of calls to fail this way.
+             * @param status the HTTP status, such as 503.
+             * @param code the B2 error code, such as "service_unavailable".
+             * @param retryAfterSecondsOrNull the Retry-After to report, if any.
+             */
+            public Builder addError(double rate,
+                                    int status,
+                                    String code,
+                                    Integer retryAfterSecondsOrNull) {
+                B2Preconditions.checkArgument(0 <= rate && rate <= 1, "rate must be between 0 and 1");
+                errors.add(new InjectedError(rate, status, code, retryAfterSecondsOrNull));
+                return this;
+            }
+
+            public Rule build() {
+                final double totalRate = errors.stream().mapToDouble(error -> error.rate).sum();
+                B2Preconditions.checkArgument(totalRate <= 1, "the error rates add up to more than 1");
+                return new Rule(latency, bytesPerSecond, resetRate, new ArrayList<>(errors));
+            }
+        }
+    }
+
+    public static class Builder {
+        private final B2WebApiClient delegate;
+        private Rule defaultRule = Rule.builder().build();
+        private final Map<String, Rule> rulesByEndpoint = new HashMap<>();
+        private long randomSeed = 0;
+
+        private Builder(B2WebApiClient delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * @param defaultRule the rule for endpoints that don't have their own.
+         */
+        public Builder setDefaultRule(Rule defaultRule) {
+            this.defaultRule = defaultRule;
+            return this;
+        }
+
+        /**
+         * @param endpoint the name of the api, such as "b2_upload_part",
+         *                 or B2WebApiEndpoints.DOWNLOAD_BY_NAME.
+         * @param rule what to do to that endpoint's calls.
+         */
+        public Builder setRule(String endpoint,
+                               Rule rule) {
+            rulesByEndpoint.put(endpoint, rule);
+            return this;
+        }
+
+        public Builder setRandomSeed(long randomSeed) {
+            this.randomSeed = randomSeed;
+            return this;
+        }
+
+        public B2WebApiClientWithChaos build() {
+            return new B2WebApiClientWithChaos(this);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.webApiClients;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.util.B2Preconditions;
+
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * B2WebApiClientWithPriorities wraps another B2WebApiClient and decides
+ * which calls go to it when, so that interactive calls (such as downloads
+ * and getFileInfo) stay fast while bulk calls (such as the thousands of
+ * part uploads of a big large file) are running through the same client.
+ *
+ * Each call has a Priority, picked from its endpoint.  By default,
+ * b2_upload_file, b2_upload_part and b2_copy_part are BULK, and everything
+ * else is INTERACTIVE.  Use Builder.setPriority() to change that, for
+ * example to make downloads BULK in a client that does restores.
+ *
+ * At most maxConcurrentCalls calls are passed to the delegate at once, and
+ * at most maxConcurrentBulkCalls of them may be BULK, so the rest of the
+ * slots are always available to INTERACTIVE calls.  When a slot frees up
+ * and both kinds of calls are waiting for it, INTERACTIVE calls get
+ * interactiveWeight turns for each turn that BULK calls get, so neither
+ * starves.  Within a priority, calls that are woken compete for the slot
+ * like they would for a lock.
+ *
+ * Set maxConcurrentCalls no higher than the delegate's connection pool
+ * (for B2WebApiHttpClientImpl, HttpClientFactoryImpl's
+ * maxConnectionsPerRoute and maxTotalConnectionsInPool).  Then calls wait
+ * here, where the priorities apply, instead of in the pool, where they
+ * don't.
+ *
+ * A call holds its slot until the delegate returns, including while its
+ * content is uploaded or handed to its B2ContentSink.
+ *
+ * THREAD-SAFETY: This class is thread-safe if the delegate is.
+ */
+public class B2WebApiClientWithPriorities implements B2WebApiClient {
+
+    public enum Priority {
+        INTERACTIVE,
+        BULK
+    }
+
+    private final B2WebApiClient delegate;
+    private final int maxConcurrentCalls;
+    private final int maxConcurrentBulkCalls;
+    private final int interactiveWeight;
+    private final Map<String, Priority> priorityByEndpoint;
+
+    // a lock instead of synchronized, so virtual threads waiting here
+    // don't pin their carriers.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    // guarded by lock.
+    private final Map<Priority, Integer> inFlight = new EnumMap<>(Priority.class);
+    private final Map<Priority, Integer> waiting = new EnumMap<>(Priority.class);
+
+    // how many slots have gone to INTERACTIVE calls in a row while BULK calls
+    // were also waiting for one.  guarded by lock.
+    private int interactiveTurnsInARow;
+
+    private B2WebApiClientWithPriorities(Builder builder) {
+        this.delegate = builder.delegate;
+        this.maxConcurrentCalls = builder.maxConcurrentCalls;
+        this.maxConcurrentBulkCalls = (builder.maxConcurrentBulkCalls == 0) ?
+                Math.max(1, (builder.maxConcurrentCalls * Builder.DEFAULT_BULK_PERCENT) / 100) :
+                builder.maxConcurrentBulkCalls;
+        B2Preconditions.checkArgument(maxConcurrentBulkCalls <= maxConcurrentCalls,
+                "maxConcurrentBulkCalls must be no more than maxConcurrentCalls");
+        this.interactiveWeight = builder.interactiveWeight;
+        this.priorityByEndpoint = new HashMap<>(builder.priorityByEndpoint);
+        for (Priority priority : Priority.values()) {
+            inFlight.put(priority, 0);
+            waiting.put(priority, 0);
+        }
+    }
+
+    public static Builder builder(B2WebApiClient delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * @return the priority of calls to the given url.
+     */
+    public Priority getPriority(String url) {
+        return priorityByEndpoint.getOrDefault(B2WebApiEndpoints.endpointOf(url), Priority.INTERACTIVE);
+    }
+
+    /**
+     * @return how many calls with the given priority are with the delegate now.
+     */
+    public int getInFlight(Priority priority) {
+        lock.lock();
+        try {
+            return inFlight.get(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how many calls with the given priority are waiting for a slot now.
+     */
+    public int getWaiting(Priority priority) {
+        lock.lock();
+        try {
+            return waiting.get(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <ResponseType> ResponseType postJsonReturnJson(String url,
+                                                          B2Headers headersOrNull,
+                                                          Object request,
+                                                          Class<ResponseType> responseClass) throws B2Exception {
+        final Priority priority = acquire(url);
+        try {
+            return delegate.postJsonReturnJson(url, headersOrNull, request, responseClass);
+        } finally {
+            release(priority);
+        }
+    }
+
+    @Override
+    public <ResponseType> ResponseType postDataReturnJson(String url,
+                                                          B2Headers headersOrNull,
+                                                          InputStream contentSource,
+                                                          long contentLength,
+                                                          Class<ResponseType> responseClass) throws B2Exception {
+        final Priority priority = acquire(url);
+        try {
+            return delegate.postDataReturnJson(url, headersOrNull, contentSource, contentLength, responseClass);
+        } finally {
+            release(priority);
+        }
+    }
+
+    @Override
+    public void getContent(String url,
+                           B2Headers headersOrNull,
+                           B2ContentSink handler) throws B2Exception {
+        final Priority priority = acquire(url);
+        try {
+            delegate.getContent(url, headersOrNull, handler);
+        } finally {
+            release(priority);
+        }
+    }
+
+    @Override
+    public B2Headers head(String url,
+                          B2Headers headersOrNull) throws B2Exception {
+        final Priority priority = acquire(url);
+        try {
+            return delegate.head(url, headersOrNull);
+        } finally {
+            release(priority);
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Waits for a slot for a call to the url and takes it.
+     *
+     * @return the priority of the call, to give to release().
+     * @throws B2LocalException if interrupted while waiting.
+     */
+    private Priority acquire(String url) throws B2LocalException {
+        final Priority priority = getPriority(url);
+        lock.lock();
+        try {
+            increment(waiting, priority);
+            try {
+                while (!mayStart(priority)) {
+                    slotFreed.await();
+                }
+            } finally {
+                decrement(waiting, priority);
+
+                // whether this call got a slot or gave up, a call that was
+                // waiting for its turn may be able to go now.
+                slotFreed.signalAll();
+            }
+
+            if (priority == Priority.INTERACTIVE) {
+                if (waiting.get(Priority.BULK) > 0 && hasSlotFor(Priority.BULK)) {
+                    interactiveTurnsInARow++;
+                }
+            } else {
+                interactiveTurnsInARow = 0;
+            }
+            increment(inFlight, priority);
+            return priority;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new B2LocalException("interrupted", "interrupted while waiting for a " + priority + " slot");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Priority priority) {
+        lock.lock();
+        try {
+            decrement(inFlight, priority);
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true iff a call with the given priority may take a slot now.
+     *         the caller must hold the lock.
+     */
+    private boolean mayStart(Priority priority) {
+        if (!hasSlotFor(priority)) {
+            return false;
+        }
+
+        // when the other kind of call is waiting and could take this slot
+        // too, the weights say whose turn it is.
+        final Priority other = (priority == Priority.INTERACTIVE) ? Priority.BULK : Priority.INTERACTIVE;
+        if (waiting.get(other) == 0 || !hasSlotFor(other)) {
+            return true;
+        }
+        final boolean interactiveTurn = interactiveTurnsInARow < interactiveWeight;
+        return (priority == Priority.INTERACTIVE) == interactiveTurn;
+    }
+
+    private boolean hasSlotFor(Priority priority) {
+        final int interactive = inFlight.get(Priority.INTERACTIVE);
+        final int bulk = inFlight.get(Priority.BULK);
+        if (interactive + bulk >= maxConcurrentCalls) {
+            return false;
+        }
+        return priority != Priority.BULK || bulk < maxConcurrentBulkCalls;
+    }
+
+    private static void increment(Map<Priority, Integer> counts,
+                                  Priority priority) {
+        counts.put(priority, counts.get(priority) + 1);
+    }
+
+    private static void decrement(Map<Priority, Integer> counts,
+                                  Priority priority) {
+        counts.put(priority, counts.get(priority) - 1);
+    }
+
+    public static class Builder {
+        // the same as HttpClientFactoryImpl's default pool size.
+        private static final int DEFAULT_MAX_CONCURRENT_CALLS = 100;
+        // unless it's set, maxConcurrentBulkCalls is this percent of maxConcurrentCalls.
+        private static final int DEFAULT_BULK_PERCENT = 80;
+        private static final int DEFAULT_INTERACTIVE_WEIGHT = 4;
+
+        private final B2WebApiClient delegate;
+        private int maxConcurrentCalls = DEFAULT_MAX_CONCURRENT_CALLS;
+        private int maxConcurrentBulkCalls = 0;
+        private int interactiveWeight = DEFAULT_INTERACTIVE_WEIGHT;
+        private final Map<String, Priority> priorityByEndpoint = new HashMap<>();
+
+        private Builder(B2WebApiClient delegate) {
+            this.delegate = delegate;
+            priorityByEndpoint.put("b2_upload_file", Priority.BULK);
+            priorityByEndpoint.put("b2_upload_part", Priority.BULK);
+            priorityByEndpoint.put("b2_copy_part", Priority.BULK);
+        }
+
+        /**
+         * @param maxConcurrentCalls the most calls of any priority to pass
+         *                           to the delegate at once.
+         */
+        public Builder setMaxConcurrentCalls(int maxConcurrentCalls) {
+            B2Preconditions.checkArgument(maxConcurrentCalls > 0, "maxConcurrentCalls must be positive");
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            return this;
+        }
+
+        /**
+         * @param maxConcurrentBulkCalls the most BULK calls to pass to the
+         *                               delegate at once.  the difference
+         *                               from maxConcurrentCalls is reserved
+         *                               for INTERACTIVE calls.  the default
+         *                               is 80% of maxConcurrentCalls.
+         */
+        public Builder setMaxConcurrentBulkCalls(int maxConcurrentBulkCalls) {
+            B2Preconditions.checkArgument(maxConcurrentBulkCalls > 0, "maxConcurrentBulkCalls must be positive");
+            this.maxConcurrentBulkCalls = maxConcurrentBulkCalls;
+            return this;
+        }
+
+        /**
+         * @param interactiveWeight how many slots INTERACTIVE calls get for
+         *                          each one BULK calls get when both kinds
+         *                          are waiting.
+         */
+        public Builder setInteractiveWeight(int interactiveWeight) {
+            B2Preconditions.checkArgument(interactiveWeight > 0, "interactiveWeight must be positive");
+            this.interactiveWeight = interactiveWeight;
+            return this;
+        }
+
+        /**
+         * @param endpoint the name of an api, such as "b2_download_file_by_id",
+         *                 or B2WebApiEndpoints.DOWNLOAD_BY_NAME.
+         * @param priority the priority for calls to it.
+         */
+        public Builder setPriority(String endpoint,
+                                   Priority priority) {
+            priorityByEndpoint.put(endpoint, priority);
+            return this;
+        }
+
+        public B2WebApiClientWithPriorities build() {
+            return new B2WebApiClientWithPriorities(this);
+        }
+    }
+}
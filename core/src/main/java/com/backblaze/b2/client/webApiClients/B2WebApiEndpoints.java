@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.webApiClients;
+
+/**
+ * B2WebApiEndpoints names the b2 api that a url is for, so that the
+ * B2WebApiClient decorators can treat calls to each api differently.
+ *
+ * THREAD-SAFETY: This class has no state, so it's thread-safe.
+ */
+public final class B2WebApiEndpoints {
+    /**
+     * The endpoint name used for downloads by name, whose urls don't
+     * include an api name.
+     */
+    public static final String DOWNLOAD_BY_NAME = "b2_download_file_by_name";
+
+    private static final String API_PATH = "/b2api/";
+    private static final String DOWNLOAD_BY_NAME_PATH = "/file/";
+
+    private B2WebApiEndpoints() {
+    }
+
+    /**
+     * @return the name of the api the url is for, such as "b2_upload_file",
+     *         DOWNLOAD_BY_NAME, or "" if it doesn't look like a b2 url.
+     */
+    static String endpointOf(String url) {
+        final int apiIndex = url.indexOf(API_PATH);
+        if (apiIndex >= 0) {
+            // skip the version, as in "/b2api/v2/".
+            final int versionEnd = url.indexOf('/', apiIndex + API_PATH.length());
+            if (versionEnd < 0) {
+                return "";
+            }
+            int nameEnd = versionEnd + 1;
+            while (nameEnd < url.length() && url.charAt(nameEnd) != '/' && url.charAt(nameEnd) != '?') {
+                nameEnd++;
+            }
+            return url.substring(versionEnd + 1, nameEnd);
+        }
+        if (url.contains(DOWNLOAD_BY_NAME_PATH)) {
+            return DOWNLOAD_BY_NAME;
+        }
+        return "";
+    }
+}
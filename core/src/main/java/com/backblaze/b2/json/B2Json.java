@@ -5,13 +5,8 @@
 
 package com.backblaze.b2.json;
 
-import com.backblaze.b2.util.B2StringUtil;
-
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.lang.annotation.Annotation;
@@ -19,6 +14,7 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -56,8 +52,11 @@ import java.util.Map;
  * the values for List fields are created as ArrayLists, and the values for
  * Set fields are created as HashSets.</p>
  *
- * <p>The JSON produced is always "pretty", with newlines and indentation.
- * Field names are always sorted alphabetically.</p>
+ * <p>By default, the JSON produced is "pretty", with newlines and
+ * indentation.  Serializing with the COMPACT SerializationOption in
+ * B2JsonOptions (such as B2JsonOptions.DEFAULT_COMPACT) leaves out all of
+ * the whitespace instead, for JSON that only machines will read.  Either
+ * way, field names are always sorted alphabetically.</p>
  * 
  * <p>B2Json objects are THREAD SAFE.</p>
  */
@@ -69,7 +68,6 @@ public class B2Json {
      * relying on the shape of a class for which you don't own the
      * source code?
      */
-    private static String UTF8 = "UTF-8";
 
     /**
      * A simple instance that can be shared.
@@ -101,7 +99,22 @@ public class B2Json {
      * classes that are handled specially.
      */
     private B2Json() {
-        this.handlerMap = new B2JsonHandlerMap();
+        this(new B2JsonHandlerMap());
+    }
+
+    private B2Json(B2JsonHandlerMap handlerMap) {
+        this.handlerMap = handlerMap;
+    }
+
+    /**
+     * @return a new B2Json whose object handlers use plain reflection
+     *         instead of method handles.  It's slower, and it's only
+     *         here so tests and benchmarks can compare the two.  The
+     *         JSON it reads and writes is the same as get()'s.
+     *         Benchmarks get it through B2JsonTestHelpers.
+     */
+    /*forTests*/ static B2Json withReflectiveBindingForComparison() {
+        return new B2Json(B2JsonHandlerMap.withReflectiveBinding());
     }
 
     /**
@@ -113,10 +126,14 @@ public class B2Json {
     }
 
     public byte[] toJsonUtf8Bytes(Object obj, B2JsonOptions options) throws B2JsonException {
+        final B2JsonOutputBuffer out = B2JsonOutputBuffer.acquire();
         try {
-            return toJson(obj, options).getBytes(UTF8);
+            toJson(obj, options, out);
+            return out.toByteArray();
         } catch (IOException e) {
             throw new RuntimeException("error writing to byte array: " + e.getMessage());
+        } finally {
+            B2JsonOutputBuffer.release(out);
         }
     }
 
@@ -129,13 +146,15 @@ public class B2Json {
     }
 
     public byte[] toJsonUtf8BytesWithNewline(Object obj, B2JsonOptions options) throws B2JsonException {
+        final B2JsonOutputBuffer out = B2JsonOutputBuffer.acquire();
         try {
-            final ByteArrayOutputStream out = new ByteArrayOutputStream();
             toJson(obj, options, out);
             out.write('\n');
             return out.toByteArray();
         } catch (IOException e) {
             throw new RuntimeException("error writing to byte array: " + e.getMessage());
+        } finally {
+            B2JsonOutputBuffer.release(out);
         }
     }
 
@@ -156,9 +175,24 @@ public class B2Json {
         }
         final Class<?> clazz = obj.getClass();
         final B2JsonTypeHandler handler = handlerMap.getHandler(clazz);
-        B2JsonWriter jsonWriter = new B2JsonWriter(out);
-        //noinspection unchecked
-        handler.serialize(obj, options, jsonWriter);
+        if (out instanceof B2JsonOutputBuffer) {
+            B2JsonWriter jsonWriter = new B2JsonWriter(out, options);
+            //noinspection unchecked
+            handler.serialize(obj, options, jsonWriter);
+            return;
+        }
+
+        // encode into a pooled buffer and hand that to out all at once,
+        // instead of writing to out a byte at a time.
+        final B2JsonOutputBuffer buffer = B2JsonOutputBuffer.acquire();
+        try {
+            B2JsonWriter jsonWriter = new B2JsonWriter(buffer, options);
+            //noinspection unchecked
+            handler.serialize(obj, options, jsonWriter);
+            buffer.writeTo(out);
+        } finally {
+            B2JsonOutputBuffer.release(buffer);
+        }
     }
 
     /**
@@ -174,13 +208,26 @@ public class B2Json {
         }
         Class<?> clazz = obj.getClass();
         final B2JsonTypeHandler handler = handlerMap.getHandler(clazz);
-        try (final ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            B2JsonWriter jsonWriter = new B2JsonWriter(out);
+        return serializeToString(handler, obj, options);
+    }
+
+    /**
+     * Serializes obj into this thread's pooled output buffer and
+     * decodes the result, so the only allocation is the String itself.
+     */
+    private String serializeToString(B2JsonTypeHandler handler,
+                                     Object obj,
+                                     B2JsonOptions options) throws B2JsonException {
+        final B2JsonOutputBuffer out = B2JsonOutputBuffer.acquire();
+        try {
+            B2JsonWriter jsonWriter = new B2JsonWriter(out, options);
             //noinspection unchecked
             handler.serialize(obj, options, jsonWriter);
-            return out.toString();
+            return out.toUtf8String();
         } catch (IOException e) {
             throw new RuntimeException("IO exception writing to string");
+        } finally {
+            B2JsonOutputBuffer.release(out);
         }
     }
 
@@ -237,14 +284,7 @@ public class B2Json {
         final B2JsonTypeHandler keyHandler = handlerMap.getHandler(keyClass);
         final B2JsonTypeHandler valueHandler = handlerMap.getHandler(valueClass);
         final B2JsonTypeHandler handler = new B2JsonMapHandler(keyHandler, valueHandler);
-        try (final ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            B2JsonWriter jsonWriter = new B2JsonWriter(out);
-            //noinspection unchecked
-            handler.serialize(map, options, jsonWriter);
-            return out.toString(B2StringUtil.UTF8);
-        } catch (IOException e) {
-            throw new RuntimeException("IO exception writing to string");
-        }
+        return serializeToString(handler, map, options);
     }
 
     /**
@@ -274,14 +314,7 @@ public class B2Json {
         }
         final B2JsonTypeHandler valueHandler = handlerMap.getHandler(valueClass);
         final B2JsonTypeHandler handler = new B2JsonListHandler(valueHandler);
-        try (final ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            B2JsonWriter jsonWriter = new B2JsonWriter(out);
-            //noinspection unchecked
-            handler.serialize(list, options, jsonWriter);
-            return out.toString();
-        } catch (IOException e) {
-            throw new RuntimeException("IO exception writing to string");
-        }
+        return serializeToString(handler, list, options);
     }
 
     /**
@@ -315,7 +348,7 @@ public class B2Json {
     }
 
     public <T> T fromJsonUntilEof(InputStream in, Class<T> clazz, B2JsonOptions options) throws IOException, B2JsonException {
-        B2JsonReader reader = new B2JsonReader(new InputStreamReader(in, "UTF-8"));
+        B2JsonReader reader = new B2JsonReader(in);
         final B2JsonTypeHandler handler = handlerMap.getHandler(clazz);
         //noinspection unchecked
         T result = (T) handler.deserialize(reader, options);
@@ -341,7 +374,7 @@ public class B2Json {
     }
 
     public <T> T fromJson(InputStream in, Class<T> clazz, B2JsonOptions options) throws IOException, B2JsonException {
-        B2JsonReader reader = new B2JsonReader(new InputStreamReader(in, "UTF-8"));
+        B2JsonReader reader = new B2JsonReader(in);
         final B2JsonTypeHandler handler = handlerMap.getHandler(clazz);
 
         if (handler == null) {
@@ -406,7 +439,22 @@ public class B2Json {
     }
 
     public <T> T fromJson(byte[] jsonUtf8Bytes, Class<T> clazz, B2JsonOptions options) throws IOException, B2JsonException {
-        B2JsonReader reader = new B2JsonReader(new InputStreamReader(new ByteArrayInputStream(jsonUtf8Bytes), "UTF-8"));
+        B2JsonReader reader = new B2JsonReader(jsonUtf8Bytes);
+        final B2JsonTypeHandler handler = handlerMap.getHandler(clazz);
+        //noinspection unchecked
+        return (T) handler.deserialize(reader, options);
+    }
+
+    /**
+     * Parse the UTF-8 JSON between the buffer's position and limit as an
+     * object of the given class.  The buffer's position isn't changed.
+     */
+    public <T> T fromJson(ByteBuffer jsonUtf8Buffer, Class<T> clazz) throws IOException, B2JsonException {
+        return fromJson(jsonUtf8Buffer, clazz, B2JsonOptions.DEFAULT);
+    }
+
+    public <T> T fromJson(ByteBuffer jsonUtf8Buffer, Class<T> clazz, B2JsonOptions options) throws IOException, B2JsonException {
+        B2JsonReader reader = new B2JsonReader(jsonUtf8Buffer);
         final B2JsonTypeHandler handler = handlerMap.getHandler(clazz);
         //noinspection unchecked
         return (T) handler.deserialize(reader, options);
@@ -498,6 +546,20 @@ public class B2Json {
     @Target(ElementType.FIELD)
     public @interface ignored {}
 
+    /**
+     * Field annotation that says the strings read for a field are likely
+     * to be short values that repeat a lot, like content types, so each
+     * object that's read should share a String with other objects that
+     * have the same value, instead of having its own copy.
+     *
+     * It applies to a String field's value, to the elements of a
+     * collection of strings, and to the keys (but not the values) of
+     * a map keyed by strings.  It doesn't affect serialization.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.FIELD)
+    public @interface intern {}
+
     /**
      * Annotation that says that a field exists in all versions at or after this one.
      */
@@ -569,7 +631,8 @@ public class B2Json {
                     constructor.class,
                     defaultForInvalidEnumValue.class,
                     firstVersion.class,
-                    versionRange.class
+                    versionRange.class,
+                    intern.class
             };
 
     /**
@@ -33,7 +33,7 @@ public class B2JsonConcurrentMapHandler extends B2JsonNonUrlTypeHandler<Concurre
         for (Map.Entry entry : (Set<Map.Entry>) obj.entrySet()) {
             out.startObjectFieldName();
             keyHandler.serialize(entry.getKey(), options, out);
-            out.writeText(": ");
+            out.writeColon();
             B2JsonUtil.serializeMaybeNull(valueHandler, entry.getValue(), out, options);
         }
         out.finishObject();
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map from field name to a value, which can look up names given as
+ * UTF-8 bytes without making a String.  B2JsonReader uses it to match
+ * the field names it reads against the fields of a class.
+ *
+ * The byte lookups use open addressing with linear probing in a table
+ * that's at least twice as big as the number of names.
+ *
+ * This class is immutable, and so is thread safe.
+ */
+/*package*/ final class B2JsonFieldNameTable<T> {
+
+    /**
+     * The same names and values, for lookups by String.
+     */
+    private final Map<String, T> byName;
+
+    /**
+     * The UTF-8 bytes of the name in each slot, or null for empty slots.
+     */
+    private final byte[][] slotNames;
+
+    /**
+     * The value for the name in each slot.
+     */
+    private final Object[] slotValues;
+
+    /**
+     * The number of slots minus one.  The number of slots is a power of two.
+     */
+    private final int mask;
+
+    /*package*/ B2JsonFieldNameTable(Map<String, T> byName) {
+        this.byName = new HashMap<>(byName);
+
+        int slotCount = 8;
+        while (slotCount < byName.size() * 2) {
+            slotCount *= 2;
+        }
+        this.slotNames = new byte[slotCount][];
+        this.slotValues = new Object[slotCount];
+        this.mask = slotCount - 1;
+
+        for (Map.Entry<String, T> entry : byName.entrySet()) {
+            final byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            int slot = hash(name, 0, name.length) & mask;
+            while (slotNames[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            slotNames[slot] = name;
+            slotValues[slot] = entry.getValue();
+        }
+    }
+
+    /**
+     * @return the value for the name, or null if it's not in the table.
+     */
+    /*package*/ T getOrNull(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @return the value for the name in buf[start] through buf[start + length - 1],
+     *         or null if it's not in the table.
+     */
+    /*package*/ T getOrNull(byte[] buf, int start, int length) {
+        int slot = hash(buf, start, length) & mask;
+        while (true) {
+            final byte[] candidate = slotNames[slot];
+            if (candidate == null) {
+                return null;
+            }
+            if (sameBytes(candidate, buf, start, length)) {
+                //noinspection unchecked
+                return (T) slotValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(byte[] buf, int start, int length) {
+        int h = length;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + buf[i];
+        }
+        // mix the high bits in, since we only use the low ones.
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean sameBytes(byte[] name, byte[] buf, int start, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != buf[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
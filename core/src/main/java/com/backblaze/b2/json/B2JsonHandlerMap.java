@@ -14,6 +14,9 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Holds a mapping from Class to B2JsonTypeHandler.
@@ -23,23 +26,54 @@ import java.util.Map;
  * handlers are needed, the default B2JsonObjectHandler will be used
  * for that class.
  *
- * This class is THREAD SAFE.
+ * This class is THREAD SAFE.  It uses a ReentrantLock rather than
+ * synchronized, because building a handler can load classes and run their
+ * static initializers, and virtual threads that block inside a monitor
+ * pin their carrier threads.
  */
 public class B2JsonHandlerMap {
 
-    // access to this map is always synchronized on this object.
+    // the handlers that are completely built and safe for any thread to use.
+    // getHandler() looks here first without taking any locks, which is all it
+    // needs to do once the handlers for the classes in use have been built.
+    private final ConcurrentMap<Class<?>, B2JsonTypeHandler<?>> readyMap = new ConcurrentHashMap<>();
+
+    // held while building handlers and while touching 'map' or 'buildDepth'.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // access to this map is always guarded by 'lock'.
+    // it has everything in readyMap, plus the handlers being built by the
+    // current outermost call to getHandler(), which may not be ready yet.
     // we think it's safe to overwrite the entry for a given class because
     // we assume all handlers are stateless and any two instances of
     // a handler for a class are equivalent.
     private final Map<Class<?>, B2JsonTypeHandler<?>> map = new HashMap<>();
 
+    // how many calls to getHandlerSlowly() are on the stack of the thread
+    // holding the lock.  guarded by 'lock'.
+    private int buildDepth = 0;
+
+    // whether object handlers should use method handles instead of reflection.
+    private final boolean bindWithMethodHandles;
+
     public B2JsonHandlerMap() {
-        this(null);
+        this(null, true);
     }
+
+    /**
+     * Sets up a new map whose object handlers use plain reflection
+     * instead of method handles, so the two can be compared.
+     */
+    /*package*/ static B2JsonHandlerMap withReflectiveBinding() {
+        return new B2JsonHandlerMap(null, false);
+    }
+
     /**
      * Sets up a new map.
      */
-    private B2JsonHandlerMap(Map<Class<?>, B2JsonTypeHandler<?>> initialMapOrNull) {
+    private B2JsonHandlerMap(Map<Class<?>, B2JsonTypeHandler<?>> initialMapOrNull,
+                             boolean bindWithMethodHandles) {
+        this.bindWithMethodHandles = bindWithMethodHandles;
         // add all built-in handlers.
         map.put(BigDecimal.class, new B2JsonBigDecimalHandler());
         map.put(BigInteger.class, new B2JsonBigIntegerHandler());
@@ -72,12 +106,73 @@ public class B2JsonHandlerMap {
         if (initialMapOrNull != null) {
             map.putAll(initialMapOrNull);
         }
+        readyMap.putAll(map);
+    }
+
+    /*package*/ boolean bindsWithMethodHandles() {
+        return bindWithMethodHandles;
     }
 
     /**
      * Gets the handler for a given class at the top level.
+     *
+     * Once a class's handler has been built, this doesn't take any locks.
      */
-    public synchronized <T> B2JsonTypeHandler<T> getHandler(Class<T> clazz) throws B2JsonException {
+    public <T> B2JsonTypeHandler<T> getHandler(Class<T> clazz) throws B2JsonException {
+        //noinspection unchecked
+        final B2JsonTypeHandler<T> ready = (B2JsonTypeHandler<T>) readyMap.get(clazz);
+        if (ready != null) {
+            return ready;
+        }
+        return getHandlerSlowly(clazz);
+    }
+
+    /**
+     * Finds or builds the handler for clazz while holding the lock.
+     *
+     * Building a handler can build handlers for other classes, by calling
+     * back into getHandler() for the types of its fields, and those may
+     * refer back to classes whose handlers are still being built.  Those
+     * calls find the unfinished handlers in 'map', because they're on the
+     * same thread, which already holds the lock.  Nothing is moved to
+     * readyMap until the outermost call is done, so other threads never
+     * see an unfinished handler.  If building fails, the handlers it
+     * added are dropped so nobody sees those either.
+     */
+    private <T> B2JsonTypeHandler<T> getHandlerSlowly(Class<T> clazz) throws B2JsonException {
+        lock.lock();
+        try {
+            if (buildDepth == 0) {
+                //noinspection unchecked
+                final B2JsonTypeHandler<T> ready = (B2JsonTypeHandler<T>) readyMap.get(clazz);
+                if (ready != null) {
+                    // another thread built it while we were waiting for the lock.
+                    return ready;
+                }
+            }
+
+            buildDepth++;
+            boolean succeeded = false;
+            try {
+                final B2JsonTypeHandler<T> result = findOrBuildHandler(clazz);
+                succeeded = true;
+                return result;
+            } finally {
+                buildDepth--;
+                if (buildDepth == 0) {
+                    if (succeeded) {
+                        readyMap.putAll(map);
+                    } else {
+                        map.keySet().retainAll(readyMap.keySet());
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> B2JsonTypeHandler<T> findOrBuildHandler(Class<T> clazz) throws B2JsonException {
 
         @SuppressWarnings("unchecked")
         B2JsonTypeHandler<T> result = lookupHandler(clazz);
@@ -123,7 +218,7 @@ public class B2JsonHandlerMap {
     }
 
     private <T> B2JsonTypeHandler<T> findCustomHandler(Class<T> clazz) throws B2JsonException {
-        // this does NOT need to be synchronized because it doesn't touch the map.
+        // this does NOT need to hold the lock because it doesn't touch the map.
 
         // i'm using getDeclaredMethod instead of just getMethod so that classes
         // can't inherit the type handler from their superclass.  that seems like
@@ -150,11 +245,16 @@ public class B2JsonHandlerMap {
         }
     }
 
-    private synchronized <T> B2JsonTypeHandler<T> lookupHandler(Class<T> clazz) {
-        // this is a method to make it easy to synchronize it.  it's private, so
+    private <T> B2JsonTypeHandler<T> lookupHandler(Class<T> clazz) {
+        // this is a method to make it easy to lock around it.  it's private, so
         // i'm hoping the compiler considers inlining it.
-        //noinspection unchecked
-        return (B2JsonTypeHandler<T>) map.get(clazz);
+        lock.lock();
+        try {
+            //noinspection unchecked
+            return (B2JsonTypeHandler<T>) map.get(clazz);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -165,10 +265,21 @@ public class B2JsonHandlerMap {
      * for its fields, which may be recursive and be of the same type.  When
      * this happens, the handler stored IS NOT READY YET, because its constructor
      * is not done yet.  This is safe because it all happens within a call
-     * to B2JsonHandlerMap.getHandler(), which synchronized and keeps anybody
-     * else from seeing the B2JsonObjectHandler before it is fully constructed.
+     * to B2JsonHandlerMap.getHandlerSlowly(), which holds the lock and doesn't
+     * publish anything to other threads until the outermost call is done, which
+     * keeps anybody else from seeing the B2JsonObjectHandler before it is fully
+     * constructed.
      */
-    protected synchronized <T> void rememberHandler(Class<T> clazz, B2JsonTypeHandler<T> handler) {
-        map.put(clazz, handler);
+    protected <T> void rememberHandler(Class<T> clazz, B2JsonTypeHandler<T> handler) {
+        lock.lock();
+        try {
+            map.put(clazz, handler);
+            if (buildDepth == 0) {
+                // not part of building anything, so it's ready now.
+                readyMap.put(clazz, handler);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 }
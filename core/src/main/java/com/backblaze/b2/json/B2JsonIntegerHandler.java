@@ -27,8 +27,7 @@ public class B2JsonIntegerHandler implements B2JsonTypeHandler<Integer> {
     }
 
     public Integer deserialize(B2JsonReader in, B2JsonOptions options) throws B2JsonException, IOException {
-        String str = in.readNumberAsString();
-        return deserializeUrlParam(str);
+        return in.readInt();
     }
 
     public Integer deserializeUrlParam(String value) throws B2JsonException {
@@ -27,8 +27,7 @@ public class B2JsonLongHandler implements B2JsonTypeHandler<Long> {
     }
 
     public Long deserialize(B2JsonReader in, B2JsonOptions options) throws B2JsonException, IOException {
-        String str = in.readNumberAsString();
-        return deserializeUrlParam(str);
+        return in.readLong();
     }
 
     public Long deserializeUrlParam(String value) throws B2JsonException {
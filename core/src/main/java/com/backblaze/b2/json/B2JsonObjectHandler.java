@@ -10,6 +10,9 @@ import com.backblaze.b2.util.B2Collections;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -60,11 +63,36 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
      */
     private final Map<String, FieldInfo> fieldMap  = new HashMap<>();
 
+    /**
+     * The same as fieldMap, for matching field names as the reader reads them.
+     */
+    private final B2JsonFieldNameTable<FieldInfo> fieldNameTable;
+
     /**
      * The constructor to use.
      */
     private final Constructor<T> constructor;
 
+    /**
+     * For each primitive type, the boxed types that can be passed for it,
+     * which, as with reflection, includes the ones that widen to it.
+     */
+    private static final Map<Class<?>, Class<?>[]> PRIMITIVE_ARG_TYPES = makePrimitiveArgTypes();
+
+    /**
+     * The constructor's parameter types, and, for each primitive one, the
+     * boxed types from PRIMITIVE_ARG_TYPES (null for the others), so that
+     * checking the arguments to each call doesn't have to look them up.
+     */
+    private final Class<?>[] paramTypes;
+    private final Class<?>[][] primitiveArgTypesOrNull;
+
+    /**
+     * Non-null iff the handler map binds with method handles.
+     * Calls the constructor, taking its arguments as an Object[].
+     */
+    private final MethodHandle constructorHandleOrNull;
+
     /**
      * Number of parameters to constructor.
      */
@@ -118,7 +146,8 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
         for (Field field : clazz.getDeclaredFields()) {
             FieldRequirement requirement = getFieldRequirement(field);
             if (!Modifier.isStatic(field.getModifiers()) && requirement != FieldRequirement.IGNORED) {
-                final B2JsonTypeHandler<?> handler = getFieldHandler(field.getGenericType(), handlerMap);
+                final boolean intern = field.getAnnotation(B2Json.intern.class) != null;
+                final B2JsonTypeHandler<?> handler = getFieldHandler(field.getGenericType(), handlerMap, intern);
                 final Object defaultValueOrNull = getDefaultValueOrNull(field, handler);
                 final VersionRange versionRange = getVersionRange(field);
                 final FieldInfo fieldInfo = new FieldInfo(field, handler, requirement, defaultValueOrNull, versionRange);
@@ -127,6 +156,7 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
         }
         fields = fieldMap.values().toArray(new FieldInfo [fieldMap.size()]);
         Arrays.sort(fields);
+        fieldNameTable = new B2JsonFieldNameTable<>(fieldMap);
 
         // Find the constructor to use.
         Constructor<T> chosenConstructor = null;
@@ -144,6 +174,11 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
             throw new B2JsonException(clazz.getName() + " has no constructor annotated with B2Json.constructor");
         }
         this.constructor = chosenConstructor;
+        this.paramTypes = chosenConstructor.getParameterTypes();
+        this.primitiveArgTypesOrNull = new Class<?>[paramTypes.length][];
+        for (int i = 0; i < paramTypes.length; i++) {
+            primitiveArgTypesOrNull[i] = PRIMITIVE_ARG_TYPES.get(paramTypes[i]);
+        }
 
         // Does the constructor take the version number as a parameter?
         final B2Json.constructor annotation = chosenConstructor.getAnnotation(B2Json.constructor.class);
@@ -205,6 +240,26 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
                 }
             }
         }
+
+        // method handles are faster than reflection once the JIT has warmed up,
+        // and getLong() lets us write long and int fields without boxing them.
+        if (handlerMap.bindsWithMethodHandles()) {
+            for (FieldInfo fieldInfo : fields) {
+                fieldInfo.bindWithMethodHandles();
+            }
+            try {
+                this.constructorHandleOrNull = MethodHandles.lookup()
+                        .unreflectConstructor(chosenConstructor)
+                        .asType(MethodType.genericMethodType(constructorParamCount))
+                        .asSpreader(Object[].class, constructorParamCount);
+            }
+            catch (IllegalAccessException e) {
+                throw new B2JsonException("can't make constructor handle for " + clazz.getName() + ": " + e.getMessage(), e);
+            }
+        }
+        else {
+            this.constructorHandleOrNull = null;
+        }
     }
 
     /**
@@ -261,50 +316,57 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
         }
     }
 
-    private B2JsonTypeHandler getFieldHandler(Type fieldType, B2JsonHandlerMap handlerMap) throws B2JsonException {
+    /**
+     * @param intern whether strings in the value should be interned.  for maps,
+     *               that's just the keys, since the values are usually unique.
+     */
+    private B2JsonTypeHandler getFieldHandler(Type fieldType, B2JsonHandlerMap handlerMap, boolean intern) throws B2JsonException {
         if (fieldType instanceof ParameterizedType) {
             ParameterizedType paramType = (ParameterizedType) fieldType;
             final Class rawType = (Class) paramType.getRawType();
             if (rawType == LinkedHashSet.class) {
                 Type itemType = paramType.getActualTypeArguments()[0];
-                B2JsonTypeHandler<?> itemHandler = getFieldHandler(itemType, handlerMap);
+                B2JsonTypeHandler<?> itemHandler = getFieldHandler(itemType, handlerMap, intern);
                 return new B2JsonLinkedHashSetHandler(itemHandler);
             }
             if (rawType == List.class) {
                 Type itemType = paramType.getActualTypeArguments()[0];
-                B2JsonTypeHandler<?> itemHandler = getFieldHandler(itemType, handlerMap);
+                B2JsonTypeHandler<?> itemHandler = getFieldHandler(itemType, handlerMap, intern);
                 return new B2JsonListHandler(itemHandler);
             }
             if (rawType == TreeSet.class) {
                 Type itemType = paramType.getActualTypeArguments()[0];
-                B2JsonTypeHandler<?> itemHandler = getFieldHandler(itemType, handlerMap);
+                B2JsonTypeHandler<?> itemHandler = getFieldHandler(itemType, handlerMap, intern);
                 return new B2JsonTreeSetHandler(itemHandler);
             }
             if (rawType == Set.class) {
                 Type itemType = paramType.getActualTypeArguments()[0];
-                B2JsonTypeHandler<?> itemHandler = getFieldHandler(itemType, handlerMap);
+                B2JsonTypeHandler<?> itemHandler = getFieldHandler(itemType, handlerMap, intern);
                 return new B2JsonSetHandler(itemHandler);
             }
             if (rawType == EnumSet.class) {
                 Type itemType = paramType.getActualTypeArguments()[0];
-                B2JsonTypeHandler<?> itemHandler = getFieldHandler(itemType, handlerMap);
+                B2JsonTypeHandler<?> itemHandler = getFieldHandler(itemType, handlerMap, intern);
                 return new B2JsonEnumSetHandler(itemHandler);
             }
             if (rawType == Map.class || rawType == TreeMap.class) {
                 Type keyType = paramType.getActualTypeArguments()[0];
                 Type valueType = paramType.getActualTypeArguments()[1];
-                B2JsonTypeHandler<?> keyHandler = getFieldHandler(keyType, handlerMap);
-                B2JsonTypeHandler<?> valueHandler = getFieldHandler(valueType, handlerMap);
+                B2JsonTypeHandler<?> keyHandler = getFieldHandler(keyType, handlerMap, intern);
+                B2JsonTypeHandler<?> valueHandler = getFieldHandler(valueType, handlerMap, false);
                 return new B2JsonMapHandler(keyHandler, valueHandler);
             }
             if (rawType == ConcurrentMap.class) {
                 Type keyType = paramType.getActualTypeArguments()[0];
                 Type valueType = paramType.getActualTypeArguments()[1];
-                B2JsonTypeHandler<?> keyHandler = getFieldHandler(keyType, handlerMap);
-                B2JsonTypeHandler<?> valueHandler = getFieldHandler(valueType, handlerMap);
+                B2JsonTypeHandler<?> keyHandler = getFieldHandler(keyType, handlerMap, intern);
+                B2JsonTypeHandler<?> valueHandler = getFieldHandler(valueType, handlerMap, false);
                 return new B2JsonConcurrentMapHandler(keyHandler, valueHandler);
             }
         }
+        if (intern && fieldType == String.class) {
+            return B2JsonStringHandler.INTERNING;
+        }
         if (fieldType instanceof Class) {
             final Class fieldClass = (Class) fieldType;
             //noinspection unchecked
@@ -358,20 +420,24 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
      * The type name field for a member of a union type is added alphabetically in sequence, if needed.
      */
     public void serialize(T obj, B2JsonOptions options, B2JsonWriter out) throws IOException, B2JsonException {
-        try {
-            final int version = options.getVersion();
-            boolean typeFieldDone = false;  // whether the type field for a member of a union type has been emitted
-            out.startObject();
-            if (fields != null) {
-                for (FieldInfo fieldInfo : fields) {
-                    if (unionTypeFieldName != null && !typeFieldDone && unionTypeFieldName.compareTo(fieldInfo.getName()) < 0) {
-                        out.writeObjectFieldNameAndColon(unionTypeFieldName);
-                        out.writeString(unionTypeFieldValue);
-                        typeFieldDone = true;
+        final int version = options.getVersion();
+        boolean typeFieldDone = false;  // whether the type field for a member of a union type has been emitted
+        out.startObject();
+        if (fields != null) {
+            for (FieldInfo fieldInfo : fields) {
+                if (unionTypeFieldName != null && !typeFieldDone && unionTypeFieldName.compareTo(fieldInfo.getName()) < 0) {
+                    out.writeObjectFieldNameAndColon(unionTypeFieldName);
+                    out.writeString(unionTypeFieldValue);
+                    typeFieldDone = true;
+                }
+                if (fieldInfo.isInVersion(version)) {
+                    out.writeObjectFieldNameAndColon(fieldInfo.getName());
+                    if (fieldInfo.hasLongGetter()) {
+                        // a long or int, which can't be null.
+                        out.writeLong(fieldInfo.getLong(obj));
                     }
-                    if (fieldInfo.isInVersion(version)) {
-                        out.writeObjectFieldNameAndColon(fieldInfo.getName());
-                        final Object value = fieldInfo.field.get(obj);
+                    else {
+                        final Object value = fieldInfo.get(obj);
                         if (fieldInfo.isRequiredAndInVersion(version) && value == null) {
                             throw new B2JsonException("required field " + fieldInfo.getName() + " cannot be null");
                         }
@@ -380,15 +446,12 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
                     }
                 }
             }
-            if (unionTypeFieldName != null && !typeFieldDone) {
-                out.writeObjectFieldNameAndColon(unionTypeFieldName);
-                out.writeString(unionTypeFieldValue);
-            }
-            out.finishObject();
         }
-        catch (IllegalAccessException e) {
-            throw new RuntimeException(e.getMessage(), e);
+        if (unionTypeFieldName != null && !typeFieldDone) {
+            out.writeObjectFieldNameAndColon(unionTypeFieldName);
+            out.writeString(unionTypeFieldValue);
         }
+        out.finishObject();
     }
 
     public T deserialize(B2JsonReader in, B2JsonOptions options) throws B2JsonException, IOException {
@@ -400,6 +463,7 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
 
         final int version = options.getVersion();
         final Object [] constructorArgs = new Object [constructorParamCount];
+        final Set<String> projectionOrNull = options.getFieldProjectionOrNull(clazz);
 
         // Read the values that are present in the JSON.
         long foundFieldBits = 0;
@@ -409,15 +473,19 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
         }
         if (in.startObjectAndCheckForContents()) {
             do {
-                String fieldName = in.readObjectFieldNameAndColon();
-                FieldInfo fieldInfo = fieldMap.get(fieldName);
+                FieldInfo fieldInfo = in.readObjectFieldNameAndColon(fieldNameTable);
                 if (fieldInfo == null) {
+                    final String fieldName = in.getUnmatchedFieldName();
                     if ((options.getExtraFieldOption() == B2JsonOptions.ExtraFieldOption.ERROR) &&
                             (fieldsToDiscard == null || !fieldsToDiscard.contains(fieldName))) {
                         throw new B2JsonException("unknown field in " + clazz.getName() + ": " + fieldName);
                     }
                     in.skipValue();
                 }
+                else if (projectionOrNull != null && !projectionOrNull.contains(fieldInfo.getName())) {
+                    // not wanted, so don't bother making an object for it.
+                    in.skipValue();
+                }
                 else {
                     if ((foundFieldBits & fieldInfo.bit) != 0) {
                         throw new B2JsonException("duplicate field: " + fieldInfo.getName());
@@ -439,7 +507,7 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
             constructorArgs[versionParamIndexOrNull] = version;
         }
 
-        return deserializeFromConstructorArgs(constructorArgs, version);
+        return deserializeFromConstructorArgs(constructorArgs, version, projectionOrNull);
     }
 
     public T deserializeFromFieldNameToValueMap(Map<String, Object> fieldNameToValue, B2JsonOptions options) throws B2JsonException {
@@ -509,6 +577,16 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
     }
 
     private T deserializeFromConstructorArgs(Object[] constructorArgs, int version) throws B2JsonException {
+        return deserializeFromConstructorArgs(constructorArgs, version, null);
+    }
+
+    /**
+     * @param projectionOrNull if non-null, the only fields that were read.
+     *                         the others get default values, even if they're required.
+     */
+    private T deserializeFromConstructorArgs(Object[] constructorArgs,
+                                             int version,
+                                             Set<String> projectionOrNull) throws B2JsonException {
         if (fields == null) {
             throw new B2JsonException("B2JsonObjectHandler.deserializeFromConstructorArgs called with null fields");
         }
@@ -518,7 +596,8 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
         for (FieldInfo fieldInfo : fields) {
             int index = fieldInfo.constructorArgIndex;
             if (constructorArgs[index] == null) {
-                if (fieldInfo.isRequiredAndInVersion(version)) {
+                if (fieldInfo.isRequiredAndInVersion(version) &&
+                        (projectionOrNull == null || projectionOrNull.contains(fieldInfo.getName()))) {
                     throw new B2JsonException("required field " + fieldInfo.getName() + " is missing");
                 }
                 if (fieldInfo.defaultValueOrNull != null) {
@@ -535,15 +614,58 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
             }
         }
 
+        return construct(constructorArgs);
+    }
+
+    /**
+     * Calls the constructor.  It fails the same way whether the constructor
+     * is bound with a method handle or called through reflection:
+     *   * an argument that doesn't fit its parameter, including a null for
+     *     a primitive, is a B2JsonBadValueException.
+     *   * an IllegalArgumentException thrown by the constructor is a
+     *     B2JsonBadValueException, and any other Exception it throws is
+     *     wrapped in a B2JsonException.
+     *   * Errors are rethrown as they are.
+     *
+     * The arguments are checked before the call, because a method handle
+     * reports a bad argument with the same ClassCastException or
+     * NullPointerException that the constructor itself might throw.
+     */
+    /*package*/ T construct(Object[] constructorArgs) throws B2JsonException {
+        checkConstructorArgs(constructorArgs);
+
+        if (constructorHandleOrNull != null) {
+            try {
+                //noinspection unchecked
+                return (T) (Object) constructorHandleOrNull.invokeExact(constructorArgs);
+            }
+            catch (Error e) {
+                throw e;
+            }
+            catch (IllegalArgumentException e) {
+                throw new B2JsonBadValueException(e.getMessage());
+            }
+            catch (Throwable t) {
+                throw new B2JsonException(t.getMessage(), t);
+            }
+        }
+
         try {
             return constructor.newInstance(constructorArgs);
         }
         catch (InstantiationException | IllegalAccessException e) {
             throw new B2JsonException(e.getMessage(), e);
         }
+        catch (IllegalArgumentException e) {
+            // newInstance() didn't like the arguments.
+            throw new B2JsonBadValueException(e.getMessage());
+        }
         catch (InvocationTargetException e) {
             Throwable targetException = e.getTargetException();
-            if (targetException instanceof IllegalArgumentException) {
+            if (targetException instanceof Error) {
+                throw (Error) targetException;
+            }
+            else if (targetException instanceof IllegalArgumentException) {
                 throw new B2JsonBadValueException(targetException.getMessage());
             }
             else {
@@ -552,6 +674,54 @@ public class B2JsonObjectHandler<T> extends B2JsonNonUrlTypeHandler<T> {
         }
     }
 
+    private void checkConstructorArgs(Object[] constructorArgs) throws B2JsonBadValueException {
+        for (int i = 0; i < paramTypes.length; i++) {
+            final Object arg = constructorArgs[i];
+            final Class<?>[] argTypesOrNull = primitiveArgTypesOrNull[i];
+            final boolean fits;
+            if (arg == null) {
+                fits = (argTypesOrNull == null);
+            }
+            else if (argTypesOrNull != null) {
+                fits = isOneOf(arg.getClass(), argTypesOrNull);
+            }
+            else {
+                fits = paramTypes[i].isInstance(arg);
+            }
+            if (!fits) {
+                throw new B2JsonBadValueException("argument " + i + " of " + constructor + " should be a " +
+                        paramTypes[i].getName() + ", but it's " + ((arg == null) ? "null" : "a " + arg.getClass().getName()));
+            }
+        }
+    }
+
+    private static boolean isOneOf(Class<?> argType, Class<?>[] argTypes) {
+        // there are at most seven, and the exact boxed type is first.
+        for (Class<?> candidate : argTypes) {
+            if (candidate == argType) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<Class<?>, Class<?>[]> makePrimitiveArgTypes() {
+        final Map<Class<?>, Class<?>[]> types = new HashMap<>();
+        types.put(boolean.class, classes(Boolean.class));
+        types.put(char.class, classes(Character.class));
+        types.put(byte.class, classes(Byte.class));
+        types.put(short.class, classes(Short.class, Byte.class));
+        types.put(int.class, classes(Integer.class, Character.class, Short.class, Byte.class));
+        types.put(long.class, classes(Long.class, Integer.class, Character.class, Short.class, Byte.class));
+        types.put(float.class, classes(Float.class, Long.class, Integer.class, Character.class, Short.class, Byte.class));
+        types.put(double.class, classes(Double.class, Float.class, Long.class, Integer.class, Character.class, Short.class, Byte.class));
+        return types;
+    }
+
+    private static Class<?>[] classes(Class<?>... classes) {
+        return classes;
+    }
+
     public T defaultValueForOptional() {
         return null;
     }
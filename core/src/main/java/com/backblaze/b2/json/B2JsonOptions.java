@@ -5,6 +5,13 @@
 
 package com.backblaze.b2.json;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Options used by JSON serialization and de-serialization.
  */
@@ -21,6 +28,12 @@ public class B2JsonOptions {
     public static final B2JsonOptions DEFAULT_AND_ALLOW_EXTRA_FIELDS =
             builder().setExtraFieldOption(ExtraFieldOption.IGNORE).build();
 
+    /**
+     * The default set of options, except that the output has no whitespace.
+     */
+    public static final B2JsonOptions DEFAULT_COMPACT =
+            builder().setSerializationOption(SerializationOption.COMPACT).build();
+
     /**
      * What to do with extra fields found when de-serializing.
      */
@@ -29,6 +42,14 @@ public class B2JsonOptions {
         IGNORE   // Silently ignore extra fields.
     }
 
+    /**
+     * How to lay out the JSON when serializing.
+     */
+    public enum SerializationOption {
+        PRETTY,  // Newlines and indentation, for people to read.
+        COMPACT  // No whitespace at all, for machines to read.
+    }
+
     /**
      * What to do with extra fields found when de-serializing.
      */
@@ -42,12 +63,28 @@ public class B2JsonOptions {
      */
     private final int version;
 
+    /**
+     * How to lay out the JSON when serializing.
+     */
+    private final SerializationOption serializationOption;
+
+    /**
+     * For each class that has a projection, the names of the only fields
+     * to read when de-serializing objects of that class.
+     */
+    private final Map<Class<?>, Set<String>> fieldProjections;
+
     /**
      * Initialize a new B2JsonOptions.
      */
-    private B2JsonOptions(ExtraFieldOption extraFieldOption, int version) {
+    private B2JsonOptions(ExtraFieldOption extraFieldOption,
+                          int version,
+                          SerializationOption serializationOption,
+                          Map<Class<?>, Set<String>> fieldProjections) {
         this.extraFieldOption = extraFieldOption;
         this.version = version;
+        this.serializationOption = serializationOption;
+        this.fieldProjections = fieldProjections;
     }
 
     /**
@@ -64,6 +101,24 @@ public class B2JsonOptions {
         return version;
     }
 
+    /**
+     * How to lay out the JSON when serializing.
+     */
+    public SerializationOption getSerializationOption() {
+        return serializationOption;
+    }
+
+    /**
+     * The names of the only fields to read when de-serializing an object
+     * of the given class, or null if all of them should be read.
+     */
+    public Set<String> getFieldProjectionOrNull(Class<?> clazz) {
+        if (fieldProjections.isEmpty()) {
+            return null;
+        }
+        return fieldProjections.get(clazz);
+    }
+
     /**
      * Returns a new builder for B2JsonOptions.
      */
@@ -78,6 +133,8 @@ public class B2JsonOptions {
 
         private ExtraFieldOption extraFieldOption = ExtraFieldOption.ERROR;
         private int version = 1;
+        private SerializationOption serializationOption = SerializationOption.PRETTY;
+        private final Map<Class<?>, Set<String>> fieldProjections = new HashMap<>();
 
         public Builder setExtraFieldOption(ExtraFieldOption extraFieldOption) {
             this.extraFieldOption = extraFieldOption;
@@ -89,8 +146,32 @@ public class B2JsonOptions {
             return this;
         }
 
+        public Builder setSerializationOption(SerializationOption serializationOption) {
+            this.serializationOption = serializationOption;
+            return this;
+        }
+
+        /**
+         * When de-serializing objects of the given class, only read the
+         * named fields.  The values of all other fields are skipped
+         * without being parsed into objects, and the constructor gets
+         * null (or zero, or false) for them, even if they're required.
+         * This is for reading big responses, like file listings, when you
+         * only need a few fields from each object.
+         *
+         * This has no effect on serialization.
+         */
+        public Builder setFieldProjection(Class<?> clazz, String... fieldNames) {
+            this.fieldProjections.put(clazz, Collections.unmodifiableSet(new HashSet<>(Arrays.asList(fieldNames))));
+            return this;
+        }
+
         public B2JsonOptions build() {
-            return new B2JsonOptions(extraFieldOption, version);
+            return new B2JsonOptions(
+                    extraFieldOption,
+                    version,
+                    serializationOption,
+                    Collections.unmodifiableMap(new HashMap<>(fieldProjections)));
         }
     }
 }
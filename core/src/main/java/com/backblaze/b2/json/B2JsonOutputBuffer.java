@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.json;
+
+import com.backblaze.b2.util.B2Utf8Util;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * B2JsonOutputBuffer is a growable byte array that B2JsonWriter can encode
+ * JSON into directly.  It's like a ByteArrayOutputStream, except that:
+ *   * it isn't synchronized.
+ *   * it can encode whole strings as UTF-8 (or as quoted JSON strings)
+ *     straight into its array, using B2Utf8Util's encoders.
+ *   * it can be reset and reused, and B2Json keeps one per thread so
+ *     that serializing an object doesn't need to allocate a new buffer
+ *     (or a String) every time.  (threads that only live for one task,
+ *     such as virtual threads from a thread-per-task executor, don't get
+ *     that reuse.)
+ *
+ * THREAD-SAFETY: This class is NOT thread-safe.
+ */
+public class B2JsonOutputBuffer extends OutputStream {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // a buffer that has grown larger than this isn't kept for reuse, so one
+    // huge object doesn't pin a huge array to a thread forever.
+    private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+    // strings are encoded this many chars at a time, and each chunk only
+    // needs room for its worst case, so a long string doesn't make the
+    // array grow to several times the size of its encoding.
+    private static final int CHARS_PER_CHUNK = 1024;
+
+    private static final ThreadLocal<B2JsonOutputBuffer> pool = ThreadLocal.withInitial(B2JsonOutputBuffer::new);
+
+    private byte[] buf;
+    private int length;
+
+    // true while a pooled buffer has been handed out by acquire().
+    private boolean inUse;
+
+    public B2JsonOutputBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public B2JsonOutputBuffer(int initialCapacity) {
+        this.buf = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * @return an empty buffer for the current thread to use until it calls
+     *         release().  usually it's the same one every time.  if the
+     *         thread's buffer is already in use (because a type handler is
+     *         serializing something else in the middle of serializing), this
+     *         returns a new buffer instead.
+     */
+    /*package*/ static B2JsonOutputBuffer acquire() {
+        final B2JsonOutputBuffer buffer = pool.get();
+        if (buffer.inUse) {
+            return new B2JsonOutputBuffer();
+        }
+        buffer.inUse = true;
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Gives back a buffer from acquire().  The caller must not use it
+     * (or anything returned by getArray()) after this.
+     */
+    /*package*/ static void release(B2JsonOutputBuffer buffer) {
+        if (pool.get() != buffer) {
+            return;
+        }
+        buffer.inUse = false;
+        if (buffer.buf.length > MAX_POOLED_CAPACITY) {
+            pool.remove();
+        }
+    }
+
+    /**
+     * Forgets everything written so far, keeping the array for reuse.
+     */
+    public void reset() {
+        length = 0;
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the array holding the bytes written.  only the first
+     *         getLength() bytes are meaningful.  the array may change
+     *         when more is written.
+     */
+    public byte[] getArray() {
+        return buf;
+    }
+
+    /**
+     * @return a copy of the bytes written.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, length);
+    }
+
+    /**
+     * @return the bytes written, decoded as UTF-8.
+     */
+    public String toUtf8String() {
+        return new String(buf, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the bytes written so far to out.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, length);
+    }
+
+    @Override
+    public void write(int b) {
+        if (length == buf.length) {
+            grow(1);
+        }
+        buf[length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) {
+        ensureRoomFor(len);
+        System.arraycopy(bytes, off, buf, length, len);
+        length += len;
+    }
+
+    /**
+     * Appends str encoded as UTF-8.
+     *
+     * @throws IOException if str has a bad surrogate pair.
+     */
+    public void writeUtf8(String str) throws IOException {
+        final int strLen = str.length();
+        int i = 0;
+        while (i < strLen) {
+            final int end = B2Utf8Util.chunkEnd(str, i, CHARS_PER_CHUNK);
+            ensureRoomFor((long) B2Utf8Util.MAX_UTF8_BYTES_PER_CHAR * (end - i));
+            length = B2Utf8Util.encodeUtf8(str, i, end, buf, length);
+            i = end;
+        }
+    }
+
+    /**
+     * Appends value as a quoted JSON string encoded as UTF-8, the same
+     * as B2Utf8Util.writeJsonString().
+     *
+     * @throws IOException if value has a bad surrogate pair.
+     */
+    public void writeJsonString(String value) throws IOException {
+        write('"');
+        final int strLen = value.length();
+        int i = 0;
+        while (i < strLen) {
+            final int end = B2Utf8Util.chunkEnd(value, i, CHARS_PER_CHUNK);
+            ensureRoomFor((long) B2Utf8Util.MAX_JSON_STRING_BYTES_PER_CHAR * (end - i));
+            length = B2Utf8Util.encodeJsonStringChars(value, i, end, buf, length);
+            i = end;
+        }
+        write('"');
+    }
+
+    private void ensureRoomFor(long count) {
+        if (buf.length - length < count) {
+            grow(count);
+        }
+    }
+
+    private void grow(long count) {
+        final long needed = length + count;
+        if (needed > Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("B2JsonOutputBuffer can't hold " + needed + " bytes");
+        }
+        final long doubled = 2L * buf.length;
+        buf = Arrays.copyOf(buf, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(doubled, needed)));
+    }
+}
@@ -6,20 +6,51 @@
 package com.backblaze.b2.json;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Reads a stream of characters and converts them to JSON tokens.
  *
+ * The characters can come from a Reader, or they can be UTF-8 bytes
+ * from a byte array, ByteBuffer, or InputStream.  Reading bytes is
+ * faster, because most strings in JSON are plain ASCII and can be
+ * made directly from the bytes, and field names can be matched
+ * without making strings at all.
+ *
+ * When reading bytes, currentChar holds one byte at a time.  All of
+ * the JSON syntax is ASCII, so only the contents of strings need to
+ * care about multi-byte UTF-8 sequences.
+ *
  * This class is NOT thread safe.
  */
 public class B2JsonReader {
 
     /**
-     * The source of JSON to read.
+     * How much to read from an InputStream at a time.
+     */
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    /**
+     * The source of JSON to read, if it's characters.  Null when reading bytes.
      */
     private final Reader in;
 
+    /**
+     * The source of more bytes, if we're reading bytes from a stream.
+     */
+    private final InputStream byteStream;
+
+    /**
+     * When reading bytes, the bytes to read are bytes[pos] through bytes[end - 1].
+     * When reading characters, these are null, 0, and 0.
+     */
+    private final byte[] bytes;
+    private int pos;
+    private int end;
+
     /**
      * The next character to be read, or -1 at EOF.
      *
@@ -37,14 +68,78 @@ public class B2JsonReader {
      */
     private final StringBuilder builder = new StringBuilder();
 
+    /**
+     * When a field name wasn't found by readObjectFieldNameAndColon(table),
+     * this is the name.  Otherwise, it's null.
+     */
+    private String unmatchedFieldName;
+
     /**
      * Initializes a new reader.
      */
     public B2JsonReader(Reader in) throws IOException {
         this.in = in;
+        this.byteStream = null;
+        this.bytes = null;
         this.currentChar = in.read();
     }
 
+    /**
+     * Initializes a new reader for JSON in UTF-8.  The reader will read
+     * bytes from the stream as it needs them, and it reads ahead, so
+     * the stream's position when we're done is undefined.
+     */
+    public B2JsonReader(InputStream utf8In) throws IOException {
+        this.in = null;
+        this.byteStream = utf8In;
+        this.bytes = new byte[STREAM_BUFFER_SIZE];
+        next();
+    }
+
+    /**
+     * Initializes a new reader for JSON in UTF-8.  The array is
+     * used directly, so don't change it while reading.
+     */
+    public B2JsonReader(byte[] utf8Bytes) throws IOException {
+        this(utf8Bytes, 0, utf8Bytes.length);
+    }
+
+    /**
+     * Initializes a new reader for the length bytes of UTF-8 JSON
+     * starting at utf8Bytes[offset].
+     */
+    public B2JsonReader(byte[] utf8Bytes, int offset, int length) throws IOException {
+        this.in = null;
+        this.byteStream = null;
+        this.bytes = utf8Bytes;
+        this.pos = offset;
+        this.end = offset + length;
+        next();
+    }
+
+    /**
+     * Initializes a new reader for the UTF-8 JSON between the buffer's
+     * position and limit.  The buffer's position isn't changed.
+     *
+     * A buffer that's backed by an array is read directly.  Others
+     * (such as direct buffers) are copied first.
+     */
+    public B2JsonReader(ByteBuffer utf8Buffer) throws IOException {
+        this.in = null;
+        this.byteStream = null;
+        if (utf8Buffer.hasArray()) {
+            this.bytes = utf8Buffer.array();
+            this.pos = utf8Buffer.arrayOffset() + utf8Buffer.position();
+            this.end = utf8Buffer.arrayOffset() + utf8Buffer.limit();
+        } else {
+            this.bytes = new byte[utf8Buffer.remaining()];
+            utf8Buffer.duplicate().get(bytes);
+            this.pos = 0;
+            this.end = bytes.length;
+        }
+        next();
+    }
+
     /**
      * Returns the next char that is not whitespace, but does not consume it.
      */
@@ -66,10 +161,10 @@ public class B2JsonReader {
             throw new B2JsonException("expected value but found EOF");
         }
         else if (currentChar == '"') {
-            readString();
+            skipString();
         }
         else if (currentChar == '-' || isDigit(currentChar)) {
-            readNumberAsString();
+            readNumberIntoBuilder();
         }
         else if (currentChar == 'n') {
             readNull();
@@ -83,7 +178,9 @@ public class B2JsonReader {
         else if (currentChar == '{') {
             if (startObjectAndCheckForContents()) {
                 do {
-                    readObjectFieldNameAndColon();
+                    skipWhitespace();
+                    skipString();
+                    skipObjectColon();
                     skipValue();
                 } while (this.objectHasMoreFields());
             }
@@ -109,6 +206,73 @@ public class B2JsonReader {
      * Throws JsonError if the next thing is not a number.
      */
     public String readNumberAsString() throws IOException, B2JsonException {
+        readNumberIntoBuilder();
+        return builder.toString();
+    }
+
+    /**
+     * Reads the next value, which is expected to be an integer that
+     * fits in a long, without making a string for it.
+     *
+     * Throws JsonError if the next thing is not a number, or if it's
+     * not a long.
+     */
+    public long readLong() throws IOException, B2JsonException {
+        readNumberIntoBuilder();
+        return builderAsLong(Long.MIN_VALUE, Long.MAX_VALUE, "long");
+    }
+
+    /**
+     * Reads the next value, which is expected to be an integer that
+     * fits in an int, without making a string for it.
+     *
+     * Throws JsonError if the next thing is not a number, or if it's
+     * not an int.
+     */
+    public int readInt() throws IOException, B2JsonException {
+        readNumberIntoBuilder();
+        return (int) builderAsLong(Integer.MIN_VALUE, Integer.MAX_VALUE, "integer");
+    }
+
+    /**
+     * Parses the number in the builder, which has already been checked
+     * to be valid JSON number syntax.
+     */
+    private long builderAsLong(long min, long max, String typeName) throws B2JsonException {
+        final int length = builder.length();
+        final boolean negative = builder.charAt(0) == '-';
+
+        // accumulate negatively, so that MIN_VALUE doesn't overflow.
+        long value = 0;
+        for (int i = negative ? 1 : 0; i < length; i++) {
+            final char c = builder.charAt(i);
+            if (!isDigit(c)) {
+                // a fraction or exponent.
+                throw new B2JsonException("bad " + typeName + ": " + builder);
+            }
+            final int digit = c - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw new B2JsonException("bad " + typeName + ": " + builder);
+            }
+            value = value * 10 - digit;
+        }
+
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                throw new B2JsonException("bad " + typeName + ": " + builder);
+            }
+            value = -value;
+        }
+        if (value < min || max < value) {
+            throw new B2JsonException("bad " + typeName + ": " + builder);
+        }
+        return value;
+    }
+
+    /**
+     * Reads the next value, which is expected to be a number, into the builder.
+     */
+    private void readNumberIntoBuilder() throws IOException, B2JsonException {
         skipWhitespace();
 
         builder.setLength(0);
@@ -156,8 +320,6 @@ public class B2JsonReader {
                 appendAndNext();
             }
         }
-
-        return builder.toString();
     }
 
     /**
@@ -169,7 +331,82 @@ public class B2JsonReader {
             throw new B2JsonException("string does not start with quote");
         }
         next();
+        return readRestOfString();
+    }
+
+    /**
+     * Reads a string value, like readString(), except that short strings
+     * are looked up in a shared table of recently read strings, and the
+     * one from the table is returned if it matches.  Use this for values
+     * that are likely to be repeated a lot, so that they can share memory.
+     */
+    public String readInternedString() throws B2JsonException, IOException {
+        skipWhitespace();
+        if (currentChar != '"') {
+            throw new B2JsonException("string does not start with quote");
+        }
+        next();
+
+        if (bytes != null) {
+            final int length = plainAsciiLengthOrMinusOne();
+            if (0 <= length && length <= B2JsonStringInternTable.MAX_LENGTH) {
+                final String result = B2JsonStringInternTable.INSTANCE.getOrAdd(bytes, pos - 1, length);
+                skipPastPlainAscii(length);
+                return result;
+            }
+            if (length >= 0) {
+                return readRestOfString();
+            }
+        }
+
+        readRestOfStringIntoBuilder();
+        if (builder.length() <= B2JsonStringInternTable.MAX_LENGTH) {
+            return B2JsonStringInternTable.INSTANCE.getOrAdd(builder);
+        }
+        return builder.toString();
+    }
 
+    /**
+     * Moves past a string value, checking that it's well-formed,
+     * without making a String for it.  currentChar must be its
+     * opening quote.
+     */
+    private void skipString() throws B2JsonException, IOException {
+        if (currentChar != '"') {
+            throw new B2JsonException("string does not start with quote");
+        }
+        next();
+        if (bytes != null) {
+            final int length = plainAsciiLengthOrMinusOne();
+            if (length >= 0) {
+                skipPastPlainAscii(length);
+                return;
+            }
+        }
+        readRestOfStringIntoBuilder();
+    }
+
+    /**
+     * Reads the rest of a string value, after its opening quote,
+     * returning its contents.
+     */
+    private String readRestOfString() throws B2JsonException, IOException {
+        if (bytes != null) {
+            final String asciiOrNull = readRestOfPlainAsciiStringOrNull();
+            if (asciiOrNull != null) {
+                return asciiOrNull;
+            }
+        }
+
+        readRestOfStringIntoBuilder();
+        return builder.toString();
+    }
+
+    /**
+     * Reads the rest of a string value, after its opening quote,
+     * into the builder.
+     */
+    private void readRestOfStringIntoBuilder() throws B2JsonException, IOException {
         builder.setLength(0);
         while (currentChar != '"') {
             if (currentChar == EOF) {
@@ -181,13 +418,124 @@ public class B2JsonReader {
             if (currentChar == '\\') {
                 handleBackslashInString();
             }
+            else if (currentChar >= 0x80 && bytes != null) {
+                handleUtf8SequenceInString();
+            }
             else {
                 appendAndNext();
             }
         }
         next(); // skip closing quote
+    }
 
-        return builder.toString();
+    /**
+     * When reading bytes, and the opening quote of a string has been
+     * read, and the rest of the string is in the buffer and is plain
+     * printable ASCII with no escapes, this returns the string made
+     * directly from the bytes and moves past the closing quote.
+     *
+     * Otherwise, this returns null and doesn't move.
+     */
+    private String readRestOfPlainAsciiStringOrNull() throws IOException {
+        final int length = plainAsciiLengthOrMinusOne();
+        if (length < 0) {
+            return null;
+        }
+        final String result = new String(bytes, pos - 1, length, StandardCharsets.ISO_8859_1);
+        skipPastPlainAscii(length);
+        return result;
+    }
+
+    /**
+     * When reading bytes, and the opening quote of a string has been
+     * read, returns the number of bytes before the closing quote if
+     * they're all in the buffer and all plain printable ASCII.
+     * Returns -1 otherwise.
+     */
+    private int plainAsciiLengthOrMinusOne() {
+        if (currentChar == EOF) {
+            return -1;
+        }
+        // currentChar is bytes[pos - 1].
+        final int start = pos - 1;
+        for (int i = start; i < end; i++) {
+            final byte b = bytes[i];
+            if (b == '"') {
+                return i - start;
+            }
+            // bytes are signed, so this catches non-ASCII, too.
+            if (b == '\\' || b < 32) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves past the plain ASCII bytes found by plainAsciiLengthOrMinusOne()
+     * and the closing quote after them.
+     */
+    private void skipPastPlainAscii(int length) throws IOException {
+        pos = pos + length;
+        next();
+    }
+
+    /**
+     * Reads one character of a string that's encoded as a multi-byte UTF-8
+     * sequence and appends it to the builder.
+     *
+     * Like InputStreamReader, this replaces malformed sequences with U+FFFD
+     * instead of failing.
+     */
+    private void handleUtf8SequenceInString() throws IOException {
+        final int lead = currentChar;
+        next();
+
+        final int continuationCount;
+        int codePoint;
+        int minSecond = 0x80;
+        int maxSecond = 0xBF;
+        if (0xC2 <= lead && lead <= 0xDF) {
+            continuationCount = 1;
+            codePoint = lead & 0x1F;
+        }
+        else if (0xE0 <= lead && lead <= 0xEF) {
+            continuationCount = 2;
+            codePoint = lead & 0x0F;
+            if (lead == 0xE0) {
+                minSecond = 0xA0;  // no overlong encodings.
+            }
+            if (lead == 0xED) {
+                maxSecond = 0x9F;  // no surrogates.
+            }
+        }
+        else if (0xF0 <= lead && lead <= 0xF4) {
+            continuationCount = 3;
+            codePoint = lead & 0x07;
+            if (lead == 0xF0) {
+                minSecond = 0x90;  // no overlong encodings.
+            }
+            if (lead == 0xF4) {
+                maxSecond = 0x8F;  // nothing past U+10FFFF.
+            }
+        }
+        else {
+            builder.append('\uFFFD');
+            return;
+        }
+
+        for (int i = 0; i < continuationCount; i++) {
+            final int min = (i == 0) ? minSecond : 0x80;
+            final int max = (i == 0) ? maxSecond : 0xBF;
+            if (currentChar < min || max < currentChar) {
+                // leave the unexpected byte to be read on its own.
+                builder.append('\uFFFD');
+                return;
+            }
+            codePoint = (codePoint << 6) | (currentChar & 0x3F);
+            next();
+        }
+        builder.appendCodePoint(codePoint);
     }
 
     private void handleBackslashInString() throws IOException, B2JsonException {
@@ -341,6 +689,54 @@ public class B2JsonReader {
         return result;
     }
 
+    /**
+     * Reads the name of the next object field and looks it up in the
+     * table.  When reading bytes, plain ASCII names are matched without
+     * making a string.
+     *
+     * @return the table's value for the name, or null if it's not in
+     *         the table, in which case getUnmatchedFieldName() returns
+     *         the name.
+     */
+    /*package*/ <T> T readObjectFieldNameAndColon(B2JsonFieldNameTable<T> table) throws B2JsonException, IOException {
+        unmatchedFieldName = null;
+
+        skipWhitespace();
+        if (currentChar != '"') {
+            throw new B2JsonException("string does not start with quote");
+        }
+        next();
+
+        final T result;
+        final int length = (bytes != null) ? plainAsciiLengthOrMinusOne() : -1;
+
+        if (length >= 0) {
+            result = table.getOrNull(bytes, pos - 1, length);
+            if (result == null) {
+                unmatchedFieldName = new String(bytes, pos - 1, length, StandardCharsets.ISO_8859_1);
+            }
+            skipPastPlainAscii(length);
+        }
+        else {
+            final String name = readRestOfString();
+            result = table.getOrNull(name);
+            if (result == null) {
+                unmatchedFieldName = name;
+            }
+        }
+
+        skipObjectColon();
+        return result;
+    }
+
+    /**
+     * @return the name of the field that readObjectFieldNameAndColon(table)
+     *         most recently failed to find.
+     */
+    /*package*/ String getUnmatchedFieldName() {
+        return unmatchedFieldName;
+    }
+
     public void skipObjectColon() throws IOException, B2JsonException {
         skipWhitespace();
         if (currentChar != ':') {
@@ -539,14 +935,42 @@ public class B2JsonReader {
             throw new IllegalStateException();
         }
         builder.append((char) currentChar);
-        currentChar = in.read();
+        next();
     }
 
     /**
-     * Advances to the next character.
+     * Advances to the next character (or byte, when reading bytes).
      */
     private void next() throws IOException {
-        currentChar = in.read();
+        if (pos < end) {
+            currentChar = bytes[pos++] & 0xff;
+        }
+        else {
+            currentChar = readFromSource();
+        }
+    }
+
+    /**
+     * Reads the next character from the Reader, or refills the buffer
+     * from the InputStream and returns its first byte.  Returns EOF if
+     * there's nothing more.
+     */
+    private int readFromSource() throws IOException {
+        if (in != null) {
+            return in.read();
+        }
+        if (byteStream != null) {
+            int count;
+            do {
+                count = byteStream.read(bytes, 0, bytes.length);
+            } while (count == 0);
+            if (count > 0) {
+                pos = 1;
+                end = count;
+                return bytes[0] & 0xff;
+            }
+        }
+        return EOF;
     }
 
     /**
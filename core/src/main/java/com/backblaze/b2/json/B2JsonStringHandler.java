@@ -9,9 +9,25 @@ import java.io.IOException;
 
 /**
  * (De)serializes String objects.
+ *
+ * An interning handler shares the Strings it reads through
+ * B2JsonReader.readInternedString().  It's used for fields
+ * with the B2Json.intern annotation.
  */
 public class B2JsonStringHandler implements B2JsonTypeHandler<String> {
 
+    /*package*/ static final B2JsonStringHandler INTERNING = new B2JsonStringHandler(true);
+
+    private final boolean intern;
+
+    public B2JsonStringHandler() {
+        this(false);
+    }
+
+    private B2JsonStringHandler(boolean intern) {
+        this.intern = intern;
+    }
+
     public Class<String> getHandledClass() {
         return String.class;
     }
@@ -21,7 +37,7 @@ public class B2JsonStringHandler implements B2JsonTypeHandler<String> {
     }
 
     public String deserialize(B2JsonReader in, B2JsonOptions options) throws B2JsonException, IOException {
-        return in.readString();
+        return intern ? in.readInternedString() : in.readString();
     }
 
     public String deserializeUrlParam(String urlValue) throws B2JsonException {
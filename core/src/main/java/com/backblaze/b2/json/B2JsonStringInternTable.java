@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.json;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small, bounded table of recently read strings, so that short values
+ * that repeat a lot (content types, actions, fileInfo names) can share
+ * one String instead of each object that's read getting its own copy.
+ *
+ * It's direct-mapped: each string can only live in the slot its hash
+ * picks, and a new string simply replaces whatever was there.  So the
+ * table never grows, and a lookup is one array read and a comparison.
+ * A miss just makes a new String, like reading without the table.
+ *
+ * There's one table for the whole process, so strings are shared across
+ * responses, too.  Slots are read and written without locks.  That's
+ * safe because Strings are immutable; the worst a race can do is replace
+ * an entry that another thread would've liked to find.
+ *
+ * THREAD-SAFETY: This class is thread safe.
+ */
+/*package*/ final class B2JsonStringInternTable {
+
+    /**
+     * Longer strings are unlikely to repeat, and take longer to compare.
+     */
+    /*package*/ static final int MAX_LENGTH = 64;
+
+    private static final int SLOT_COUNT = 4096;
+
+    /*package*/ static final B2JsonStringInternTable INSTANCE = new B2JsonStringInternTable(SLOT_COUNT);
+
+    private final String[] slots;
+    private final int mask;
+
+    /*package*/ B2JsonStringInternTable(int slotCount) {
+        if (Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("slotCount must be a power of two");
+        }
+        this.slots = new String[slotCount];
+        this.mask = slotCount - 1;
+    }
+
+    /**
+     * @return a String with the characters in buf[start] through
+     *         buf[start + length - 1], which must all be ASCII.
+     *         it's the one in the table if there is one.
+     */
+    /*package*/ String getOrAdd(byte[] buf, int start, int length) {
+        int h = 0;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + buf[i];
+        }
+        final int slot = spread(h) & mask;
+
+        final String candidate = slots[slot];
+        if (candidate != null && sameChars(candidate, buf, start, length)) {
+            return candidate;
+        }
+        final String result = new String(buf, start, length, StandardCharsets.ISO_8859_1);
+        slots[slot] = result;
+        return result;
+    }
+
+    /**
+     * @return a String with the characters in chars.  it's the one in
+     *         the table if there is one.
+     */
+    /*package*/ String getOrAdd(CharSequence chars) {
+        final int length = chars.length();
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars.charAt(i);
+        }
+        final int slot = spread(h) & mask;
+
+        final String candidate = slots[slot];
+        if (candidate != null && sameChars(candidate, chars)) {
+            return candidate;
+        }
+        final String result = chars.toString();
+        slots[slot] = result;
+        return result;
+    }
+
+    // mix the high bits in, since we only use the low ones.
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean sameChars(String candidate, byte[] buf, int start, int length) {
+        if (candidate.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (candidate.charAt(i) != buf[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameChars(String candidate, CharSequence chars) {
+        final int length = chars.length();
+        if (candidate.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (candidate.charAt(i) != chars.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
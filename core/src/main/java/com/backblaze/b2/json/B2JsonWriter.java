@@ -12,19 +12,63 @@ import java.io.OutputStream;
 
 /**
  * Writes out JSON tokens, formatting them nicely.
+ *
+ * When the output is a B2JsonOutputBuffer, strings are encoded straight
+ * into its array instead of a byte at a time.
+ *
+ * With SerializationOption.COMPACT, no whitespace is written at all.
  */
 public class B2JsonWriter {
     private final OutputStream out;
+    private final B2JsonOutputBuffer bufferOrNull;
     private int indentLevel = 0;
     private boolean objectOrArrayEmpty = true;
     private boolean allowNewlines = true;
+    private final boolean compact;
+
+    // room for the digits of any long, used by writeLong().
+    private final byte[] digits = new byte[20];
 
     public B2JsonWriter(OutputStream out) {
+        this(out, B2JsonOptions.DEFAULT);
+    }
+
+    public B2JsonWriter(OutputStream out, B2JsonOptions options) {
         this.out = out;
+        this.compact = (options.getSerializationOption() == B2JsonOptions.SerializationOption.COMPACT);
+        this.bufferOrNull = (out instanceof B2JsonOutputBuffer) ? (B2JsonOutputBuffer) out : null;
     }
 
     public void writeText(String text) throws IOException {
-        B2Utf8Util.write(text, out);
+        if (bufferOrNull != null) {
+            bufferOrNull.writeUtf8(text);
+        } else {
+            B2Utf8Util.write(text, out);
+        }
+        objectOrArrayEmpty = false;
+    }
+
+    /**
+     * Writes the number, the same as writeText(Long.toString(value)),
+     * but without making a String.
+     */
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            // it has no positive counterpart.
+            writeText(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            out.write('-');
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            i--;
+            digits[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        out.write(digits, i, digits.length - i);
         objectOrArrayEmpty = false;
     }
 
@@ -41,8 +85,17 @@ public class B2JsonWriter {
     public void writeObjectFieldNameAndColon(String name) throws IOException {
         startObjectFieldName();
         writeString(name);
+        writeColon();
+    }
+
+    /**
+     * Writes the colon between an object's key and its value.
+     */
+    public void writeColon() throws IOException {
         out.write(':');
-        out.write(' ');
+        if (!compact) {
+            out.write(' ');
+        }
     }
 
     public void startObjectFieldName() throws IOException {
@@ -81,11 +134,18 @@ public class B2JsonWriter {
     }
 
     public void writeString(String value) throws IOException {
-        B2Utf8Util.writeJsonString(value, out);
+        if (bufferOrNull != null) {
+            bufferOrNull.writeJsonString(value);
+        } else {
+            B2Utf8Util.writeJsonString(value, out);
+        }
         objectOrArrayEmpty = false;
     }
 
     private void newlineAndIndent() throws IOException {
+        if (compact) {
+            return;
+        }
         if (allowNewlines) {
             out.write('\n');
             for (int i = 0; i < indentLevel; i++) {
@@ -7,6 +7,9 @@ package com.backblaze.b2.json;
 
 import com.backblaze.b2.util.B2Preconditions;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 
 /**
@@ -26,6 +29,19 @@ public final class FieldInfo implements Comparable<FieldInfo> {
     public int constructorArgIndex;
     public long bit;
 
+    /**
+     * Non-null iff bindWithMethodHandles() has been called.
+     * Takes the object and returns the field's value, boxed if needed.
+     */
+    private MethodHandle getterOrNull;
+
+    /**
+     * Non-null iff bindWithMethodHandles() has been called and the field
+     * is a long or an int.  Takes the object and returns the value as a
+     * long, without boxing it.
+     */
+    private MethodHandle longGetterOrNull;
+
     /*package*/ FieldInfo(
             Field field, B2JsonTypeHandler<?> handler,
             FieldRequirement requirement,
@@ -45,6 +61,86 @@ public final class FieldInfo implements Comparable<FieldInfo> {
         return field.getName();
     }
 
+    /**
+     * Makes method handles for reading the field, so get() doesn't need
+     * to go through reflection.
+     */
+    /*package*/ void bindWithMethodHandles() throws B2JsonException {
+        final MethodHandle getter;
+        try {
+            getter = MethodHandles.lookup().unreflectGetter(field);
+        }
+        catch (IllegalAccessException e) {
+            throw new B2JsonException("can't make getter for " + field + ": " + e.getMessage(), e);
+        }
+        getterOrNull = getter.asType(MethodType.methodType(Object.class, Object.class));
+        final Class<?> type = field.getType();
+        if (type == long.class || type == int.class) {
+            longGetterOrNull = getter.asType(MethodType.methodType(long.class, Object.class));
+        }
+    }
+
+    /**
+     * @return true iff getLong() can be used for this field.
+     */
+    /*package*/ boolean hasLongGetter() {
+        return longGetterOrNull != null;
+    }
+
+    /**
+     * @return the value of this field in obj.
+     */
+    /*package*/ Object get(Object obj) throws B2JsonException {
+        if (getterOrNull == null) {
+            try {
+                return field.get(obj);
+            }
+            catch (IllegalAccessException e) {
+                throw new B2JsonException("can't get " + field + ": " + e.getMessage(), e);
+            }
+        }
+        try {
+            return (Object) getterOrNull.invokeExact(obj);
+        }
+        catch (Throwable t) {
+            throw translateGetterThrowable(t);
+        }
+    }
+
+    /**
+     * @return the value of this long or int field in obj, without boxing it.
+     *         only call this if hasLongGetter().
+     */
+    /*package*/ long getLong(Object obj) throws B2JsonException {
+        try {
+            return (long) longGetterOrNull.invokeExact(obj);
+        }
+        catch (Throwable t) {
+            throw translateGetterThrowable(t);
+        }
+    }
+
+    /**
+     * Turns what a getter handle threw into what Field.get() would have
+     * thrown: an IllegalArgumentException if obj isn't the right class, a
+     * NullPointerException if it's null, and Errors as they are.  A getter
+     * can't throw anything else, but just in case, it's a B2JsonException.
+     *
+     * @return the exception to throw, if it doesn't throw it itself.
+     */
+    private B2JsonException translateGetterThrowable(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof ClassCastException) {
+            throw new IllegalArgumentException("can't get " + field + " from " + t.getMessage(), t);
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        return new B2JsonException("can't get " + field + ": " + t.getMessage(), t);
+    }
+
     public B2JsonTypeHandler getHandler() {
         return handler;
     }
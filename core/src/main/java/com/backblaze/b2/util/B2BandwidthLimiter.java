@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.util;
+
+/**
+ * B2BandwidthLimiter is a token bucket that limits how many bytes per second
+ * may be moved by all of the streams that share it.
+ *
+ * The bucket fills at bytesPerSecond and holds at most one second's worth
+ * of bytes, so an idle limiter allows a short burst.  A caller that takes
+ * more bytes than the bucket has puts it into debt, and callers after it
+ * wait for that debt to be paid off before their own bytes.  That keeps
+ * the limit in aggregate and serves concurrent streams in the order they
+ * asked, so one busy stream can't starve the others.  To keep any one
+ * caller from running up a long debt with a single big read,
+ * B2InputStreamWithBandwidthLimiter asks for at most getMaxBytesPerAcquire()
+ * at a time, which is about a tenth of a second's worth.
+ *
+ * The rate can be changed at any time with setBytesPerSecond().  Bytes
+ * that were already earned are kept (up to the new bucket size), and
+ * streams that are already waiting finish waiting at the old rate.
+ *
+ * THREAD-SAFETY: this class is thread-safe.  The waiting happens outside
+ *    of any lock.
+ */
+public class B2BandwidthLimiter {
+    // the most bytes to ask for at once is this fraction of a second's worth.
+    private static final int ACQUIRES_PER_SECOND = 10;
+
+    // protected by synchronized(this)
+    private long bytesPerSecond;
+    private double availableBytes;
+    private long lastRefillMillis;
+
+    /**
+     * @param bytesPerSecond the most bytes per second to allow.  must be positive.
+     */
+    public B2BandwidthLimiter(long bytesPerSecond) {
+        B2Preconditions.checkArgument(bytesPerSecond > 0, "bytesPerSecond must be positive");
+        this.bytesPerSecond = bytesPerSecond;
+        this.availableBytes = bytesPerSecond;
+        this.lastRefillMillis = B2Clock.get().monotonicMillis();
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Changes the limit.  It applies to all of the streams sharing this
+     * limiter, including ones that are in progress.
+     *
+     * @param bytesPerSecond the most bytes per second to allow.  must be positive.
+     */
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        B2Preconditions.checkArgument(bytesPerSecond > 0, "bytesPerSecond must be positive");
+        refill(B2Clock.get().monotonicMillis());
+        this.bytesPerSecond = bytesPerSecond;
+        availableBytes = Math.min(bytesPerSecond, availableBytes);
+    }
+
+    /**
+     * @return how many bytes a stream should ask for in a single acquire(),
+     *         so that concurrent streams take turns often.
+     */
+    public synchronized int getMaxBytesPerAcquire() {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, bytesPerSecond / ACQUIRES_PER_SECOND));
+    }
+
+    /**
+     * Waits until it's ok to move the given number of bytes.
+     *
+     * @param nBytes how many bytes the caller is about to move.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void acquire(long nBytes) throws InterruptedException {
+        final long waitMillis = reserve(nBytes);
+        if (waitMillis > 0) {
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    /**
+     * Takes nBytes from the bucket, possibly putting it into debt.
+     *
+     * @param nBytes how many bytes the caller is about to move.
+     * @return how many milliseconds the caller should wait before moving them.
+     */
+    synchronized long reserve(long nBytes) {
+        refill(B2Clock.get().monotonicMillis());
+
+        availableBytes -= nBytes;
+        if (availableBytes >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil((-availableBytes * 1000) / bytesPerSecond);
+    }
+
+    private void refill(long now) {
+        final long elapsedMillis = now - lastRefillMillis;
+        if (elapsedMillis > 0) {
+            availableBytes = Math.min(bytesPerSecond, availableBytes + ((double) elapsedMillis * bytesPerSecond) / 1000);
+            lastRefillMillis = now;
+        }
+    }
+}
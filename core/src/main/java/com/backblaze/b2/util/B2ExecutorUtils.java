@@ -4,6 +4,7 @@
  */
 package com.backblaze.b2.util;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -51,4 +52,90 @@ public class B2ExecutorUtils {
             return thread;
         };
     }
+
+    /**
+     * @return true iff this JVM has virtual threads (JDK 21 and later).
+     */
+    public static boolean areVirtualThreadsSupported() {
+        return VirtualThreads.NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Makes an executor that runs each task on its own new thread.  On JDK 21
+     * and later, the threads are virtual threads, which are cheap enough that
+     * you can have one per part upload, download or listing prefetch without
+     * sizing a pool, even with thousands in flight.  The client's caches
+     * use java.util.concurrent locks instead of monitors, so a thread that
+     * waits for the network while holding one doesn't pin its carrier.
+     *
+     * Since each task gets a new thread, anything kept per thread doesn't
+     * get reused from one task to the next.  In particular, B2Json keeps
+     * its output buffer in a ThreadLocal, so on these threads each task
+     * that serializes JSON allocates a fresh buffer.  That's cheap next to
+     * a network call, but for CPU-bound serialization, a pool works better.
+     *
+     * On older JVMs, it's a cached pool of platform threads, which is the
+     * closest thing there.  Limit how many tasks you give it at once
+     * yourself, or use a fixed pool instead.
+     *
+     * @param nameFormat the format for the thread names, should contain a single %d.
+     * @return a new executor, which the caller must shut down when done with it.
+     */
+    public static ExecutorService createThreadPerTaskExecutor(String nameFormat) {
+        if (areVirtualThreadsSupported()) {
+            final AtomicInteger count = new AtomicInteger(0);
+            final ThreadFactory factory = (runnable) -> {
+                final Thread thread = VirtualThreads.newUnstartedThread(runnable);
+                thread.setName(String.format(nameFormat, count.getAndIncrement()));
+                return thread;
+            };
+            return VirtualThreads.newThreadPerTaskExecutor(factory);
+        }
+        return Executors.newCachedThreadPool(createThreadFactory(nameFormat));
+    }
+
+    /**
+     * VirtualThreads reaches the JDK 21 virtual thread API with reflection,
+     * so this class can still be compiled for and run on Java 8.  The methods
+     * are looked up once.  If any of them is missing, they're all null.
+     */
+    private static class VirtualThreads {
+        private static final Method OF_VIRTUAL;
+        private static final Method UNSTARTED;
+        private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+        static {
+            Method ofVirtual = null;
+            Method unstarted = null;
+            Method newThreadPerTaskExecutor = null;
+            try {
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                unstarted = ofVirtual.getReturnType().getMethod("unstarted", Runnable.class);
+                newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            } catch (NoSuchMethodException e) {
+                ofVirtual = null;
+                unstarted = null;
+                newThreadPerTaskExecutor = null;
+            }
+            OF_VIRTUAL = ofVirtual;
+            UNSTARTED = unstarted;
+            NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+        }
+
+        static Thread newUnstartedThread(Runnable runnable) {
+            try {
+                return (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), runnable);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("failed to make a virtual thread: " + e, e);
+            }
+        }
+
+        static ExecutorService newThreadPerTaskExecutor(ThreadFactory factory) {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("failed to make a thread-per-task executor: " + e, e);
+            }
+        }
+    }
 }
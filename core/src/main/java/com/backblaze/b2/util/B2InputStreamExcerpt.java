@@ -66,7 +66,7 @@ public class B2InputStreamExcerpt extends InputStream {
         if (atEnd()) {
             return EOF;
         }
-        int actuallyRead = inputStream.read(b, off, Math.min(getRemaining(), len));
+        int actuallyRead = inputStream.read(b, off, (int) Math.min(getRemaining(), len));
         if (actuallyRead == -1) {
             // let's remember we're at the end.
             pastEnd = iPosition;
@@ -93,7 +93,7 @@ public class B2InputStreamExcerpt extends InputStream {
         if (atEnd()) {
             return 0;
         }
-        return Math.min(getRemaining(), inputStream.available());
+        return (int) Math.min(getRemaining(), inputStream.available());
     }
 
     @Override
@@ -141,9 +141,9 @@ public class B2InputStreamExcerpt extends InputStream {
         return iPosition >= pastEnd;
     }
 
-    private int getRemaining() {
+    private long getRemaining() {
         B2Preconditions.checkState(iPosition < pastEnd);
-        return (int) (pastEnd - iPosition);
+        return pastEnd - iPosition;
     }
 
     public long getExcerptStart() {
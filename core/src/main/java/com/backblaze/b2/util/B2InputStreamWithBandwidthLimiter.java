@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * B2InputStreamWithBandwidthLimiter waits on a B2BandwidthLimiter after each
+ * read, so that all of the streams sharing the limiter stay under its rate.
+ * Each read is cut down to the limiter's getMaxBytesPerAcquire(), so that
+ * streams sharing the limiter take turns at a fine grain.
+ *
+ * THREAD-SAFETY: this class is NOT thread-safe on its own.  (The limiter is.)
+ */
+public class B2InputStreamWithBandwidthLimiter extends FilterInputStream {
+    private final B2BandwidthLimiter limiter;
+
+    public B2InputStreamWithBandwidthLimiter(InputStream in,
+                                             B2BandwidthLimiter limiter) {
+        super(in);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int value = super.read();
+        if (value != -1) {
+            acquire(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b,
+                    int off,
+                    int len) throws IOException {
+        final int nRead = super.read(b, off, Math.min(len, limiter.getMaxBytesPerAcquire()));
+        if (nRead > 0) {
+            acquire(nRead);
+        }
+        return nRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long nSkipped = super.skip(Math.min(n, limiter.getMaxBytesPerAcquire()));
+        if (nSkipped > 0) {
+            acquire(nSkipped);
+        }
+        return nSkipped;
+    }
+
+    private void acquire(long nBytes) throws IOException {
+        try {
+            limiter.acquire(nBytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for bandwidth");
+        }
+    }
+}
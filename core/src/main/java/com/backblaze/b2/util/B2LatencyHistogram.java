@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.util;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * B2LatencyHistogram counts non-negative values (usually milliseconds) in
+ * log-linear buckets, the way an HDR histogram does.  Values below 8 get
+ * their own buckets.  Above that, each power of two is split into 8
+ * buckets, so any percentile it reports is within 12.5% of the real one.
+ * Values of 2^40 and up are counted in the last bucket.
+ *
+ * Each bucket is a LongAdder, so recording from many threads at once
+ * doesn't contend on one counter.  Readers see a value that might be
+ * missing recordings that are happening at the same time.
+ *
+ * THREAD-SAFETY: this class is thread-safe.
+ */
+public class B2LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public B2LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param value the value to count.  negative values are counted as 0.
+     */
+    public void record(long value) {
+        final long nonNegative = Math.max(0, value);
+        buckets[bucketIndex(nonNegative)].increment();
+        count.increment();
+        sum.add(nonNegative);
+        max.accumulate(nonNegative);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the values, or 0 if there aren't any.
+     */
+    public double getMean() {
+        final long n = getCount();
+        return (n == 0) ? 0 : ((double) getSum()) / n;
+    }
+
+    /**
+     * @param percentile between 0 and 100, such as 99.9.
+     * @return the largest value in the bucket that holds that percentile
+     *         (but no more than the max), or 0 if there aren't any values.
+     */
+    public long getValueAtPercentile(double percentile) {
+        B2Preconditions.checkArgument(0 <= percentile && percentile <= 100, "percentile must be between 0 and 100");
+
+        final long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil((percentile / 100) * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueInBucket(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /*forTests*/ static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /*forTests*/ static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        if (index == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        final int exponent = (index / SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKETS;
+        final long lowest = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -146,6 +146,34 @@ public class B2StringUtil {
         }
     }
 
+    /**
+     * Compares two strings in the order of their UTF-8 representations,
+     * which is the order B2 uses for file names.  (String.compareTo() compares
+     * UTF-16 chars, which puts supplementary characters before some others.)
+     *
+     * Comparing code points gives the same answer as comparing UTF-8 bytes
+     * without having to encode either string.
+     *
+     * @param a one string
+     * @param b another string
+     * @return a negative number, zero, or a positive number as a is less than,
+     *         equal to, or greater than b.
+     */
+    public static int compareUtf8(String a, String b) {
+        final int aLen = a.length();
+        final int bLen = b.length();
+        int i = 0;
+        while (i < aLen && i < bLen) {
+            final char aChar = a.charAt(i);
+            final char bChar = b.charAt(i);
+            if (aChar != bChar) {
+                return Integer.compare(a.codePointAt(i), b.codePointAt(i));
+            }
+            i++;
+        }
+        return Integer.compare(aLen, bLen);
+    }
+
     /**
      * @param b the array of bytes to convert.
      * @return if b is null or empty, "".  otherwise, returns a string with
@@ -6,12 +6,26 @@ package com.backblaze.b2.util;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 
 /**
  * B2Utf8Util has methods that are useful for processing Utf8.
  */
 public class B2Utf8Util {
+    /**
+     * No char takes more than this many bytes in UTF-8.  (A surrogate pair
+     * takes four, but that's two chars.)
+     */
+    public static final int MAX_UTF8_BYTES_PER_CHAR = 3;
+
+    /**
+     * No char takes more than this many bytes in a JSON string.  (A control
+     * character is escaped as six.)
+     */
+    public static final int MAX_JSON_STRING_BYTES_PER_CHAR = 6;
+
+    // the write methods encode this many chars at a time into a scratch array.
+    private static final int CHARS_PER_CHUNK = 512;
+
     /**
      * Writes the characters from str to out encoded as UTF-8.
      *
@@ -23,9 +37,12 @@ public class B2Utf8Util {
     public static void write(String str,
                              OutputStream out) throws IOException {
         final int strLen = str.length();
-        for (int i=0; i < strLen; i++) {
-            final char c = str.charAt(i);
-            i = doCommonWrite(str, i, c, out);
+        final byte[] scratch = new byte[MAX_UTF8_BYTES_PER_CHAR * (Math.min(strLen, CHARS_PER_CHUNK) + 1)];
+        int i = 0;
+        while (i < strLen) {
+            final int end = chunkEnd(str, i, CHARS_PER_CHUNK);
+            out.write(scratch, 0, encodeUtf8(str, i, end, scratch, 0));
+            i = end;
         }
     }
 
@@ -44,73 +61,151 @@ public class B2Utf8Util {
         out.write('"');
 
         final int strLen = value.length();
-        for (int i=0; i < strLen; i++) {
-            final char c = value.charAt(i);
-            if (c < 32) {
-                out.write('\\');
-                out.write('u');
-                out.write('0');
-                out.write('0');
-                out.write(B2StringUtil.LOWER_HEX_DIGITS[c / 16]);
-                out.write(B2StringUtil.LOWER_HEX_DIGITS[c % 16]);
-            } else if (c == '"') {
-                out.write('\\');
-                out.write('"');
-            } else if (c == '\\') {
-                out.write('\\');
-                out.write('\\');
+        final byte[] scratch = new byte[MAX_JSON_STRING_BYTES_PER_CHAR * (Math.min(strLen, CHARS_PER_CHUNK) + 1)];
+        int i = 0;
+        while (i < strLen) {
+            final int end = chunkEnd(value, i, CHARS_PER_CHUNK);
+            out.write(scratch, 0, encodeJsonStringChars(value, i, end, scratch, 0));
+            i = end;
+        }
+
+        out.write('"');
+    }
+
+    /**
+     * @return the end of a chunk of str that starts at start and has
+     *         about maxChars chars.  it's never more than maxChars + 1
+     *         chars long, so that it doesn't split a surrogate pair.
+     */
+    public static int chunkEnd(String str,
+                               int start,
+                               int maxChars) {
+        final int strLen = str.length();
+        if (strLen - start <= maxChars) {
+            return strLen;
+        }
+        final int end = start + maxChars;
+        return Character.isHighSurrogate(str.charAt(end - 1)) ? end + 1 : end;
+    }
+
+    /**
+     * Encodes the chars of str from start to end as UTF-8 into dest.
+     * dest must have room for MAX_UTF8_BYTES_PER_CHAR bytes per char,
+     * starting at destPos.
+     *
+     * @return the index in dest just past what was written.
+     * @throws IOException if there's a bad surrogate pair.
+     */
+    public static int encodeUtf8(String str,
+                                 int start,
+                                 int end,
+                                 byte[] dest,
+                                 int destPos) throws IOException {
+        int pos = destPos;
+        int i = start;
+
+        // the fast path for ASCII.
+        while (i < end) {
+            final char c = str.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            dest[pos++] = (byte) c;
+            i++;
+        }
+
+        for (; i < end; i++) {
+            final char c = str.charAt(i);
+            if (c < 0x80) {
+                dest[pos++] = (byte) c;
             } else {
-                i = doCommonWrite(value, i, c, out);
+                pos = encodeNonAscii(str, i, c, dest, pos);
+                if (Character.isSurrogate(c)) {
+                    i++;
+                }
             }
+        }
+        return pos;
+    }
 
+    /**
+     * Encodes the chars of str from start to end as the inside of a quoted
+     * JSON string, encoded as UTF-8, into dest.  It doesn't add the quotes.
+     * dest must have room for MAX_JSON_STRING_BYTES_PER_CHAR bytes per char,
+     * starting at destPos.
+     *
+     * @return the index in dest just past what was written.
+     * @throws IOException if there's a bad surrogate pair.
+     */
+    public static int encodeJsonStringChars(String str,
+                                            int start,
+                                            int end,
+                                            byte[] dest,
+                                            int destPos) throws IOException {
+        int pos = destPos;
+        for (int i = start; i < end; i++) {
+            final char c = str.charAt(i);
+            if (c >= 32 && c < 0x80 && c != '"' && c != '\\') {
+                // the common case.
+                dest[pos++] = (byte) c;
+            } else if (c < 32) {
+                dest[pos++] = '\\';
+                dest[pos++] = 'u';
+                dest[pos++] = '0';
+                dest[pos++] = '0';
+                dest[pos++] = (byte) B2StringUtil.LOWER_HEX_DIGITS[c / 16];
+                dest[pos++] = (byte) B2StringUtil.LOWER_HEX_DIGITS[c % 16];
+            } else if (c == '"' || c == '\\') {
+                dest[pos++] = '\\';
+                dest[pos++] = (byte) c;
+            } else {
+                pos = encodeNonAscii(str, i, c, dest, pos);
+                if (Character.isSurrogate(c)) {
+                    i++;
+                }
+            }
         }
-        out.write('"');
+        return pos;
     }
 
     /**
+     * Encodes c, which is at str[i] and isn't ASCII, into dest at pos.  If c
+     * starts a surrogate pair, this encodes the pair, and the caller must
+     * skip the low surrogate at str[i + 1].
      *
-     * @param value  the string we're trying to write.  (needed if c started a surrogate pair)
-     * @param currentIndex the index of the character in value that we're looking at (needed if c started a surrogate pair)
-     * @param c the character we're looking at.
-     * @param out where we write our output.
-     * @return the currentIndex, which might've been updated (if c started a surrogate pair)
-     * @throws IOException if there's trouble with surrogates or writing the output.
+     * @return the index in dest just past what was written.
+     * @throws IOException if c is part of a bad surrogate pair.
      */
-    private static int doCommonWrite(String value,
-                                     int currentIndex,
-                                     char c,
-                                     OutputStream out) throws IOException {
-        int currentIndexOut = currentIndex;
-        if (c < 0x80) {
-            // Have at most seven bits
-            out.write(c);
-        } else if (c < 0x800) {
+    private static int encodeNonAscii(String str,
+                                      int i,
+                                      char c,
+                                      byte[] dest,
+                                      int pos) throws IOException {
+        if (c < 0x800) {
             // 2 bytes, 11 bits
-            out.write(0xc0 | (c >> 6));
-            out.write(0x80 | (c & 0x3f));
+            dest[pos++] = (byte) (0xc0 | (c >> 6));
+            dest[pos++] = (byte) (0x80 | (c & 0x3f));
         } else if (Character.isSurrogate(c)) {
             // we're gonna need the other half of the surrogate pair.
-            currentIndexOut++;
-            if (currentIndexOut >= value.length()) {
+            if (i + 1 >= str.length()) {
                 throw new IOException("bad surrogate pair: truncated");
             }
-            final char low = value.charAt(currentIndexOut);
+            final char low = str.charAt(i + 1);
             if (!Character.isSurrogatePair(c, low)) {
                 throw new IOException("bad surrogate pair");
             }
 
             final int cp = Character.toCodePoint(c, low);
-            out.write(0xf0 | ((cp >> 18)));
-            out.write(0x80 | ((cp >> 12) & 0x3f));
-            out.write(0x80 | ((cp >>  6) & 0x3f));
-            out.write(0x80 | (cp & 0x3f));
+            dest[pos++] = (byte) (0xf0 | ((cp >> 18)));
+            dest[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+            dest[pos++] = (byte) (0x80 | ((cp >>  6) & 0x3f));
+            dest[pos++] = (byte) (0x80 | (cp & 0x3f));
         } else {
             // 3 bytes, 16 bits
-            out.write(0xe0 | ((c >> 12)));
-            out.write(0x80 | ((c >>  6) & 0x3f));
-            out.write(0x80 | (c & 0x3f));
+            dest[pos++] = (byte) (0xe0 | ((c >> 12)));
+            dest[pos++] = (byte) (0x80 | ((c >>  6) & 0x3f));
+            dest[pos++] = (byte) (0x80 | (c & 0x3f));
         }
-
-        return currentIndexOut;
+        return pos;
     }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2InternalErrorException;
+import com.backblaze.b2.client.exceptions.B2RuntimeException;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2HideFileRequest;
+import com.backblaze.b2.client.structures.B2HideFilesListener;
+import com.backblaze.b2.client.structures.B2HideFilesRequest;
+import com.backblaze.b2.client.structures.B2HideFilesResult;
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2ExecutorUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.backblaze.b2.client.B2TestHelpers.bucketId;
+import static com.backblaze.b2.client.B2TestHelpers.fileName;
+import static com.backblaze.b2.client.B2TestHelpers.makeVersion;
+import static com.backblaze.b2.util.B2Collections.listOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class B2BulkFileHiderTest extends B2BaseTest {
+    private static final String BUCKET_ID = bucketId(1);
+
+    private final B2StorageClient client = mock(B2StorageClient.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final RecordingListener listener = new RecordingListener();
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @After
+    public void tearDown() {
+        B2ExecutorUtils.shutdownAndAwaitTermination(executor, 10, 10);
+    }
+
+    private static class RecordingListener implements B2HideFilesListener {
+        private final Set<String> hidden = Collections.synchronizedSet(new TreeSet<>());
+        private final Set<String> failed = Collections.synchronizedSet(new TreeSet<>());
+
+        @Override
+        public void hidden(B2HideFileRequest request, B2FileVersion hideMarker) {
+            hidden.add(request.getFileName());
+        }
+
+        @Override
+        public void failed(B2HideFileRequest request, B2Exception e) {
+            failed.add(request.getFileName());
+        }
+    }
+
+    private static List<String> names(int count) {
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add(fileName(i));
+        }
+        return names;
+    }
+
+    private B2HideFilesResult hide(List<String> names, int maxInFlight) throws B2Exception {
+        final B2HideFilesRequest request = B2HideFilesRequest
+                .builder(BUCKET_ID, names)
+                .setListener(listener)
+                .setMaxInFlight(maxInFlight)
+                .build();
+        return new B2BulkFileHider(client, executor, request).hideFiles();
+    }
+
+    @Test
+    public void testHidesEveryName() throws B2Exception {
+        when(client.hideFile(anyObject())).thenReturn(makeVersion(1, 1));
+
+        final List<String> names = names(50);
+        final B2HideFilesResult result = hide(names, 3);
+
+        assertEquals(50, result.getHiddenCount());
+        assertEquals(0, result.getFailedCount());
+        assertFalse(result.hasFailures());
+        assertEquals(new TreeSet<>(names), listener.hidden);
+        assertTrue(listener.failed.isEmpty());
+        verify(client, times(50)).hideFile(anyObject());
+    }
+
+    @Test
+    public void testFailuresAreReportedButDontStopOthers() throws B2Exception {
+        final B2Exception e = new B2InternalErrorException("testing", "testing message");
+        when(client.hideFile(B2HideFileRequest.builder(BUCKET_ID, fileName(3)).build())).thenThrow(e);
+        when(client.hideFile(B2HideFileRequest.builder(BUCKET_ID, fileName(7)).build())).thenThrow(new IllegalStateException("boom"));
+        for (int i : new int[] {0, 1, 2, 4, 5, 6, 8, 9}) {
+            when(client.hideFile(B2HideFileRequest.builder(BUCKET_ID, fileName(i)).build())).thenReturn(makeVersion(i, i));
+        }
+
+        final B2HideFilesResult result = hide(names(10), 2);
+
+        assertEquals(8, result.getHiddenCount());
+        assertEquals(2, result.getFailedCount());
+        assertTrue(result.hasFailures());
+        assertTrue(e == result.getSampleFailures().get(fileName(3)));
+        assertEquals("trouble", result.getSampleFailures().get(fileName(7)).getCode());
+        assertEquals(new TreeSet<>(listOf(fileName(3), fileName(7))), listener.failed);
+        assertEquals(8, listener.hidden.size());
+    }
+
+    @Test
+    public void testSampleFailuresAreBounded() throws B2Exception {
+        when(client.hideFile(anyObject())).thenThrow(new B2InternalErrorException("testing", "testing message"));
+
+        final int count = B2BulkFileHider.MAX_SAMPLE_FAILURES + 10;
+        final B2HideFilesResult result = hide(names(count), 5);
+
+        assertEquals(0, result.getHiddenCount());
+        assertEquals(count, result.getFailedCount());
+        assertEquals(B2BulkFileHider.MAX_SAMPLE_FAILURES, result.getSampleFailures().size());
+        assertEquals(count, listener.failed.size());
+    }
+
+    @Test
+    public void testTroubleGettingNamesIsThrownAfterStartedHidesFinish() throws B2Exception {
+        when(client.hideFile(anyObject())).thenReturn(makeVersion(1, 1));
+
+        final B2Exception listingException = new B2InternalErrorException("testing", "listing failed");
+        final Iterable<String> names = () -> new Iterator<String>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (i == 5) {
+                    throw new B2RuntimeException("failed to advance iterator", listingException);
+                }
+                return fileName(i++);
+            }
+        };
+        final B2HideFilesRequest request = B2HideFilesRequest
+                .builder(BUCKET_ID, names)
+                .setListener(listener)
+                .build();
+
+        try {
+            new B2BulkFileHider(client, executor, request).hideFiles();
+            fail("should have thrown");
+        } catch (B2Exception e) {
+            assertTrue(listingException == e);
+        }
+
+        // the ones we had started got finished.
+        assertEquals(5, listener.hidden.size());
+    }
+
+    @Test
+    public void testRejectedExecution() throws B2Exception {
+        executor.shutdown();
+
+        thrown.expect(B2Exception.class);
+        thrown.expectMessage("The executor rejected a task.");
+        hide(names(3), 2);
+    }
+
+    @Test
+    public void testFileNamesOfSkipsFolders() {
+        final B2FileVersion folder = new B2FileVersion(null, "dir/", 0, null, null, null, B2FileVersion.FOLDER_ACTION, 0);
+        final List<B2FileVersion> versions = listOf(makeVersion(1, 1), folder, makeVersion(2, 2));
+
+        final List<String> names = new ArrayList<>();
+        for (String name : B2BulkFileHider.fileNamesOf(versions)) {
+            names.add(name);
+        }
+        assertEquals(listOf(fileName(1), fileName(2)), names);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentMemoryWriter;
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.contentSources.B2HeadersImpl;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.structures.B2DownloadByIdRequest;
+import com.backblaze.b2.client.structures.B2DownloadByNameRequest;
+import com.backblaze.b2.client.structures.B2GetFileInfoByNameRequest;
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2ByteRange;
+import com.backblaze.b2.util.B2Sha1;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.backblaze.b2.client.B2TestHelpers.bucketName;
+import static com.backblaze.b2.client.B2TestHelpers.fileId;
+import static com.backblaze.b2.client.B2TestHelpers.fileName;
+import static com.backblaze.b2.client.B2TestHelpers.makeBytes;
+import static com.backblaze.b2.client.B2TestHelpers.makeVersion;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class B2ContentCachingStorageClientTest extends B2BaseTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final B2StorageClient client = mock(B2StorageClient.class);
+
+    // the contents of each fileId the mock client knows about.
+    private final Map<String, byte[]> contents = new TreeMap<>();
+
+    private File dir;
+
+    @Before
+    public void setUp() throws B2Exception {
+        dir = new File(temp.getRoot(), "cache");
+
+        doAnswer(invocation -> {
+            final B2DownloadByIdRequest request = (B2DownloadByIdRequest) invocation.getArguments()[0];
+            final B2ContentSink sink = (B2ContentSink) invocation.getArguments()[1];
+            byte[] bytes = contents.get(request.getFileId());
+            final B2HeadersImpl.Builder headers = B2HeadersImpl.builder();
+            headers.set(B2Headers.FILE_ID, request.getFileId());
+            final B2ByteRange range = request.getRange();
+            if (range == null) {
+                headers.set(B2Headers.CONTENT_SHA1, B2Sha1.hexSha1OfBytes(bytes));
+            } else {
+                final B2ByteRange effective = range.effectiveRange(bytes.length);
+                headers.set(B2Headers.CONTENT_RANGE, "bytes " + effective.start + "-" + effective.end + "/" + bytes.length);
+                bytes = Arrays.copyOfRange(bytes, (int) (long) effective.start, (int) (long) effective.end + 1);
+            }
+            headers.set(B2Headers.CONTENT_LENGTH, Integer.toString(bytes.length));
+            sink.readContent(headers.build(), new ByteArrayInputStream(bytes));
+            return null;
+        }).when(client).downloadById(any(B2DownloadByIdRequest.class), anyObject());
+    }
+
+    private B2ContentCachingStorageClient makeCachingClient(long maxBytes) throws B2LocalException {
+        return B2ContentCachingStorageClient
+                .builder(client, dir)
+                .setMaxBytes(maxBytes)
+                .build();
+    }
+
+    private static byte[] download(B2StorageClient client,
+                                   String fileId,
+                                   B2ByteRange rangeOrNull) throws B2Exception {
+        final B2ContentMemoryWriter writer = B2ContentMemoryWriter.build();
+        client.downloadById(B2DownloadByIdRequest.builder(fileId).setRange(rangeOrNull).build(), writer);
+        return writer.getBytes();
+    }
+
+    @Test
+    public void testRepeatedDownloadIsServedFromCache() throws B2Exception {
+        contents.put(fileId(1), makeBytes(1000));
+        final B2ContentCachingStorageClient cachingClient = makeCachingClient(10000);
+
+        assertArrayEquals(contents.get(fileId(1)), download(cachingClient, fileId(1), null));
+        assertArrayEquals(contents.get(fileId(1)), download(cachingClient, fileId(1), null));
+
+        verify(client, times(1)).downloadById(any(B2DownloadByIdRequest.class), anyObject());
+        assertEquals(1, cachingClient.getHitCount());
+        assertEquals(1, cachingClient.getMissCount());
+        assertEquals(1000, cachingClient.getCachedBytes());
+    }
+
+    @Test
+    public void testRangeIsServedFromCachedFile() throws B2Exception {
+        contents.put(fileId(1), makeBytes(1000));
+        final B2ContentCachingStorageClient cachingClient = makeCachingClient(10000);
+
+        // a ranged miss doesn't fill the cache.
+        final B2ByteRange range = B2ByteRange.between(100, 199);
+        final byte[] expected = Arrays.copyOfRange(contents.get(fileId(1)), 100, 200);
+        assertArrayEquals(expected, download(cachingClient, fileId(1), range));
+        assertEquals(0, cachingClient.getCachedBytes());
+
+        download(cachingClient, fileId(1), null);
+        final B2ContentMemoryWriter writer = B2ContentMemoryWriter.build();
+        cachingClient.downloadById(B2DownloadByIdRequest.builder(fileId(1)).setRange(range).build(), writer);
+        assertArrayEquals(expected, writer.getBytes());
+        assertEquals("bytes 100-199/1000", writer.getHeadersOrNull().getValueOrNull(B2Headers.CONTENT_RANGE));
+        assertEquals("100", writer.getHeadersOrNull().getValueOrNull(B2Headers.CONTENT_LENGTH));
+        assertEquals(fileId(1), writer.getHeadersOrNull().getValueOrNull(B2Headers.FILE_ID));
+
+        verify(client, times(2)).downloadById(any(B2DownloadByIdRequest.class), anyObject());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws B2Exception {
+        for (int i = 1; i <= 3; i++) {
+            contents.put(fileId(i), makeBytes(400));
+        }
+        final B2ContentCachingStorageClient cachingClient = makeCachingClient(1000);
+
+        download(cachingClient, fileId(1), null);
+        download(cachingClient, fileId(2), null);
+        download(cachingClient, fileId(1), null);  // now 2 is the least recently used.
+        download(cachingClient, fileId(3), null);
+
+        assertEquals(1, cachingClient.getEvictionCount());
+        assertEquals(800, cachingClient.getCachedBytes());
+        assertFalse(new File(dir, fileId(2) + B2DiskContentCache.DATA_SUFFIX).exists());
+
+        download(cachingClient, fileId(1), null);
+        download(cachingClient, fileId(3), null);
+        assertEquals(3, cachingClient.getHitCount());
+        assertEquals(3, cachingClient.getMissCount());
+    }
+
+    @Test
+    public void testTooBigForCacheIsStillDownloaded() throws B2Exception {
+        contents.put(fileId(1), makeBytes(2000));
+        final B2ContentCachingStorageClient cachingClient = makeCachingClient(1000);
+
+        assertArrayEquals(contents.get(fileId(1)), download(cachingClient, fileId(1), null));
+        assertArrayEquals(contents.get(fileId(1)), download(cachingClient, fileId(1), null));
+
+        assertEquals(0, cachingClient.getCachedBytes());
+        assertEquals(2, cachingClient.getMissCount());
+        //noinspection ConstantConditions
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testCacheSurvivesRestart() throws B2Exception {
+        contents.put(fileId(1), makeBytes(1000));
+        download(makeCachingClient(10000), fileId(1), null);
+
+        final B2ContentCachingStorageClient cachingClient = makeCachingClient(10000);
+        assertEquals(1000, cachingClient.getCachedBytes());
+        assertArrayEquals(contents.get(fileId(1)), download(cachingClient, fileId(1), null));
+        assertEquals(1, cachingClient.getHitCount());
+        verify(client, times(1)).downloadById(any(B2DownloadByIdRequest.class), anyObject());
+    }
+
+    @Test
+    public void testBadSha1IsNotCached() throws B2Exception {
+        contents.put(fileId(1), makeBytes(1000));
+        final B2ContentCachingStorageClient cachingClient = makeCachingClient(10000);
+
+        doAnswer(invocation -> {
+            final B2ContentSink sink = (B2ContentSink) invocation.getArguments()[1];
+            final B2HeadersImpl.Builder headers = B2HeadersImpl.builder();
+            headers.set(B2Headers.CONTENT_SHA1, B2Sha1.hexSha1OfBytes(makeBytes(1)));
+            sink.readContent(headers.build(), new ByteArrayInputStream(makeBytes(1000)));
+            return null;
+        }).when(client).downloadById(any(B2DownloadByIdRequest.class), anyObject());
+
+        try {
+            download(cachingClient, fileId(1), null);
+            fail("should've thrown");
+        } catch (B2LocalException e) {
+            assertEquals("mismatch", e.getCode());
+        }
+        assertEquals(0, cachingClient.getCachedBytes());
+        //noinspection ConstantConditions
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testDownloadByNameRevalidatesThenUsesCachedVersion() throws B2Exception {
+        contents.put(fileId(1), makeBytes(1000));
+        contents.put(fileId(2), makeBytes(500));
+        final B2GetFileInfoByNameRequest headRequest = B2GetFileInfoByNameRequest
+                .builder(bucketName(1), fileName(1))
+                .build();
+        when(client.getFileInfoByName(headRequest))
+                .thenReturn(makeVersion(1, 1))
+                .thenReturn(makeVersion(1, 1))
+                .thenReturn(makeVersion(2, 1));
+        final B2ContentCachingStorageClient cachingClient = makeCachingClient(10000);
+
+        final B2DownloadByNameRequest request = B2DownloadByNameRequest.builder(bucketName(1), fileName(1)).build();
+        for (int i = 0; i < 3; i++) {
+            final B2ContentMemoryWriter writer = B2ContentMemoryWriter.build();
+            cachingClient.downloadByName(request, writer);
+            assertArrayEquals(contents.get(i < 2 ? fileId(1) : fileId(2)), writer.getBytes());
+        }
+
+        verify(client, times(3)).getFileInfoByName(headRequest);
+        verify(client, times(2)).downloadById(any(B2DownloadByIdRequest.class), anyObject());
+        assertEquals(1, cachingClient.getHitCount());
+    }
+}
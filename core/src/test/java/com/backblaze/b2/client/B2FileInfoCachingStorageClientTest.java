@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.contentSources.B2ByteArrayContentSource;
+import com.backblaze.b2.client.contentSources.B2ContentTypes;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2InternalErrorException;
+import com.backblaze.b2.client.structures.B2DeleteFileVersionRequest;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2GetFileInfoByNameRequest;
+import com.backblaze.b2.client.structures.B2GetFileInfoRequest;
+import com.backblaze.b2.client.structures.B2HideFileRequest;
+import com.backblaze.b2.client.structures.B2UploadFileRequest;
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2Clock;
+import com.backblaze.b2.util.B2ClockSim;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static com.backblaze.b2.client.B2TestHelpers.bucketId;
+import static com.backblaze.b2.client.B2TestHelpers.bucketName;
+import static com.backblaze.b2.client.B2TestHelpers.fileId;
+import static com.backblaze.b2.client.B2TestHelpers.fileName;
+import static com.backblaze.b2.client.B2TestHelpers.makeVersion;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class B2FileInfoCachingStorageClientTest extends B2BaseTest {
+    private final B2ClockSim clock = (B2ClockSim) B2Clock.get();
+    private final B2StorageClient client = mock(B2StorageClient.class);
+    private final B2FileInfoCachingStorageClient cachingClient = B2FileInfoCachingStorageClient
+            .builder(client)
+            .setMaxEntries(10)
+            .setTtlSeconds(30)
+            .build();
+
+    private final B2FileVersion version1 = makeVersion(1, 1);
+    private final B2GetFileInfoRequest byIdRequest = B2GetFileInfoRequest.builder(fileId(1)).build();
+    private final B2GetFileInfoByNameRequest byNameRequest = B2GetFileInfoByNameRequest
+            .builder(bucketName(1), fileName(1))
+            .build();
+
+    @Test
+    public void testGetFileInfoIsCachedUntilExpired() throws B2Exception {
+        when(client.getFileInfo(byIdRequest)).thenReturn(version1);
+
+        assertSame(version1, cachingClient.getFileInfo(byIdRequest));
+        assertSame(version1, cachingClient.getFileInfo(byIdRequest));
+        verify(client, times(1)).getFileInfo(byIdRequest);
+
+        clock.advanceBoth(Duration.ofSeconds(31));
+        assertSame(version1, cachingClient.getFileInfo(byIdRequest));
+        verify(client, times(2)).getFileInfo(byIdRequest);
+
+        assertEquals(1, cachingClient.getHitCount());
+        assertEquals(2, cachingClient.getMissCount());
+    }
+
+    @Test
+    public void testGetFileInfoByNameAlsoFillsById() throws B2Exception {
+        when(client.getFileInfoByName(byNameRequest)).thenReturn(version1);
+
+        assertSame(version1, cachingClient.getFileInfoByName(byNameRequest));
+        assertSame(version1, cachingClient.getFileInfoByName(byNameRequest));
+        assertSame(version1, cachingClient.getFileInfo(byIdRequest));
+
+        verify(client, times(1)).getFileInfoByName(byNameRequest);
+        verify(client, times(0)).getFileInfo(any(B2GetFileInfoRequest.class));
+        assertEquals(2, cachingClient.getHitCount());
+        assertEquals(1, cachingClient.getMissCount());
+    }
+
+    @Test
+    public void testFailuresAreNotCached() throws B2Exception {
+        when(client.getFileInfoByName(byNameRequest))
+                .thenThrow(new B2InternalErrorException("testing"))
+                .thenReturn(version1);
+
+        try {
+            cachingClient.getFileInfoByName(byNameRequest);
+            fail("should've thrown");
+        } catch (B2InternalErrorException e) {
+            // expected.
+        }
+        assertSame(version1, cachingClient.getFileInfoByName(byNameRequest));
+        verify(client, times(2)).getFileInfoByName(byNameRequest);
+    }
+
+    @Test
+    public void testUploadInvalidatesNameInEveryBucket() throws B2Exception {
+        final B2GetFileInfoByNameRequest otherBucketRequest = B2GetFileInfoByNameRequest
+                .builder(bucketName(2), fileName(1))
+                .build();
+        final B2GetFileInfoByNameRequest otherNameRequest = B2GetFileInfoByNameRequest
+                .builder(bucketName(1), fileName(2))
+                .build();
+        when(client.getFileInfoByName(any(B2GetFileInfoByNameRequest.class))).thenReturn(version1);
+
+        cachingClient.getFileInfoByName(byNameRequest);
+        cachingClient.getFileInfoByName(otherBucketRequest);
+        cachingClient.getFileInfoByName(otherNameRequest);
+
+        final B2UploadFileRequest uploadRequest = B2UploadFileRequest
+                .builder(bucketId(1), fileName(1), B2ContentTypes.TEXT_PLAIN, B2ByteArrayContentSource.build(new byte[3]))
+                .build();
+        cachingClient.uploadSmallFile(uploadRequest);
+        verify(client).uploadSmallFile(uploadRequest);
+
+        cachingClient.getFileInfoByName(byNameRequest);
+        cachingClient.getFileInfoByName(otherBucketRequest);
+        cachingClient.getFileInfoByName(otherNameRequest);
+
+        verify(client, times(2)).getFileInfoByName(byNameRequest);
+        verify(client, times(2)).getFileInfoByName(otherBucketRequest);
+        verify(client, times(1)).getFileInfoByName(otherNameRequest);
+        assertEquals(1, cachingClient.getInvalidationCount());
+    }
+
+    @Test
+    public void testFailedHideStillInvalidates() throws B2Exception {
+        final B2HideFileRequest hideRequest = B2HideFileRequest.builder(bucketId(1), fileName(1)).build();
+        when(client.getFileInfoByName(byNameRequest)).thenReturn(version1);
+        when(client.hideFile(hideRequest)).thenThrow(new B2InternalErrorException("testing"));
+
+        cachingClient.getFileInfoByName(byNameRequest);
+        try {
+            cachingClient.hideFile(hideRequest);
+            fail("should've thrown");
+        } catch (B2InternalErrorException e) {
+            // expected.
+        }
+        cachingClient.getFileInfoByName(byNameRequest);
+
+        verify(client, times(2)).getFileInfoByName(byNameRequest);
+    }
+
+    @Test
+    public void testDeleteInvalidatesIdAndName() throws B2Exception {
+        when(client.getFileInfo(byIdRequest)).thenReturn(version1);
+        when(client.getFileInfoByName(byNameRequest)).thenReturn(version1);
+
+        cachingClient.getFileInfo(byIdRequest);
+        cachingClient.getFileInfoByName(byNameRequest);
+
+        cachingClient.deleteFileVersion(B2DeleteFileVersionRequest.builder(fileName(1), fileId(1)).build());
+
+        cachingClient.getFileInfo(byIdRequest);
+        cachingClient.getFileInfoByName(byNameRequest);
+
+        verify(client, times(2)).getFileInfo(byIdRequest);
+        verify(client, times(2)).getFileInfoByName(byNameRequest);
+    }
+
+    @Test
+    public void testAnswerFetchedDuringInvalidationIsNotCached() throws B2Exception {
+        final B2HideFileRequest hideRequest = B2HideFileRequest.builder(bucketId(1), fileName(1)).build();
+        when(client.getFileInfoByName(byNameRequest)).thenAnswer(invocation -> {
+            // pretend another thread hides the file while our request is in flight.
+            cachingClient.hideFile(hideRequest);
+            return version1;
+        });
+
+        cachingClient.getFileInfoByName(byNameRequest);
+        cachingClient.getFileInfoByName(byNameRequest);
+
+        verify(client, times(2)).getFileInfoByName(byNameRequest);
+    }
+
+    @Test
+    public void testVersionFetchedDuringDeleteIsNotCached() throws B2Exception {
+        final B2DeleteFileVersionRequest deleteRequest = B2DeleteFileVersionRequest.builder(fileName(1), fileId(1)).build();
+        when(client.getFileInfo(byIdRequest)).thenAnswer(invocation -> {
+            // pretend another thread deletes the version while our request is in flight.
+            cachingClient.deleteFileVersion(deleteRequest);
+            return version1;
+        });
+
+        cachingClient.getFileInfo(byIdRequest);
+        cachingClient.getFileInfo(byIdRequest);
+
+        verify(client, times(2)).getFileInfo(byIdRequest);
+    }
+
+    @Test
+    public void testSizeIsBounded() throws B2Exception {
+        for (int i = 0; i < 25; i++) {
+            final B2GetFileInfoRequest request = B2GetFileInfoRequest.builder(fileId(i)).build();
+            when(client.getFileInfo(request)).thenReturn(makeVersion(i, i));
+            cachingClient.getFileInfo(request);
+            clock.advanceBoth(Duration.ofMillis(1));
+        }
+
+        // we evict down to 9 whenever we go over 10, so two at a time.
+        assertEquals(16, cachingClient.getEvictionCount());
+
+        // the most recent ones are still there.
+        final B2GetFileInfoRequest newest = B2GetFileInfoRequest.builder(fileId(24)).build();
+        cachingClient.getFileInfo(newest);
+        verify(client, times(1)).getFileInfo(newest);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.exceptions.B2BadRequestException;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2ServiceUnavailableException;
+import com.backblaze.b2.util.B2BaseTest;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.backblaze.b2.client.B2TestHelpers.makeAuth;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class B2FlightRecorderTest extends B2BaseTest {
+    private static final String RETRY_ATTEMPT = "com.backblaze.b2.RetryAttempt";
+    private static final String PART_UPLOAD = "com.backblaze.b2.PartUpload";
+    private static final String DOWNLOAD = "com.backblaze.b2.Download";
+
+    private final B2Retryer retryer = new B2Retryer(mock(B2Sleeper.class));
+    private final B2AccountAuthorizationCache authCache = mock(B2AccountAuthorizationCache.class);
+    private Recording recording;
+    private File recordingFile;
+
+    @Before
+    public void setUp() throws B2Exception {
+        assumeTrue(FlightRecorder.isAvailable());
+        // the build puts the events (from src/jfr) on the test classpath.
+        assertTrue(B2FlightRecorder.isSupported());
+        doReturn(makeAuth(1)).when(authCache).get();
+    }
+
+    @After
+    public void tearDown() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    @Test
+    public void testNothingWhenNotRecording() {
+        assertNull(B2FlightRecorder.beginRetryAttempt());
+        assertNull(B2FlightRecorder.beginPartUpload());
+        assertNull(B2FlightRecorder.beginDownload());
+
+        // ending a null event is fine.
+        B2FlightRecorder.endRetryAttempt(null, "op", 1, null, false, 0);
+        B2FlightRecorder.endPartUpload(null, 1, 100, true);
+        B2FlightRecorder.endDownload(null, "op", 100, 0, true);
+    }
+
+    @Test
+    public void testRetryAttempts() throws B2Exception, IOException {
+        startRecording();
+
+        final int[] calls = {0};
+        assertEquals("ok", retryer.doRetry("b2_test", authCache, () -> {
+            calls[0]++;
+            if (calls[0] == 1) {
+                throw new B2ServiceUnavailableException("service_unavailable", null, "try again");
+            }
+            return "ok";
+        }, new B2DefaultRetryPolicy()));
+
+        try {
+            retryer.doRetry("b2_bad", authCache, () -> {
+                throw new B2BadRequestException("bad_request", null, "nope");
+            }, new B2DefaultRetryPolicy());
+        } catch (B2BadRequestException e) {
+            // expected.
+        }
+
+        final List<RecordedEvent> events = stopAndRead(RETRY_ATTEMPT);
+        assertEquals(3, events.size());
+
+        assertEquals("b2_test", events.get(0).getString("operation"));
+        assertEquals(1, events.get(0).getInt("attempt"));
+        assertEquals("503 service_unavailable", events.get(0).getString("outcome"));
+        assertTrue(events.get(0).getBoolean("willRetry"));
+        assertEquals(Duration.ofSeconds(1), events.get(0).getDuration("retrySleepSeconds"));
+
+        assertEquals(2, events.get(1).getInt("attempt"));
+        assertEquals("succeeded", events.get(1).getString("outcome"));
+        assertFalse(events.get(1).getBoolean("willRetry"));
+
+        assertEquals("b2_bad", events.get(2).getString("operation"));
+        assertEquals("400 bad_request", events.get(2).getString("outcome"));
+        assertFalse(events.get(2).getBoolean("willRetry"));
+    }
+
+    @Test
+    public void testPartUploadsAndDownloads() throws IOException {
+        startRecording();
+
+        B2FlightRecorder.endPartUpload(B2FlightRecorder.beginPartUpload(), 3, 1000, true);
+        B2FlightRecorder.endPartUpload(B2FlightRecorder.beginPartUpload(), 4, 200, false);
+        final Object download = B2FlightRecorder.beginDownload();
+        B2FlightRecorder.endDownload(download, "b2_download_file_by_id", 2000, System.nanoTime(), false);
+
+        final List<RecordedEvent> parts = stopAndRead(PART_UPLOAD);
+        assertEquals(2, parts.size());
+        assertEquals(3, parts.get(0).getInt("partNumber"));
+        assertEquals(1000, parts.get(0).getLong("bytes"));
+        assertTrue(parts.get(0).getLong("bytesPerSecond") > 0);
+        assertTrue(parts.get(0).getBoolean("succeeded"));
+
+        // a failed attempt has no throughput.
+        assertEquals(4, parts.get(1).getInt("partNumber"));
+        assertEquals(200, parts.get(1).getLong("bytes"));
+        assertEquals(0, parts.get(1).getLong("bytesPerSecond"));
+        assertFalse(parts.get(1).getBoolean("succeeded"));
+
+        final List<RecordedEvent> downloads = readEvents(DOWNLOAD);
+        assertEquals(1, downloads.size());
+        assertEquals("b2_download_file_by_id", downloads.get(0).getString("operation"));
+        assertEquals(2000, downloads.get(0).getLong("bytes"));
+        assertFalse(downloads.get(0).getDuration("timeToFirstByte").isNegative());
+        assertFalse(downloads.get(0).getBoolean("succeeded"));
+    }
+
+    private void startRecording() {
+        recording = new Recording();
+        recording.enable(RETRY_ATTEMPT);
+        recording.enable(PART_UPLOAD);
+        recording.enable(DOWNLOAD);
+        recording.start();
+    }
+
+    private List<RecordedEvent> stopAndRead(String eventName) throws IOException {
+        recording.stop();
+        recordingFile = File.createTempFile("B2FlightRecorderTest", ".jfr");
+        recordingFile.deleteOnExit();
+        recording.dump(recordingFile.toPath());
+        return readEvents(eventName);
+    }
+
+    private List<RecordedEvent> readEvents(String eventName) throws IOException {
+        return RecordingFile.readAllEvents(recordingFile.toPath())
+                .stream()
+                .filter(e -> e.getEventType().getName().equals(eventName))
+                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                .collect(Collectors.toList());
+    }
+}
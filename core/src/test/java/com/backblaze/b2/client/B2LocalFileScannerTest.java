@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.exceptions.B2RuntimeException;
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2ExecutorUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.backblaze.b2.util.B2Collections.listOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class B2LocalFileScannerTest extends B2BaseTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        B2ExecutorUtils.shutdownAndAwaitTermination(executor, 10, 10);
+    }
+
+    private void makeFile(String name, int length) throws IOException {
+        final File file = new File(tempFolder.getRoot(), name);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), new byte[length]);
+    }
+
+    private static List<String> names(Iterator<B2LocalFile> iter) {
+        final List<String> names = new ArrayList<>();
+        while (iter.hasNext()) {
+            names.add(iter.next().getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testYieldsFilesInB2Order() throws IOException {
+        // "a.txt" comes before "a/..." because '.' < '/', even though the
+        // directory "a" sorts before the file "a.txt".
+        makeFile("a/b", 1);
+        makeFile("a.txt", 2);
+        makeFile("a/c/d", 3);
+        makeFile("a-b", 4);
+        makeFile("z/y/x/w", 7);
+        assertTrue(new File(tempFolder.getRoot(), "empty").mkdir());
+
+        final List<String> expected = listOf("a-b", "a.txt", "a/b", "a/c/d", "z/y/x/w");
+        assertEquals(expected, names(new B2LocalFileScanner(tempFolder.getRoot(), executor)));
+        assertEquals(expected, names(new B2LocalFileScanner(tempFolder.getRoot(), null)));
+    }
+
+    @Test
+    public void testManyDirectories() throws IOException {
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 3 * B2LocalFileScanner.MAX_DIRECTORY_PREFETCH; i++) {
+            final String name = String.format("d%03d/f", i);
+            makeFile(name, i);
+            expected.add(name);
+        }
+        assertEquals(expected, names(new B2LocalFileScanner(tempFolder.getRoot(), executor)));
+    }
+
+    @Test
+    public void testReportsSizeAndLastModified() throws IOException {
+        makeFile("sub/file", 123);
+        final File file = new File(tempFolder.getRoot(), "sub/file");
+        assertTrue(file.setLastModified(1500000000000L));
+
+        final B2LocalFileScanner scanner = new B2LocalFileScanner(tempFolder.getRoot(), executor);
+        final B2LocalFile local = scanner.next();
+        assertEquals("sub/file", local.getName());
+        assertEquals(file, local.getFile());
+        assertEquals(123, local.getLength());
+        assertEquals(file.lastModified(), local.getLastModifiedMillis());
+        assertFalse(scanner.hasNext());
+
+        try {
+            scanner.next();
+            fail("should have thrown");
+        } catch (NoSuchElementException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testMissingDirectory() {
+        try {
+            new B2LocalFileScanner(new File(tempFolder.getRoot(), "missing"), executor);
+            fail("should have thrown");
+        } catch (B2RuntimeException e) {
+            assertTrue(e.getCause().getMessage().startsWith("failed to list "));
+        }
+    }
+}
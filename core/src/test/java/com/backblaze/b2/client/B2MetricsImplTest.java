@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.util.B2BaseTest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class B2MetricsImplTest extends B2BaseTest {
+    private final B2MetricsImpl metrics = new B2MetricsImpl();
+
+    @Test
+    public void testOperations() {
+        metrics.operationStarted("b2_upload_file");
+        metrics.operationStarted("b2_upload_file");
+        assertEquals(2, metrics.getInFlight("b2_upload_file"));
+
+        metrics.operationFinished("b2_upload_file", 1, 10, true);
+        metrics.operationFinished("b2_upload_file", 3, 50, false);
+
+        assertEquals(0, metrics.getInFlight("b2_upload_file"));
+        assertEquals(2, metrics.getOperationCount("b2_upload_file"));
+        assertEquals(4, metrics.getAttemptCount("b2_upload_file"));
+        assertEquals(1, metrics.getFailureCount("b2_upload_file"));
+        assertEquals(50, metrics.getLatencyMillis("b2_upload_file").getMax());
+        assertEquals(30.0, metrics.getLatencyMillis("b2_upload_file").getMean(), 0.0);
+        assertEquals("[b2_upload_file]", metrics.getOperationNames().toString());
+    }
+
+    @Test
+    public void testUnseenNamesAreZeros() {
+        assertEquals(0, metrics.getOperationCount("nope"));
+        assertEquals(0, metrics.getAttemptCount("nope"));
+        assertEquals(0, metrics.getFailureCount("nope"));
+        assertEquals(0, metrics.getInFlight("nope"));
+        assertEquals(0, metrics.getLatencyMillis("nope").getCount());
+        assertEquals(0, metrics.getCacheHits("nope"));
+        assertEquals(0, metrics.getCacheMisses("nope"));
+        assertEquals(0.0, metrics.getCacheHitRate("nope"), 0.0);
+
+        // reading doesn't make entries.
+        assertTrue(metrics.getOperationNames().isEmpty());
+    }
+
+    @Test
+    public void testBytesAndCaches() {
+        metrics.bytesUploaded(100);
+        metrics.bytesUploaded(23);
+        metrics.bytesDownloaded(7);
+
+        metrics.cacheLookup(B2Metrics.UPLOAD_URL_CACHE, false);
+        metrics.cacheLookup(B2Metrics.UPLOAD_URL_CACHE, true);
+        metrics.cacheLookup(B2Metrics.UPLOAD_URL_CACHE, true);
+        metrics.cacheLookup(B2Metrics.UPLOAD_URL_CACHE, true);
+
+        assertEquals(123, metrics.getBytesUploaded());
+        assertEquals(7, metrics.getBytesDownloaded());
+        assertEquals(3, metrics.getCacheHits(B2Metrics.UPLOAD_URL_CACHE));
+        assertEquals(1, metrics.getCacheMisses(B2Metrics.UPLOAD_URL_CACHE));
+        assertEquals(0.75, metrics.getCacheHitRate(B2Metrics.UPLOAD_URL_CACHE), 0.0);
+
+        assertEquals("bytesUploaded=123 bytesDownloaded=7\n" +
+                        "uploadUrl cache: hits=3 misses=1\n",
+                metrics.toString());
+    }
+}
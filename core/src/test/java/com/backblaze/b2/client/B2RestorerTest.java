@@ -0,0 +1,304 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2ContentTypes;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.contentSources.B2HeadersImpl;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2InternalErrorException;
+import com.backblaze.b2.client.structures.B2DownloadByIdRequest;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2ListFileNamesRequest;
+import com.backblaze.b2.client.structures.B2RestoreRequest;
+import com.backblaze.b2.client.structures.B2RestoreResult;
+import com.backblaze.b2.client.structures.B2SyncAction;
+import com.backblaze.b2.client.structures.B2SyncListener;
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2ByteRange;
+import com.backblaze.b2.util.B2Collections;
+import com.backblaze.b2.util.B2ExecutorUtils;
+import com.backblaze.b2.util.B2Sha1;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.backblaze.b2.client.B2TestHelpers.bucketId;
+import static com.backblaze.b2.util.B2Collections.listOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class B2RestorerTest extends B2BaseTest {
+    private static final String BUCKET_ID = bucketId(1);
+    private static final String PREFIX = "backup/";
+    private static final long RANGE_SIZE = 10;
+
+    private final B2StorageClient client = mock(B2StorageClient.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final RecordingListener listener = new RecordingListener();
+    private final List<B2FileVersion> remoteVersions = new ArrayList<>();
+
+    // fileId -> contents.
+    private final Map<String, byte[]> contents = Collections.synchronizedMap(new TreeMap<>());
+    private final AtomicInteger downloadCount = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws B2Exception {
+        when(client.fileNames(any(B2ListFileNamesRequest.class))).thenReturn(remoteVersions::iterator);
+        doAnswer(invocation -> {
+            final B2DownloadByIdRequest downloadRequest = (B2DownloadByIdRequest) invocation.getArguments()[0];
+            final B2ContentSink sink = (B2ContentSink) invocation.getArguments()[1];
+            downloadCount.incrementAndGet();
+
+            byte[] bytes = contents.get(downloadRequest.getFileId());
+            if (bytes == null) {
+                throw new B2InternalErrorException("testing", "no contents for " + downloadRequest.getFileId());
+            }
+            final B2HeadersImpl.Builder headers = B2HeadersImpl.builder();
+            final B2ByteRange range = downloadRequest.getRange();
+            if (range == null) {
+                headers.set(B2Headers.CONTENT_SHA1, B2Sha1.hexSha1OfBytes(bytes));
+            } else {
+                headers.set(B2Headers.CONTENT_RANGE, "bytes " + range.start + "-" + range.end + "/" + bytes.length);
+                bytes = Arrays.copyOfRange(bytes, (int) (long) range.start, (int) (long) range.end + 1);
+            }
+            sink.readContent(headers.build(), new ByteArrayInputStream(bytes));
+            return null;
+        }).when(client).downloadById(any(B2DownloadByIdRequest.class), anyObject());
+    }
+
+    @After
+    public void tearDown() {
+        B2ExecutorUtils.shutdownAndAwaitTermination(executor, 10, 10);
+    }
+
+    private static class RecordingListener implements B2SyncListener {
+        private final Set<String> succeeded = Collections.synchronizedSet(new TreeSet<>());
+        private final Set<String> failed = Collections.synchronizedSet(new TreeSet<>());
+
+        @Override
+        public void succeeded(B2SyncAction action, String fileName) {
+            succeeded.add(action + " " + fileName);
+        }
+
+        @Override
+        public void failed(B2SyncAction action, String fileName, B2Exception e) {
+            failed.add(action + " " + fileName);
+        }
+    }
+
+    private void addRemote(String name, byte[] bytes, String sha1, Long lastModifiedOrNull) {
+        final String fileId = "id-" + name;
+        final Map<String, String> fileInfo = (lastModifiedOrNull == null) ?
+                B2Collections.mapOf() :
+                B2Collections.mapOf(B2Headers.SRC_LAST_MODIFIED_MILLIS_INFO_NAME, Long.toString(lastModifiedOrNull));
+        contents.put(fileId, bytes);
+        remoteVersions.add(new B2FileVersion(
+                fileId,
+                PREFIX + name,
+                bytes.length,
+                B2ContentTypes.APPLICATION_OCTET,
+                sha1,
+                fileInfo,
+                B2FileVersion.UPLOAD_ACTION,
+                1));
+    }
+
+    private File localFile(String name) {
+        return new File(tempFolder.getRoot(), name);
+    }
+
+    private File makeLocalFile(String name, byte[] bytes, long lastModified) throws IOException {
+        final File file = localFile(name);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), bytes);
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    private B2RestoreResult restore() throws B2Exception {
+        final B2RestoreRequest request = B2RestoreRequest
+                .builder(BUCKET_ID, tempFolder.getRoot())
+                .setPrefix(PREFIX)
+                .setRangeSize(RANGE_SIZE)
+                .setMaxInFlight(3)
+                .setListener(listener)
+                .build();
+        return new B2Restorer(client, executor, request).restore();
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 7 + seed);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testDownloadsMissingAndChangedFilesOnly() throws B2Exception, IOException {
+        final byte[] same = bytes(5, 1);
+        final byte[] changed = bytes(5, 2);
+
+        makeLocalFile("a/unchangedByTime", same, 1000000L);
+        addRemote("a/unchangedByTime", same, "unused", 1000000L);
+
+        makeLocalFile("b/unchangedBySha1", same, 2000000L);
+        addRemote("b/unchangedBySha1", same, B2Sha1.hexSha1OfBytes(same), 2500000L);
+
+        makeLocalFile("c/changed", same, 3000000L);
+        addRemote("c/changed", changed, B2Sha1.hexSha1OfBytes(changed), 3500000L);
+
+        addRemote("d/new", same, B2Sha1.hexSha1OfBytes(same), 4000000L);
+
+        final B2RestoreResult result = restore();
+
+        assertEquals(2, result.getUnchangedCount());
+        assertEquals(2, result.getDownloadedCount());
+        assertEquals(10, result.getDownloadedBytes());
+        assertEquals(0, result.getFailedCount());
+        assertEquals(new TreeSet<>(listOf("DOWNLOAD backup/c/changed", "DOWNLOAD backup/d/new")), listener.succeeded);
+
+        assertArrayEquals(changed, Files.readAllBytes(localFile("c/changed").toPath()));
+        assertEquals(3500000L, localFile("c/changed").lastModified());
+        assertArrayEquals(same, Files.readAllBytes(localFile("d/new").toPath()));
+        assertEquals(4000000L, localFile("d/new").lastModified());
+        assertFalse(B2Restorer.tempFileFor(localFile("d/new")).exists());
+
+        // a second restore finds nothing to do.
+        final B2RestoreResult again = restore();
+        assertEquals(4, again.getUnchangedCount());
+        assertEquals(0, again.getDownloadedCount());
+        assertEquals(2, downloadCount.get());
+    }
+
+    @Test
+    public void testBigFilesAreDownloadedInRanges() throws B2Exception, IOException {
+        final byte[] big = bytes(35, 3);
+        addRemote("big", big, "none", null);
+        remoteVersions.set(0, withLargeFileSha1(remoteVersions.get(0), B2Sha1.hexSha1OfBytes(big)));
+
+        final B2RestoreResult result = restore();
+
+        assertEquals(1, result.getDownloadedCount());
+        assertEquals(4, downloadCount.get());
+        assertArrayEquals(big, Files.readAllBytes(localFile("big").toPath()));
+    }
+
+    @Test
+    public void testRestartSkipsFilesWithoutSrcLastModified() throws B2Exception, IOException {
+        // big enough to be ranged, and with no sha1 at all, like a large
+        // file uploaded by a tool that doesn't set either.
+        final byte[] big = bytes(35, 6);
+        addRemote("big", big, "none", null);
+        final B2FileVersion orig = remoteVersions.get(0);
+        remoteVersions.set(0, new B2FileVersion(
+                orig.getFileId(),
+                orig.getFileName(),
+                orig.getContentLength(),
+                orig.getContentType(),
+                orig.getContentSha1(),
+                B2Collections.mapOf(B2Headers.SRC_LAST_MODIFIED_MILLIS_INFO_NAME, "not a number"),
+                orig.getAction(),
+                6000000L));
+
+        assertEquals(1, restore().getDownloadedCount());
+        assertEquals(6000000L, localFile("big").lastModified());
+        assertEquals(4, downloadCount.get());
+
+        final B2RestoreResult again = restore();
+        assertEquals(1, again.getUnchangedCount());
+        assertEquals(0, again.getDownloadedCount());
+        assertEquals(4, downloadCount.get());
+    }
+
+    @Test
+    public void testRangedSha1MismatchIsAFailure() throws B2Exception {
+        addRemote("big", bytes(25, 4), B2Sha1.hexSha1OfBytes(bytes(25, 5)), null);
+
+        final B2RestoreResult result = restore();
+
+        assertEquals(1, result.getFailedCount());
+        assertEquals("mismatch", result.getSampleFailures().get("backup/big").getCode());
+        assertFalse(localFile("big").exists());
+        assertFalse(B2Restorer.tempFileFor(localFile("big")).exists());
+    }
+
+    @Test
+    public void testFailuresAreReportedButDontStopOthers() throws B2Exception, IOException {
+        final byte[] good = bytes(3, 6);
+        final byte[] old = bytes(3, 7);
+        makeLocalFile("bad", old, 1000000L);
+        addRemote("bad", bytes(3, 8), B2TestHelpers.SAMPLE_SHA1, null);
+        addRemote("good", good, B2Sha1.hexSha1OfBytes(good), null);
+        contents.remove("id-bad");
+
+        final B2RestoreResult result = restore();
+
+        assertEquals(1, result.getDownloadedCount());
+        assertEquals(1, result.getFailedCount());
+        assertEquals("testing", result.getSampleFailures().get("backup/bad").getCode());
+        assertEquals(new TreeSet<>(listOf("DOWNLOAD backup/bad")), listener.failed);
+
+        // the old local file is still intact and there's no temp file lying around.
+        assertArrayEquals(old, Files.readAllBytes(localFile("bad").toPath()));
+        assertFalse(B2Restorer.tempFileFor(localFile("bad")).exists());
+    }
+
+    @Test
+    public void testNamesOutsideOfTheDirectoryAreRejected() throws B2Exception {
+        addRemote("../escape", bytes(3, 9), B2TestHelpers.SAMPLE_SHA1, null);
+        addRemote("folder/", bytes(0, 9), B2TestHelpers.SAMPLE_SHA1, null);
+
+        final B2RestoreResult result = restore();
+
+        assertEquals(2, result.getFailedCount());
+        assertEquals("bad_name", result.getSampleFailures().get("backup/../escape").getCode());
+        assertEquals(0, downloadCount.get());
+        assertFalse(new File(tempFolder.getRoot().getParentFile(), "escape").exists());
+    }
+
+    private static B2FileVersion withLargeFileSha1(B2FileVersion orig, String sha1) {
+        return new B2FileVersion(
+                orig.getFileId(),
+                orig.getFileName(),
+                orig.getContentLength(),
+                orig.getContentType(),
+                orig.getContentSha1(),
+                B2Collections.mapOf(B2Headers.LARGE_FILE_SHA1_INFO_NAME, sha1),
+                orig.getAction(),
+                orig.getUploadTimestamp());
+    }
+}
@@ -26,6 +26,7 @@ import static com.backblaze.b2.client.exceptions.B2UnauthorizedException.Request
 import static com.backblaze.b2.client.exceptions.B2UnauthorizedException.RequestCategory.UPLOADING;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
@@ -248,6 +249,29 @@ public class B2RetryerTest extends B2BaseTest {
         checkNotRetried(new RuntimeException("testing"));
     }
 
+    @Test
+    public void testMetrics() throws B2Exception {
+        final B2Metrics metrics = mock(B2Metrics.class);
+        final B2Retryer retryerWithMetrics = new B2Retryer(sleeper, metrics);
+
+        // works after some retries.
+        when(policy.gotRetryableAfterDelay(eq(OP), anyInt(), anyLong(), any())).thenReturn(1);
+        assertEquals("yippee", retryerWithMetrics.doRetry(OP, goodAuthCache, new Guts(tooManyRequests(null), serviceUnavailable(null), "yippee"), policy));
+        verify(metrics, times(1)).operationStarted(OP);
+        verify(metrics, times(1)).operationFinished(eq(OP), eq(3), anyLong(), eq(true));
+
+        // fails the first time.
+        try {
+            retryerWithMetrics.doRetry(OP, goodAuthCache, new Guts(badRequest()), policy);
+            fail("should have thrown");
+        } catch (B2BadRequestException e) {
+            // expected.
+        }
+        verify(metrics, times(2)).operationStarted(OP);
+        verify(metrics, times(1)).operationFinished(eq(OP), eq(1), anyLong(), eq(false));
+        verifyNoMoreInteractions(metrics);
+    }
+
     private void checkNotRetried(Exception exceptionToThrowFromCallable) {
         final Guts guts = new Guts(exceptionToThrowFromCallable);
 
@@ -782,6 +782,7 @@ public class B2StorageClientImplTest extends B2BaseTest {
                 .setCustomField("color", "blue")
                 .setListener(listener)
                 .build();
+        when(webifier.uploadFile(eq(uploadUrl), eq(request))).thenReturn(makeVersion(1, 1));
 
         client.uploadSmallFile(request);
 
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.contentSources.B2ContentTypes;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2InternalErrorException;
+import com.backblaze.b2.client.exceptions.B2RuntimeException;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2ListFileNamesRequest;
+import com.backblaze.b2.client.structures.B2ListFileVersionsRequest;
+import com.backblaze.b2.client.structures.B2SyncAction;
+import com.backblaze.b2.client.structures.B2SyncListener;
+import com.backblaze.b2.client.structures.B2SyncRequest;
+import com.backblaze.b2.client.structures.B2SyncResult;
+import com.backblaze.b2.client.structures.B2UploadFileRequest;
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2Collections;
+import com.backblaze.b2.util.B2ExecutorUtils;
+import com.backblaze.b2.util.B2Sha1;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.backblaze.b2.client.B2TestHelpers.bucketId;
+import static com.backblaze.b2.util.B2Collections.listOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class B2SyncerTest extends B2BaseTest {
+    private static final String BUCKET_ID = bucketId(1);
+    private static final String PREFIX = "backup/";
+    private static final long LARGE_SIZE = 1000;
+
+    private final B2StorageClient client = mock(B2StorageClient.class);
+    private final B2FilePolicy filePolicy = mock(B2FilePolicy.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final RecordingListener listener = new RecordingListener();
+    private final List<B2FileVersion> remoteVersions = new ArrayList<>();
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws B2Exception {
+        when(client.getFilePolicy()).thenReturn(filePolicy);
+        when(filePolicy.shouldBeLargeFile(anyLong())).thenAnswer(invocation -> ((Long) invocation.getArguments()[0]) >= LARGE_SIZE);
+        when(client.fileNames(any(B2ListFileNamesRequest.class))).thenReturn(remoteVersions::iterator);
+        when(client.uploadSmallFile(anyObject())).thenReturn(B2TestHelpers.makeVersion(1, 1));
+        when(client.uploadLargeFile(anyObject(), anyObject())).thenReturn(B2TestHelpers.makeVersion(2, 2));
+    }
+
+    @After
+    public void tearDown() {
+        B2ExecutorUtils.shutdownAndAwaitTermination(executor, 10, 10);
+    }
+
+    private static class RecordingListener implements B2SyncListener {
+        private final Set<String> succeeded = Collections.synchronizedSet(new TreeSet<>());
+        private final Set<String> failed = Collections.synchronizedSet(new TreeSet<>());
+
+        @Override
+        public void succeeded(B2SyncAction action, String fileName) {
+            succeeded.add(action + " " + fileName);
+        }
+
+        @Override
+        public void failed(B2SyncAction action, String fileName, B2Exception e) {
+            failed.add(action + " " + fileName);
+        }
+    }
+
+    private File makeFile(String name, byte[] contents, long lastModified) throws IOException {
+        final File file = new File(tempFolder.getRoot(), name);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents);
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    private void addRemote(String name, long length, String sha1, Map<String, String> fileInfo) {
+        remoteVersions.add(new B2FileVersion(
+                "id-" + name,
+                PREFIX + name,
+                length,
+                B2ContentTypes.APPLICATION_OCTET,
+                sha1,
+                fileInfo,
+                B2FileVersion.UPLOAD_ACTION,
+                1));
+    }
+
+    private static Map<String, String> lastModifiedInfo(File file) {
+        return B2Collections.mapOf(B2Headers.SRC_LAST_MODIFIED_MILLIS_INFO_NAME, Long.toString(file.lastModified()));
+    }
+
+    private B2SyncResult sync(B2SyncRequest.ExtraFileAction extraFileAction) throws B2Exception {
+        final B2SyncRequest request = B2SyncRequest
+                .builder(tempFolder.getRoot(), BUCKET_ID)
+                .setPrefix(PREFIX)
+                .setExtraFileAction(extraFileAction)
+                .setListener(listener)
+                .setMaxInFlight(2)
+                .build();
+        return new B2Syncer(client, executor, request).sync();
+    }
+
+    @Test
+    public void testUploadsNewAndChangedFilesOnly() throws B2Exception, IOException {
+        final byte[] same = {1, 2, 3};
+        final byte[] changed = {4, 5, 6};
+
+        final File unchangedByTime = makeFile("a/unchangedByTime", same, 1000000L);
+        addRemote("a/unchangedByTime", 3, "unused", lastModifiedInfo(unchangedByTime));
+
+        makeFile("b/unchangedBySha1", same, 2000000L);
+        addRemote("b/unchangedBySha1", 3, "unverified:" + B2Sha1.hexSha1OfBytes(same), B2Collections.mapOf());
+
+        makeFile("c/changedContents", changed, 3000000L);
+        addRemote("c/changedContents", 3, B2Sha1.hexSha1OfBytes(same), B2Collections.mapOf());
+
+        makeFile("d/changedSize", same, 4000000L);
+        addRemote("d/changedSize", 4, B2Sha1.hexSha1OfBytes(same), B2Collections.mapOf());
+
+        makeFile("e/new", same, 5000000L);
+
+        final B2SyncResult result = sync(B2SyncRequest.ExtraFileAction.KEEP);
+
+        assertEquals(2, result.getUnchangedCount());
+        assertEquals(3, result.getUploadedCount());
+        assertEquals(9, result.getUploadedBytes());
+        assertEquals(0, result.getFailedCount());
+        assertEquals(new TreeSet<>(listOf(
+                "UPLOAD backup/c/changedContents",
+                "UPLOAD backup/d/changedSize",
+                "UPLOAD backup/e/new")), listener.succeeded);
+
+        final ArgumentCaptor<B2UploadFileRequest> captor = ArgumentCaptor.forClass(B2UploadFileRequest.class);
+        verify(client, times(3)).uploadSmallFile(captor.capture());
+        for (B2UploadFileRequest uploadRequest : captor.getAllValues()) {
+            assertEquals(BUCKET_ID, uploadRequest.getBucketId());
+            if (uploadRequest.getFileName().equals("backup/c/changedContents")) {
+                // the sha1 we computed for the comparison is reused.
+                assertEquals(B2Sha1.hexSha1OfBytes(changed), uploadRequest.getContentSource().getSha1OrNull());
+            }
+        }
+    }
+
+    @Test
+    public void testExtraFilesAreKept() throws B2Exception {
+        addRemote("extra", 3, B2TestHelpers.SAMPLE_SHA1, B2Collections.mapOf());
+
+        final B2SyncResult result = sync(B2SyncRequest.ExtraFileAction.KEEP);
+
+        assertEquals(0, result.getHiddenCount());
+        verify(client, never()).hideFile(anyString(), anyString());
+        verify(client, never()).deleteFileVersion(any(B2FileVersion.class));
+    }
+
+    @Test
+    public void testExtraFilesAreHidden() throws B2Exception {
+        addRemote("extra1", 3, B2TestHelpers.SAMPLE_SHA1, B2Collections.mapOf());
+        addRemote("extra2", 3, B2TestHelpers.SAMPLE_SHA1, B2Collections.mapOf());
+
+        final B2SyncResult result = sync(B2SyncRequest.ExtraFileAction.HIDE);
+
+        assertEquals(2, result.getHiddenCount());
+        verify(client).hideFile(BUCKET_ID, "backup/extra1");
+        verify(client).hideFile(BUCKET_ID, "backup/extra2");
+    }
+
+    @Test
+    public void testExtraFilesAreDeleted() throws B2Exception {
+        addRemote("extra", 3, B2TestHelpers.SAMPLE_SHA1, B2Collections.mapOf());
+
+        final B2FileVersion newest = remoteVersions.get(0);
+        final B2FileVersion older = new B2FileVersion("id-older", "backup/extra", 2, B2ContentTypes.APPLICATION_OCTET,
+                B2TestHelpers.SAMPLE_SHA1, B2Collections.mapOf(), B2FileVersion.UPLOAD_ACTION, 0);
+        final B2FileVersion nextName = new B2FileVersion("id-next", "backup/extra2", 2, B2ContentTypes.APPLICATION_OCTET,
+                B2TestHelpers.SAMPLE_SHA1, B2Collections.mapOf(), B2FileVersion.UPLOAD_ACTION, 0);
+        final ArgumentCaptor<B2ListFileVersionsRequest> listCaptor = ArgumentCaptor.forClass(B2ListFileVersionsRequest.class);
+        when(client.fileVersions(listCaptor.capture())).thenReturn(listOf(newest, older, nextName)::iterator);
+
+        final B2SyncResult result = sync(B2SyncRequest.ExtraFileAction.DELETE);
+
+        // every version of the name is deleted, and nothing after it.
+        assertEquals(1, result.getDeletedCount());
+        verify(client).deleteFileVersion(newest);
+        verify(client).deleteFileVersion(older);
+        verify(client, never()).deleteFileVersion(nextName);
+        assertEquals("backup/extra", listCaptor.getValue().getStartFileName());
+        assertEquals("backup/extra", listCaptor.getValue().getPrefix());
+        assertEquals(new TreeSet<>(listOf("DELETE backup/extra")), listener.succeeded);
+    }
+
+    @Test
+    public void testLargeFilesGetLastModifiedAndUseExecutor() throws B2Exception, IOException {
+        final File big = makeFile("big", new byte[(int) LARGE_SIZE], 6000000L);
+
+        final B2SyncResult result = sync(B2SyncRequest.ExtraFileAction.KEEP);
+
+        assertEquals(1, result.getUploadedCount());
+        final ArgumentCaptor<B2UploadFileRequest> captor = ArgumentCaptor.forClass(B2UploadFileRequest.class);
+        verify(client).uploadLargeFile(captor.capture(), eq(executor));
+        assertEquals(Long.toString(big.lastModified()),
+                captor.getValue().getFileInfo().get(B2Headers.SRC_LAST_MODIFIED_MILLIS_INFO_NAME));
+    }
+
+    @Test
+    public void testFailuresAreReportedButDontStopOthers() throws B2Exception, IOException {
+        makeFile("a", new byte[] {1}, 1000000L);
+        makeFile("b", new byte[] {2}, 1000000L);
+        final B2Exception e = new B2InternalErrorException("testing", "testing message");
+        when(client.uploadSmallFile(anyObject())).thenAnswer(invocation -> {
+            final B2UploadFileRequest uploadRequest = (B2UploadFileRequest) invocation.getArguments()[0];
+            if (uploadRequest.getFileName().equals("backup/a")) {
+                throw e;
+            }
+            return B2TestHelpers.makeVersion(1, 1);
+        });
+
+        final B2SyncResult result = sync(B2SyncRequest.ExtraFileAction.KEEP);
+
+        assertEquals(1, result.getUploadedCount());
+        assertEquals(1, result.getFailedCount());
+        assertTrue(e == result.getSampleFailures().get("backup/a"));
+        assertEquals(new TreeSet<>(listOf("UPLOAD backup/a")), listener.failed);
+    }
+
+    @Test
+    public void testTroubleListingIsThrownAfterStartedWorkFinishes() throws B2Exception, IOException {
+        makeFile("a", new byte[] {1}, 1000000L);
+        final B2Exception listingException = new B2InternalErrorException("testing", "listing failed");
+        when(client.fileNames(any(B2ListFileNamesRequest.class))).thenReturn(() -> new Iterator<B2FileVersion>() {
+            @Override
+            public boolean hasNext() {
+                throw new B2RuntimeException("failed to advance iterator", listingException);
+            }
+
+            @Override
+            public B2FileVersion next() {
+                throw new B2RuntimeException("failed to advance iterator", listingException);
+            }
+        });
+
+        try {
+            sync(B2SyncRequest.ExtraFileAction.KEEP);
+            fail("should have thrown");
+        } catch (B2Exception e) {
+            assertTrue(listingException == e);
+        }
+    }
+
+    @Test
+    public void testRemoteSha1OrNull() {
+        final String sha1 = B2TestHelpers.SAMPLE_SHA1;
+        final Map<String, String> noInfo = B2Collections.mapOf();
+        final Map<String, String> largeInfo = B2Collections.mapOf(B2Headers.LARGE_FILE_SHA1_INFO_NAME, sha1);
+
+        assertEquals(sha1, B2Syncer.remoteSha1OrNull(version(sha1, noInfo)));
+        assertEquals(sha1, B2Syncer.remoteSha1OrNull(version("unverified:" + sha1, noInfo)));
+        assertEquals(sha1, B2Syncer.remoteSha1OrNull(version("none", largeInfo)));
+        assertEquals(null, B2Syncer.remoteSha1OrNull(version("none", noInfo)));
+    }
+
+    private static B2FileVersion version(String sha1, Map<String, String> fileInfo) {
+        return new B2FileVersion("id", "name", 1, B2ContentTypes.APPLICATION_OCTET, sha1, fileInfo, B2FileVersion.UPLOAD_ACTION, 1);
+    }
+}
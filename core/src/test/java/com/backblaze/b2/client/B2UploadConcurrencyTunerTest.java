@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2Clock;
+import com.backblaze.b2.util.B2ClockSim;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class B2UploadConcurrencyTunerTest extends B2BaseTest {
+    private static final long PART_BYTES = 1000;
+
+    private final B2ClockSim clock = (B2ClockSim) B2Clock.get();
+
+    @Test
+    public void testSlowStartThenBackOffOnPlateau() throws InterruptedException {
+        final B2UploadConcurrencyTuner tuner = new B2UploadConcurrencyTuner(16);
+        assertEquals(B2UploadConcurrencyTuner.INITIAL_CONCURRENCY, tuner.getLimit());
+
+        // each window takes one second, so throughput grows with the limit.
+        runWindow(tuner, 1000);
+        assertEquals(4, tuner.getLimit());
+        runWindow(tuner, 1000);
+        assertEquals(8, tuner.getLimit());
+
+        // 8 at once takes twice as long, so it's no better than 4.  back to 4.
+        runWindow(tuner, 2000);
+        assertEquals(4, tuner.getLimit());
+
+        // at the best limit, it probes one higher, not double.
+        runWindow(tuner, 1000);
+        assertEquals(5, tuner.getLimit());
+    }
+
+    @Test
+    public void testNeverAboveMax() throws InterruptedException {
+        final B2UploadConcurrencyTuner tuner = new B2UploadConcurrencyTuner(3);
+        runWindow(tuner, 1000);
+        assertEquals(3, tuner.getLimit());
+        runWindow(tuner, 100);
+        assertEquals(3, tuner.getLimit());
+    }
+
+    @Test
+    public void testErrorsHalveTheLimit() throws InterruptedException {
+        final B2UploadConcurrencyTuner tuner = new B2UploadConcurrencyTuner(16);
+        runWindow(tuner, 1000);
+        runWindow(tuner, 1000);
+        assertEquals(8, tuner.getLimit());
+
+        tuner.attemptFailed();
+        assertEquals(4, tuner.getLimit());
+        tuner.attemptFailed();
+        tuner.attemptFailed();
+        tuner.attemptFailed();
+        assertEquals(1, tuner.getLimit());
+
+        // slow start is over, so it grows by one.
+        runWindow(tuner, 1);
+        assertEquals(2, tuner.getLimit());
+    }
+
+    @Test
+    public void testAcquireWaitsForALimitAndStopsAfterAFailure() throws Exception {
+        final B2UploadConcurrencyTuner tuner = new B2UploadConcurrencyTuner(1);
+        assertTrue(tuner.acquire());
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Boolean> second = executor.submit(tuner::acquire);
+            Thread.sleep(50);
+            assertFalse(second.isDone());
+
+            // a part failing for good lets the waiter go, but not start.
+            tuner.partFinished(PART_BYTES, false);
+            assertFalse(second.get(10, TimeUnit.SECONDS));
+            assertFalse(tuner.acquire());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Uploads as many parts as the current limit, all at once, taking the given time.
+     */
+    private void runWindow(B2UploadConcurrencyTuner tuner,
+                           long millis) throws InterruptedException {
+        final int parts = tuner.getLimit();
+        for (int i = 0; i < parts; i++) {
+            assertTrue(tuner.acquire());
+        }
+        clock.advanceBoth(Duration.ofMillis(millis));
+        for (int i = 0; i < parts; i++) {
+            tuner.partFinished(PART_BYTES, true);
+        }
+    }
+}
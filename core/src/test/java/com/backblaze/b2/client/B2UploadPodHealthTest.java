@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client;
+
+import com.backblaze.b2.client.exceptions.B2BadRequestException;
+import com.backblaze.b2.client.exceptions.B2ConnectFailedException;
+import com.backblaze.b2.client.exceptions.B2InternalErrorException;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.exceptions.B2RequestTimeoutException;
+import com.backblaze.b2.client.exceptions.B2ServiceUnavailableException;
+import com.backblaze.b2.client.exceptions.B2TooManyRequestsException;
+import com.backblaze.b2.client.exceptions.B2UnauthorizedException;
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2Clock;
+import com.backblaze.b2.util.B2ClockSim;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class B2UploadPodHealthTest extends B2BaseTest {
+    private final B2ClockSim clock = (B2ClockSim) B2Clock.get();
+    private final B2UploadPodHealth health = new B2UploadPodHealth();
+
+    @Test
+    public void testPodOf() {
+        assertEquals("pod-000-1005-03.backblaze.com", B2UploadPodHealth.podOf("https://pod-000-1005-03.backblaze.com/b2api/v1/b2_upload_file/abc"));
+        assertEquals("127.0.0.1:8080", B2UploadPodHealth.podOf("http://127.0.0.1:8080"));
+        assertEquals("uploadUrl1", B2UploadPodHealth.podOf("uploadUrl1"));
+    }
+
+    @Test
+    public void testUnknownPodsAreHealthy() {
+        assertTrue(health.isHealthy("pod"));
+        assertEquals(0.0, health.score("pod"), 0.0);
+        assertEquals(0.0, health.getLatencyMillis("pod"), 0.0);
+    }
+
+    @Test
+    public void testSlowPodIsUnhealthyOnceThereIsAMedian() {
+        // the slow pod isn't judged until enough pods have enough samples.
+        succeed("slow", 1_000, 3);
+        succeed("fast1", 100_000, 3);
+        assertTrue(health.isHealthy("slow"));
+
+        succeed("fast2", 120_000, 3);
+        assertFalse(health.isHealthy("slow"));
+        assertTrue(health.isHealthy("fast1"));
+        assertTrue(health.isHealthy("fast2"));
+        assertTrue(health.score("fast2") > health.score("fast1"));
+        assertEquals(1000.0, health.getLatencyMillis("slow"), 0.0);
+
+        // pods we don't know enough about score as the median.
+        assertEquals(health.score("fast1"), health.score("new"), 0.0);
+    }
+
+    @Test
+    public void testServiceUnavailableIsUnhealthyForAWhile() {
+        health.failed("busy", new B2ServiceUnavailableException("service_unavailable", null, "busy"));
+        assertFalse(health.isHealthy("busy"));
+
+        clock.advanceBoth(Duration.ofMillis(B2UploadPodHealth.UNAVAILABLE_MILLIS - 1));
+        assertFalse(health.isHealthy("busy"));
+
+        clock.advanceBoth(Duration.ofMillis(1));
+        assertTrue(health.isHealthy("busy"));
+    }
+
+    @Test
+    public void testFailingPodIsUnhealthy() {
+        succeed("flaky", 100, 1);
+        health.failed("flaky", new B2InternalErrorException("internal_error", null, "oops"));
+        assertTrue(health.isHealthy("flaky"));
+
+        health.failed("flaky", new B2InternalErrorException("internal_error", null, "oops"));
+        health.failed("flaky", new B2InternalErrorException("internal_error", null, "oops"));
+        assertFalse(health.isHealthy("flaky"));
+
+        // successes bring it back.
+        succeed("flaky", 100, 3);
+        assertTrue(health.isHealthy("flaky"));
+    }
+
+    @Test
+    public void testBadRequestDoesntHurtThePod() {
+        succeed("pod1", 100_000, 3);
+        succeed("pod2", 100_000, 3);
+        succeed("pod3", 100_000, 3);
+        final double before = health.score("pod1");
+
+        for (int i = 0; i < 5; i++) {
+            health.failed("pod1", new B2BadRequestException("bad_request", null, "bad file name"));
+        }
+        assertTrue(health.isHealthy("pod1"));
+        assertEquals(before, health.score("pod1"), 0.0);
+    }
+
+    @Test
+    public void testIsPodsFault() {
+        assertTrue(B2UploadPodHealth.isPodsFault(new B2InternalErrorException("internal_error", null, "oops")));
+        assertTrue(B2UploadPodHealth.isPodsFault(new B2ServiceUnavailableException("service_unavailable", null, "busy")));
+        assertTrue(B2UploadPodHealth.isPodsFault(new B2RequestTimeoutException("request_timeout", null, "slow")));
+        assertTrue(B2UploadPodHealth.isPodsFault(new B2TooManyRequestsException("too_many_requests", null, "busy")));
+        assertTrue(B2UploadPodHealth.isPodsFault(new B2ConnectFailedException("connect_failed", null, "refused")));
+        assertTrue(B2UploadPodHealth.isPodsFault(new B2UnauthorizedException("expired_auth_token", null, "expired")));
+
+        assertFalse(B2UploadPodHealth.isPodsFault(new B2UnauthorizedException("bad_auth_token", null, "bad")));
+        assertFalse(B2UploadPodHealth.isPodsFault(new B2BadRequestException("bad_request", null, "bad file name")));
+        assertFalse(B2UploadPodHealth.isPodsFault(new B2LocalException("read_failed", "couldn't read the content")));
+    }
+
+    private void succeed(String pod,
+                         long bytesPerSecond,
+                         int times) {
+        for (int i = 0; i < times; i++) {
+            health.succeeded(pod, bytesPerSecond, 1000);
+        }
+    }
+}
@@ -6,6 +6,7 @@ package com.backblaze.b2.client;
 
 import com.backblaze.b2.client.exceptions.B2Exception;
 import com.backblaze.b2.client.exceptions.B2InternalErrorException;
+import com.backblaze.b2.client.exceptions.B2ServiceUnavailableException;
 import com.backblaze.b2.client.structures.B2UploadUrlResponse;
 import com.backblaze.b2.util.B2BaseTest;
 import org.junit.Rule;
@@ -65,6 +66,47 @@ public class B2UploadUrlCacheTest extends B2BaseTest {
         verify(webifier, times(3)).getUploadUrl(anyObject(), anyObject());
     }
 
+    @Test
+    public void testReportsCacheLookups() throws B2Exception {
+        final B2Metrics metrics = mock(B2Metrics.class);
+        final B2UploadUrlCache cacheWithMetrics = new B2UploadUrlCache(webifier, authCache, metrics);
+        doReturn(makeAuth(1)).when(authCache).get();
+
+        // a miss, then a hit once the url has been returned.
+        final B2UploadUrlResponse response1 = uploadUrlResponse(bucketId(1), 1);
+        doReturn(response1).when(webifier).getUploadUrl(anyObject(), anyObject());
+        assertTrue(response1 == cacheWithMetrics.get(bucketId(1), false));
+        cacheWithMetrics.unget(response1);
+        assertTrue(response1 == cacheWithMetrics.get(bucketId(1), false));
+
+        verify(metrics, times(1)).cacheLookup(B2Metrics.UPLOAD_URL_CACHE, false);
+        verify(metrics, times(1)).cacheLookup(B2Metrics.UPLOAD_URL_CACHE, true);
+    }
+
+    @Test
+    public void testPrefersFastPodsAndDropsUnhealthyOnes() throws B2Exception {
+        final B2UploadUrlResponse slow = uploadUrlResponse(bucketId(1), 1);
+        final B2UploadUrlResponse fast = uploadUrlResponse(bucketId(1), 2);
+        final B2UploadUrlResponse medium = uploadUrlResponse(bucketId(1), 3);
+        final B2UploadUrlResponse busy = uploadUrlResponse(bucketId(1), 4);
+
+        // each response is on its own pod, since each has its own url.
+        for (int i = 0; i < B2UploadPodHealth.MIN_SAMPLES; i++) {
+            uploadCache.unget(slow, 1_000, 1000);
+            uploadCache.unget(fast, 1_000_000, 1000);
+            uploadCache.unget(medium, 500_000, 1000);
+        }
+        uploadCache.failed(busy, new B2ServiceUnavailableException("service_unavailable", null, "busy"));
+
+        // the slow one gets dropped, and the busy one isn't taken back.
+        uploadCache.unget(busy);
+        assertTrue(fast == uploadCache.get(bucketId(1), false));
+        assertTrue(fast == uploadCache.get(bucketId(1), false));
+        assertTrue(fast == uploadCache.get(bucketId(1), false));
+        assertTrue(medium == uploadCache.get(bucketId(1), false));
+        verify(webifier, never()).getUploadUrl(anyObject(), anyObject());
+    }
+
     @Test
     public void testRetriesDontUseCachedAnswers() throws B2Exception {
         doReturn(makeAuth(1)).when(authCache).get();
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.webApiClients;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.contentSources.B2HeadersImpl;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2NetworkException;
+import com.backblaze.b2.util.B2BandwidthLimiter;
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2InputStreamWithBandwidthLimiter;
+import com.backblaze.b2.util.B2IoUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class B2WebApiClientWithBandwidthLimitsTest extends B2BaseTest {
+    private static final String UPLOAD_URL = "https://pod-000-1000-00.backblaze.com/b2api/v2/b2_upload_file/bucket1";
+    private static final String DOWNLOAD_URL = "https://f000.backblazeb2.com/file/bucket/some/file.txt";
+    private static final byte[] CONTENT = new byte[1000];
+
+    private final StreamRecordingWebApiClient delegate = new StreamRecordingWebApiClient();
+
+    @Test
+    public void testLimitsUploadsAndDownloadsSeparately() throws B2Exception {
+        final B2BandwidthLimiter uploadLimiter = new B2BandwidthLimiter(1000000);
+        final B2WebApiClient client = new B2WebApiClientWithBandwidthLimits(delegate, uploadLimiter, null);
+
+        client.postDataReturnJson(UPLOAD_URL, null, new ByteArrayInputStream(CONTENT), CONTENT.length, String.class);
+        assertTrue(delegate.lastStream instanceof B2InputStreamWithBandwidthLimiter);
+        assertEquals(CONTENT.length, delegate.bytesRead);
+
+        // there's no download limiter, so the sink gets the stream as it is.
+        final byte[] downloaded = download(client);
+        assertFalse(delegate.lastStream instanceof B2InputStreamWithBandwidthLimiter);
+        assertArrayEquals(CONTENT, downloaded);
+    }
+
+    @Test
+    public void testLimitsDownloads() throws B2Exception {
+        final B2BandwidthLimiter downloadLimiter = new B2BandwidthLimiter(1000000);
+        final B2WebApiClient client = new B2WebApiClientWithBandwidthLimits(delegate, null, downloadLimiter);
+
+        assertArrayEquals(CONTENT, download(client));
+        assertTrue(delegate.lastStream instanceof B2InputStreamWithBandwidthLimiter);
+
+        client.postDataReturnJson(UPLOAD_URL, null, new ByteArrayInputStream(CONTENT), CONTENT.length, String.class);
+        assertFalse(delegate.lastStream instanceof B2InputStreamWithBandwidthLimiter);
+    }
+
+    private byte[] download(B2WebApiClient client) throws B2Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        client.getContent(DOWNLOAD_URL, null, (headers, in) -> {
+            delegate.lastStream = in;
+            B2IoUtils.copy(in, out);
+        });
+        return out.toByteArray();
+    }
+
+    private static class StreamRecordingWebApiClient implements B2WebApiClient {
+        private InputStream lastStream;
+        private long bytesRead;
+
+        @Override
+        public <ResponseType> ResponseType postJsonReturnJson(String url,
+                                                              B2Headers headersOrNull,
+                                                              Object request,
+                                                              Class<ResponseType> responseClass) {
+            return null;
+        }
+
+        @Override
+        public <ResponseType> ResponseType postDataReturnJson(String url,
+                                                              B2Headers headersOrNull,
+                                                              InputStream contentSource,
+                                                              long contentLength,
+                                                              Class<ResponseType> responseClass) throws B2Exception {
+            lastStream = contentSource;
+            final byte[] buffer = new byte[100];
+            try {
+                int nRead;
+                while ((nRead = contentSource.read(buffer)) != -1) {
+                    bytesRead += nRead;
+                }
+            } catch (IOException e) {
+                throw new B2NetworkException("io_exception", null, "trouble reading: " + e, e);
+            }
+            return null;
+        }
+
+        @Override
+        public void getContent(String url,
+                               B2Headers headersOrNull,
+                               B2ContentSink handler) throws B2Exception {
+            final B2Headers headers = B2HeadersImpl
+                    .builder()
+                    .set(B2Headers.CONTENT_LENGTH, Integer.toString(CONTENT.length))
+                    .build();
+            try {
+                handler.readContent(headers, new ByteArrayInputStream(CONTENT));
+            } catch (IOException e) {
+                throw new B2NetworkException("io_exception", null, "trouble reading: " + e, e);
+            }
+        }
+
+        @Override
+        public B2Headers head(String url, B2Headers headersOrNull) {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.webApiClients;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.contentSources.B2HeadersImpl;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2NetworkException;
+import com.backblaze.b2.client.exceptions.B2ServiceUnavailableException;
+import com.backblaze.b2.client.webApiClients.B2WebApiClientWithChaos.LatencyDistribution;
+import com.backblaze.b2.client.webApiClients.B2WebApiClientWithChaos.Rule;
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2Clock;
+import com.backblaze.b2.util.B2IoUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class B2WebApiClientWithChaosTest extends B2BaseTest {
+    private static final String UPLOAD_URL = "https://pod-000-1000-00.backblaze.com/b2api/v2/b2_upload_file/bucket1";
+    private static final String LIST_URL = "https://api000.backblazeb2.com/b2api/v2/b2_list_file_names";
+    private static final String DOWNLOAD_URL = "https://f000.backblazeb2.com/file/bucket/some/file.txt";
+    private static final byte[] CONTENT = new byte[1000];
+
+    private final RecordingWebApiClient delegate = new RecordingWebApiClient();
+
+    @Test
+    public void testLatencyAdvancesSimulatedClock() throws B2Exception {
+        final B2WebApiClientWithChaos client = B2WebApiClientWithChaos
+                .builder(delegate)
+                .setDefaultRule(Rule.builder().setLatency(LatencyDistribution.fixed(250)).build())
+                .build();
+
+        final long before = B2Clock.get().monotonicMillis();
+        client.postJsonReturnJson(LIST_URL, null, "request", String.class);
+        assertEquals(250, B2Clock.get().monotonicMillis() - before);
+        assertEquals(250, client.getInjectedWaitMillis());
+        assertEquals(1, delegate.callCount);
+    }
+
+    @Test
+    public void testInjectedErrorIsntSent() throws B2Exception {
+        final B2WebApiClientWithChaos client = B2WebApiClientWithChaos
+                .builder(delegate)
+                .setRule("b2_list_file_names", Rule.builder().addError(1.0, 503, "service_unavailable", 7).build())
+                .build();
+
+        try {
+            client.postJsonReturnJson(LIST_URL, null, "request", String.class);
+            fail("should have thrown");
+        } catch (B2ServiceUnavailableException e) {
+            assertEquals("service_unavailable", e.getCode());
+            assertEquals(Integer.valueOf(7), e.getRetryAfterSecondsOrNull());
+        }
+        assertEquals(0, delegate.callCount);
+        assertEquals(1, client.getInjectedErrorCount());
+
+        // other endpoints use the default rule, which does nothing.
+        client.postDataReturnJson(UPLOAD_URL, null, new ByteArrayInputStream(CONTENT), CONTENT.length, String.class);
+        assertEquals(1, delegate.callCount);
+    }
+
+    @Test
+    public void testBandwidthCapOnUpload() throws B2Exception {
+        final B2WebApiClientWithChaos client = B2WebApiClientWithChaos
+                .builder(delegate)
+                .setDefaultRule(Rule.builder().setBytesPerSecond(500).build())
+                .build();
+
+        final long before = B2Clock.get().monotonicMillis();
+        client.postDataReturnJson(UPLOAD_URL, null, new ByteArrayInputStream(CONTENT), CONTENT.length, String.class);
+        assertEquals(2000, B2Clock.get().monotonicMillis() - before);
+        assertEquals(CONTENT.length, delegate.bytesRead);
+    }
+
+    @Test
+    public void testResetDuringUpload() throws B2Exception {
+        final B2WebApiClientWithChaos client = B2WebApiClientWithChaos
+                .builder(delegate)
+                .setDefaultRule(Rule.builder().setResetRate(1.0).build())
+                .build();
+
+        try {
+            client.postDataReturnJson(UPLOAD_URL, null, new ByteArrayInputStream(CONTENT), CONTENT.length, String.class);
+            fail("should have thrown");
+        } catch (B2NetworkException e) {
+            assertEquals("socket_exception", e.getCode());
+        }
+        assertTrue(delegate.bytesRead < CONTENT.length);
+        assertEquals(1, client.getInjectedResetCount());
+    }
+
+    @Test
+    public void testResetDuringDownload() throws B2Exception {
+        final B2WebApiClientWithChaos client = B2WebApiClientWithChaos
+                .builder(delegate)
+                .setRule(B2WebApiEndpoints.DOWNLOAD_BY_NAME, Rule.builder().setResetRate(1.0).build())
+                .build();
+
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        try {
+            client.getContent(DOWNLOAD_URL, null, (headers, in) -> B2IoUtils.copy(in, received));
+            fail("should have thrown");
+        } catch (B2NetworkException e) {
+            assertEquals("socket_exception", e.getCode());
+        }
+        assertTrue(received.size() < CONTENT.length);
+        assertEquals(1, client.getInjectedResetCount());
+    }
+
+    @Test
+    public void testSameSeedReplaysSameFailures() {
+        final List<String> outcomes = runMixedFailures(1234);
+        assertTrue(outcomes.contains("ok"));
+        assertTrue(outcomes.contains("socket_exception"));
+        assertTrue(outcomes.contains("service_unavailable"));
+        assertEquals(outcomes, runMixedFailures(1234));
+    }
+
+    @Test
+    public void testAddingARuleDoesntChangeOtherEndpoints() {
+        final List<String> withoutUploadRule = runListsBetweenUploads(null);
+        assertTrue(withoutUploadRule.contains("ok"));
+        assertTrue(withoutUploadRule.contains("service_unavailable"));
+
+        // the default rule draws a latency from its roll, and this one doesn't.
+        final Rule uploadRule = Rule
+                .builder()
+                .addError(0.5, 429, "too_many_requests", null)
+                .build();
+        assertEquals(withoutUploadRule, runListsBetweenUploads(uploadRule));
+    }
+
+    /**
+     * @return what happened to each list call, and how long it waited.
+     */
+    private List<String> runListsBetweenUploads(Rule uploadRuleOrNull) {
+        final B2WebApiClientWithChaos.Builder builder = B2WebApiClientWithChaos
+                .builder(new RecordingWebApiClient())
+                .setDefaultRule(Rule
+                        .builder()
+                        .setLatency(LatencyDistribution.exponential(10, 50))
+                        .setResetRate(0.2)
+                        .addError(0.2, 503, "service_unavailable", null)
+                        .build())
+                .setRandomSeed(5678);
+        if (uploadRuleOrNull != null) {
+            builder.setRule("b2_upload_file", uploadRuleOrNull);
+        }
+        final B2WebApiClientWithChaos client = builder.build();
+
+        final List<String> outcomes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final long startMillis = B2Clock.get().monotonicMillis();
+            try {
+                client.postJsonReturnJson(LIST_URL, null, "request", String.class);
+                outcomes.add("ok");
+            } catch (B2Exception e) {
+                outcomes.add(e.getCode());
+            }
+            outcomes.add("waited " + (B2Clock.get().monotonicMillis() - startMillis));
+
+            try {
+                client.postDataReturnJson(UPLOAD_URL, null, new ByteArrayInputStream(CONTENT), CONTENT.length, String.class);
+            } catch (B2Exception e) {
+                // only the list calls matter.
+            }
+        }
+        return outcomes;
+    }
+
+    private List<String> runMixedFailures(long seed) {
+        final B2WebApiClientWithChaos client = B2WebApiClientWithChaos
+                .builder(new RecordingWebApiClient())
+                .setDefaultRule(Rule
+                        .builder()
+                        .setLatency(LatencyDistribution.exponential(10, 50))
+                        .setResetRate(0.2)
+                        .addError(0.1, 429, "too_many_requests", null)
+                        .addError(0.1, 503, "service_unavailable", null)
+                        .build())
+                .setRandomSeed(seed)
+                .build();
+
+        final List<String> outcomes = new ArrayList<>();
+        final long startMillis = B2Clock.get().monotonicMillis();
+        for (int i = 0; i < 50; i++) {
+            try {
+                client.postDataReturnJson(UPLOAD_URL, null, new ByteArrayInputStream(CONTENT), CONTENT.length, String.class);
+                outcomes.add("ok");
+            } catch (B2Exception e) {
+                outcomes.add(e.getCode());
+            }
+        }
+        outcomes.add("waited " + (B2Clock.get().monotonicMillis() - startMillis));
+        return outcomes;
+    }
+
+    /**
+     * Reads all of each upload, like a real transport, and serves CONTENT
+     * for downloads.  It turns IOExceptions into B2NetworkExceptions.
+     */
+    private static class RecordingWebApiClient implements B2WebApiClient {
+        private int callCount;
+        private long bytesRead;
+
+        @Override
+        public <ResponseType> ResponseType postJsonReturnJson(String url,
+                                                              B2Headers headersOrNull,
+                                                              Object request,
+                                                              Class<ResponseType> responseClass) {
+            callCount++;
+            return null;
+        }
+
+        @Override
+        public <ResponseType> ResponseType postDataReturnJson(String url,
+                                                              B2Headers headersOrNull,
+                                                              InputStream contentSource,
+                                                              long contentLength,
+                                                              Class<ResponseType> responseClass) throws B2Exception {
+            callCount++;
+            final byte[] buffer = new byte[100];
+            try {
+                int nRead;
+                while ((nRead = contentSource.read(buffer)) != -1) {
+                    bytesRead += nRead;
+                }
+            } catch (IOException e) {
+                throw new B2NetworkException("io_exception", null, "trouble reading: " + e, e);
+            }
+            return null;
+        }
+
+        @Override
+        public void getContent(String url,
+                               B2Headers headersOrNull,
+                               B2ContentSink handler) throws B2Exception {
+            callCount++;
+            final B2Headers headers = B2HeadersImpl
+                    .builder()
+                    .set(B2Headers.CONTENT_LENGTH, Integer.toString(CONTENT.length))
+                    .build();
+            try {
+                handler.readContent(headers, new ByteArrayInputStream(CONTENT));
+            } catch (IOException e) {
+                throw new B2NetworkException("io_exception", null, "trouble reading: " + e, e);
+            }
+        }
+
+        @Override
+        public B2Headers head(String url, B2Headers headersOrNull) {
+            callCount++;
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
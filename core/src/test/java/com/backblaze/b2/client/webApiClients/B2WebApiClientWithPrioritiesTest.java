@@ -0,0 +1,239 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.webApiClients;
+
+import com.backblaze.b2.client.contentHandlers.B2ContentSink;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2LocalException;
+import com.backblaze.b2.client.webApiClients.B2WebApiClientWithPriorities.Priority;
+import com.backblaze.b2.util.B2BaseTest;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.backblaze.b2.client.webApiClients.B2WebApiClientWithPriorities.Priority.BULK;
+import static com.backblaze.b2.client.webApiClients.B2WebApiClientWithPriorities.Priority.INTERACTIVE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class B2WebApiClientWithPrioritiesTest extends B2BaseTest {
+    private static final String UPLOAD_PART_URL = "https://pod-000-1000-00.backblaze.com/b2api/v2/b2_upload_part/4_z";
+    private static final String FILE_INFO_URL = "https://api000.backblazeb2.com/b2api/v2/b2_get_file_info";
+    private static final String DOWNLOAD_BY_ID_URL = "https://f000.backblazeb2.com/b2api/v2/b2_download_file_by_id?fileId=4_z";
+
+    private final BlockingWebApiClient delegate = new BlockingWebApiClient();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPriorities() {
+        final B2WebApiClientWithPriorities client = B2WebApiClientWithPriorities
+                .builder(delegate)
+                .setPriority("b2_download_file_by_id", BULK)
+                .build();
+        assertEquals(BULK, client.getPriority(UPLOAD_PART_URL));
+        assertEquals(BULK, client.getPriority(DOWNLOAD_BY_ID_URL));
+        assertEquals(INTERACTIVE, client.getPriority(FILE_INFO_URL));
+        assertEquals(INTERACTIVE, client.getPriority("https://f000.backblazeb2.com/file/bucket/name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkMustFit() {
+        B2WebApiClientWithPriorities
+                .builder(delegate)
+                .setMaxConcurrentCalls(2)
+                .setMaxConcurrentBulkCalls(3)
+                .build();
+    }
+
+    @Test
+    public void testInteractiveCallsUseTheReservedSlots() throws Exception {
+        final B2WebApiClientWithPriorities client = B2WebApiClientWithPriorities
+                .builder(delegate)
+                .setMaxConcurrentCalls(3)
+                .setMaxConcurrentBulkCalls(2)
+                .build();
+
+        final List<Future<?>> bulkCalls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            bulkCalls.add(start(client, UPLOAD_PART_URL));
+        }
+        assertEquals(UPLOAD_PART_URL, delegate.nextEntered());
+        assertEquals(UPLOAD_PART_URL, delegate.nextEntered());
+        awaitWaiting(client, BULK, 1);
+
+        // the third upload is waiting, but there's still a slot for this.
+        final Future<?> interactiveCall = start(client, FILE_INFO_URL);
+        assertEquals(FILE_INFO_URL, delegate.nextEntered());
+        assertEquals(2, client.getInFlight(BULK));
+        assertEquals(1, client.getInFlight(INTERACTIVE));
+
+        delegate.finish(4);
+        interactiveCall.get(10, TimeUnit.SECONDS);
+        for (Future<?> bulkCall : bulkCalls) {
+            bulkCall.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(0, client.getInFlight(BULK));
+        assertEquals(0, client.getInFlight(INTERACTIVE));
+    }
+
+    @Test
+    public void testWeightedTurns() throws Exception {
+        final B2WebApiClientWithPriorities client = B2WebApiClientWithPriorities
+                .builder(delegate)
+                .setMaxConcurrentCalls(1)
+                .setMaxConcurrentBulkCalls(1)
+                .setInteractiveWeight(2)
+                .build();
+
+        // hold the only slot while the others line up.
+        final Future<?> first = start(client, FILE_INFO_URL);
+        assertEquals(FILE_INFO_URL, delegate.nextEntered());
+        for (int i = 0; i < 3; i++) {
+            start(client, FILE_INFO_URL);
+        }
+        for (int i = 0; i < 2; i++) {
+            start(client, UPLOAD_PART_URL);
+        }
+        awaitWaiting(client, INTERACTIVE, 3);
+        awaitWaiting(client, BULK, 2);
+
+        // two interactive calls for each bulk call, until one kind runs out.
+        final List<String> order = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            delegate.finish(1);
+            order.add(delegate.nextEntered());
+        }
+        first.get(10, TimeUnit.SECONDS);
+        assertEquals(FILE_INFO_URL, order.get(0));
+        assertEquals(FILE_INFO_URL, order.get(1));
+        assertEquals(UPLOAD_PART_URL, order.get(2));
+        assertEquals(FILE_INFO_URL, order.get(3));
+        assertEquals(UPLOAD_PART_URL, order.get(4));
+        delegate.finish(1);
+    }
+
+    @Test
+    public void testInterruptedWhileWaiting() throws Exception {
+        final B2WebApiClientWithPriorities client = B2WebApiClientWithPriorities
+                .builder(delegate)
+                .setMaxConcurrentCalls(1)
+                .build();
+        start(client, FILE_INFO_URL);
+        assertEquals(FILE_INFO_URL, delegate.nextEntered());
+
+        Thread.currentThread().interrupt();
+        try {
+            client.postJsonReturnJson(FILE_INFO_URL, null, "request", String.class);
+            fail("should have thrown");
+        } catch (B2LocalException e) {
+            assertEquals("interrupted", e.getCode());
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(0, client.getWaiting(INTERACTIVE));
+        delegate.finish(1);
+    }
+
+    private Future<?> start(B2WebApiClientWithPriorities client,
+                            String url) {
+        if (client.getPriority(url) == BULK) {
+            return executor.submit(() -> client.postDataReturnJson(url, null, new ByteArrayInputStream(new byte[10]), 10, String.class));
+        }
+        return executor.submit(() -> client.postJsonReturnJson(url, null, "request", String.class));
+    }
+
+    private static void awaitWaiting(B2WebApiClientWithPriorities client,
+                                     Priority priority,
+                                     int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (client.getWaiting(priority) != count) {
+            assertTrue("timed out waiting for " + count + " " + priority + " calls", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Records the url of each call as it comes in, and makes it wait until
+     * the test lets it finish.
+     */
+    private static class BlockingWebApiClient implements B2WebApiClient {
+        private final BlockingQueue<String> entered = new LinkedBlockingQueue<>();
+        private final Semaphore mayFinish = new Semaphore(0);
+
+        String nextEntered() throws InterruptedException {
+            final String url = entered.poll(10, TimeUnit.SECONDS);
+            assertTrue("no call came in", url != null);
+            return url;
+        }
+
+        void finish(int nCalls) {
+            mayFinish.release(nCalls);
+        }
+
+        private void enterAndWait(String url) throws B2Exception {
+            entered.add(url);
+            try {
+                mayFinish.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new B2LocalException("interrupted", "interrupted");
+            }
+        }
+
+        @Override
+        public <ResponseType> ResponseType postJsonReturnJson(String url,
+                                                              B2Headers headersOrNull,
+                                                              Object request,
+                                                              Class<ResponseType> responseClass) throws B2Exception {
+            enterAndWait(url);
+            return null;
+        }
+
+        @Override
+        public <ResponseType> ResponseType postDataReturnJson(String url,
+                                                              B2Headers headersOrNull,
+                                                              InputStream contentSource,
+                                                              long contentLength,
+                                                              Class<ResponseType> responseClass) throws B2Exception {
+            enterAndWait(url);
+            return null;
+        }
+
+        @Override
+        public void getContent(String url,
+                               B2Headers headersOrNull,
+                               B2ContentSink handler) throws B2Exception {
+            enterAndWait(url);
+        }
+
+        @Override
+        public B2Headers head(String url,
+                              B2Headers headersOrNull) throws B2Exception {
+            enterAndWait(url);
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.webApiClients;
+
+import com.backblaze.b2.util.B2BaseTest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class B2WebApiEndpointsTest extends B2BaseTest {
+    @Test
+    public void testEndpointOf() {
+        assertEquals("b2_upload_file", B2WebApiEndpoints.endpointOf("https://pod-000-1000-00.backblaze.com/b2api/v2/b2_upload_file/bucket1"));
+        assertEquals("b2_list_file_names", B2WebApiEndpoints.endpointOf("https://api000.backblazeb2.com/b2api/v2/b2_list_file_names"));
+        assertEquals("b2_download_file_by_id", B2WebApiEndpoints.endpointOf("https://f000.backblazeb2.com/b2api/v2/b2_download_file_by_id?fileId=4_z"));
+        assertEquals(B2WebApiEndpoints.DOWNLOAD_BY_NAME, B2WebApiEndpoints.endpointOf("https://f000.backblazeb2.com/file/bucket/some/file.txt"));
+        assertEquals("", B2WebApiEndpoints.endpointOf("https://example.com/b2api"));
+        assertEquals("", B2WebApiEndpoints.endpointOf("https://example.com/"));
+    }
+}
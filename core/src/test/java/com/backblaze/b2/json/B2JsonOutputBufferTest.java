@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.json;
+
+import com.backblaze.b2.util.B2BaseTest;
+import com.backblaze.b2.util.B2Utf8Util;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class B2JsonOutputBufferTest extends B2BaseTest {
+
+    private interface Encoder {
+        void encode(B2JsonOutputBuffer buffer, String str) throws IOException;
+    }
+
+    private interface ReferenceEncoder {
+        void encode(String str, ByteArrayOutputStream out) throws IOException;
+    }
+
+    @Test
+    public void testWriteUtf8MatchesB2Utf8Util() throws IOException {
+        checkEveryCodePoint(B2JsonOutputBuffer::writeUtf8, B2Utf8Util::write);
+    }
+
+    @Test
+    public void testWriteJsonStringMatchesB2Utf8Util() throws IOException {
+        checkEveryCodePoint(B2JsonOutputBuffer::writeJsonString, B2Utf8Util::writeJsonString);
+    }
+
+    private void checkEveryCodePoint(Encoder encoder,
+                                     ReferenceEncoder reference) throws IOException {
+        // one buffer for everything, so it grows and is reused along the way.
+        final B2JsonOutputBuffer buffer = new B2JsonOutputBuffer(16);
+        for (int codePoint = 0; codePoint <= Character.MAX_CODE_POINT; codePoint++) {
+            // some ascii before and after, so we go in and out of the fast paths.
+            final String str = "ab" + new String(Character.toChars(codePoint)) + "c\"d";
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            buffer.reset();
+
+            String expectedError = null;
+            try {
+                reference.encode(str, expected);
+            } catch (IOException e) {
+                expectedError = e.getMessage();
+            }
+
+            try {
+                encoder.encode(buffer, str);
+                if (expectedError != null) {
+                    fail("should've thrown for " + codePoint);
+                }
+            } catch (IOException e) {
+                assertEquals(expectedError, e.getMessage());
+                continue;
+            }
+            assertArrayEquals("codePoint " + codePoint, expected.toByteArray(), buffer.toByteArray());
+        }
+    }
+
+    @Test
+    public void testGrowsAsNeeded() throws IOException {
+        final B2JsonOutputBuffer buffer = new B2JsonOutputBuffer(16);
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("\u00e9x");
+            buffer.write('[');
+            buffer.writeUtf8(builder.toString());
+            buffer.write(']');
+        }
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        builder.setLength(0);
+        for (int i = 0; i < 1000; i++) {
+            builder.append("\u00e9x");
+            expected.write('[');
+            B2Utf8Util.write(builder.toString(), expected);
+            expected.write(']');
+        }
+        assertArrayEquals(expected.toByteArray(), buffer.toByteArray());
+        assertEquals(expected.size(), buffer.getLength());
+    }
+
+    @Test
+    public void testLongStringsAcrossChunks() throws IOException {
+        // a surrogate pair and an escape at each spot around the ends of the
+        // first chunk, and growth that's sized by chunk, not by the string.
+        for (int prefix = 1020; prefix < 1030; prefix++) {
+            final StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < prefix; i++) {
+                builder.append('a');
+            }
+            builder.append("\ud83d\ude00\n");
+            for (int i = 0; i < 20000; i++) {
+                builder.append('b');
+            }
+            final String str = builder.toString();
+
+            final B2JsonOutputBuffer buffer = new B2JsonOutputBuffer(16);
+            buffer.writeUtf8(str);
+            assertArrayEquals(str.getBytes(StandardCharsets.UTF_8), buffer.toByteArray());
+
+            buffer.reset();
+            buffer.writeJsonString(str);
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            B2Utf8Util.writeJsonString(str, expected);
+            assertArrayEquals(expected.toByteArray(), buffer.toByteArray());
+            assertTrue(buffer.getArray().length < 2 * (buffer.getLength() + 6 * 1024));
+        }
+    }
+
+    @Test
+    public void testPooledBufferIsReusedButNotShared() {
+        final B2JsonOutputBuffer first = B2JsonOutputBuffer.acquire();
+        first.write('x');
+
+        // while it's in use, someone else gets a fresh one.
+        final B2JsonOutputBuffer nested = B2JsonOutputBuffer.acquire();
+        assertNotSame(first, nested);
+        B2JsonOutputBuffer.release(nested);
+        B2JsonOutputBuffer.release(first);
+
+        // after release, it's reused, empty.
+        final B2JsonOutputBuffer again = B2JsonOutputBuffer.acquire();
+        assertSame(first, again);
+        assertEquals(0, again.getLength());
+        B2JsonOutputBuffer.release(again);
+    }
+
+    private static class Holder {
+        @B2Json.required
+        public final String name;
+
+        @B2Json.required
+        public final long size;
+
+        @B2Json.constructor(params = "name, size")
+        public Holder(String name, long size) {
+            this.name = name;
+            this.size = size;
+        }
+    }
+
+    @Test
+    public void testToJsonIsTheSameEveryWay() throws IOException, B2JsonException {
+        final Holder holder = new Holder("caf\u00e9 \"\ud83d\ude00\"\n", -1234567L);
+        final String json = B2Json.get().toJson(holder);
+        assertEquals(
+                "{\n" +
+                "  \"name\": \"caf\u00e9 \\\"\ud83d\ude00\\\"\\u000a\",\n" +
+                "  \"size\": -1234567\n" +
+                "}",
+                json);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        B2Json.get().toJson(holder, out);
+        assertArrayEquals(json.getBytes("UTF-8"), out.toByteArray());
+        assertArrayEquals(json.getBytes("UTF-8"), B2Json.get().toJsonUtf8Bytes(holder));
+        assertArrayEquals((json + "\n").getBytes("UTF-8"), B2Json.get().toJsonUtf8BytesWithNewline(holder));
+    }
+}
@@ -8,11 +8,21 @@ package com.backblaze.b2.json;
 import com.backblaze.b2.util.B2BaseTest;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -96,18 +106,136 @@ public class B2JsonReaderTest extends B2BaseTest {
     }
 
     private void checkString(String text, String expectedOrNull) throws IOException, B2JsonException {
-        B2JsonReader reader = new B2JsonReader(new StringReader(text));
-        if (expectedOrNull == null) {
-            try {
-                reader.readString();
-                fail("should have thrown: " + text);
+        for (B2JsonReader reader : allReaders(text)) {
+            if (expectedOrNull == null) {
+                try {
+                    reader.readString();
+                    fail("should have thrown: " + text);
+                }
+                catch (B2JsonException e) {
+                    // cool
+                }
             }
-            catch (B2JsonException e) {
-                // cool
+            else {
+                assertEquals(expectedOrNull, reader.readString());
             }
         }
-        else {
-            assertEquals(expectedOrNull, reader.readString());
+    }
+
+    // a reader of each kind, all reading the same text.
+    private static List<B2JsonReader> allReaders(String text) throws IOException {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final byte[] padded = new byte[bytes.length + 6];
+        System.arraycopy(bytes, 0, padded, 3, bytes.length);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.flip();
+        return Arrays.asList(
+                new B2JsonReader(new StringReader(text)),
+                new B2JsonReader(bytes),
+                new B2JsonReader(padded, 3, bytes.length),
+                new B2JsonReader(ByteBuffer.wrap(padded, 3, bytes.length).slice()),
+                new B2JsonReader(direct),
+                new B2JsonReader(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void testReadStringFromUtf8Bytes() throws IOException, B2JsonException {
+        checkString("\"a\u0001\"", null);
+        checkString("\"\u6771\u4eac \uD802\uDC5A\"", "\u6771\u4eac \uD802\uDC5A");
+        checkString("\"ab\\\"cd\u00DF\\n\"", "ab\"cd\u00DF\n");
+
+        // like InputStreamReader, malformed UTF-8 becomes U+FFFD.
+        final byte[] malformed = {'"', 'a', (byte) 0xc3, 'b', (byte) 0xff, (byte) 0xed, (byte) 0xa0, (byte) 0x80, '"'};
+        assertEquals("a\uFFFDb\uFFFD\uFFFD\uFFFD\uFFFD", new B2JsonReader(malformed).readString());
+
+        // strings that cross the boundary between the stream reader's buffers.
+        final StringBuilder json = new StringBuilder();
+        json.append('[');
+        for (int i = 0; i < 3000; i++) {
+            json.append(i == 0 ? "" : ",").append("\"x\u00DF").append(i).append('"');
+        }
+        json.append(']');
+        final B2JsonReader reader = new B2JsonReader(new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)));
+        assertTrue(reader.startArrayAndCheckForContents());
+        int i = 0;
+        do {
+            assertEquals("x\u00DF" + i, reader.readString());
+            i++;
+        } while (reader.arrayHasMoreValues());
+        reader.finishArray();
+        assertEquals(3000, i);
+        assertTrue(reader.nextNonWhitespaceIsEof());
+    }
+
+    @Test
+    public void testReadLongAndInt() throws IOException, B2JsonException {
+        checkLong("0", 0L);
+        checkLong("-0", 0L);
+        checkLong(" 1234 ", 1234L);
+        checkLong("-9223372036854775808", Long.MIN_VALUE);
+        checkLong("9223372036854775807", Long.MAX_VALUE);
+        checkLong("9223372036854775808", null);
+        checkLong("-9223372036854775809", null);
+        checkLong("99999999999999999999", null);
+        checkLong("1.0", null);
+        checkLong("1e3", null);
+        checkLong("01", null);
+        checkLong("x", null);
+
+        assertEquals(Integer.MIN_VALUE, new B2JsonReader(new StringReader("-2147483648")).readInt());
+        assertEquals(Integer.MAX_VALUE, new B2JsonReader("2147483647".getBytes(StandardCharsets.UTF_8)).readInt());
+        try {
+            new B2JsonReader(new StringReader("2147483648")).readInt();
+            fail("should have thrown");
+        }
+        catch (B2JsonException e) {
+            assertEquals("bad integer: 2147483648", e.getMessage());
+        }
+    }
+
+    private void checkLong(String text, Long expectedOrNull) throws IOException, B2JsonException {
+        for (B2JsonReader reader : allReaders(text)) {
+            if (expectedOrNull == null) {
+                try {
+                    reader.readLong();
+                    fail("should have thrown: " + text);
+                }
+                catch (B2JsonException e) {
+                    // cool
+                }
+            }
+            else {
+                assertEquals((long) expectedOrNull, reader.readLong());
+            }
+        }
+    }
+
+    @Test
+    public void testReadObjectFieldNameWithTable() throws IOException, B2JsonException {
+        final Map<String, Integer> map = new HashMap<>();
+        map.put("fileId", 1);
+        map.put("fileName", 2);
+        map.put("\u00DFize", 3);
+        final B2JsonFieldNameTable<Integer> table = new B2JsonFieldNameTable<>(map);
+
+        final String json = "{ \"fileName\" : 1, \"file\\u0049d\": 2, \"\u00DFize\": 3, \"other\": 4 }";
+        for (B2JsonReader reader : allReaders(json)) {
+            assertTrue(reader.startObjectAndCheckForContents());
+            assertEquals((Integer) 2, reader.readObjectFieldNameAndColon(table));
+            reader.skipValue();
+            assertTrue(reader.objectHasMoreFields());
+            assertEquals((Integer) 1, reader.readObjectFieldNameAndColon(table));
+            reader.skipValue();
+            assertTrue(reader.objectHasMoreFields());
+            assertEquals((Integer) 3, reader.readObjectFieldNameAndColon(table));
+            reader.skipValue();
+            assertTrue(reader.objectHasMoreFields());
+            assertNull(reader.readObjectFieldNameAndColon(table));
+            assertEquals("other", reader.getUnmatchedFieldName());
+            reader.skipValue();
+            assertFalse(reader.objectHasMoreFields());
+            reader.finishObject();
         }
     }
 
@@ -138,12 +266,47 @@ public class B2JsonReaderTest extends B2BaseTest {
         checkSkipValue(" [] 8 ");
         checkSkipValue(" { \"a\": 5 } 8 ");
         checkSkipValue(" {} 8 ");
+        checkSkipValue(" \"a\\\"b\\u00e9\" 8 ");
+        checkSkipValue(" \"\u6771\u4eac\" 8 ");
+        checkSkipValue(" { \"\u00e9\\n\": [ 1.5e3, { \"x\": \"y\" } ] } 8 ");
     }
 
     private void checkSkipValue(String s) throws IOException, B2JsonException {
-        B2JsonReader reader = new B2JsonReader(new StringReader(s));
-        reader.skipValue();
-        assertEquals("8", reader.readNumberAsString());
+        for (B2JsonReader reader : allReaders(s)) {
+            reader.skipValue();
+            assertEquals("8", reader.readNumberAsString());
+        }
+    }
+
+    @Test
+    public void testReadInternedString() throws IOException, B2JsonException {
+        final String longString = new String(new char[B2JsonStringInternTable.MAX_LENGTH + 1]).replace('\0', 'x');
+        final String text = "\"text/plain\" \"caf\u00e9\" \"a\\nb\" \"" + longString + "\"";
+        for (B2JsonReader reader : allReaders(text)) {
+            assertEquals("text/plain", reader.readInternedString());
+            assertEquals("caf\u00e9", reader.readInternedString());
+            assertEquals("a\nb", reader.readInternedString());
+            assertEquals(longString, reader.readInternedString());
+        }
+
+        // every reader gets the same instance for short strings.
+        final B2JsonReader first = new B2JsonReader("\"text/plain\"".getBytes(StandardCharsets.UTF_8));
+        final B2JsonReader second = new B2JsonReader(new StringReader("\"text/plain\""));
+        assertSame(first.readInternedString(), second.readInternedString());
+    }
+
+    @Test
+    public void testInternTableReplacesOnCollision() {
+        final B2JsonStringInternTable table = new B2JsonStringInternTable(1);
+        final byte[] a = "a".getBytes(StandardCharsets.US_ASCII);
+        final String first = table.getOrAdd(a, 0, 1);
+        assertSame(first, table.getOrAdd(new StringBuilder("a")));
+        final String b = table.getOrAdd(new StringBuilder("b"));
+        assertEquals("b", b);
+        // "a" was pushed out, so it's a new String now.
+        final String second = table.getOrAdd(a, 0, 1);
+        assertEquals("a", second);
+        assertNotSame(first, second);
     }
 
     @Test
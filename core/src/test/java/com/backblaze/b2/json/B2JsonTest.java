@@ -21,6 +21,8 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,11 +30,17 @@ import java.util.Objects;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -1384,6 +1392,57 @@ public class B2JsonTest extends B2BaseTest {
         }
     }
 
+    @Test
+    public void testHandlersBuiltConcurrentlyAreComplete() throws Exception {
+        final B2JsonHandlerMap handlerMap = new B2JsonHandlerMap();
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<String>> futures = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    final B2JsonTypeHandler<Node> handler = handlerMap.getHandler(Node.class);
+                    final Node node = new Node("parent", Collections.singletonList(new Node("child", null)));
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    handler.serialize(node, B2JsonOptions.DEFAULT, new B2JsonWriter(out));
+                    return out.toString("UTF-8");
+                }));
+            }
+            start.countDown();
+            for (Future<String> future : futures) {
+                assertEquals(futures.get(0).get(), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(futures.get(0).get().contains("\"child\""));
+    }
+
+    private static class HasBadField {
+        @B2Json.required
+        public final ConstructorParamListedTwice bad;
+
+        @B2Json.constructor(params = "bad")
+        public HasBadField(ConstructorParamListedTwice bad) {
+            this.bad = bad;
+        }
+    }
+
+    @Test
+    public void testFailedHandlerIsNotRemembered() throws B2JsonException {
+        final B2JsonHandlerMap handlerMap = new B2JsonHandlerMap();
+        for (int i = 0; i < 2; i++) {
+            try {
+                handlerMap.getHandler(HasBadField.class);
+                fail("should've thrown");
+            } catch (B2JsonException e) {
+                // expected, every time, since the first attempt left nothing half-built behind.
+            }
+        }
+    }
+
     @Test
     public void testRecursiveTree() throws IOException, B2JsonException {
 
@@ -2050,4 +2109,313 @@ public class B2JsonTest extends B2BaseTest {
         }
     }
 
+    private static class NumbersAndStrings {
+        @B2Json.required
+        public final long l;
+
+        @B2Json.required
+        public final int i;
+
+        @B2Json.optional
+        public final Long boxedOrNull;
+
+        @B2Json.optional
+        public final String s;
+
+        @B2Json.constructor(params = "l, i, boxedOrNull, s")
+        public NumbersAndStrings(long l, int i, Long boxedOrNull, String s) {
+            this.l = l;
+            this.i = i;
+            this.boxedOrNull = boxedOrNull;
+            this.s = s;
+        }
+    }
+
+    @Test
+    public void testMethodHandlesMatchReflection() throws B2JsonException {
+        final B2Json reflective = B2Json.withReflectiveBindingForComparison();
+        final long[] longs = { 0, 1, -1, 9, 10, -10, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE };
+        for (long l : longs) {
+            final NumbersAndStrings obj = new NumbersAndStrings(l, (int) l, l == 0 ? null : l, "s" + l);
+            final String json = B2Json.get().toJson(obj);
+            assertEquals(reflective.toJson(obj), json);
+
+            final NumbersAndStrings fromHandles = B2Json.get().fromJson(json, NumbersAndStrings.class);
+            final NumbersAndStrings fromReflection = reflective.fromJson(json, NumbersAndStrings.class);
+            assertEquals(l, fromHandles.l);
+            assertEquals((int) l, fromHandles.i);
+            assertEquals(obj.boxedOrNull, fromHandles.boxedOrNull);
+            assertEquals(obj.s, fromHandles.s);
+            assertEquals(fromReflection.l, fromHandles.l);
+            assertEquals(fromReflection.i, fromHandles.i);
+            assertEquals(fromReflection.boxedOrNull, fromHandles.boxedOrNull);
+            assertEquals(fromReflection.s, fromHandles.s);
+        }
+    }
+
+    @Test
+    public void testNullForPrimitiveConstructorArgIsABadValue() throws B2JsonException {
+        for (B2JsonHandlerMap handlerMap : new B2JsonHandlerMap[] { new B2JsonHandlerMap(), B2JsonHandlerMap.withReflectiveBinding() }) {
+            final B2JsonObjectHandler<NumbersAndStrings> handler =
+                    (B2JsonObjectHandler<NumbersAndStrings>) handlerMap.getHandler(NumbersAndStrings.class);
+            try {
+                handler.construct(new Object[] { null, 1, null, "s" });
+                fail("should have thrown");
+            } catch (B2JsonBadValueException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("argument 0"));
+                assertTrue(e.getMessage(), e.getMessage().endsWith("should be a long, but it's null"));
+            }
+        }
+    }
+
+    @Test
+    public void testWrongTypeForConstructorArgIsABadValue() throws B2JsonException {
+        for (B2JsonHandlerMap handlerMap : new B2JsonHandlerMap[] { new B2JsonHandlerMap(), B2JsonHandlerMap.withReflectiveBinding() }) {
+            final B2JsonObjectHandler<NumbersAndStrings> handler =
+                    (B2JsonObjectHandler<NumbersAndStrings>) handlerMap.getHandler(NumbersAndStrings.class);
+            final Map<String, Object> fieldNameToValue = new HashMap<>();
+            fieldNameToValue.put("l", 1L);
+            fieldNameToValue.put("i", 1);
+            fieldNameToValue.put("s", 7);
+            try {
+                handler.deserializeFromFieldNameToValueMap(fieldNameToValue, B2JsonOptions.DEFAULT);
+                fail("should have thrown");
+            } catch (B2JsonBadValueException e) {
+                assertTrue(e.getMessage(), e.getMessage().endsWith("should be a java.lang.String, but it's a java.lang.Integer"));
+            }
+        }
+    }
+
+    @Test
+    public void testWideningConstructorArgsAreAllowed() throws B2JsonException {
+        for (B2JsonHandlerMap handlerMap : new B2JsonHandlerMap[] { new B2JsonHandlerMap(), B2JsonHandlerMap.withReflectiveBinding() }) {
+            final B2JsonObjectHandler<NumbersAndStrings> handler =
+                    (B2JsonObjectHandler<NumbersAndStrings>) handlerMap.getHandler(NumbersAndStrings.class);
+            final NumbersAndStrings obj = handler.construct(new Object[] { 3, (short) 4, null, "s" });
+            assertEquals(3, obj.l);
+            assertEquals(4, obj.i);
+        }
+    }
+
+    private static class ThrowsFromConstructor {
+        @B2Json.required
+        public final int n;
+
+        @B2Json.constructor(params = "n")
+        public ThrowsFromConstructor(int n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n must not be negative");
+            }
+            if (n == 0) {
+                throw new IllegalStateException("n must not be zero");
+            }
+            this.n = n;
+        }
+    }
+
+    @Test
+    public void testConstructorExceptionsAreTheSameWithBothBindings() throws B2JsonException {
+        for (B2Json b2Json : new B2Json[] { B2Json.get(), B2Json.withReflectiveBindingForComparison() }) {
+            try {
+                b2Json.fromJson("{\"n\": -1}", ThrowsFromConstructor.class);
+                fail("should have thrown");
+            } catch (B2JsonBadValueException e) {
+                assertEquals("n must not be negative", e.getMessage());
+            }
+            try {
+                b2Json.fromJson("{\"n\": 0}", ThrowsFromConstructor.class);
+                fail("should have thrown");
+            } catch (B2JsonBadValueException e) {
+                fail("should not be a bad value");
+            } catch (B2JsonException e) {
+                assertEquals("n must not be zero", e.getMessage());
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    @Test
+    public void testLongsAreWrittenLikeLongToString() throws B2JsonException {
+        final NumbersAndStrings obj = new NumbersAndStrings(Long.MIN_VALUE, Integer.MIN_VALUE, null, null);
+        assertEquals(
+                "{\n" +
+                "  \"boxedOrNull\": null,\n" +
+                "  \"i\": " + Integer.MIN_VALUE + ",\n" +
+                "  \"l\": " + Long.MIN_VALUE + ",\n" +
+                "  \"s\": null\n" +
+                "}",
+                B2Json.get().toJson(obj));
+    }
+
+    private static class CompactHolder {
+        @B2Json.required
+        public final String name;
+
+        @B2Json.required
+        public final int[] numbers;
+
+        @B2Json.required
+        public final List<Container> containers;
+
+        @B2Json.required
+        public final Map<String, Integer> map;
+
+        @B2Json.constructor(params = "name, numbers, containers, map")
+        public CompactHolder(String name, int[] numbers, List<Container> containers, Map<String, Integer> map) {
+            this.name = name;
+            this.numbers = numbers;
+            this.containers = containers;
+            this.map = map;
+        }
+    }
+
+    @Test
+    public void testCompact() throws B2JsonException {
+        final Map<String, Integer> map = new TreeMap<>();
+        map.put("x", 1);
+        map.put("y", 2);
+        final CompactHolder holder = new CompactHolder(
+                "a b",
+                new int[] { 1, 2, 3 },
+                Arrays.asList(new Container(1, "one"), new Container(2, "two")),
+                map);
+
+        final String compact = B2Json.get().toJson(holder, B2JsonOptions.DEFAULT_COMPACT);
+        assertEquals(
+                "{\"containers\":[{\"a\":1,\"b\":\"one\"},{\"a\":2,\"b\":\"two\"}]," +
+                "\"map\":{\"x\":1,\"y\":2}," +
+                "\"name\":\"a b\"," +
+                "\"numbers\":[1,2,3]}",
+                compact);
+
+        // it reads back the same as the pretty version.
+        final CompactHolder fromCompact = B2Json.get().fromJson(compact, CompactHolder.class);
+        assertEquals(B2Json.get().toJson(holder), B2Json.get().toJson(fromCompact));
+
+        // empty things are still empty.
+        assertEquals("[]", B2Json.get().listToJson(new ArrayList<>(), Integer.class, B2JsonOptions.DEFAULT_COMPACT));
+        assertEquals("{}", B2Json.get().mapToJson(new TreeMap<>(), String.class, Integer.class, B2JsonOptions.DEFAULT_COMPACT));
+    }
+
+    private static class ProjectedListing {
+        @B2Json.required
+        public final List<ProjectedFile> files;
+
+        @B2Json.optional
+        public final String nextFileName;
+
+        @B2Json.constructor(params = "files, nextFileName")
+        public ProjectedListing(List<ProjectedFile> files, String nextFileName) {
+            this.files = files;
+            this.nextFileName = nextFileName;
+        }
+    }
+
+    private static class ProjectedFile {
+        @B2Json.required
+        public final String fileName;
+
+        @B2Json.required
+        public final long contentLength;
+
+        @B2Json.required
+        public final String contentSha1;
+
+        @B2Json.optional
+        public final Map<String, String> fileInfo;
+
+        @B2Json.constructor(params = "fileName, contentLength, contentSha1, fileInfo")
+        public ProjectedFile(String fileName, long contentLength, String contentSha1, Map<String, String> fileInfo) {
+            this.fileName = fileName;
+            this.contentLength = contentLength;
+            this.contentSha1 = contentSha1;
+            this.fileInfo = fileInfo;
+        }
+    }
+
+    @Test
+    public void testFieldProjection() throws B2JsonException {
+        final String json =
+                "{\n" +
+                "  \"files\": [\n" +
+                "    {\n" +
+                "      \"contentLength\": 7,\n" +
+                "      \"contentSha1\": \"da39a3ee5e6b4b0d3255bfef95601890afd80709\",\n" +
+                "      \"fileInfo\": { \"a\": \"caf\u00e9\", \"b\\\"\": [1, 2.5e3, true, null, {}] },\n" +
+                "      \"fileName\": \"f\u00e9\"\n" +
+                "    }\n" +
+                "  ],\n" +
+                "  \"nextFileName\": \"g\"\n" +
+                "}";
+        final B2JsonOptions options = B2JsonOptions.builder()
+                .setFieldProjection(ProjectedFile.class, "fileName", "contentLength")
+                .build();
+
+        final ProjectedListing listing = B2Json.get().fromJson(json, ProjectedListing.class, options);
+        assertEquals("g", listing.nextFileName);
+        assertEquals(1, listing.files.size());
+        final ProjectedFile file = listing.files.get(0);
+        assertEquals("f\u00e9", file.fileName);
+        assertEquals(7, file.contentLength);
+        // not wanted, so not read, even though it's required.
+        assertNull(file.contentSha1);
+        assertNull(file.fileInfo);
+
+        // the fields that are wanted are still checked.
+        final String missingLength = "{ \"files\": [ { \"fileName\": \"f\" } ] }";
+        try {
+            B2Json.get().fromJson(missingLength, ProjectedListing.class, options);
+            fail("should've thrown");
+        } catch (B2JsonException e) {
+            assertEquals("required field contentLength is missing", e.getMessage());
+        }
+
+        // and so are fields that don't exist at all.
+        final String extraField = "{ \"files\": [ { \"fileName\": \"f\", \"contentLength\": 1, \"bogus\": 1 } ] }";
+        try {
+            B2Json.get().fromJson(extraField, ProjectedListing.class, options);
+            fail("should've thrown");
+        } catch (B2JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("unknown field"));
+        }
+    }
+
+    private static class InternedFields {
+        @B2Json.required
+        @B2Json.intern
+        public final String type;
+
+        @B2Json.required
+        public final String name;
+
+        @B2Json.required
+        @B2Json.intern
+        public final Map<String, String> info;
+
+        @B2Json.constructor(params = "type, name, info")
+        public InternedFields(String type, String name, Map<String, String> info) {
+            this.type = type;
+            this.name = name;
+            this.info = info;
+        }
+    }
+
+    @Test
+    public void testInternedFields() throws B2JsonException {
+        final String json = "{ \"type\": \"text/plain\", \"name\": \"n\", \"info\": { \"k\": \"v\" } }";
+        final InternedFields first = B2Json.get().fromJson(json, InternedFields.class);
+        final InternedFields second = B2Json.get().fromJson(json, InternedFields.class);
+
+        assertEquals("text/plain", first.type);
+        assertSame(first.type, second.type);
+        assertSame(first.info.keySet().iterator().next(), second.info.keySet().iterator().next());
+
+        // the rest are read as usual.
+        assertNotSame(first.name, second.name);
+        assertNotSame(first.info.get("k"), second.info.get("k"));
+
+        // and written as usual.
+        assertEquals(B2Json.get().toJson(first), B2Json.get().toJson(second));
+    }
+
 }
@@ -0,0 +1,23 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.json;
+
+/**
+ * B2JsonTestHelpers gives code outside this package, like the benchmarks,
+ * the parts of B2Json that are only there for testing, without making
+ * them public in the SDK.
+ */
+public class B2JsonTestHelpers {
+    private B2JsonTestHelpers() {
+    }
+
+    /**
+     * @return a new B2Json whose object handlers use plain reflection
+     *         instead of method handles.
+     */
+    public static B2Json withReflectiveBinding() {
+        return B2Json.withReflectiveBindingForComparison();
+    }
+}
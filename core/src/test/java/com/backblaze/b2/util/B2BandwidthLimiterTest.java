@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+
+public class B2BandwidthLimiterTest extends B2BaseTest {
+    private final B2ClockSim clock = (B2ClockSim) B2Clock.get();
+
+    @Test
+    public void testBurstThenDebt() {
+        final B2BandwidthLimiter limiter = new B2BandwidthLimiter(1000);
+
+        // a full bucket allows one second's worth without waiting.
+        assertEquals(0, limiter.reserve(600));
+        assertEquals(0, limiter.reserve(400));
+
+        // after that, callers wait for the debt ahead of them to be paid off.
+        assertEquals(500, limiter.reserve(500));
+        assertEquals(1000, limiter.reserve(500));
+
+        // time pays off the debt.
+        clock.advanceBoth(Duration.ofMillis(1000));
+        assertEquals(100, limiter.reserve(100));
+    }
+
+    @Test
+    public void testBucketDoesNotOverfill() {
+        final B2BandwidthLimiter limiter = new B2BandwidthLimiter(1000);
+        assertEquals(0, limiter.reserve(1000));
+
+        // a long idle time only refills one second's worth.
+        clock.advanceBoth(Duration.ofSeconds(60));
+        assertEquals(0, limiter.reserve(1000));
+        assertEquals(1, limiter.reserve(1));
+    }
+
+    @Test
+    public void testChangingTheRate() {
+        final B2BandwidthLimiter limiter = new B2BandwidthLimiter(1000);
+        assertEquals(0, limiter.reserve(1000));
+        clock.advanceBoth(Duration.ofMillis(500));
+
+        // the 500 bytes earned at the old rate are kept.
+        limiter.setBytesPerSecond(2000);
+        assertEquals(2000, limiter.getBytesPerSecond());
+        assertEquals(0, limiter.reserve(500));
+
+        // new debt is paid off at the new rate.
+        assertEquals(500, limiter.reserve(1000));
+
+        // slowing down shrinks the bucket, so it can't burst at the old size.
+        clock.advanceBoth(Duration.ofSeconds(60));
+        limiter.setBytesPerSecond(100);
+        assertEquals(0, limiter.reserve(100));
+        assertEquals(10, limiter.reserve(1));
+    }
+
+    @Test
+    public void testMaxBytesPerAcquire() {
+        assertEquals(100, new B2BandwidthLimiter(1000).getMaxBytesPerAcquire());
+        assertEquals(1, new B2BandwidthLimiter(5).getMaxBytesPerAcquire());
+    }
+
+    @Test
+    public void testInputStreamReadsInSmallChunks() throws IOException {
+        final B2BandwidthLimiter limiter = new B2BandwidthLimiter(1000);
+        try (InputStream in = new B2InputStreamWithBandwidthLimiter(new ByteArrayInputStream(new byte[1000]), limiter)) {
+            assertEquals(100, in.read(new byte[1000]));
+            assertEquals(100, in.skip(1000));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMustBePositive() {
+        new B2BandwidthLimiter(0);
+    }
+
+    @Test
+    public void testInputStreamReadsEverything() throws IOException {
+        final byte[] bytes = new byte[100];
+        final B2BandwidthLimiter limiter = new B2BandwidthLimiter(1000000);
+        try (InputStream in = new B2InputStreamWithBandwidthLimiter(new ByteArrayInputStream(bytes), limiter)) {
+            assertEquals(0, in.read());
+            assertEquals(50, in.read(new byte[50]));
+            assertEquals(49, in.read(new byte[100], 0, 100));
+            assertEquals(-1, in.read());
+        }
+
+        // 100 bytes came out of the bucket.
+        assertEquals(0, limiter.reserve(1000000 - 100));
+        assertEquals(1, limiter.reserve(1));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class B2ExecutorUtilsTest extends B2BaseTest {
+
+    @Test
+    public void testCreateThreadFactory() {
+        final Thread thread = B2ExecutorUtils.createThreadFactory("test-%02d").newThread(() -> {});
+        assertEquals("test-00", thread.getName());
+    }
+
+    @Test
+    public void testThreadPerTaskExecutorRunsTasksAtOnce() throws Exception {
+        final int taskCount = 20;
+        final ExecutorService executor = B2ExecutorUtils.createThreadPerTaskExecutor("perTask-%d");
+        try {
+            // every task waits for all of them to start, so this only
+            // finishes if each one has its own thread.
+            final CountDownLatch allStarted = new CountDownLatch(taskCount);
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < taskCount; i++) {
+                futures.add(executor.submit(() -> {
+                    allStarted.countDown();
+                    assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+                    return Thread.currentThread().getName();
+                }));
+            }
+            for (Future<String> future : futures) {
+                assertTrue(future.get(10, TimeUnit.SECONDS).startsWith("perTask-"));
+            }
+        } finally {
+            B2ExecutorUtils.shutdownAndAwaitTermination(executor, 10, 10);
+        }
+    }
+
+    @Test
+    public void testThreadPerTaskExecutorUsesVirtualThreadsWhenSupported() throws Exception {
+        assumeTrue(B2ExecutorUtils.areVirtualThreadsSupported());
+
+        final ExecutorService executor = B2ExecutorUtils.createThreadPerTaskExecutor("virtual-%d");
+        try {
+            final Future<Thread> future = executor.submit(Thread::currentThread);
+            final Thread thread = future.get(10, TimeUnit.SECONDS);
+            assertEquals("virtual-0", thread.getName());
+
+            // Thread.isVirtual() is new in JDK 21, so it can't be called directly here.
+            assertEquals(true, Thread.class.getMethod("isVirtual").invoke(thread));
+        } finally {
+            B2ExecutorUtils.shutdownAndAwaitTermination(executor, 10, 10);
+        }
+    }
+}
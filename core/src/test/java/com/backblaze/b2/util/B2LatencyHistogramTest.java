@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class B2LatencyHistogramTest extends B2BaseTest {
+
+    @Test
+    public void testEmpty() {
+        final B2LatencyHistogram histogram = new B2LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testBuckets() {
+        // small values get their own buckets.
+        for (long v = 0; v < 8; v++) {
+            assertEquals(v, B2LatencyHistogram.bucketIndex(v));
+            assertEquals(v, B2LatencyHistogram.highestValueInBucket((int) v));
+        }
+
+        // every value is in a bucket whose highest value is at least the value,
+        // and no more than 12.5% above it.
+        long previousIndex = -1;
+        for (long v = 0; v < 100_000; v++) {
+            final int index = B2LatencyHistogram.bucketIndex(v);
+            final long highest = B2LatencyHistogram.highestValueInBucket(index);
+            assertTrue("v=" + v, v <= highest);
+            assertTrue("v=" + v, highest - v <= v / 8);
+            assertTrue("v=" + v, index == previousIndex || index == previousIndex + 1);
+            previousIndex = index;
+        }
+
+        // huge values all land in the last bucket.
+        final int lastIndex = B2LatencyHistogram.bucketIndex(Long.MAX_VALUE);
+        assertEquals(lastIndex, B2LatencyHistogram.bucketIndex(1L << 40));
+        assertEquals(Long.MAX_VALUE, B2LatencyHistogram.highestValueInBucket(lastIndex));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final B2LatencyHistogram histogram = new B2LatencyHistogram();
+        for (long v = 1; v <= 1000; v++) {
+            histogram.record(v);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500, histogram.getSum());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean(), 0.0001);
+
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertWithinBucket(500, histogram.getValueAtPercentile(50));
+        assertWithinBucket(990, histogram.getValueAtPercentile(99));
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testNegativeCountsAsZero() {
+        final B2LatencyHistogram histogram = new B2LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPercentileOutOfRange() {
+        new B2LatencyHistogram().getValueAtPercentile(100.1);
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue("actual=" + actual, expected <= actual && actual - expected <= expected / 8);
+    }
+}
@@ -141,4 +141,22 @@ public class B2StringUtilTest extends B2BaseTest {
         assertEquals("ListFiles", B2StringUtil.underscoresToCamelCase("LIST_FILES", true));
 
     }
+
+    @Test
+    public void testCompareUtf8() {
+        assertEquals(0, B2StringUtil.compareUtf8("", ""));
+        assertEquals(0, B2StringUtil.compareUtf8("abc", "abc"));
+        assertTrue(B2StringUtil.compareUtf8("ab", "abc") < 0);
+        assertTrue(B2StringUtil.compareUtf8("abc", "ab") > 0);
+        assertTrue(B2StringUtil.compareUtf8("a-b", "a/b") < 0);
+
+        // U+1F600 is a surrogate pair in UTF-16, so String.compareTo() puts it before U+FF21,
+        // but its UTF-8 bytes (F0 ...) are after those of U+FF21 (EF ...).
+        final String supplementary = new String(Character.toChars(0x1F600));
+        final String fullWidthA = "\uFF21";
+        assertTrue(supplementary.compareTo(fullWidthA) < 0);
+        assertTrue(B2StringUtil.compareUtf8(supplementary, fullWidthA) > 0);
+        assertTrue(B2StringUtil.compareUtf8(fullWidthA, supplementary) < 0);
+        assertTrue(B2StringUtil.compareUtf8("x" + supplementary, "x" + supplementary + "y") < 0);
+    }
 }
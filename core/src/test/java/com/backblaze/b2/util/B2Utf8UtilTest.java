@@ -139,6 +139,30 @@ public class B2Utf8UtilTest extends B2BaseTest {
     }
 
 
+    @Test
+    public void testChunkBoundaries() throws IOException {
+        // the writers encode in chunks of 512 chars.  put a surrogate pair,
+        // and a bad one, at each spot around the end of the first chunk.
+        for (int prefix = 505; prefix < 515; prefix++) {
+            final StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < prefix; i++) {
+                builder.append('a');
+            }
+            final String good = builder + "\ud83d\ude00\"z" + builder;
+            assertEquals(good, new String(convert(good), StandardCharsets.UTF_8));
+            assertEquals("\"" + good.replace("\"", "\\\"") + "\"",
+                    new String(convertForJsonString(good), StandardCharsets.UTF_8));
+
+            final String bad = builder + "\ude00\ud83d" + builder;
+            try {
+                convert(bad);
+                fail("should've thrown");
+            } catch (IOException e) {
+                assertEquals("bad surrogate pair", e.getMessage());
+            }
+        }
+    }
+
     private byte[] convertForJsonString(String str) throws IOException {
         // make a stream to catch the results.
         final ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.webApiHttpClient;
+
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * B2HttpRequestTimings says where the time went during one HTTP request
+ * made by B2WebApiHttpClientImpl.  The phases are, in order:
+ *
+ *   poolWait         waiting for a connection from the pool.
+ *   dns              resolving the host name, if a new connection was made.
+ *   connect          the TCP connect, if a new connection was made.
+ *   tls              the TLS handshake, if a new https connection was made.
+ *   requestSend      sending the request, including its body.
+ *   timeToFirstByte  waiting for the response's status and headers,
+ *                    which is mostly the server thinking.
+ *   responseTransfer reading the response's body.
+ *
+ * All of them are in nanoseconds, and each is -1 if it didn't happen or
+ * couldn't be seen.  Only the total is measured for requests that fail
+ * before the phase starts.  The phases inside the HttpClient (everything
+ * but the total and the response transfer) are measured by hooks that
+ * HttpClientFactoryImpl installs, so they're all -1 if you use your own
+ * HttpClientFactory.
+ *
+ * THREAD-SAFETY: each instance is filled in by the thread making the
+ *    request, and isn't changed after it's given to the listener.
+ */
+public class B2HttpRequestTimings {
+    // the name of the HttpContext attribute that holds the timings for a request.
+    private static final String CONTEXT_ATTRIBUTE = B2HttpRequestTimings.class.getName();
+
+    private final String method;
+    private final String url;
+
+    // these are all System.nanoTime() values, or 0 if they haven't happened.
+    private final long startNanos;
+    private long connectStartNanos;
+    private long socketConnectStartNanos;
+    private long tlsStartNanos;
+    private long tlsEndNanos;
+    private long connectEndNanos;
+    private long sendStartNanos;
+    private long requestSentNanos;
+    private long responseStartedNanos;
+    private long endNanos;
+
+    private int statusCode;
+
+    B2HttpRequestTimings(String method,
+                         String url) {
+        this.method = method;
+        this.url = url;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the timings being recorded for the request that the context
+     *         belongs to, or null if they aren't being recorded.
+     */
+    static B2HttpRequestTimings getOrNull(HttpContext contextOrNull) {
+        return (contextOrNull == null) ? null : (B2HttpRequestTimings) contextOrNull.getAttribute(CONTEXT_ATTRIBUTE);
+    }
+
+    void attachTo(HttpContext context) {
+        context.setAttribute(CONTEXT_ATTRIBUTE, this);
+    }
+
+    void connectStarted() {
+        connectStartNanos = System.nanoTime();
+    }
+
+    void socketConnectStarted() {
+        // the first address to try is the one that tells us when dns finished.
+        if (socketConnectStartNanos == 0) {
+            socketConnectStartNanos = System.nanoTime();
+        }
+    }
+
+    void tlsStarted() {
+        tlsStartNanos = System.nanoTime();
+    }
+
+    void tlsFinished() {
+        tlsEndNanos = System.nanoTime();
+    }
+
+    void connectFinished() {
+        connectEndNanos = System.nanoTime();
+    }
+
+    void sendStarted() {
+        sendStartNanos = System.nanoTime();
+    }
+
+    void requestSent() {
+        requestSentNanos = System.nanoTime();
+    }
+
+    void responseStarted(int statusCode) {
+        this.responseStartedNanos = System.nanoTime();
+        this.statusCode = statusCode;
+    }
+
+    void finished() {
+        endNanos = System.nanoTime();
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the url requested.  its host says which server (or upload pod)
+     *         handled the request.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the http status of the response, or 0 if there wasn't one.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return true iff the request was sent on a connection from the pool
+     *         that had already been used.  (false if it's not known.)
+     */
+    public boolean isConnectionReused() {
+        return sendStartNanos != 0 && connectStartNanos == 0;
+    }
+
+    public long getTotalNanos() {
+        return between(startNanos, endNanos);
+    }
+
+    public long getPoolWaitNanos() {
+        return between(startNanos, (connectStartNanos != 0) ? connectStartNanos : sendStartNanos);
+    }
+
+    public long getDnsNanos() {
+        return between(connectStartNanos, socketConnectStartNanos);
+    }
+
+    public long getConnectNanos() {
+        return between(socketConnectStartNanos, (tlsStartNanos != 0) ? tlsStartNanos : connectEndNanos);
+    }
+
+    public long getTlsNanos() {
+        return between(tlsStartNanos, tlsEndNanos);
+    }
+
+    public long getRequestSendNanos() {
+        return between(sendStartNanos, requestSentNanos);
+    }
+
+    public long getTimeToFirstByteNanos() {
+        return between(requestSentNanos, responseStartedNanos);
+    }
+
+    public long getResponseTransferNanos() {
+        return between(responseStartedNanos, endNanos);
+    }
+
+    private static long between(long fromNanos,
+                                long toNanos) {
+        return (fromNanos == 0 || toNanos == 0) ? -1 : (toNanos - fromNanos);
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + url +
+                " status=" + statusCode +
+                " reused=" + isConnectionReused() +
+                " totalNanos=" + getTotalNanos() +
+                " poolWaitNanos=" + getPoolWaitNanos() +
+                " dnsNanos=" + getDnsNanos() +
+                " connectNanos=" + getConnectNanos() +
+                " tlsNanos=" + getTlsNanos() +
+                " requestSendNanos=" + getRequestSendNanos() +
+                " timeToFirstByteNanos=" + getTimeToFirstByteNanos() +
+                " responseTransferNanos=" + getResponseTransferNanos();
+    }
+}
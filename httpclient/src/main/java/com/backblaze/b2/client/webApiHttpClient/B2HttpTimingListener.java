@@ -0,0 +1,23 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+package com.backblaze.b2.client.webApiHttpClient;
+
+/**
+ * A B2HttpTimingListener is told how long each phase of each HTTP request
+ * took, so you can see whether slow requests were waiting for the pool,
+ * connecting, shaking hands, waiting for the server or moving bytes.
+ * Give one to B2WebApiHttpClientImpl.Builder.setTimingListener().
+ *
+ * THREAD-SAFETY: implementations must be thread-safe.  They're called on
+ *    the thread that made the request, after it's done, so they should be
+ *    fast and shouldn't throw.
+ */
+public interface B2HttpTimingListener {
+    /**
+     * @param timings the timings of a request that has finished, either
+     *                successfully or not.
+     */
+    void requestFinished(B2HttpRequestTimings timings);
+}
@@ -18,6 +18,7 @@ import com.backblaze.b2.client.credentialsSources.B2Credentials;
 import com.backblaze.b2.client.credentialsSources.B2CredentialsFromEnvironmentSource;
 import com.backblaze.b2.client.exceptions.B2Exception;
 import com.backblaze.b2.client.webApiClients.B2WebApiClient;
+import com.backblaze.b2.client.webApiClients.B2WebApiClientWithBandwidthLimits;
 import com.backblaze.b2.util.B2Preconditions;
 
 import java.util.function.Supplier;
@@ -64,9 +65,16 @@ public class B2StorageHttpClientBuilder {
     }
 
     public B2StorageClient build() {
-        final B2WebApiClient webApiClient = (this.webApiClient != null) ?
+        final B2WebApiClient baseWebApiClient = (this.webApiClient != null) ?
                 this.webApiClient :
                 B2WebApiHttpClientImpl.builder().setHttpClientFactory(httpClientFactory).build();
+        final B2WebApiClient webApiClient =
+                (config.getUploadBandwidthLimiterOrNull() == null && config.getDownloadBandwidthLimiterOrNull() == null) ?
+                        baseWebApiClient :
+                        new B2WebApiClientWithBandwidthLimits(
+                                baseWebApiClient,
+                                config.getUploadBandwidthLimiterOrNull(),
+                                config.getDownloadBandwidthLimiterOrNull());
         final B2StorageClientWebifier webifier = new B2StorageClientWebifierImpl(
                 webApiClient,
                 config.getUserAgent() + " " + B2Sdk.getName() + "/" + B2Sdk.getVersion(),
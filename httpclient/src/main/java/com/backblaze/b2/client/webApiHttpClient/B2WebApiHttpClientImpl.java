@@ -27,6 +27,8 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.entity.ByteArrayEntity;
@@ -36,7 +38,6 @@ import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.net.ConnectException;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
@@ -50,11 +51,14 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
 
     private final B2Json bzJson = B2Json.get();
     private final HttpClientFactory clientFactory;
+    private final B2HttpTimingListener timingListenerOrNull;
 
-    private B2WebApiHttpClientImpl(HttpClientFactory clientFactory) {
+    private B2WebApiHttpClientImpl(HttpClientFactory clientFactory,
+                                   B2HttpTimingListener timingListenerOrNull) {
         this.clientFactory = (clientFactory != null) ?
                 clientFactory :
                 HttpClientFactoryImpl.build();
+        this.timingListenerOrNull = timingListenerOrNull;
     }
 
     @SuppressWarnings("WeakerAccess")
@@ -68,12 +72,8 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
                                                           B2Headers headersOrNull,
                                                           Object request,
                                                           Class<ResponseType> responseClass) throws B2Exception {
-        final String responseString = postJsonAndReturnString(url, headersOrNull, request);
-        try {
-            return bzJson.fromJson(responseString, responseClass, B2JsonOptions.DEFAULT_AND_ALLOW_EXTRA_FIELDS);
-        } catch (B2JsonException e) {
-            throw new B2LocalException("parsing_failed", "can't convert response from json: " + e.getMessage(), e);
-        }
+        ByteArrayEntity requestEntity = parseToByteArrayEntityUsingBzJson(request);
+        return postAndReturnJson(url, headersOrNull, requestEntity, responseClass);
     }
 
     @Override
@@ -82,13 +82,8 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
                                                           InputStream inputStream,
                                                           long contentLength,
                                                           Class<ResponseType> responseClass) throws B2Exception {
-        try {
-            InputStreamEntity requestEntity = new InputStreamEntity(inputStream, contentLength);
-            String responseJson = postAndReturnString(url, headersOrNull, requestEntity);
-            return B2Json.get().fromJson(responseJson, responseClass, B2JsonOptions.DEFAULT_AND_ALLOW_EXTRA_FIELDS);
-        } catch (B2JsonException e) {
-            throw new B2LocalException("parsing_failed", "can't convert response from json: " + e.getMessage(), e);
-        }
+        InputStreamEntity requestEntity = new InputStreamEntity(inputStream, contentLength);
+        return postAndReturnJson(url, headersOrNull, requestEntity, responseClass);
     }
 
 
@@ -102,7 +97,8 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
             get.setHeaders(makeHeaders(headersOrNull));
         }
 
-        try (CloseableHttpResponse response = clientFactory.create().execute(get)) {
+        final HttpClientContext timingContext = startTiming(get, url);
+        try (CloseableHttpResponse response = clientFactory.create().execute(get, timingContext)) {
             int statusCode = response.getStatusLine().getStatusCode();
             HttpEntity responseEntity = response.getEntity();
             if (200 <= statusCode && statusCode < 300) {
@@ -125,6 +121,8 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
             }
         } catch (IOException e) {
             throw translateToB2Exception(e, url);
+        } finally {
+            finishTiming(timingContext);
         }
     }
 
@@ -141,13 +139,15 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
             throws B2Exception {
 
         CloseableHttpResponse response = null;
+        HttpClientContext timingContext = null;
         try {
             HttpHead head = new HttpHead(url);
             if (headersOrNull != null) {
                 head.setHeaders(makeHeaders(headersOrNull));
             }
 
-            response = clientFactory.create().execute(head);
+            timingContext = startTiming(head, url);
+            response = clientFactory.create().execute(head, timingContext);
 
             int statusCode = response.getStatusLine().getStatusCode();
             if (statusCode == HttpStatus.SC_OK) {
@@ -162,6 +162,7 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
         }
         finally {
             closeQuietly(response);
+            finishTiming(timingContext);
         }
     }
 
@@ -178,27 +179,29 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
         return builder.build();
     }
 
-    private String postJsonAndReturnString(String url,
-                                           B2Headers headersOrNull,
-                                           Object request) throws B2Exception {
-        ByteArrayEntity requestEntity = parseToByteArrayEntityUsingBzJson(request);
-        return postAndReturnString(url, headersOrNull, requestEntity);
-    }
-
     /**
-     * POSTs to a web service that returns content, and returns the content
-     * as a single string.
+     * POSTs to a web service that returns JSON, and returns the response
+     * as an object of the given class.
+     *
+     * A successful response is parsed as it's read from the connection,
+     * so we never hold the whole body as a String.  (Error responses are
+     * small, so they're still read into a String first.)
      *
      * @param url the url to post to
      * @param headersOrNull the headers, if any.
      * @param requestEntity the entity to post.
-     * @return the body of the response.
+     * @param responseClass the class of the response.
+     * @return the body of the response, as an object.
      * @throws B2Exception if there's any trouble
      */
-    private String postAndReturnString(String url, B2Headers headersOrNull, HttpEntity requestEntity)
+    private <ResponseType> ResponseType postAndReturnJson(String url,
+                                                          B2Headers headersOrNull,
+                                                          HttpEntity requestEntity,
+                                                          Class<ResponseType> responseClass)
             throws B2Exception {
 
         CloseableHttpResponse response = null;
+        HttpClientContext timingContext = null;
         try {
             HttpPost post = new HttpPost(url);
             if (headersOrNull != null) {
@@ -208,22 +211,60 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
                 post.setEntity(requestEntity);
             }
 
-            response = clientFactory.create().execute(post);
+            timingContext = startTiming(post, url);
+            response = clientFactory.create().execute(post, timingContext);
 
             HttpEntity responseEntity = response.getEntity();
-            String responseText = EntityUtils.toString(responseEntity, "UTF-8");
-
             int statusCode = response.getStatusLine().getStatusCode();
             if (statusCode == HttpStatus.SC_OK) {
-                return responseText;
+                if (responseEntity == null) {
+                    throw new B2LocalException("parsing_failed", "can't convert response from json: no response body");
+                }
+                // reading until EOF also lets the connection be reused.
+                try (InputStream in = responseEntity.getContent()) {
+                    return bzJson.fromJsonUntilEof(in, responseClass, B2JsonOptions.DEFAULT_AND_ALLOW_EXTRA_FIELDS);
+                }
             } else {
+                String responseText = EntityUtils.toString(responseEntity, UTF8);
                 throw extractExceptionFromErrorResponse(response, responseText);
             }
+        } catch (B2JsonException e) {
+            throw new B2LocalException("parsing_failed", "can't convert response from json: " + e.getMessage(), e);
         } catch (IOException e) {
             throw translateToB2Exception(e, url);
         }
         finally {
             closeQuietly(response);
+            finishTiming(timingContext);
+        }
+    }
+
+    /**
+     * If there's a timing listener, this makes a context that holds the
+     * timings for the request, for the hooks in HttpClientFactoryImpl to
+     * fill in.
+     *
+     * @return the context to execute the request with, or null if there's
+     *         no listener.  (HttpClient makes its own context when given null.)
+     */
+    private HttpClientContext startTiming(HttpRequestBase request,
+                                          String url) {
+        if (timingListenerOrNull == null) {
+            return null;
+        }
+        final HttpClientContext context = HttpClientContext.create();
+        new B2HttpRequestTimings(request.getMethod(), url).attachTo(context);
+        return context;
+    }
+
+    /**
+     * Finishes the timings in the context, if any, and gives them to the listener.
+     */
+    private void finishTiming(HttpClientContext timingContextOrNull) {
+        final B2HttpRequestTimings timings = B2HttpRequestTimings.getOrNull(timingContextOrNull);
+        if (timings != null) {
+            timings.finished();
+            timingListenerOrNull.requestFinished(timings);
         }
     }
 
@@ -320,9 +361,10 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
         B2Preconditions.checkArgument(request != null);
 
         try {
+            // serialized straight to UTF-8 bytes, without an intermediate String.
+            // nobody reads request bodies, so there's no whitespace to make them pretty.
             B2Json bzJson = B2Json.get();
-            String requestJson = bzJson.toJson(request);
-            byte[] requestBytes = getUtf8Bytes(requestJson);
+            byte[] requestBytes = bzJson.toJsonUtf8Bytes(request, B2JsonOptions.DEFAULT_COMPACT);
             return new ByteArrayEntity(requestBytes);
         } catch (B2JsonException e) {
             //log.warn("Unable to serialize " + request.getClass() + " using B2Json, was passed in request for " + url, ex);
@@ -330,34 +372,30 @@ public class B2WebApiHttpClientImpl implements B2WebApiClient {
         }
     }
 
-    /**
-     * Returns the UTF-8 representation of a string.
-     */
-    private static byte [] getUtf8Bytes(String str) throws B2Exception {
-        try {
-            return str.getBytes(UTF8);
-        } catch (UnsupportedEncodingException e) {
-            // this is very, very bad and it's not gonna get better by itself.
-            throw new RuntimeException("No UTF-8 charset", e);
-        }
-    }
-
     /**
      * This Builder creates HttpClientFactoryImpls.
      * If the httpClientFactory isn't set, a new instance
      * of the default implementation will be used.
+     * If the timingListener is set, it's given the B2HttpRequestTimings of
+     * every request.
      */
     @SuppressWarnings("WeakerAccess")
     public static class Builder {
         private HttpClientFactory httpClientFactory;
+        private B2HttpTimingListener timingListener;
 
         public Builder setHttpClientFactory(HttpClientFactory httpClientFactory) {
             this.httpClientFactory = httpClientFactory;
             return this;
         }
 
+        public Builder setTimingListener(B2HttpTimingListener timingListener) {
+            this.timingListener = timingListener;
+            return this;
+        }
+
         public B2WebApiHttpClientImpl build() {
-            return new B2WebApiHttpClientImpl(httpClientFactory);
+            return new B2WebApiHttpClientImpl(httpClientFactory, timingListener);
         }
     }
 }
@@ -6,10 +6,16 @@ package com.backblaze.b2.client.webApiHttpClient;
 
 import com.backblaze.b2.client.exceptions.B2Exception;
 import com.backblaze.b2.util.B2Preconditions;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
@@ -17,10 +23,15 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
 import org.apache.http.ssl.SSLContexts;
 import org.apache.http.util.VersionInfo;
 
 import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -33,6 +44,10 @@ import java.util.concurrent.TimeUnit;
  * If you have a non-https implementation of B2 that you test against,
  * you *may* choose to enable 'http' support when creating the factory.
  * We really do *not* recommend that in production.
+ *
+ * The created HttpClients have hooks that fill in the B2HttpRequestTimings
+ * for requests that are being timed.  (B2WebApiHttpClientImpl decides that.)
+ * The hooks do nothing for other requests.
  */
 public class HttpClientFactoryImpl implements HttpClientFactory {
     private final HttpClientConnectionManager connectionManager;
@@ -52,6 +67,9 @@ public class HttpClientFactoryImpl implements HttpClientFactory {
     private static final String APACHE_HTTP_CLIENT_USER_AGENT = VersionInfo.getUserAgent("Apache-HttpClient",
             "org.apache.http.client", HttpClientBuilder.class);
 
+    // it's stateless, so all of the clients can share it.
+    private static final HttpRequestExecutor REQUEST_EXECUTOR = new TimingRequestExecutor();
+
 
     private HttpClientFactoryImpl(HttpClientConnectionManager connectionManager,
                           RequestConfig requestConfig) {
@@ -76,6 +94,7 @@ public class HttpClientFactoryImpl implements HttpClientFactory {
                 .setUserAgent(APACHE_HTTP_CLIENT_USER_AGENT)
                 .setConnectionManager(connectionManager)
                 .setDefaultRequestConfig(requestConfig)
+                .setRequestExecutor(REQUEST_EXECUTOR)
                 .build();
     }
 
@@ -190,24 +209,144 @@ public class HttpClientFactoryImpl implements HttpClientFactory {
             // we *always* support https, since that's what the official b2 servers require.
             {
                 SSLContext sslcontext = SSLContexts.createDefault();
-                ConnectionSocketFactory sslFactory = new SSLConnectionSocketFactory(sslcontext);
+                ConnectionSocketFactory sslFactory = new TimingSSLConnectionSocketFactory(sslcontext);
                 registryBuilder.register("https", sslFactory);
             }
 
             if (supportInsecureHttp) {
-                ConnectionSocketFactory plainFactory = new PlainConnectionSocketFactory();
+                ConnectionSocketFactory plainFactory = new TimingPlainConnectionSocketFactory();
                 registryBuilder.register("http", plainFactory);
             }
 
             final Registry<ConnectionSocketFactory> registry = registryBuilder.build();
 
-            final PoolingHttpClientConnectionManager mgr = new PoolingHttpClientConnectionManager(registry);
+            final PoolingHttpClientConnectionManager mgr = new TimingConnectionManager(registry);
             mgr.setMaxTotal(maxTotalConnectionsInPool);
             mgr.setDefaultMaxPerRoute(maxConnectionsPerRoute);
             return mgr;
         }
     }
 
+    /**
+     * Notes when a new connection starts and finishes connecting, which
+     * covers the dns lookup, the tcp connect, and the tls handshake.
+     */
+    private static class TimingConnectionManager extends PoolingHttpClientConnectionManager {
+        TimingConnectionManager(Registry<ConnectionSocketFactory> registry) {
+            super(registry);
+        }
+
+        @Override
+        public void connect(HttpClientConnection managedConn,
+                            HttpRoute route,
+                            int connectTimeout,
+                            HttpContext context) throws IOException {
+            final B2HttpRequestTimings timings = B2HttpRequestTimings.getOrNull(context);
+            if (timings != null) {
+                timings.connectStarted();
+            }
+            super.connect(managedConn, route, connectTimeout, context);
+            if (timings != null) {
+                timings.connectFinished();
+            }
+        }
+    }
+
+    /**
+     * Notes when the tcp connect starts, which is when the dns lookup
+     * finished.
+     */
+    private static class TimingPlainConnectionSocketFactory extends PlainConnectionSocketFactory {
+        @Override
+        public Socket connectSocket(int connectTimeout,
+                                    Socket socket,
+                                    HttpHost host,
+                                    InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress,
+                                    HttpContext context) throws IOException {
+            final B2HttpRequestTimings timings = B2HttpRequestTimings.getOrNull(context);
+            if (timings != null) {
+                timings.socketConnectStarted();
+            }
+            return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+    }
+
+    /**
+     * Notes when the tcp connect starts, and when the tls handshake
+     * (which SSLConnectionSocketFactory does in createLayeredSocket())
+     * starts and finishes.
+     */
+    private static class TimingSSLConnectionSocketFactory extends SSLConnectionSocketFactory {
+        TimingSSLConnectionSocketFactory(SSLContext sslContext) {
+            super(sslContext);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout,
+                                    Socket socket,
+                                    HttpHost host,
+                                    InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress,
+                                    HttpContext context) throws IOException {
+            final B2HttpRequestTimings timings = B2HttpRequestTimings.getOrNull(context);
+            if (timings != null) {
+                timings.socketConnectStarted();
+            }
+            return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket,
+                                          String target,
+                                          int port,
+                                          HttpContext context) throws IOException {
+            final B2HttpRequestTimings timings = B2HttpRequestTimings.getOrNull(context);
+            if (timings != null) {
+                timings.tlsStarted();
+            }
+            final Socket layeredSocket = super.createLayeredSocket(socket, target, port, context);
+            if (timings != null) {
+                timings.tlsFinished();
+            }
+            return layeredSocket;
+        }
+    }
+
+    /**
+     * Notes when the request starts being sent (which is when we've got a
+     * connected connection), when it's been sent, and when the response's
+     * headers have arrived.
+     */
+    private static class TimingRequestExecutor extends HttpRequestExecutor {
+        @Override
+        protected HttpResponse doSendRequest(HttpRequest request,
+                                             HttpClientConnection conn,
+                                             HttpContext context) throws IOException, HttpException {
+            final B2HttpRequestTimings timings = B2HttpRequestTimings.getOrNull(context);
+            if (timings != null) {
+                timings.sendStarted();
+            }
+            final HttpResponse response = super.doSendRequest(request, conn, context);
+            if (timings != null) {
+                timings.requestSent();
+            }
+            return response;
+        }
+
+        @Override
+        protected HttpResponse doReceiveResponse(HttpRequest request,
+                                                 HttpClientConnection conn,
+                                                 HttpContext context) throws IOException, HttpException {
+            final HttpResponse response = super.doReceiveResponse(request, conn, context);
+            final B2HttpRequestTimings timings = B2HttpRequestTimings.getOrNull(context);
+            if (timings != null) {
+                timings.responseStarted(response.getStatusLine().getStatusCode());
+            }
+            return response;
+        }
+    }
+
     // from https://hc.apache.org/httpcomponents-client-ga/tutorial/html/connmgmt.html
     private static class IdleConnectionMonitorThread extends Thread {
 
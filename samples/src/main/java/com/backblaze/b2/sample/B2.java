@@ -17,6 +17,12 @@ import com.backblaze.b2.client.structures.B2GetDownloadAuthorizationRequest;
 import com.backblaze.b2.client.structures.B2ListFileNamesRequest;
 import com.backblaze.b2.client.structures.B2ListFileVersionsRequest;
 import com.backblaze.b2.client.structures.B2Part;
+import com.backblaze.b2.client.structures.B2RestoreRequest;
+import com.backblaze.b2.client.structures.B2RestoreResult;
+import com.backblaze.b2.client.structures.B2SyncAction;
+import com.backblaze.b2.client.structures.B2SyncListener;
+import com.backblaze.b2.client.structures.B2SyncRequest;
+import com.backblaze.b2.client.structures.B2SyncResult;
 import com.backblaze.b2.client.structures.B2UpdateBucketRequest;
 import com.backblaze.b2.client.structures.B2UploadFileRequest;
 import com.backblaze.b2.client.webApiHttpClient.B2StorageHttpClientBuilder;
@@ -50,8 +56,7 @@ public class B2 implements AutoCloseable {
 
     // these are more work than i want to do right now:
     //  "    b2 ls [--long] [--versions] <bucketName> [<folderName>]\n" +
-    //  "    b2 sync [--delete] [--keepDays N] [--skipNewer] [--replaceNewer] \\\n" +
-    //  "        [--threads N] [--noProgress] <source> <destination>\n" +
+    //  "    b2 sync [--keepDays N] [--skipNewer] [--replaceNewer] <source> <destination>\n" +
 
 
     private static final String USAGE =
@@ -76,6 +81,10 @@ public class B2 implements AutoCloseable {
                     "    b2 list_parts <largeFileId>\n" +
                     "    b2 list_unfinished_large_files <bucketName>\n" +
                     //"    b2 make_url <fileId>\n" +
+                    "    b2 restore [--skipSha1] [--maxBytesPerSecond N] [--noProgress] [--threads N] \\\n" +
+                    "        <bucketName> <localDir> [<prefix>]\n" +
+                    "    b2 sync [--hide | --delete] [--skipSha1] [--noProgress] [--threads N] \\\n" +
+                    "        <localDir> <bucketName> [<prefix>]\n" +
                     "    b2 update_bucket <bucketName> [allPublic | allPrivate]\n" +
                     "    b2 update_bucket_cors_rules <bucketName> [rules | @rules.json]\n" +
                     "    b2 upload_file [--sha1 <sha1sum>] [--contentType <contentType>] [--info <key>=<value>]* \\\n" +
@@ -179,6 +188,10 @@ public class B2 implements AutoCloseable {
                 b2.list_parts(remainingArgs);
             } else if ("list_unfinished_large_files".equals(command)) {
                 b2.list_unfinished_large_files(remainingArgs);
+            } else if ("restore".equals(command)) {
+                b2.restore(remainingArgs);
+            } else if ("sync".equals(command)) {
+                b2.sync(remainingArgs);
             } else if ("update_bucket".equals(command)) {
                 b2.update_bucket(remainingArgs);
             } else if ("update_bucket_cors_rules".equals(command)) {
@@ -699,6 +712,104 @@ public class B2 implements AutoCloseable {
         }
     }
 
+    private void restore(String[] args) throws B2Exception {
+        // [--skipSha1] [--maxBytesPerSecond N] [--noProgress] [--threads N] <bucketName> <localDir> [<prefix>]
+        boolean compareSha1s = true;
+        long maxBytesPerSecond = 0;
+
+        int iArg = 0;
+        for (; iArg < args.length && args[iArg].startsWith("--"); iArg++) {
+            final String arg = args[iArg];
+            if ("--skipSha1".equals(arg)) {
+                compareSha1s = false;
+            } else if ("--maxBytesPerSecond".equals(arg)) {
+                iArg++;
+                maxBytesPerSecond = getPositiveIntArgOrDie(args, arg, iArg, args.length - 1);
+            } else if ("--noProgress".equals(arg)) {
+                showProgress = false;
+            } else if ("--threads".equals(arg)) {
+                iArg++;
+                numThreads = getPositiveIntArgOrDie(args, arg, iArg, args.length - 1);
+            } else {
+                usageAndExit("unexpected argument '" + arg + "'");
+            }
+        }
+
+        final String[] positionalArgs = Arrays.copyOfRange(args, iArg, args.length);
+        checkArgCount(positionalArgs, 2, 3);
+        final String bucketName = positionalArgs[0];
+        final File localDir = new File(positionalArgs[1]);
+        final String prefix = getArgOrNull(positionalArgs, 2);
+
+        final B2Bucket bucket = getBucketByNameOrDie(bucketName);
+        final B2RestoreRequest request = B2RestoreRequest
+                .builder(bucket.getBucketId(), localDir)
+                .setPrefix(prefix)
+                .setCompareSha1s(compareSha1s)
+                .setMaxBytesPerSecond(maxBytesPerSecond)
+                .setListener(showProgress ? new ProgressSyncListener() : null)
+                .build();
+
+        final B2RestoreResult result = client.restore(request, getExecutor());
+        out.println(result);
+    }
+
+    private void sync(String[] args) throws B2Exception {
+        // [--hide | --delete] [--skipSha1] [--noProgress] [--threads N] <localDir> <bucketName> [<prefix>]
+        B2SyncRequest.ExtraFileAction extraFileAction = B2SyncRequest.ExtraFileAction.KEEP;
+        boolean compareSha1s = true;
+
+        int iArg = 0;
+        for (; iArg < args.length && args[iArg].startsWith("--"); iArg++) {
+            final String arg = args[iArg];
+            if ("--hide".equals(arg)) {
+                extraFileAction = B2SyncRequest.ExtraFileAction.HIDE;
+            } else if ("--delete".equals(arg)) {
+                extraFileAction = B2SyncRequest.ExtraFileAction.DELETE;
+            } else if ("--skipSha1".equals(arg)) {
+                compareSha1s = false;
+            } else if ("--noProgress".equals(arg)) {
+                showProgress = false;
+            } else if ("--threads".equals(arg)) {
+                iArg++;
+                numThreads = getPositiveIntArgOrDie(args, arg, iArg, args.length - 1);
+            } else {
+                usageAndExit("unexpected argument '" + arg + "'");
+            }
+        }
+
+        final String[] positionalArgs = Arrays.copyOfRange(args, iArg, args.length);
+        checkArgCount(positionalArgs, 2, 3);
+        final File localDir = new File(positionalArgs[0]);
+        final String bucketName = positionalArgs[1];
+        final String prefix = getArgOrNull(positionalArgs, 2);
+        checkArgs(localDir.isDirectory(), "'" + localDir + "' isn't a directory");
+
+        final B2Bucket bucket = getBucketByNameOrDie(bucketName);
+        final B2SyncRequest request = B2SyncRequest
+                .builder(localDir, bucket.getBucketId())
+                .setPrefix(prefix)
+                .setExtraFileAction(extraFileAction)
+                .setCompareSha1s(compareSha1s)
+                .setListener(showProgress ? new ProgressSyncListener() : null)
+                .build();
+
+        final B2SyncResult result = client.sync(request, getExecutor());
+        out.println(result);
+    }
+
+    private class ProgressSyncListener implements B2SyncListener {
+        @Override
+        public synchronized void succeeded(B2SyncAction action, String fileName) {
+            out.println(action + " " + fileName);
+        }
+
+        @Override
+        public synchronized void failed(B2SyncAction action, String fileName, B2Exception e) {
+            out.println(action + " FAILED " + fileName + ": " + e.getMessage());
+        }
+    }
+
     private void upload_file(String[] args,
                              boolean forceLarge) throws B2Exception, IOException {
         B2UploadFileRequest request = makeUploadRequestFromArgs(args);
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.simulator;
+
+import com.backblaze.b2.util.B2ExecutorUtils;
+import com.backblaze.b2.util.B2Preconditions;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * B2Simulator is an in-memory B2 service, running in an HTTP server in
+ * this process.  It implements the b2api/v2 calls that the
+ * B2StorageClientWebifierImpl makes for buckets, uploads (including large
+ * files), listings and downloads (including ranges), so a real client,
+ * with its real HTTP stack, can be tested or benchmarked without the
+ * network.
+ *
+ * Point a client at it with B2ClientConfig.Builder.setMasterUrl(), using
+ * getMasterUrl(), getApplicationKeyId() and getApplicationKey().  It
+ * only speaks http, so if you use the B2StorageHttpClientBuilder, give it
+ * an HttpClientFactoryImpl built with setSupportInsecureHttp(true).
+ *
+ * It can also make itself behave more like the real service: it can add
+ * latency to each response, limit each connection's bandwidth, fail a
+ * fraction of requests with 429 or 503, and expire upload urls.  The
+ * failures are chosen with a seeded random number generator, so a run
+ * can be repeated.
+ *
+ * Everything is kept in memory, and each file's content is one byte[],
+ * so don't upload more than the heap can hold.
+ *
+ * THREAD-SAFETY: This class is thread safe.
+ */
+public class B2Simulator implements AutoCloseable {
+    private static final int GRACEFUL_SHUTDOWN_SECONDS = 10;
+
+    private final B2SimulatorConfig config;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String baseUrl;
+
+    private B2Simulator(B2SimulatorConfig config) throws IOException {
+        this.config = config;
+
+        final InetAddress loopback = InetAddress.getLoopbackAddress();
+        this.server = HttpServer.create(new InetSocketAddress(loopback, config.port), 0);
+        this.baseUrl = "http://" + loopback.getHostAddress() + ":" + server.getAddress().getPort();
+
+        this.executor = Executors.newFixedThreadPool(config.threadCount, B2ExecutorUtils.createThreadFactory("B2Simulator-%d"));
+        server.setExecutor(executor);
+        server.createContext("/", new B2SimulatorHandler(config, new B2SimulatorStore(config), baseUrl));
+        server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the url to give B2ClientConfig.Builder.setMasterUrl().
+     */
+    public String getMasterUrl() {
+        return baseUrl + "/";
+    }
+
+    public String getApplicationKeyId() {
+        return config.applicationKeyId;
+    }
+
+    public String getApplicationKey() {
+        return config.applicationKey;
+    }
+
+    /**
+     * Stops the server.  Everything that was stored is forgotten.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        B2ExecutorUtils.shutdownAndAwaitTermination(executor, GRACEFUL_SHUTDOWN_SECONDS, GRACEFUL_SHUTDOWN_SECONDS);
+    }
+
+    public static class Builder {
+        private int port = 0;
+        private int threadCount = 16;
+        private String accountId = "sim000000001";
+        private String applicationKeyId = "sim000000001";
+        private String applicationKey = "simulatorApplicationKey";
+        private long recommendedPartSize = 100 * 1000 * 1000;
+        private long absoluteMinimumPartSize = 5 * 1000 * 1000;
+        private long latencyMillis = 0;
+        private long bytesPerSecond = 0;
+        private double tooManyRequestsRate = 0;
+        private double serviceUnavailableRate = 0;
+        private int retryAfterSeconds = 1;
+        private long uploadUrlTtlMillis = 0;
+        private long randomSeed = 0;
+
+        /**
+         * @param port the port to listen on.  the default, 0, picks any free port.
+         */
+        public Builder setPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param threadCount the number of requests that can be handled at once.
+         */
+        public Builder setThreadCount(int threadCount) {
+            B2Preconditions.checkArgument(threadCount > 0, "threadCount must be positive");
+            this.threadCount = threadCount;
+            return this;
+        }
+
+        public Builder setAccountId(String accountId) {
+            this.accountId = accountId;
+            return this;
+        }
+
+        public Builder setApplicationKey(String applicationKeyId,
+                                         String applicationKey) {
+            this.applicationKeyId = applicationKeyId;
+            this.applicationKey = applicationKey;
+            return this;
+        }
+
+        /**
+         * Sets the part sizes that b2_authorize_account returns.  Making them
+         * small lets tests make large files out of a little data.
+         * Parts other than the last must be at least absoluteMinimumPartSize.
+         */
+        public Builder setPartSizes(long recommendedPartSize,
+                                    long absoluteMinimumPartSize) {
+            B2Preconditions.checkArgument(0 < absoluteMinimumPartSize, "absoluteMinimumPartSize must be positive");
+            B2Preconditions.checkArgument(absoluteMinimumPartSize <= recommendedPartSize, "recommendedPartSize must be at least absoluteMinimumPartSize");
+            this.recommendedPartSize = recommendedPartSize;
+            this.absoluteMinimumPartSize = absoluteMinimumPartSize;
+            return this;
+        }
+
+        /**
+         * @param latencyMillis how long to wait before starting each response.
+         */
+        public Builder setLatencyMillis(long latencyMillis) {
+            B2Preconditions.checkArgument(latencyMillis >= 0, "latencyMillis must be non-negative");
+            this.latencyMillis = latencyMillis;
+            return this;
+        }
+
+        /**
+         * @param bytesPerSecond the most bytes per second each request can
+         *                       upload or download.  0 means unlimited.
+         */
+        public Builder setBytesPerSecond(long bytesPerSecond) {
+            B2Preconditions.checkArgument(bytesPerSecond >= 0, "bytesPerSecond must be non-negative");
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * @param rate the fraction of requests to fail with 429 too_many_requests.
+         */
+        public Builder setTooManyRequestsRate(double rate) {
+            B2Preconditions.checkArgument(0 <= rate && rate <= 1, "rate must be between 0 and 1");
+            this.tooManyRequestsRate = rate;
+            return this;
+        }
+
+        /**
+         * @param rate the fraction of requests to fail with 503 service_unavailable.
+         */
+        public Builder setServiceUnavailableRate(double rate) {
+            B2Preconditions.checkArgument(0 <= rate && rate <= 1, "rate must be between 0 and 1");
+            this.serviceUnavailableRate = rate;
+            return this;
+        }
+
+        /**
+         * @param retryAfterSeconds the Retry-After to send with 429s and 503s.
+         */
+        public Builder setRetryAfterSeconds(int retryAfterSeconds) {
+            B2Preconditions.checkArgument(retryAfterSeconds >= 0, "retryAfterSeconds must be non-negative");
+            this.retryAfterSeconds = retryAfterSeconds;
+            return this;
+        }
+
+        /**
+         * @param uploadUrlTtlMillis how long after it's handed out that an
+         *                           upload url (or upload part url) expires,
+         *                           as if its pod went away.  uses after that
+         *                           fail with 401 expired_auth_token.
+         *                           0 means they never expire.
+         */
+        public Builder setUploadUrlTtlMillis(long uploadUrlTtlMillis) {
+            B2Preconditions.checkArgument(uploadUrlTtlMillis >= 0, "uploadUrlTtlMillis must be non-negative");
+            this.uploadUrlTtlMillis = uploadUrlTtlMillis;
+            return this;
+        }
+
+        /**
+         * @param randomSeed the seed for choosing which requests fail.
+         */
+        public Builder setRandomSeed(long randomSeed) {
+            this.randomSeed = randomSeed;
+            return this;
+        }
+
+        /**
+         * @return a new simulator, which is already listening.
+         * @throws IOException if the server can't be started.
+         */
+        public B2Simulator build() throws IOException {
+            B2Preconditions.checkArgument(tooManyRequestsRate + serviceUnavailableRate <= 1,
+                    "tooManyRequestsRate + serviceUnavailableRate must be at most 1");
+            return new B2Simulator(new B2SimulatorConfig(
+                    port,
+                    threadCount,
+                    accountId,
+                    applicationKeyId,
+                    applicationKey,
+                    recommendedPartSize,
+                    absoluteMinimumPartSize,
+                    latencyMillis,
+                    bytesPerSecond,
+                    tooManyRequestsRate,
+                    serviceUnavailableRate,
+                    retryAfterSeconds,
+                    uploadUrlTtlMillis,
+                    randomSeed));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.simulator;
+
+/**
+ * B2SimulatorConfig holds the settings from a B2Simulator.Builder, so the
+ * simulator's pieces can share them.
+ *
+ * THREAD-SAFETY: This class is immutable.
+ */
+/*package*/ final class B2SimulatorConfig {
+    /*package*/ final int port;
+    /*package*/ final int threadCount;
+    /*package*/ final String accountId;
+    /*package*/ final String applicationKeyId;
+    /*package*/ final String applicationKey;
+    /*package*/ final long recommendedPartSize;
+    /*package*/ final long absoluteMinimumPartSize;
+    /*package*/ final long latencyMillis;
+    /*package*/ final long bytesPerSecond;
+    /*package*/ final double tooManyRequestsRate;
+    /*package*/ final double serviceUnavailableRate;
+    /*package*/ final int retryAfterSeconds;
+    /*package*/ final long uploadUrlTtlMillis;
+    /*package*/ final long randomSeed;
+
+    /*package*/ B2SimulatorConfig(int port,
+                                  int threadCount,
+                                  String accountId,
+                                  String applicationKeyId,
+                                  String applicationKey,
+                                  long recommendedPartSize,
+                                  long absoluteMinimumPartSize,
+                                  long latencyMillis,
+                                  long bytesPerSecond,
+                                  double tooManyRequestsRate,
+                                  double serviceUnavailableRate,
+                                  int retryAfterSeconds,
+                                  long uploadUrlTtlMillis,
+                                  long randomSeed) {
+        this.port = port;
+        this.threadCount = threadCount;
+        this.accountId = accountId;
+        this.applicationKeyId = applicationKeyId;
+        this.applicationKey = applicationKey;
+        this.recommendedPartSize = recommendedPartSize;
+        this.absoluteMinimumPartSize = absoluteMinimumPartSize;
+        this.latencyMillis = latencyMillis;
+        this.bytesPerSecond = bytesPerSecond;
+        this.tooManyRequestsRate = tooManyRequestsRate;
+        this.serviceUnavailableRate = serviceUnavailableRate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.uploadUrlTtlMillis = uploadUrlTtlMillis;
+        this.randomSeed = randomSeed;
+    }
+}
@@ -0,0 +1,644 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.simulator;
+
+import com.backblaze.b2.client.contentSources.B2ContentTypes;
+import com.backblaze.b2.client.contentSources.B2Headers;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.structures.B2AccountAuthorization;
+import com.backblaze.b2.client.structures.B2Allowed;
+import com.backblaze.b2.client.structures.B2CancelLargeFileRequest;
+import com.backblaze.b2.client.structures.B2Capabilities;
+import com.backblaze.b2.client.structures.B2DeleteFileVersionRequest;
+import com.backblaze.b2.client.structures.B2DeleteFileVersionResponse;
+import com.backblaze.b2.client.structures.B2ErrorStructure;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2FinishLargeFileRequest;
+import com.backblaze.b2.client.structures.B2GetFileInfoRequest;
+import com.backblaze.b2.client.structures.B2GetUploadPartUrlRequest;
+import com.backblaze.b2.client.structures.B2GetUploadUrlRequest;
+import com.backblaze.b2.client.structures.B2HideFileRequest;
+import com.backblaze.b2.client.structures.B2ListBucketsRequest;
+import com.backblaze.b2.client.structures.B2ListBucketsResponse;
+import com.backblaze.b2.client.structures.B2ListFileNamesRequest;
+import com.backblaze.b2.client.structures.B2ListFileVersionsRequest;
+import com.backblaze.b2.client.structures.B2ListPartsRequest;
+import com.backblaze.b2.client.structures.B2ListUnfinishedLargeFilesRequest;
+import com.backblaze.b2.client.structures.B2StartLargeFileRequest;
+import com.backblaze.b2.client.structures.B2UploadPartUrlResponse;
+import com.backblaze.b2.client.structures.B2UploadUrlResponse;
+import com.backblaze.b2.json.B2Json;
+import com.backblaze.b2.json.B2JsonException;
+import com.backblaze.b2.json.B2JsonOptions;
+import com.backblaze.b2.util.B2BandwidthLimiter;
+import com.backblaze.b2.util.B2ByteRange;
+import com.backblaze.b2.util.B2Clock;
+import com.backblaze.b2.util.B2InputStreamWithBandwidthLimiter;
+import com.backblaze.b2.util.B2IoUtils;
+import com.backblaze.b2.util.B2Sha1;
+import com.backblaze.b2.util.B2StringUtil;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * B2SimulatorHandler turns HTTP requests into calls on the
+ * B2SimulatorStore, and does the simulated misbehavior: latency,
+ * bandwidth limits, injected failures and expiring upload urls.
+ *
+ * THREAD-SAFETY: This class is thread safe.
+ */
+/*package*/ class B2SimulatorHandler implements HttpHandler {
+    private static final String API_PREFIX = "/b2api/v2/";
+    private static final String UPLOAD_FILE = "b2_upload_file";
+    private static final String UPLOAD_PART = "b2_upload_part";
+    private static final String DOWNLOAD_BY_ID = "b2_download_file_by_id";
+    private static final String DOWNLOAD_BY_NAME_PREFIX = "/file/";
+
+    private static final String OCTET_STREAM = "application/octet-stream";
+    private static final String JSON = "application/json;charset=utf-8";
+    private static final String NO_SHA1 = "none";
+    private static final String FILE_INFO_PREFIX_LOWER = B2Headers.FILE_INFO_PREFIX.toLowerCase();
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private static final List<String> ALL_CAPABILITIES = Arrays.asList(
+            B2Capabilities.LIST_BUCKETS,
+            B2Capabilities.WRITE_BUCKETS,
+            B2Capabilities.DELETE_BUCKETS,
+            B2Capabilities.LIST_FILES,
+            B2Capabilities.READ_FILES,
+            B2Capabilities.SHARE_FILES,
+            B2Capabilities.WRITE_FILES,
+            B2Capabilities.DELETE_FILES);
+
+    /**
+     * B2CreateBucketRequestReal has no getters, so we read what we need
+     * into this.
+     */
+    private static class CreateBucketRequest {
+        @B2Json.required
+        private final String bucketName;
+        @B2Json.required
+        private final String bucketType;
+        @B2Json.optional
+        private final Map<String, String> bucketInfo;
+
+        @B2Json.constructor(params = "bucketName,bucketType,bucketInfo")
+        private CreateBucketRequest(String bucketName,
+                                    String bucketType,
+                                    Map<String, String> bucketInfo) {
+            this.bucketName = bucketName;
+            this.bucketType = bucketType;
+            this.bucketInfo = bucketInfo;
+        }
+    }
+
+    /**
+     * What an upload url's authorization token allows.
+     */
+    private static class UploadAuthorization {
+        // the bucketId for b2_upload_file, or the fileId for b2_upload_part.
+        private final String targetId;
+        private final long issuedMonoMillis;
+
+        private UploadAuthorization(String targetId, long issuedMonoMillis) {
+            this.targetId = targetId;
+            this.issuedMonoMillis = issuedMonoMillis;
+        }
+    }
+
+    private final B2SimulatorConfig config;
+    private final B2SimulatorStore store;
+    private final String baseUrl;
+    private final B2Json b2Json = B2Json.get();
+
+    private final Set<String> accountTokens = ConcurrentHashMap.newKeySet();
+    private final Map<String, UploadAuthorization> uploadTokens = new ConcurrentHashMap<>();
+    private final AtomicLong lastTokenNumber = new AtomicLong();
+
+    // protected by synchronized(random)
+    private final Random random;
+
+    /*package*/ B2SimulatorHandler(B2SimulatorConfig config,
+                                   B2SimulatorStore store,
+                                   String baseUrl) {
+        this.config = config;
+        this.store = store;
+        this.baseUrl = baseUrl;
+        this.random = new Random(config.randomSeed);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (config.latencyMillis > 0) {
+                sleepMillis(config.latencyMillis);
+            }
+            final B2Exception faultOrNull = makeFaultOrNull();
+            if (faultOrNull != null) {
+                throw faultOrNull;
+            }
+            route(exchange);
+        } catch (B2Exception e) {
+            sendError(exchange, e);
+        } catch (RuntimeException e) {
+            sendError(exchange, B2Exception.create("internal_error", 500, null, "simulator failed: " + e));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws B2Exception, IOException {
+        final String method = exchange.getRequestMethod();
+        final String path = exchange.getRequestURI().getRawPath();
+
+        if (path.startsWith(DOWNLOAD_BY_NAME_PREFIX)) {
+            checkMethod(exchange, "GET", "HEAD");
+            downloadByName(exchange, path.substring(DOWNLOAD_BY_NAME_PREFIX.length()));
+            return;
+        }
+        if (!path.startsWith(API_PREFIX)) {
+            throw B2SimulatorStore.notFound("no such path: " + path);
+        }
+
+        // b2_upload_file and b2_upload_part have an id after the api name.
+        final String[] apiNameAndRest = path.substring(API_PREFIX.length()).split("/", 2);
+        final String apiName = apiNameAndRest[0];
+        final String idOrNull = (apiNameAndRest.length == 2) ? apiNameAndRest[1] : null;
+
+        if (apiName.equals(DOWNLOAD_BY_ID)) {
+            checkMethod(exchange, "GET", "HEAD");
+            downloadById(exchange);
+            return;
+        }
+
+        checkMethod(exchange, "POST");
+        switch (apiName) {
+            case UPLOAD_FILE:
+                uploadFile(exchange, idOrNull);
+                return;
+            case UPLOAD_PART:
+                uploadPart(exchange, idOrNull);
+                return;
+            case "b2_authorize_account":
+                sendJson(exchange, authorizeAccount(exchange));
+                return;
+        }
+
+        checkAccountAuthorization(exchange);
+        switch (apiName) {
+            case "b2_create_bucket": {
+                final CreateBucketRequest request = readJson(exchange, CreateBucketRequest.class);
+                sendJson(exchange, store.createBucket(request.bucketName, request.bucketType, request.bucketInfo));
+                return;
+            }
+            case "b2_list_buckets": {
+                final B2ListBucketsRequest request = readJson(exchange, B2ListBucketsRequest.class);
+                sendJson(exchange, new B2ListBucketsResponse(
+                        store.listBuckets(request.getBucketId(), request.getBucketName(), request.getBucketTypes())));
+                return;
+            }
+            case "b2_get_upload_url": {
+                final String bucketId = readJson(exchange, B2GetUploadUrlRequest.class).getBucketId();
+                store.checkBucketExists(bucketId);
+                sendJson(exchange, new B2UploadUrlResponse(
+                        bucketId,
+                        baseUrl + API_PREFIX + UPLOAD_FILE + "/" + bucketId,
+                        makeUploadToken(bucketId)));
+                return;
+            }
+            case "b2_get_upload_part_url": {
+                final String fileId = readJson(exchange, B2GetUploadPartUrlRequest.class).getFileId();
+                store.checkUnfinishedLargeFileExists(fileId);
+                sendJson(exchange, new B2UploadPartUrlResponse(
+                        fileId,
+                        baseUrl + API_PREFIX + UPLOAD_PART + "/" + fileId,
+                        makeUploadToken(fileId)));
+                return;
+            }
+            case "b2_start_large_file": {
+                final B2StartLargeFileRequest request = readJson(exchange, B2StartLargeFileRequest.class);
+                sendJson(exchange, store.startLargeFile(
+                        request.getBucketId(),
+                        request.getFileName(),
+                        request.getContentType(),
+                        request.getFileInfo()));
+                return;
+            }
+            case "b2_finish_large_file": {
+                final B2FinishLargeFileRequest request = readJson(exchange, B2FinishLargeFileRequest.class);
+                sendJson(exchange, store.finishLargeFile(request.getFileId(), request.getPartSha1Array()));
+                return;
+            }
+            case "b2_cancel_large_file":
+                sendJson(exchange, store.cancelLargeFile(readJson(exchange, B2CancelLargeFileRequest.class).getFileId()));
+                return;
+            case "b2_list_file_names":
+                sendJson(exchange, store.listFileNames(readJson(exchange, B2ListFileNamesRequest.class)));
+                return;
+            case "b2_list_file_versions":
+                sendJson(exchange, store.listFileVersions(readJson(exchange, B2ListFileVersionsRequest.class)));
+                return;
+            case "b2_list_unfinished_large_files":
+                sendJson(exchange, store.listUnfinishedLargeFiles(readJson(exchange, B2ListUnfinishedLargeFilesRequest.class)));
+                return;
+            case "b2_list_parts":
+                sendJson(exchange, store.listParts(readJson(exchange, B2ListPartsRequest.class)));
+                return;
+            case "b2_get_file_info":
+                sendJson(exchange, store.getFileInfo(readJson(exchange, B2GetFileInfoRequest.class).getFileId()));
+                return;
+            case "b2_hide_file": {
+                final B2HideFileRequest request = readJson(exchange, B2HideFileRequest.class);
+                sendJson(exchange, store.hideFile(request.getBucketId(), request.getFileName()));
+                return;
+            }
+            case "b2_delete_file_version": {
+                final B2DeleteFileVersionRequest request = readJson(exchange, B2DeleteFileVersionRequest.class);
+                store.deleteFileVersion(request.getFileName(), request.getFileId());
+                sendJson(exchange, new B2DeleteFileVersionResponse(request.getFileId(), request.getFileName()));
+                return;
+            }
+            default:
+                throw B2SimulatorStore.badRequest("the simulator doesn't implement " + apiName);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // authorization
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    private B2AccountAuthorization authorizeAccount(HttpExchange exchange) throws B2Exception {
+        final String credentials = config.applicationKeyId + ":" + config.applicationKey;
+        final String expected = "Basic " + Base64.getEncoder().encodeToString(B2StringUtil.getUtf8Bytes(credentials));
+        if (!expected.equals(exchange.getRequestHeaders().getFirst(B2Headers.AUTHORIZATION))) {
+            throw B2Exception.create("unauthorized", 401, null, "bad applicationKeyId or applicationKey");
+        }
+
+        final String token = "sim_account_" + lastTokenNumber.incrementAndGet();
+        accountTokens.add(token);
+        return new B2AccountAuthorization(
+                config.accountId,
+                token,
+                baseUrl,
+                baseUrl,
+                config.recommendedPartSize,
+                config.absoluteMinimumPartSize,
+                new B2Allowed(ALL_CAPABILITIES, null, null, null));
+    }
+
+    private void checkAccountAuthorization(HttpExchange exchange) throws B2Exception {
+        final String token = exchange.getRequestHeaders().getFirst(B2Headers.AUTHORIZATION);
+        if (token == null || !accountTokens.contains(token)) {
+            throw B2Exception.create("bad_auth_token", 401, null, "Invalid authorization token");
+        }
+    }
+
+    private String makeUploadToken(String targetId) {
+        final String token = "sim_upload_" + lastTokenNumber.incrementAndGet();
+        uploadTokens.put(token, new UploadAuthorization(targetId, B2Clock.get().monotonicMillis()));
+        return token;
+    }
+
+    private void checkUploadAuthorization(HttpExchange exchange,
+                                          String targetId) throws B2Exception {
+        final String token = exchange.getRequestHeaders().getFirst(B2Headers.AUTHORIZATION);
+        final UploadAuthorization authorization = (token == null) ? null : uploadTokens.get(token);
+        if (authorization == null || !authorization.targetId.equals(targetId)) {
+            throw B2Exception.create("bad_auth_token", 401, null, "Invalid upload authorization token");
+        }
+        if (config.uploadUrlTtlMillis > 0 &&
+                B2Clock.get().monotonicMillis() - authorization.issuedMonoMillis > config.uploadUrlTtlMillis) {
+            uploadTokens.remove(token);
+            throw B2Exception.create("expired_auth_token", 401, null, "Authorization token has expired");
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // uploads
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    private void uploadFile(HttpExchange exchange,
+                            String bucketId) throws B2Exception, IOException {
+        checkUploadAuthorization(exchange, bucketId);
+        final Headers headers = exchange.getRequestHeaders();
+        final String fileName = B2StringUtil.percentDecode(getRequiredHeader(headers, B2Headers.FILE_NAME));
+        final String requestedContentType = getRequiredHeader(headers, B2Headers.CONTENT_TYPE);
+        final String contentType = requestedContentType.equals(B2ContentTypes.B2_AUTO) ? OCTET_STREAM : requestedContentType;
+
+        final Map<String, String> fileInfo = new TreeMap<>();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            final String name = header.getKey().toLowerCase();
+            if (name.startsWith(FILE_INFO_PREFIX_LOWER)) {
+                fileInfo.put(
+                        B2StringUtil.percentDecode(name.substring(FILE_INFO_PREFIX_LOWER.length())),
+                        B2StringUtil.percentDecode(header.getValue().get(0)));
+            }
+        }
+
+        final VerifiedContent content = readVerifiedContent(exchange);
+        sendJson(exchange, store.uploadFile(bucketId, fileName, contentType, fileInfo, content.bytes, content.sha1));
+    }
+
+    private void uploadPart(HttpExchange exchange,
+                            String fileId) throws B2Exception, IOException {
+        checkUploadAuthorization(exchange, fileId);
+        final int partNumber;
+        try {
+            partNumber = Integer.parseInt(getRequiredHeader(exchange.getRequestHeaders(), B2Headers.PART_NUMBER));
+        } catch (NumberFormatException e) {
+            throw B2SimulatorStore.badRequest("bad " + B2Headers.PART_NUMBER);
+        }
+
+        final VerifiedContent content = readVerifiedContent(exchange);
+        sendJson(exchange, store.uploadPart(fileId, partNumber, content.bytes, content.sha1));
+    }
+
+    private static class VerifiedContent {
+        private final byte[] bytes;
+        private final String sha1;
+
+        private VerifiedContent(byte[] bytes, String sha1) {
+            this.bytes = bytes;
+            this.sha1 = sha1;
+        }
+    }
+
+    /**
+     * Reads the body of an upload, at the simulated bandwidth, and checks
+     * its SHA-1, which is either in the header or after the content.
+     */
+    private VerifiedContent readVerifiedContent(HttpExchange exchange) throws B2Exception, IOException {
+        final Headers headers = exchange.getRequestHeaders();
+        final String sha1Header = getRequiredHeader(headers, B2Headers.CONTENT_SHA1);
+        final long bodyLength;
+        try {
+            bodyLength = Long.parseLong(getRequiredHeader(headers, B2Headers.CONTENT_LENGTH));
+        } catch (NumberFormatException e) {
+            throw B2SimulatorStore.badRequest("bad " + B2Headers.CONTENT_LENGTH);
+        }
+        final boolean sha1AtEnd = sha1Header.equals(B2Headers.HEX_DIGITS_AT_END);
+        final long contentLength = sha1AtEnd ? bodyLength - B2Sha1.HEX_SHA1_SIZE : bodyLength;
+        if (contentLength < 0 || bodyLength > Integer.MAX_VALUE) {
+            throw B2SimulatorStore.badRequest("the simulator can't take an upload of " + bodyLength + " bytes");
+        }
+
+        final byte[] body = new byte[(int) bodyLength];
+        try {
+            readFully(limitBandwidth(exchange.getRequestBody()), body);
+        } catch (EOFException e) {
+            throw B2SimulatorStore.badRequest("request body is shorter than " + B2Headers.CONTENT_LENGTH);
+        }
+
+        final byte[] content = Arrays.copyOf(body, (int) contentLength);
+        final String expectedSha1 = sha1AtEnd ?
+                new String(body, (int) contentLength, B2Sha1.HEX_SHA1_SIZE, B2StringUtil.UTF8) :
+                sha1Header;
+        final String actualSha1 = B2Sha1.hexSha1OfBytes(content);
+        if (!actualSha1.equalsIgnoreCase(expectedSha1)) {
+            throw B2SimulatorStore.badRequest("Sha1 did not match data received");
+        }
+        return new VerifiedContent(content, actualSha1);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // downloads
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    private void downloadById(HttpExchange exchange) throws B2Exception, IOException {
+        checkAccountAuthorization(exchange);
+        final String fileId = getQueryParams(exchange).get("fileId");
+        if (fileId == null) {
+            throw B2SimulatorStore.badRequest("fileId is required");
+        }
+        sendContent(exchange, store.getFileForDownloadById(fileId));
+    }
+
+    private void downloadByName(HttpExchange exchange,
+                                String bucketNameAndFileName) throws B2Exception, IOException {
+        checkAccountAuthorization(exchange);
+        final String[] parts = bucketNameAndFileName.split("/", 2);
+        if (parts.length != 2 || parts[1].isEmpty()) {
+            throw B2SimulatorStore.notFound("no file name in " + bucketNameAndFileName);
+        }
+        sendContent(exchange, store.getFileForDownloadByName(parts[0], B2StringUtil.percentDecode(parts[1])));
+    }
+
+    /**
+     * Sends the file (or the requested range of it) at the simulated
+     * bandwidth, with the headers B2 sends.  For HEAD requests, it only
+     * sends the headers.
+     */
+    private void sendContent(HttpExchange exchange,
+                             B2SimulatorStore.StoredFile file) throws B2Exception, IOException {
+        final B2FileVersion version = file.getVersion();
+        final byte[] content = file.getContentOrNull();
+
+        final Headers responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set(B2Headers.CONTENT_TYPE, version.getContentType());
+        responseHeaders.set(B2Headers.FILE_ID, version.getFileId());
+        responseHeaders.set(B2Headers.FILE_NAME, B2StringUtil.percentEncode(version.getFileName()));
+        responseHeaders.set(B2Headers.CONTENT_SHA1, (version.getContentSha1() == null) ? NO_SHA1 : version.getContentSha1());
+        responseHeaders.set(B2Headers.UPLOAD_TIMESTAMP, Long.toString(version.getUploadTimestamp()));
+        responseHeaders.set("Accept-Ranges", "bytes");
+        version.getFileInfo().forEach((k, v) -> responseHeaders.set(B2Headers.FILE_INFO_PREFIX + k, B2StringUtil.percentEncode(v)));
+
+        int status = 200;
+        int start = 0;
+        int length = content.length;
+        final String rangeHeader = exchange.getRequestHeaders().getFirst(B2Headers.RANGE);
+        if (rangeHeader != null) {
+            final B2ByteRange range = B2ByteRange.parse(rangeHeader);
+            if (range == null) {
+                throw B2SimulatorStore.badRequest("bad " + B2Headers.RANGE + ": " + rangeHeader);
+            }
+            if (!range.isSatisfied(content.length)) {
+                throw B2Exception.create("range_not_satisfiable", 416, null, "The range requested is not satisfiable");
+            }
+            final B2ByteRange effective = range.effectiveRange(content.length);
+            status = 206;
+            start = (int) (long) effective.start;
+            length = (int) effective.getNumberOfBytes();
+            responseHeaders.set(B2Headers.CONTENT_RANGE, "bytes " + effective.start + "-" + effective.end + "/" + content.length);
+        }
+
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            // the server leaves Content-Length alone for HEAD, so we set it ourselves.
+            responseHeaders.set(B2Headers.CONTENT_LENGTH, Integer.toString(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        // to the server, 0 means "chunked" and -1 means "empty".
+        exchange.sendResponseHeaders(status, (length == 0) ? -1 : length);
+        final B2BandwidthLimiter limiterOrNull = makeLimiterOrNull();
+        final OutputStream out = exchange.getResponseBody();
+        int offset = start;
+        final int pastEnd = start + length;
+        while (offset < pastEnd) {
+            final int chunkSize = Math.min(COPY_BUFFER_SIZE, pastEnd - offset);
+            if (limiterOrNull != null) {
+                acquire(limiterOrNull, chunkSize);
+            }
+            out.write(content, offset, chunkSize);
+            offset += chunkSize;
+        }
+        out.close();
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // helpers
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    private B2Exception makeFaultOrNull() {
+        if (config.tooManyRequestsRate == 0 && config.serviceUnavailableRate == 0) {
+            return null;
+        }
+        final double roll;
+        synchronized (random) {
+            roll = random.nextDouble();
+        }
+        if (roll < config.tooManyRequestsRate) {
+            return B2Exception.create("too_many_requests", 429, config.retryAfterSeconds, "simulated too_many_requests");
+        }
+        if (roll < config.tooManyRequestsRate + config.serviceUnavailableRate) {
+            return B2Exception.create("service_unavailable", 503, config.retryAfterSeconds, "simulated service_unavailable");
+        }
+        return null;
+    }
+
+    private B2BandwidthLimiter makeLimiterOrNull() {
+        return (config.bytesPerSecond > 0) ? new B2BandwidthLimiter(config.bytesPerSecond) : null;
+    }
+
+    private InputStream limitBandwidth(InputStream in) {
+        final B2BandwidthLimiter limiterOrNull = makeLimiterOrNull();
+        return (limiterOrNull == null) ? in : new B2InputStreamWithBandwidthLimiter(in, limiterOrNull);
+    }
+
+    private static void acquire(B2BandwidthLimiter limiter, int nBytes) throws InterruptedIOException {
+        try {
+            limiter.acquire(nBytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for bandwidth");
+        }
+    }
+
+    private static void sleepMillis(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while simulating latency");
+        }
+    }
+
+    private static void checkMethod(HttpExchange exchange, String... allowedMethods) throws B2Exception {
+        if (!Arrays.asList(allowedMethods).contains(exchange.getRequestMethod())) {
+            throw B2Exception.create("method_not_allowed", 405, null, exchange.getRequestMethod() + " isn't allowed here");
+        }
+    }
+
+    private static String getRequiredHeader(Headers headers, String name) throws B2Exception {
+        final String value = headers.getFirst(name);
+        if (value == null) {
+            throw B2SimulatorStore.badRequest("missing " + name + " header");
+        }
+        return value;
+    }
+
+    private static Map<String, String> getQueryParams(HttpExchange exchange) {
+        final Map<String, String> params = new TreeMap<>();
+        final String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                final String[] nameAndValue = param.split("=", 2);
+                params.put(
+                        B2StringUtil.percentDecode(nameAndValue[0]),
+                        (nameAndValue.length == 2) ? B2StringUtil.percentDecode(nameAndValue[1]) : "");
+            }
+        }
+        return params;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            final int nRead = in.read(buffer, offset, buffer.length - offset);
+            if (nRead < 0) {
+                throw new EOFException("expected " + buffer.length + " bytes, but got " + offset);
+            }
+            offset += nRead;
+        }
+    }
+
+    private <T> T readJson(HttpExchange exchange, Class<T> clazz) throws B2Exception, IOException {
+        try {
+            return b2Json.fromJsonUntilEof(exchange.getRequestBody(), clazz, B2JsonOptions.DEFAULT_AND_ALLOW_EXTRA_FIELDS);
+        } catch (B2JsonException e) {
+            throw B2SimulatorStore.badRequest("can't parse request: " + e.getMessage());
+        }
+    }
+
+    private void sendJson(HttpExchange exchange, Object response) throws IOException {
+        sendJson(exchange, 200, response);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object response) throws IOException {
+        final byte[] bytes;
+        try {
+            bytes = b2Json.toJsonUtf8Bytes(response);
+        } catch (B2JsonException e) {
+            throw new IllegalStateException("can't convert " + response.getClass().getSimpleName() + " to json: " + e.getMessage(), e);
+        }
+        exchange.getResponseHeaders().set(B2Headers.CONTENT_TYPE, JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Sends an error like B2 does.  First, it reads whatever's left of the
+     * request, so the client isn't stopped in the middle of sending it.
+     */
+    private void sendError(HttpExchange exchange, B2Exception e) throws IOException {
+        B2IoUtils.readToEnd(exchange.getRequestBody());
+        if (e.getRetryAfterSecondsOrNull() != null) {
+            exchange.getResponseHeaders().set(B2Headers.RETRY_AFTER, Integer.toString(e.getRetryAfterSecondsOrNull()));
+        }
+        final B2ErrorStructure error = new B2ErrorStructure(e.getStatus(), e.getCode(), e.getMessage());
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(e.getStatus(), -1);
+        } else {
+            sendJson(exchange, e.getStatus(), error);
+        }
+    }
+}
@@ -0,0 +1,640 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.simulator;
+
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.structures.B2Bucket;
+import com.backblaze.b2.client.structures.B2CancelLargeFileResponse;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2ListFileNamesRequest;
+import com.backblaze.b2.client.structures.B2ListFileNamesResponse;
+import com.backblaze.b2.client.structures.B2ListFileVersionsRequest;
+import com.backblaze.b2.client.structures.B2ListFileVersionsResponse;
+import com.backblaze.b2.client.structures.B2ListPartsRequest;
+import com.backblaze.b2.client.structures.B2ListPartsResponse;
+import com.backblaze.b2.client.structures.B2ListUnfinishedLargeFilesRequest;
+import com.backblaze.b2.client.structures.B2ListUnfinishedLargeFilesResponse;
+import com.backblaze.b2.client.structures.B2Part;
+import com.backblaze.b2.util.B2Clock;
+import com.backblaze.b2.util.B2StringUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * B2SimulatorStore holds the simulator's buckets and files, and knows
+ * the rules for changing and listing them.  It doesn't know anything
+ * about HTTP.
+ *
+ * File names are ordered by their UTF-8 bytes, like B2 does.  Each name's
+ * versions are kept newest first.  Unfinished large files are versions
+ * with the "start" action until they're finished or canceled.
+ *
+ * Errors are thrown as B2Exceptions with the status and code that B2
+ * would send.
+ *
+ * THREAD-SAFETY: This class is thread safe.  Every operation holds
+ *    the lock, which is fine for a simulator.
+ */
+/*package*/ class B2SimulatorStore {
+    private static final int DEFAULT_MAX_FILE_COUNT = 100;
+    private static final int MAX_MAX_FILE_COUNT = 10000;
+    private static final int DEFAULT_MAX_UNFINISHED_COUNT = 100;
+    private static final int MAX_MAX_UNFINISHED_COUNT = 100;
+    private static final int DEFAULT_MAX_PART_COUNT = 100;
+    private static final int MAX_MAX_PART_COUNT = 1000;
+    private static final int MAX_PART_NUMBER = 10000;
+    private static final String NO_SHA1 = "none";
+
+    /**
+     * A version of a file, with its content if it has any.
+     * Once it's made, it doesn't change.
+     */
+    /*package*/ static class StoredFile {
+        private final String bucketId;
+        private final B2FileVersion version;
+        private final byte[] contentOrNull;
+
+        private StoredFile(String bucketId,
+                           B2FileVersion version,
+                           byte[] contentOrNull) {
+            this.bucketId = bucketId;
+            this.version = version;
+            this.contentOrNull = contentOrNull;
+        }
+
+        /*package*/ B2FileVersion getVersion() {
+            return version;
+        }
+
+        /*package*/ byte[] getContentOrNull() {
+            return contentOrNull;
+        }
+    }
+
+    private static class Bucket {
+        private final B2Bucket bucket;
+        private final TreeMap<String, List<StoredFile>> versionsByName = new TreeMap<>(B2StringUtil::compareUtf8);
+
+        private Bucket(B2Bucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    private static class StoredPart {
+        private final B2Part part;
+        private final byte[] content;
+
+        private StoredPart(B2Part part, byte[] content) {
+            this.part = part;
+            this.content = content;
+        }
+    }
+
+    private static class LargeFile {
+        private final StoredFile started;
+        private final TreeMap<Integer, StoredPart> partsByNumber = new TreeMap<>();
+
+        private LargeFile(StoredFile started) {
+            this.started = started;
+        }
+    }
+
+    private final String accountId;
+    private final long absoluteMinimumPartSize;
+
+    // all of these are protected by synchronized(this).
+    private final Map<String, Bucket> bucketsById = new TreeMap<>();
+    private final Map<String, StoredFile> filesById = new HashMap<>();
+    private final TreeMap<String, LargeFile> unfinishedById = new TreeMap<>();
+    private long lastId;
+
+    /*package*/ B2SimulatorStore(B2SimulatorConfig config) {
+        this.accountId = config.accountId;
+        this.absoluteMinimumPartSize = config.absoluteMinimumPartSize;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // buckets
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    /*package*/ synchronized B2Bucket createBucket(String bucketName,
+                                                   String bucketType,
+                                                   Map<String, String> bucketInfoOrNull) throws B2Exception {
+        if (bucketName == null || bucketName.isEmpty()) {
+            throw badRequest("bucketName is required");
+        }
+        for (Bucket bucket : bucketsById.values()) {
+            if (bucket.bucket.getBucketName().equals(bucketName)) {
+                throw B2Exception.create("duplicate_bucket_name", 400, null, "Bucket name is already in use.");
+            }
+        }
+        final String bucketId = String.format("%024x", ++lastId);
+        final B2Bucket bucket = new B2Bucket(
+                accountId,
+                bucketId,
+                bucketName,
+                bucketType,
+                (bucketInfoOrNull == null) ? Collections.emptyMap() : bucketInfoOrNull,
+                Collections.emptyList(),
+                Collections.emptyList(),
+                1);
+        bucketsById.put(bucketId, new Bucket(bucket));
+        return bucket;
+    }
+
+    /*package*/ synchronized List<B2Bucket> listBuckets(String bucketIdOrNull,
+                                                        String bucketNameOrNull,
+                                                        Set<String> bucketTypesOrNull) {
+        final List<B2Bucket> buckets = new ArrayList<>();
+        for (Bucket bucket : bucketsById.values()) {
+            final B2Bucket b2Bucket = bucket.bucket;
+            if ((bucketIdOrNull == null || bucketIdOrNull.equals(b2Bucket.getBucketId())) &&
+                    (bucketNameOrNull == null || bucketNameOrNull.equals(b2Bucket.getBucketName())) &&
+                    (bucketTypesOrNull == null || bucketTypesOrNull.contains("all") || bucketTypesOrNull.contains(b2Bucket.getBucketType()))) {
+                buckets.add(b2Bucket);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * @throws B2Exception unless there's a bucket with the given id.
+     */
+    /*package*/ synchronized void checkBucketExists(String bucketId) throws B2Exception {
+        getBucket(bucketId);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // files
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    /*package*/ synchronized B2FileVersion uploadFile(String bucketId,
+                                                      String fileName,
+                                                      String contentType,
+                                                      Map<String, String> fileInfo,
+                                                      byte[] content,
+                                                      String contentSha1) throws B2Exception {
+        final Bucket bucket = getBucket(bucketId);
+        checkFileName(fileName);
+        final B2FileVersion version = new B2FileVersion(
+                makeFileId(bucketId),
+                fileName,
+                content.length,
+                contentType,
+                contentSha1,
+                fileInfo,
+                B2FileVersion.UPLOAD_ACTION,
+                B2Clock.get().wallClockMillis());
+        addVersion(bucket, new StoredFile(bucketId, version, content));
+        return version;
+    }
+
+    /*package*/ synchronized B2FileVersion hideFile(String bucketId,
+                                                    String fileName) throws B2Exception {
+        final Bucket bucket = getBucket(bucketId);
+        checkFileName(fileName);
+        final List<StoredFile> versions = bucket.versionsByName.get(fileName);
+        if (versions != null && versions.get(0).version.isHide()) {
+            throw badRequest("file is already hidden: " + fileName);
+        }
+        final B2FileVersion version = new B2FileVersion(
+                makeFileId(bucketId),
+                fileName,
+                0,
+                null,
+                null,
+                Collections.emptyMap(),
+                B2FileVersion.HIDE_ACTION,
+                B2Clock.get().wallClockMillis());
+        addVersion(bucket, new StoredFile(bucketId, version, null));
+        return version;
+    }
+
+    /*package*/ synchronized B2FileVersion getFileInfo(String fileId) throws B2Exception {
+        final StoredFile file = filesById.get(fileId);
+        if (file == null) {
+            throw notFound("file not found: " + fileId);
+        }
+        return file.version;
+    }
+
+    /*package*/ synchronized void deleteFileVersion(String fileName,
+                                                    String fileId) throws B2Exception {
+        final StoredFile file = filesById.get(fileId);
+        if (file == null || !file.version.getFileName().equals(fileName)) {
+            throw badRequest("File not present: " + fileName + " " + fileId);
+        }
+        removeVersion(file);
+        unfinishedById.remove(fileId);
+    }
+
+    /**
+     * @return the uploaded file with the given id.
+     */
+    /*package*/ synchronized StoredFile getFileForDownloadById(String fileId) throws B2Exception {
+        final StoredFile file = filesById.get(fileId);
+        if (file == null || !file.version.isUpload()) {
+            throw notFound("file not found: " + fileId);
+        }
+        return file;
+    }
+
+    /**
+     * @return the newest version of the named file, as long as it's not hidden.
+     */
+    /*package*/ synchronized StoredFile getFileForDownloadByName(String bucketName,
+                                                                 String fileName) throws B2Exception {
+        for (Bucket bucket : bucketsById.values()) {
+            if (bucket.bucket.getBucketName().equals(bucketName)) {
+                final List<StoredFile> versions = bucket.versionsByName.get(fileName);
+                final StoredFile file = (versions == null) ? null : getVisibleOrNull(versions);
+                if (file == null) {
+                    throw notFound("file not found: " + fileName);
+                }
+                return file;
+            }
+        }
+        throw notFound("bucket not found: " + bucketName);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // large files
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    /*package*/ synchronized B2FileVersion startLargeFile(String bucketId,
+                                                          String fileName,
+                                                          String contentType,
+                                                          Map<String, String> fileInfo) throws B2Exception {
+        final Bucket bucket = getBucket(bucketId);
+        checkFileName(fileName);
+        final B2FileVersion version = new B2FileVersion(
+                makeFileId(bucketId),
+                fileName,
+                0,
+                contentType,
+                NO_SHA1,
+                (fileInfo == null) ? Collections.emptyMap() : fileInfo,
+                B2FileVersion.START_ACTION,
+                B2Clock.get().wallClockMillis());
+        final StoredFile started = new StoredFile(bucketId, version, null);
+        addVersion(bucket, started);
+        unfinishedById.put(version.getFileId(), new LargeFile(started));
+        return version;
+    }
+
+    /**
+     * @throws B2Exception unless there's an unfinished large file with the given id.
+     */
+    /*package*/ synchronized void checkUnfinishedLargeFileExists(String fileId) throws B2Exception {
+        getUnfinished(fileId);
+    }
+
+    /*package*/ synchronized B2Part uploadPart(String fileId,
+                                               int partNumber,
+                                               byte[] content,
+                                               String contentSha1) throws B2Exception {
+        final LargeFile largeFile = getUnfinished(fileId);
+        if (partNumber < 1 || partNumber > MAX_PART_NUMBER) {
+            throw badRequest("part number must be between 1 and " + MAX_PART_NUMBER);
+        }
+        final B2Part part = new B2Part(fileId, partNumber, content.length, contentSha1, B2Clock.get().wallClockMillis());
+        largeFile.partsByNumber.put(partNumber, new StoredPart(part, content));
+        return part;
+    }
+
+    /*package*/ synchronized B2FileVersion finishLargeFile(String fileId,
+                                                           List<String> partSha1s) throws B2Exception {
+        final LargeFile largeFile = getUnfinished(fileId);
+        if (partSha1s == null || partSha1s.size() < 2) {
+            throw badRequest("large files must have at least 2 parts");
+        }
+        if (largeFile.partsByNumber.size() != partSha1s.size()) {
+            throw badRequest("expected " + largeFile.partsByNumber.size() + " parts, but got " + partSha1s.size() + " sha1s");
+        }
+
+        long contentLength = 0;
+        for (int partNumber = 1; partNumber <= partSha1s.size(); partNumber++) {
+            final StoredPart storedPart = largeFile.partsByNumber.get(partNumber);
+            if (storedPart == null) {
+                throw badRequest("Part number " + partNumber + " has not been uploaded");
+            }
+            if (!storedPart.part.getContentSha1().equalsIgnoreCase(partSha1s.get(partNumber - 1))) {
+                throw badRequest("Part number " + partNumber + " has wrong SHA1");
+            }
+            final boolean isLast = (partNumber == partSha1s.size());
+            if (!isLast && storedPart.content.length < absoluteMinimumPartSize) {
+                throw badRequest("Part number " + partNumber + " is smaller than the minimum part size");
+            }
+            contentLength += storedPart.content.length;
+        }
+        if (contentLength > Integer.MAX_VALUE) {
+            throw badRequest("the simulator can't hold a file of " + contentLength + " bytes");
+        }
+
+        final byte[] content = new byte[(int) contentLength];
+        int offset = 0;
+        for (StoredPart storedPart : largeFile.partsByNumber.values()) {
+            System.arraycopy(storedPart.content, 0, content, offset, storedPart.content.length);
+            offset += storedPart.content.length;
+        }
+
+        final B2FileVersion started = largeFile.started.version;
+        final B2FileVersion finished = new B2FileVersion(
+                fileId,
+                started.getFileName(),
+                contentLength,
+                started.getContentType(),
+                NO_SHA1,
+                started.getFileInfo(),
+                B2FileVersion.UPLOAD_ACTION,
+                started.getUploadTimestamp());
+        replaceVersion(largeFile.started, new StoredFile(largeFile.started.bucketId, finished, content));
+        unfinishedById.remove(fileId);
+        return finished;
+    }
+
+    /*package*/ synchronized B2CancelLargeFileResponse cancelLargeFile(String fileId) throws B2Exception {
+        final LargeFile largeFile = getUnfinished(fileId);
+        removeVersion(largeFile.started);
+        unfinishedById.remove(fileId);
+        return new B2CancelLargeFileResponse(fileId, largeFile.started.bucketId, largeFile.started.version.getFileName());
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // listing
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    /*package*/ synchronized B2ListFileNamesResponse listFileNames(B2ListFileNamesRequest request) throws B2Exception {
+        final Bucket bucket = getBucket(request.getBucketId());
+        final int maxFileCount = getMaxCount("maxFileCount", request.getMaxFileCount(), DEFAULT_MAX_FILE_COUNT, MAX_MAX_FILE_COUNT);
+        final String prefix = nullToEmpty(request.getPrefix());
+        final String delimiter = request.getDelimiter();
+
+        final List<B2FileVersion> files = new ArrayList<>();
+        String lastFolder = null;
+        for (Map.Entry<String, List<StoredFile>> entry : tailStartingAt(bucket, request.getStartFileName(), prefix).entrySet()) {
+            final String fileName = entry.getKey();
+            if (!fileName.startsWith(prefix)) {
+                break;
+            }
+            if (lastFolder != null && fileName.startsWith(lastFolder)) {
+                continue;
+            }
+
+            final B2FileVersion file;
+            final String folderOrNull = getFolderOrNull(fileName, prefix, delimiter);
+            if (folderOrNull != null) {
+                lastFolder = folderOrNull;
+                file = makeFolder(folderOrNull);
+            } else {
+                final StoredFile visible = getVisibleOrNull(entry.getValue());
+                if (visible == null) {
+                    continue;
+                }
+                file = visible.version;
+            }
+
+            if (files.size() == maxFileCount) {
+                return new B2ListFileNamesResponse(files, file.getFileName());
+            }
+            files.add(file);
+        }
+        return new B2ListFileNamesResponse(files, null);
+    }
+
+    /*package*/ synchronized B2ListFileVersionsResponse listFileVersions(B2ListFileVersionsRequest request) throws B2Exception {
+        final Bucket bucket = getBucket(request.getBucketId());
+        final int maxFileCount = getMaxCount("maxFileCount", request.getMaxFileCount(), DEFAULT_MAX_FILE_COUNT, MAX_MAX_FILE_COUNT);
+        final String prefix = nullToEmpty(request.getPrefix());
+        final String delimiter = request.getDelimiter();
+        final String startFileName = request.getStartFileName();
+        final String startFileId = request.getStartFileId();
+
+        final List<B2FileVersion> files = new ArrayList<>();
+        String lastFolder = null;
+        for (Map.Entry<String, List<StoredFile>> entry : tailStartingAt(bucket, startFileName, prefix).entrySet()) {
+            final String fileName = entry.getKey();
+            if (!fileName.startsWith(prefix)) {
+                break;
+            }
+            if (lastFolder != null && fileName.startsWith(lastFolder)) {
+                continue;
+            }
+
+            final String folderOrNull = getFolderOrNull(fileName, prefix, delimiter);
+            if (folderOrNull != null) {
+                lastFolder = folderOrNull;
+                if (files.size() == maxFileCount) {
+                    return new B2ListFileVersionsResponse(files, folderOrNull, null);
+                }
+                files.add(makeFolder(folderOrNull));
+                continue;
+            }
+
+            // when continuing within a name, skip the versions before startFileId.
+            boolean skipping = (startFileId != null && fileName.equals(startFileName));
+            for (StoredFile storedFile : entry.getValue()) {
+                final B2FileVersion version = storedFile.version;
+                if (skipping) {
+                    if (!version.getFileId().equals(startFileId)) {
+                        continue;
+                    }
+                    skipping = false;
+                }
+                if (files.size() == maxFileCount) {
+                    return new B2ListFileVersionsResponse(files, fileName, version.getFileId());
+                }
+                files.add(version);
+            }
+        }
+        return new B2ListFileVersionsResponse(files, null, null);
+    }
+
+    /*package*/ synchronized B2ListUnfinishedLargeFilesResponse listUnfinishedLargeFiles(B2ListUnfinishedLargeFilesRequest request) throws B2Exception {
+        getBucket(request.getBucketId());
+        final int maxFileCount = getMaxCount("maxFileCount", request.getMaxFileCount(), DEFAULT_MAX_UNFINISHED_COUNT, MAX_MAX_UNFINISHED_COUNT);
+        final String namePrefix = nullToEmpty(request.getNamePrefix());
+        final Map<String, LargeFile> candidates = (request.getStartFileId() == null) ?
+                unfinishedById :
+                unfinishedById.tailMap(request.getStartFileId(), true);
+
+        final List<B2FileVersion> files = new ArrayList<>();
+        for (LargeFile largeFile : candidates.values()) {
+            final B2FileVersion version = largeFile.started.version;
+            if (!largeFile.started.bucketId.equals(request.getBucketId()) ||
+                    !version.getFileName().startsWith(namePrefix)) {
+                continue;
+            }
+            if (files.size() == maxFileCount) {
+                return new B2ListUnfinishedLargeFilesResponse(files, version.getFileId());
+            }
+            files.add(version);
+        }
+        return new B2ListUnfinishedLargeFilesResponse(files, null);
+    }
+
+    /*package*/ synchronized B2ListPartsResponse listParts(B2ListPartsRequest request) throws B2Exception {
+        final LargeFile largeFile = getUnfinished(request.getFileId());
+        final int maxPartCount = getMaxCount("maxPartCount", request.getMaxPartCount(), DEFAULT_MAX_PART_COUNT, MAX_MAX_PART_COUNT);
+        final int startPartNumber = (request.getStartPartNumber() == null) ? 1 : request.getStartPartNumber();
+
+        final List<B2Part> parts = new ArrayList<>();
+        for (StoredPart storedPart : largeFile.partsByNumber.tailMap(startPartNumber, true).values()) {
+            if (parts.size() == maxPartCount) {
+                return new B2ListPartsResponse(parts, storedPart.part.getPartNumber());
+            }
+            parts.add(storedPart.part);
+        }
+        return new B2ListPartsResponse(parts, null);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //
+    // helpers.  all of these must be called while holding the lock.
+    //
+    ////////////////////////////////////////////////////////////////////////
+
+    private Bucket getBucket(String bucketId) throws B2Exception {
+        final Bucket bucket = (bucketId == null) ? null : bucketsById.get(bucketId);
+        if (bucket == null) {
+            throw badRequest("Invalid bucketId: " + bucketId);
+        }
+        return bucket;
+    }
+
+    private LargeFile getUnfinished(String fileId) throws B2Exception {
+        final LargeFile largeFile = (fileId == null) ? null : unfinishedById.get(fileId);
+        if (largeFile == null) {
+            throw badRequest("No active upload for: " + fileId);
+        }
+        return largeFile;
+    }
+
+    private String makeFileId(String bucketId) {
+        return String.format("4_z%s_f%016x", bucketId, ++lastId);
+    }
+
+    private void addVersion(Bucket bucket, StoredFile file) {
+        bucket.versionsByName
+                .computeIfAbsent(file.version.getFileName(), name -> new ArrayList<>())
+                .add(0, file);
+        filesById.put(file.version.getFileId(), file);
+    }
+
+    private void replaceVersion(StoredFile oldFile, StoredFile newFile) {
+        final List<StoredFile> versions = bucketsById.get(oldFile.bucketId).versionsByName.get(oldFile.version.getFileName());
+        versions.set(versions.indexOf(oldFile), newFile);
+        filesById.put(newFile.version.getFileId(), newFile);
+    }
+
+    private void removeVersion(StoredFile file) {
+        final Bucket bucket = bucketsById.get(file.bucketId);
+        final String fileName = file.version.getFileName();
+        final List<StoredFile> versions = bucket.versionsByName.get(fileName);
+        versions.remove(file);
+        if (versions.isEmpty()) {
+            bucket.versionsByName.remove(fileName);
+        }
+        filesById.remove(file.version.getFileId());
+    }
+
+    /**
+     * @return the newest uploaded version, unless it's been hidden since.
+     *         unfinished large files don't count either way.
+     */
+    private static StoredFile getVisibleOrNull(List<StoredFile> versions) {
+        for (StoredFile file : versions) {
+            if (file.version.isUpload()) {
+                return file;
+            }
+            if (file.version.isHide()) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the names at or after the later of startFileNameOrNull and prefix.
+     */
+    private Map<String, List<StoredFile>> tailStartingAt(Bucket bucket,
+                                                         String startFileNameOrNull,
+                                                         String prefix) {
+        final String start;
+        if (startFileNameOrNull == null || B2StringUtil.compareUtf8(startFileNameOrNull, prefix) < 0) {
+            start = prefix;
+        } else {
+            start = startFileNameOrNull;
+        }
+        return bucket.versionsByName.tailMap(start, true);
+    }
+
+    /**
+     * @return the "folder" that fileName is in, if listing with the given
+     *         prefix and delimiter should show the folder instead of the file.
+     */
+    private static String getFolderOrNull(String fileName,
+                                          String prefix,
+                                          String delimiterOrNull) {
+        if (delimiterOrNull == null || delimiterOrNull.isEmpty()) {
+            return null;
+        }
+        final int iDelimiter = fileName.indexOf(delimiterOrNull, prefix.length());
+        if (iDelimiter < 0) {
+            return null;
+        }
+        return fileName.substring(0, iDelimiter + delimiterOrNull.length());
+    }
+
+    private static B2FileVersion makeFolder(String folderName) {
+        return new B2FileVersion(null, folderName, 0, null, null, Collections.emptyMap(), B2FileVersion.FOLDER_ACTION, 0);
+    }
+
+    private static void checkFileName(String fileName) throws B2Exception {
+        if (fileName == null || fileName.isEmpty()) {
+            throw badRequest("fileName is required");
+        }
+    }
+
+    private static int getMaxCount(String name,
+                                   Integer requestedOrNull,
+                                   int defaultCount,
+                                   int maxCount) throws B2Exception {
+        if (requestedOrNull == null) {
+            return defaultCount;
+        }
+        if (requestedOrNull < 1 || requestedOrNull > maxCount) {
+            throw badRequest(name + " out of range: " + requestedOrNull);
+        }
+        return requestedOrNull;
+    }
+
+    private static String nullToEmpty(String s) {
+        return (s == null) ? "" : s;
+    }
+
+    /*package*/ static B2Exception badRequest(String message) {
+        return B2Exception.create("bad_request", 400, null, message);
+    }
+
+    /*package*/ static B2Exception notFound(String message) {
+        return B2Exception.create("not_found", 404, null, message);
+    }
+}
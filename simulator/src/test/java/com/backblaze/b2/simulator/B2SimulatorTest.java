@@ -0,0 +1,339 @@
+/*
+ * Copyright 2018, Backblaze Inc. All Rights Reserved.
+ * License https://www.backblaze.com/using_b2_code.html
+ */
+
+package com.backblaze.b2.simulator;
+
+import com.backblaze.b2.client.B2AccountAuthorizerSimpleImpl;
+import com.backblaze.b2.client.B2ClientConfig;
+import com.backblaze.b2.client.B2StorageClient;
+import com.backblaze.b2.client.contentHandlers.B2ContentMemoryWriter;
+import com.backblaze.b2.client.contentSources.B2ByteArrayContentSource;
+import com.backblaze.b2.client.contentSources.B2ContentTypes;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.exceptions.B2NotFoundException;
+import com.backblaze.b2.client.structures.B2Bucket;
+import com.backblaze.b2.client.structures.B2BucketTypes;
+import com.backblaze.b2.client.structures.B2DownloadByNameRequest;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2ListFileNamesRequest;
+import com.backblaze.b2.client.structures.B2ListFileVersionsRequest;
+import com.backblaze.b2.client.structures.B2SyncRequest;
+import com.backblaze.b2.client.structures.B2SyncResult;
+import com.backblaze.b2.client.structures.B2UploadFileRequest;
+import com.backblaze.b2.client.webApiHttpClient.B2HttpRequestTimings;
+import com.backblaze.b2.client.webApiHttpClient.B2HttpTimingListener;
+import com.backblaze.b2.client.webApiHttpClient.B2StorageHttpClientBuilder;
+import com.backblaze.b2.client.webApiHttpClient.B2WebApiHttpClientImpl;
+import com.backblaze.b2.client.webApiHttpClient.HttpClientFactoryImpl;
+import com.backblaze.b2.util.B2ByteRange;
+import com.backblaze.b2.util.B2ExecutorUtils;
+import com.backblaze.b2.util.B2Sha1;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * These run a real client, with its real HTTP stack, against the simulator.
+ * They use the real clock, since B2BaseTest's simulated clock isn't
+ * available outside of core's tests.
+ */
+public class B2SimulatorTest {
+    private static final String BUCKET_NAME = "simulated-bucket";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private B2Simulator simulator;
+    private B2StorageClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    private void start(B2Simulator.Builder builder) throws IOException {
+        start(builder, null);
+    }
+
+    private void start(B2Simulator.Builder builder,
+                       B2HttpTimingListener timingListenerOrNull) throws IOException {
+        simulator = builder.build();
+        final B2ClientConfig config = B2ClientConfig
+                .builder(B2AccountAuthorizerSimpleImpl
+                                .builder(simulator.getApplicationKeyId(), simulator.getApplicationKey())
+                                .build(),
+                        "B2SimulatorTest")
+                .setMasterUrl(simulator.getMasterUrl())
+                .build();
+        client = B2StorageHttpClientBuilder
+                .builder(config)
+                .setWebApiClient(B2WebApiHttpClientImpl
+                        .builder()
+                        .setHttpClientFactory(HttpClientFactoryImpl.builder().setSupportInsecureHttp(true).build())
+                        .setTimingListener(timingListenerOrNull)
+                        .build())
+                .build();
+    }
+
+    @Test
+    public void testSmallFileRoundTrip() throws Exception {
+        start(B2Simulator.builder());
+        final B2Bucket bucket = client.createBucket(BUCKET_NAME, B2BucketTypes.ALL_PRIVATE);
+        assertEquals(bucket, client.getBucketOrNullByName(BUCKET_NAME));
+
+        final byte[] content = makeContent(1000);
+        final B2FileVersion version = client.uploadSmallFile(B2UploadFileRequest
+                .builder(bucket.getBucketId(), "dir/hello world.txt", B2ContentTypes.TEXT_PLAIN, B2ByteArrayContentSource.build(content))
+                .setCustomField("color", "blue")
+                .build());
+        assertEquals(B2Sha1.hexSha1OfBytes(content), version.getContentSha1());
+        assertEquals(version, client.getFileInfo(version.getFileId()));
+
+        final B2FileVersion byName = client.getFileInfoByName(BUCKET_NAME, "dir/hello world.txt");
+        assertEquals(version.getFileId(), byName.getFileId());
+        assertEquals("blue", byName.getFileInfo().get("color"));
+
+        final B2ContentMemoryWriter whole = B2ContentMemoryWriter.build();
+        client.downloadById(version.getFileId(), whole);
+        assertArrayEquals(content, whole.getBytes());
+
+        final B2ContentMemoryWriter part = B2ContentMemoryWriter.build();
+        client.downloadByName(B2DownloadByNameRequest
+                .builder(BUCKET_NAME, "dir/hello world.txt")
+                .setRange(B2ByteRange.between(10, 19))
+                .build(), part);
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 20), part.getBytes());
+    }
+
+    @Test
+    public void testRequestTimings() throws Exception {
+        final List<B2HttpRequestTimings> timings = Collections.synchronizedList(new ArrayList<>());
+        start(B2Simulator.builder(), timings::add);
+
+        final String bucketId = client.createBucket(BUCKET_NAME, B2BucketTypes.ALL_PRIVATE).getBucketId();
+        client.uploadSmallFile(B2UploadFileRequest
+                .builder(bucketId, "timed", B2ContentTypes.TEXT_PLAIN, B2ByteArrayContentSource.build(makeContent(100_000)))
+                .build());
+
+        // authorize, create bucket, get upload url, upload.
+        assertEquals(4, timings.size());
+
+        // the first request had to connect.  it's http, so there's no tls.
+        final B2HttpRequestTimings first = timings.get(0);
+        assertTrue(first.getUrl().endsWith("/b2_authorize_account"));
+        assertEquals(200, first.getStatusCode());
+        assertFalse(first.isConnectionReused());
+        assertTrue(first.getDnsNanos() >= 0);
+        assertTrue(first.getConnectNanos() >= 0);
+        assertEquals(-1, first.getTlsNanos());
+
+        // the upload reused the connection, and every phase but connecting was seen.
+        final B2HttpRequestTimings upload = timings.get(3);
+        assertEquals("POST", upload.getMethod());
+        assertEquals(200, upload.getStatusCode());
+        assertTrue(upload.isConnectionReused());
+        assertEquals(-1, upload.getDnsNanos());
+        assertEquals(-1, upload.getConnectNanos());
+        assertTrue(upload.getPoolWaitNanos() >= 0);
+        assertTrue(upload.getRequestSendNanos() >= 0);
+        assertTrue(upload.getTimeToFirstByteNanos() >= 0);
+        assertTrue(upload.getResponseTransferNanos() >= 0);
+        assertTrue(upload.getTotalNanos() >= upload.getPoolWaitNanos() + upload.getRequestSendNanos() +
+                upload.getTimeToFirstByteNanos() + upload.getResponseTransferNanos());
+    }
+
+    @Test
+    public void testListingWithDelimiter() throws Exception {
+        start(B2Simulator.builder());
+        final String bucketId = client.createBucket(BUCKET_NAME, B2BucketTypes.ALL_PRIVATE).getBucketId();
+        for (String name : new String[] { "a/1", "a/2", "b", "c/1" }) {
+            uploadSmallFile(bucketId, name, makeContent(10));
+        }
+
+        final List<String> names = new ArrayList<>();
+        for (B2FileVersion version : client.fileNames(B2ListFileNamesRequest
+                .builder(bucketId)
+                .setDelimiter("/")
+                .setMaxFileCount(1)
+                .build())) {
+            names.add(version.getFileName());
+        }
+        assertEquals(Arrays.asList("a/", "b", "c/"), names);
+    }
+
+    @Test
+    public void testHiddenFileIsNotFound() throws Exception {
+        start(B2Simulator.builder());
+        final String bucketId = client.createBucket(BUCKET_NAME, B2BucketTypes.ALL_PRIVATE).getBucketId();
+        uploadSmallFile(bucketId, "gone", makeContent(10));
+        client.hideFile(bucketId, "gone");
+
+        try {
+            client.getFileInfoByName(BUCKET_NAME, "gone");
+            fail("should have thrown");
+        } catch (B2NotFoundException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testSyncDeletesEveryVersionOfAnExtraFile() throws Exception {
+        start(B2Simulator.builder());
+        final String bucketId = client.createBucket(BUCKET_NAME, B2BucketTypes.ALL_PRIVATE).getBucketId();
+        uploadSmallFile(bucketId, "backup/gone", makeContent(10));
+        uploadSmallFile(bucketId, "backup/gone", makeContent(20));
+        uploadSmallFile(bucketId, "backup/gone2", makeContent(10));
+
+        // the local directory is empty, so everything under the prefix is extra.
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final B2SyncResult result = client.sync(B2SyncRequest
+                    .builder(tempFolder.getRoot(), bucketId)
+                    .setPrefix("backup/")
+                    .setExtraFileAction(B2SyncRequest.ExtraFileAction.DELETE)
+                    .build(), executor);
+            assertEquals(2, result.getDeletedCount());
+        } finally {
+            B2ExecutorUtils.shutdownAndAwaitTermination(executor, 10, 10);
+        }
+
+        // the older version didn't become the live one.
+        assertFalse(client.fileNames(bucketId).iterator().hasNext());
+        assertFalse(client.fileVersions(B2ListFileVersionsRequest.builder(bucketId).build()).iterator().hasNext());
+    }
+
+    @Test
+    public void testLargeFile() throws Exception {
+        start(B2Simulator.builder().setPartSizes(1000, 100));
+        final String bucketId = client.createBucket(BUCKET_NAME, B2BucketTypes.ALL_PRIVATE).getBucketId();
+
+        final byte[] content = makeContent(3500);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final B2FileVersion version = client.uploadLargeFile(B2UploadFileRequest
+                    .builder(bucketId, "large", B2ContentTypes.APPLICATION_OCTET, B2ByteArrayContentSource.build(content))
+                    .build(), executor);
+            assertEquals(content.length, version.getContentLength());
+
+            final B2ContentMemoryWriter writer = B2ContentMemoryWriter.build();
+            client.downloadById(version.getFileId(), writer);
+            assertArrayEquals(content, writer.getBytes());
+        } finally {
+            B2ExecutorUtils.shutdownAndAwaitTermination(executor, 10, 10);
+        }
+    }
+
+    @Test
+    public void testLargeFileWithAutoTunedConcurrency() throws Exception {
+        start(B2Simulator.builder()
+                .setPartSizes(1000, 100)
+                .setServiceUnavailableRate(0.1)
+                .setRetryAfterSeconds(0)
+                .setRandomSeed(7));
+        final String bucketId = client.createBucket(BUCKET_NAME, B2BucketTypes.ALL_PRIVATE).getBucketId();
+
+        final byte[] content = makeContent(20_500);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final B2FileVersion version = client.uploadLargeFile(B2UploadFileRequest
+                    .builder(bucketId, "tuned", B2ContentTypes.APPLICATION_OCTET, B2ByteArrayContentSource.build(content))
+                    .setAutoTunedConcurrency(8)
+                    .build(), executor);
+            assertEquals(content.length, version.getContentLength());
+
+            final B2ContentMemoryWriter writer = B2ContentMemoryWriter.build();
+            client.downloadById(version.getFileId(), writer);
+            assertArrayEquals(content, writer.getBytes());
+        } finally {
+            B2ExecutorUtils.shutdownAndAwaitTermination(executor, 10, 10);
+        }
+    }
+
+    @Test
+    public void testInjectedFailuresAreRetried() throws Exception {
+        start(B2Simulator.builder()
+                .setTooManyRequestsRate(0.2)
+                .setServiceUnavailableRate(0.2)
+                .setRetryAfterSeconds(0)
+                .setRandomSeed(42));
+        final String bucketId = client.createBucket(BUCKET_NAME, B2BucketTypes.ALL_PRIVATE).getBucketId();
+        for (int i = 0; i < 10; i++) {
+            final byte[] content = makeContent(100 + i);
+            final B2FileVersion version = uploadSmallFile(bucketId, "file" + i, content);
+
+            final B2ContentMemoryWriter writer = B2ContentMemoryWriter.build();
+            client.downloadById(version.getFileId(), writer);
+            assertArrayEquals(content, writer.getBytes());
+        }
+    }
+
+    @Test
+    public void testExpiredUploadUrlIsReplaced() throws Exception {
+        start(B2Simulator.builder().setUploadUrlTtlMillis(100));
+        final String bucketId = client.createBucket(BUCKET_NAME, B2BucketTypes.ALL_PRIVATE).getBucketId();
+        uploadSmallFile(bucketId, "first", makeContent(10));
+
+        // the client will try the upload url it cached, get a 401
+        // expired_auth_token, and get a new url.
+        Thread.sleep(300);
+        uploadSmallFile(bucketId, "second", makeContent(10));
+        assertEquals("second", client.getFileInfoByName(BUCKET_NAME, "second").getFileName());
+    }
+
+    @Test
+    public void testBadSha1IsRejected() throws Exception {
+        start(B2Simulator.builder());
+        final String bucketId = client.createBucket(BUCKET_NAME, B2BucketTypes.ALL_PRIVATE).getBucketId();
+        final byte[] content = makeContent(10);
+        try {
+            client.uploadSmallFile(B2UploadFileRequest
+                    .builder(bucketId, "bad", B2ContentTypes.APPLICATION_OCTET, B2ByteArrayContentSource
+                            .builder(content)
+                            .setSha1OrNull(B2Sha1.hexSha1OfBytes(makeContent(11)))
+                            .build())
+                    .build());
+            fail("should have thrown");
+        } catch (B2Exception e) {
+            assertEquals(400, e.getStatus());
+            assertEquals("Sha1 did not match data received", e.getMessage());
+        }
+    }
+
+    private B2FileVersion uploadSmallFile(String bucketId,
+                                          String fileName,
+                                          byte[] content) throws B2Exception {
+        return client.uploadSmallFile(B2UploadFileRequest
+                .builder(bucketId, fileName, B2ContentTypes.APPLICATION_OCTET, B2ByteArrayContentSource.build(content))
+                .build());
+    }
+
+    private static byte[] makeContent(int length) {
+        final byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * 31 + length);
+        }
+        return content;
+    }
+}